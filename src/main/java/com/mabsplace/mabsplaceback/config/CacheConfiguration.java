@@ -1,5 +1,7 @@
 package com.mabsplace.mabsplaceback.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
@@ -7,20 +9,61 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
 @EnableCaching
 public class CacheConfiguration {
 
+    static final String L1_INVALIDATION_CHANNEL = "cache:l1-invalidation";
+
+    // Entries are evicted by DashboardCacheInvalidationListener when the underlying data changes,
+    // so the TTLs only bound how stale date-relative figures (e.g. "this month") can get
+    private static final Duration DASHBOARD_STATS_TTL = Duration.ofHours(2);
+    private static final Duration TREND_TTL = Duration.ofHours(6);
+
+    @Value("${app.cache.l1.enabled:true}")
+    private boolean l1Enabled;
+
+    // Caches that should be served by Redis alone even though they declare an L1 below
+    @Value("${app.cache.l1.disabled-caches:}")
+    private List<String> l1DisabledCaches;
+
+    @Value("${app.cache.load-lock-lease:PT30S}")
+    private Duration loadLockLease;
+
+    @Value("${app.cache.refresh-threads:2}")
+    private int refreshThreads;
+
+    /**
+     * Single-flight loading and refresh-ahead for the caches whose values are expensive to compute.
+     * Their {@code @Cacheable} must use {@code sync = true} for the loader to reach the cache.
+     */
+    @Bean
+    public RefreshAheadCacheDecorator refreshAheadCacheDecorator(StringRedisTemplate stringRedisTemplate) {
+        Map<String, RefreshAheadCacheDecorator.Spec> specs = new HashMap<>();
+        specs.put("dashboardStats", new RefreshAheadCacheDecorator.Spec(DASHBOARD_STATS_TTL, Duration.ofMinutes(15)));
+        specs.put("revenueTrend", new RefreshAheadCacheDecorator.Spec(TREND_TTL, Duration.ofMinutes(30)));
+        specs.put("topServices", new RefreshAheadCacheDecorator.Spec(TREND_TTL, Duration.ofMinutes(30)));
+        return new RefreshAheadCacheDecorator(specs, loadLockLease, new RedisCacheLoadLock(stringRedisTemplate), refreshThreads);
+    }
+
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                             StringRedisTemplate stringRedisTemplate,
+                                             MeterRegistry meterRegistry,
+                                             RefreshAheadCacheDecorator refreshAheadCacheDecorator) {
         // Default cache configuration - 5 minutes TTL
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofMinutes(5))
@@ -28,29 +71,60 @@ public class CacheConfiguration {
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(new GenericJackson2JsonRedisSerializer()))
                 .disableCachingNullValues();
 
-        // Specific cache configurations with different TTLs
+        // Specific cache configurations with different TTLs, and the per-node L1 in front of each.
+        // L1 TTLs stay well under the Redis ones: they bound how long a node can miss an invalidation.
         Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
+        Map<String, TwoLevelCacheManager.L1Spec> l1Specs = new HashMap<>();
 
-        // Dashboard stats - 5 minutes
-        cacheConfigurations.put("dashboardStats", defaultConfig.entryTtl(Duration.ofMinutes(5)));
+        // Dashboard stats - 2 hours
+        cacheConfigurations.put("dashboardStats", defaultConfig.entryTtl(DASHBOARD_STATS_TTL));
+        l1Specs.put("dashboardStats", new TwoLevelCacheManager.L1Spec(10, Duration.ofSeconds(30)));
 
-        // Trend data - 15 minutes (changes less frequently)
-        cacheConfigurations.put("revenueTrend", defaultConfig.entryTtl(Duration.ofMinutes(15)));
-        cacheConfigurations.put("expenseTrends", defaultConfig.entryTtl(Duration.ofMinutes(15)));
-        cacheConfigurations.put("serviceDistribution", defaultConfig.entryTtl(Duration.ofMinutes(15)));
-        cacheConfigurations.put("topServices", defaultConfig.entryTtl(Duration.ofMinutes(15)));
+        // Trend data - 6 hours
+        cacheConfigurations.put("revenueTrend", defaultConfig.entryTtl(TREND_TTL));
+        cacheConfigurations.put("expenseTrends", defaultConfig.entryTtl(TREND_TTL));
+        cacheConfigurations.put("serviceDistribution", defaultConfig.entryTtl(TREND_TTL));
+        cacheConfigurations.put("topServices", defaultConfig.entryTtl(TREND_TTL));
+        l1Specs.put("revenueTrend", new TwoLevelCacheManager.L1Spec(10, Duration.ofMinutes(1)));
+        l1Specs.put("expenseTrends", new TwoLevelCacheManager.L1Spec(10, Duration.ofMinutes(1)));
+        l1Specs.put("serviceDistribution", new TwoLevelCacheManager.L1Spec(10, Duration.ofMinutes(1)));
+        l1Specs.put("topServices", new TwoLevelCacheManager.L1Spec(10, Duration.ofMinutes(1)));
 
-        // Historical data - 1 hour (rarely changes)
-        cacheConfigurations.put("historicalMetrics", defaultConfig.entryTtl(Duration.ofHours(1)));
-        cacheConfigurations.put("monthlyPerformance", defaultConfig.entryTtl(Duration.ofMinutes(30)));
+        // Historical data - 12 hours (rarely changes)
+        cacheConfigurations.put("historicalMetrics", defaultConfig.entryTtl(Duration.ofHours(12)));
+        cacheConfigurations.put("monthlyPerformance", defaultConfig.entryTtl(TREND_TTL));
+        l1Specs.put("historicalMetrics", new TwoLevelCacheManager.L1Spec(10, Duration.ofMinutes(5)));
+        l1Specs.put("monthlyPerformance", new TwoLevelCacheManager.L1Spec(10, Duration.ofMinutes(2)));
 
-        // Subscription health - 10 minutes
-        cacheConfigurations.put("subscriptionHealth", defaultConfig.entryTtl(Duration.ofMinutes(10)));
+        // Subscription health - 2 hours
+        cacheConfigurations.put("subscriptionHealth", defaultConfig.entryTtl(Duration.ofHours(2)));
+        l1Specs.put("subscriptionHealth", new TwoLevelCacheManager.L1Spec(10, Duration.ofMinutes(1)));
 
-        return RedisCacheManager.builder(connectionFactory)
+        if (!l1Enabled) {
+            l1Specs.clear();
+        }
+        l1DisabledCaches.forEach(l1Specs::remove);
+
+        // Transaction awareness is added by the two-level manager, around both levels
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(defaultConfig)
                 .withInitialCacheConfigurations(cacheConfigurations)
-                .transactionAware()
                 .build();
+        redisCacheManager.afterPropertiesSet();
+
+        return new TwoLevelCacheManager(redisCacheManager, l1Specs,
+                message -> stringRedisTemplate.convertAndSend(L1_INVALIDATION_CHANNEL, message), meterRegistry,
+                List.of(refreshAheadCacheDecorator));
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                            TwoLevelCacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> cacheManager.handleInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(L1_INVALIDATION_CHANNEL));
+        return container;
     }
 }
@@ -0,0 +1,19 @@
+package com.mabsplace.mabsplaceback.config;
+
+import java.time.Duration;
+
+/**
+ * Lease-based lock that lets one node of the cluster compute a cache entry while the others wait for it.
+ */
+public interface CacheLoadLock {
+
+    /**
+     * @return a token to release the lock with, or null when another holder has it
+     */
+    String tryAcquire(String lockKey, Duration lease);
+
+    /**
+     * Releases the lock if it is still held with the given token, i.e. if its lease has not run out.
+     */
+    void release(String lockKey, String token);
+}
@@ -0,0 +1,39 @@
+package com.mabsplace.mabsplaceback.config;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * {@link CacheLoadLock} on a Redis key set with NX and an expiry, so that a crashed holder
+ * loses the lock when its lease runs out.
+ */
+public class RedisCacheLoadLock implements CacheLoadLock {
+
+    // Only the holder may delete the key: the lease may have run out and been taken by another node
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisCacheLoadLock(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public String tryAcquire(String lockKey, Duration lease) {
+        String token = UUID.randomUUID().toString();
+        Boolean acquired = redisTemplate.opsForValue().setIfAbsent(lockKey, token, lease);
+        return Boolean.TRUE.equals(acquired) ? token : null;
+    }
+
+    @Override
+    public void release(String lockKey, String token) {
+        redisTemplate.execute(RELEASE_SCRIPT, List.of(lockKey), token);
+    }
+}
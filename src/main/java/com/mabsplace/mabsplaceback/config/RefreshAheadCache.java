@@ -0,0 +1,264 @@
+package com.mabsplace.mabsplaceback.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Cache decorator that loads each missing key once across the cluster and refreshes entries in the
+ * background shortly before they expire.
+ * Within a node, concurrent misses on a key wait for the one thread loading it. Across nodes, the
+ * loading thread holds a {@link CacheLoadLock} while the other nodes poll the cache for its value,
+ * and compute it themselves only if the lease runs out first. Values are stored with the time they
+ * should be refreshed at; a read past that time still returns the value and triggers one background
+ * reload. Loaders are only known on {@link #get(Object, Callable)}, i.e. with {@code @Cacheable(sync = true)}.
+ */
+class RefreshAheadCache implements Cache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshAheadCache.class);
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(50);
+
+    /**
+     * Value stored in the underlying cache, with the epoch millisecond after which it is refreshed.
+     */
+    public record Entry(Object value, long refreshAt) {
+    }
+
+    private final Cache delegate;
+    private final Duration refreshAfter;
+    private final Duration lockLease;
+    private final CacheLoadLock lock;
+    private final Executor refreshExecutor;
+    private final Clock clock;
+    private final ConcurrentMap<Object, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Object, Boolean> refreshing = new ConcurrentHashMap<>();
+
+    RefreshAheadCache(Cache delegate, Duration refreshAfter, Duration lockLease, CacheLoadLock lock,
+                      Executor refreshExecutor, Clock clock) {
+        this.delegate = delegate;
+        this.refreshAfter = refreshAfter;
+        this.lockLease = lockLease;
+        this.lock = lock;
+        this.refreshExecutor = refreshExecutor;
+        this.clock = clock;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        Entry entry = entry(key);
+        return entry != null ? new SimpleValueWrapper(entry.value()) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Entry entry = entry(key);
+        if (entry != null) {
+            if (clock.millis() >= entry.refreshAt()) {
+                refreshInBackground(key, valueLoader);
+            }
+            return (T) entry.value();
+        }
+
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> inProgress = loading.putIfAbsent(key, load);
+        if (inProgress != null) {
+            return (T) await(key, inProgress);
+        }
+        try {
+            Object value = loadOnce(key, valueLoader);
+            load.complete(value);
+            return (T) value;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            delegate.evict(key);
+            return;
+        }
+        delegate.put(key, new Entry(value, clock.millis() + refreshAfter.toMillis()));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = delegate.putIfAbsent(key, new Entry(value, clock.millis() + refreshAfter.toMillis()));
+        return existing != null ? new SimpleValueWrapper(unwrap(existing.get()).value()) : null;
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        return delegate.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        return delegate.invalidate();
+    }
+
+    /**
+     * Loads a missing entry, or waits for the node holding the lock to store it.
+     */
+    private Object loadOnce(Object key, Callable<?> valueLoader) {
+        String lockKey = lockKey(key);
+        long deadline = clock.millis() + lockLease.toMillis();
+        String token = lock.tryAcquire(lockKey, lockLease);
+        while (token == null) {
+            sleep(POLL_INTERVAL);
+            Entry entry = entry(key);
+            if (entry != null) {
+                return entry.value();
+            }
+            if (clock.millis() >= deadline) {
+                logger.warn("Gave up waiting for another node to load {} in cache {}, loading it here", key, getName());
+                break;
+            }
+            token = lock.tryAcquire(lockKey, lockLease);
+        }
+
+        try {
+            // Another node may have stored it between our miss and the lock
+            Entry entry = entry(key);
+            if (entry != null) {
+                return entry.value();
+            }
+            Object value = call(key, valueLoader);
+            put(key, value);
+            return value;
+        } finally {
+            if (token != null) {
+                lock.release(lockKey, token);
+            }
+        }
+    }
+
+    private void refreshInBackground(Object key, Callable<?> valueLoader) {
+        if (refreshing.putIfAbsent(key, Boolean.TRUE) != null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refresh(key, valueLoader);
+                } catch (RuntimeException e) {
+                    // The stale value keeps being served until the entry expires
+                    logger.warn("Background refresh of {} in cache {} failed: {}", key, getName(), e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+            logger.debug("Refresh queue full, {} in cache {} is refreshed on a later read", key, getName());
+        }
+    }
+
+    private void refresh(Object key, Callable<?> valueLoader) {
+        String lockKey = lockKey(key);
+        String token = lock.tryAcquire(lockKey, lockLease);
+        if (token == null) {
+            // Another node is loading or refreshing it
+            return;
+        }
+        try {
+            Entry entry = entry(key);
+            if (entry != null && clock.millis() < entry.refreshAt()) {
+                return;
+            }
+            put(key, call(key, valueLoader));
+        } finally {
+            lock.release(lockKey, token);
+        }
+    }
+
+    private Entry entry(Object key) {
+        ValueWrapper wrapper = delegate.get(key);
+        return wrapper != null && wrapper.get() != null ? unwrap(wrapper.get()) : null;
+    }
+
+    // Values cached before the decorator was applied are refreshed on their first read
+    private static Entry unwrap(Object stored) {
+        return stored instanceof Entry entry ? entry : new Entry(stored, 0);
+    }
+
+    private String lockKey(Object key) {
+        return "cache-lock:" + getName() + ":" + key;
+    }
+
+    private Object call(Object key, Callable<?> valueLoader) {
+        try {
+            return valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+
+    private Object await(Object key, CompletableFuture<Object> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Loading " + key + " in cache " + getName() + " failed", e.getCause());
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a cache load", e);
+        }
+    }
+}
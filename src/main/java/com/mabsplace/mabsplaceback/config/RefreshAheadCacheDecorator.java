@@ -0,0 +1,66 @@
+package com.mabsplace.mabsplaceback.config;
+
+import org.springframework.cache.Cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Applies {@link RefreshAheadCache} to the caches that declare a {@link Spec}, and owns the pool the
+ * background refreshes run on.
+ */
+public class RefreshAheadCacheDecorator implements TwoLevelCacheManager.CacheDecorator {
+
+    /**
+     * TTL of the underlying cache, and how long before it an entry is refreshed in the background.
+     */
+    public record Spec(Duration ttl, Duration refreshAhead) {
+
+        public Spec {
+            if (refreshAhead.compareTo(ttl) >= 0) {
+                throw new IllegalArgumentException("Refresh-ahead " + refreshAhead + " must be shorter than the TTL " + ttl);
+            }
+        }
+    }
+
+    private final Map<String, Spec> specs;
+    private final Duration lockLease;
+    private final CacheLoadLock lock;
+    private final ThreadPoolExecutor refreshExecutor;
+
+    public RefreshAheadCacheDecorator(Map<String, Spec> specs, Duration lockLease, CacheLoadLock lock, int refreshThreads) {
+        this.specs = Map.copyOf(specs);
+        this.lockLease = lockLease;
+        this.lock = lock;
+
+        // Bounded: refreshes that do not fit are skipped and retried on a later read
+        AtomicInteger threadCount = new AtomicInteger();
+        this.refreshExecutor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(refreshThreads * 16),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "cache-refresh-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public Cache decorate(String name, Cache cache) {
+        Spec spec = specs.get(name);
+        if (spec == null) {
+            return cache;
+        }
+        return new RefreshAheadCache(cache, spec.ttl().minus(spec.refreshAhead()), lockLease, lock, refreshExecutor,
+                Clock.systemUTC());
+    }
+
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,190 @@
+package com.mabsplace.mabsplaceback.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cache with a per-node Caffeine L1 in front of a shared L2 (Redis).
+ * Reads are served from L1 when possible and fill it from L2; writes and evictions go to L2, drop the
+ * local L1 entry and are published so that the other nodes drop theirs. L1 holds the deserialized
+ * objects, so cached values must not be mutated by callers.
+ */
+class TwoLevelCache implements Cache {
+
+    /**
+     * Tells the other nodes to drop an L1 entry, or their whole L1 when the key is null.
+     */
+    interface InvalidationPublisher {
+        void publish(String cacheName, String key);
+    }
+
+    private final String name;
+    private final Cache l2;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> l1;
+    private final InvalidationPublisher invalidationPublisher;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+
+    TwoLevelCache(String name, Cache l2, com.github.benmanes.caffeine.cache.Cache<String, Object> l1,
+                  InvalidationPublisher invalidationPublisher, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.l2 = l2;
+        this.l1 = l1;
+        this.invalidationPublisher = invalidationPublisher;
+
+        // cache.gets{cache, level, result} for both levels, and a hit ratio gauge per level
+        CaffeineCacheMetrics.monitor(meterRegistry, l1, name, "level", "l1");
+        this.l2Hits = Counter.builder("cache.gets").tags("cache", name, "level", "l2", "result", "hit").register(meterRegistry);
+        this.l2Misses = Counter.builder("cache.gets").tags("cache", name, "level", "l2", "result", "miss").register(meterRegistry);
+        Gauge.builder("cache.hit.ratio", l1, cache -> cache.stats().hitRate())
+                .tags("cache", name, "level", "l1")
+                .register(meterRegistry);
+        Gauge.builder("cache.hit.ratio", this, TwoLevelCache::l2HitRatio)
+                .tags("cache", name, "level", "l2")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return l2.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String l1Key = l1Key(key);
+        Object value = l1.getIfPresent(l1Key);
+        if (value != null) {
+            return new SimpleValueWrapper(value);
+        }
+
+        ValueWrapper wrapper = l2.get(key);
+        recordL2(wrapper != null);
+        if (wrapper != null && wrapper.get() != null) {
+            l1.put(l1Key, wrapper.get());
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String l1Key = l1Key(key);
+        Object value = l1.getIfPresent(l1Key);
+        if (value != null) {
+            return (T) value;
+        }
+
+        AtomicBoolean loaded = new AtomicBoolean();
+        T loadedValue = l2.get(key, () -> {
+            loaded.set(true);
+            return valueLoader.call();
+        });
+        recordL2(!loaded.get());
+        if (loadedValue != null) {
+            l1.put(l1Key, loadedValue);
+        }
+        return loadedValue;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        l2.put(key, value);
+        String l1Key = l1Key(key);
+        if (value != null) {
+            l1.put(l1Key, value);
+        } else {
+            l1.invalidate(l1Key);
+        }
+        invalidationPublisher.publish(name, l1Key);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = l2.putIfAbsent(key, value);
+        Object current = existing != null ? existing.get() : value;
+        String l1Key = l1Key(key);
+        if (current != null) {
+            l1.put(l1Key, current);
+        }
+        if (existing == null) {
+            invalidationPublisher.publish(name, l1Key);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        l2.evict(key);
+        evictLocal(l1Key(key));
+        invalidationPublisher.publish(name, l1Key(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean evicted = l2.evictIfPresent(key);
+        evictLocal(l1Key(key));
+        invalidationPublisher.publish(name, l1Key(key));
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        l2.clear();
+        clearLocal();
+        invalidationPublisher.publish(name, null);
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean invalidated = l2.invalidate();
+        clearLocal();
+        invalidationPublisher.publish(name, null);
+        return invalidated;
+    }
+
+    void evictLocal(String l1Key) {
+        l1.invalidate(l1Key);
+    }
+
+    void clearLocal() {
+        l1.invalidateAll();
+    }
+
+    // Redis keys are the string form of the cache key as well
+    static String l1Key(Object key) {
+        return String.valueOf(key);
+    }
+
+    private void recordL2(boolean hit) {
+        (hit ? l2Hits : l2Misses).increment();
+    }
+
+    private double l2HitRatio() {
+        double hits = l2Hits.count();
+        double requests = hits + l2Misses.count();
+        return requests == 0 ? 1.0 : hits / requests;
+    }
+}
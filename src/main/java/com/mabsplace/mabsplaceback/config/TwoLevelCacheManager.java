@@ -0,0 +1,143 @@
+package com.mabsplace.mabsplaceback.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Puts a per-node Caffeine L1 in front of the caches of an L2 cache manager (Redis), for the caches
+ * that declare an {@link L1Spec}; the others are served by L2 alone.
+ * L1 entries are invalidated across nodes through messages sent with the given publisher and fed back
+ * through {@link #handleInvalidation(String)}; the L1 TTL bounds staleness if a message is lost.
+ * {@link CacheDecorator}s are then applied in order, and the result made transaction aware: puts and
+ * evictions inside a transaction are applied after commit.
+ */
+public class TwoLevelCacheManager implements CacheManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwoLevelCacheManager.class);
+
+    /**
+     * Size and TTL of the L1 of one cache. Keep the TTL short: it is how long a node may serve a value
+     * another node has replaced, should the invalidation message be lost.
+     */
+    public record L1Spec(long maxSize, Duration ttl) {
+    }
+
+    /**
+     * Wraps the two-level cache of a given name, e.g. to change how it loads values; returns it unchanged
+     * when the decorator does not apply to that cache.
+     */
+    @FunctionalInterface
+    public interface CacheDecorator {
+        Cache decorate(String name, Cache cache);
+    }
+
+    private final CacheManager l2CacheManager;
+    private final Map<String, L1Spec> l1Specs;
+    private final Consumer<String> invalidationPublisher;
+    private final MeterRegistry meterRegistry;
+    private final List<CacheDecorator> decorators;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, TwoLevelCache> twoLevelCaches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager l2CacheManager, Map<String, L1Spec> l1Specs,
+                                Consumer<String> invalidationPublisher, MeterRegistry meterRegistry) {
+        this(l2CacheManager, l1Specs, invalidationPublisher, meterRegistry, List.of());
+    }
+
+    public TwoLevelCacheManager(CacheManager l2CacheManager, Map<String, L1Spec> l1Specs,
+                                Consumer<String> invalidationPublisher, MeterRegistry meterRegistry,
+                                List<CacheDecorator> decorators) {
+        this.l2CacheManager = l2CacheManager;
+        this.l1Specs = Map.copyOf(l1Specs);
+        this.invalidationPublisher = invalidationPublisher;
+        this.meterRegistry = meterRegistry;
+        this.decorators = List.copyOf(decorators);
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache l2 = l2CacheManager.getCache(name);
+        if (l2 == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, cacheName -> new TransactionAwareCacheDecorator(decorate(cacheName, l2)));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return l2CacheManager.getCacheNames();
+    }
+
+    /**
+     * Applies an invalidation message published by another node.
+     */
+    public void handleInvalidation(String message) {
+        // <node id>\n<cache name>[\n<key>], without a key for a whole cache
+        String[] parts = message.split("\n", 3);
+        if (parts.length < 2 || nodeId.equals(parts[0])) {
+            return;
+        }
+        TwoLevelCache cache = twoLevelCaches.get(parts[1]);
+        if (cache == null) {
+            return;
+        }
+        if (parts.length == 3) {
+            cache.evictLocal(parts[2]);
+        } else {
+            cache.clearLocal();
+        }
+    }
+
+    private Cache decorate(String name, Cache l2) {
+        Cache cache = withL1(name, l2);
+        for (CacheDecorator decorator : decorators) {
+            cache = decorator.decorate(name, cache);
+        }
+        return cache;
+    }
+
+    private Cache withL1(String name, Cache l2) {
+        L1Spec spec = l1Specs.get(name);
+        if (spec == null) {
+            return l2;
+        }
+        com.github.benmanes.caffeine.cache.Cache<String, Object> l1 = Caffeine.newBuilder()
+                .maximumSize(spec.maxSize())
+                .expireAfterWrite(spec.ttl())
+                .recordStats()
+                .build();
+        TwoLevelCache cache = new TwoLevelCache(name, l2, l1, this::publishInvalidation, meterRegistry);
+        twoLevelCaches.put(name, cache);
+        logger.info("Cache {} has an L1 of {} entries for {}", name, spec.maxSize(), spec.ttl());
+        return cache;
+    }
+
+    private void publishInvalidation(String cacheName, String key) {
+        String message = nodeId + "\n" + cacheName + (key != null ? "\n" + key : "");
+        try {
+            invalidationPublisher.accept(message);
+        } catch (RuntimeException e) {
+            // The other nodes catch up when their L1 entries expire
+            logger.warn("Could not publish L1 invalidation for cache {}: {}", cacheName, e.getMessage());
+        }
+    }
+}
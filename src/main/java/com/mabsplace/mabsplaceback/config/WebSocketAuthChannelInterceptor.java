@@ -1,8 +1,10 @@
 package com.mabsplace.mabsplaceback.config;
 
-import com.mabsplace.mabsplaceback.domain.entities.User;
-import com.mabsplace.mabsplaceback.domain.repositories.UserRepository;
+import com.mabsplace.mabsplaceback.security.CustomUserDetailsService;
+import com.mabsplace.mabsplaceback.security.PrincipalCache;
+import com.mabsplace.mabsplaceback.security.UserPrincipal;
 import com.mabsplace.mabsplaceback.security.jwt.JwtUtils;
+import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,11 +14,11 @@ import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Component;
 
 import java.security.Principal;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * Intercepts STOMP CONNECT frames to authenticate WebSocket sessions using JWT.
@@ -30,7 +32,10 @@ public class WebSocketAuthChannelInterceptor implements ChannelInterceptor {
     private JwtUtils jwtUtils;
 
     @Autowired
-    private UserRepository userRepository;
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private PrincipalCache principalCache;
 
     @Override
     public Message<?> preSend(Message<?> message, MessageChannel channel) {
@@ -46,29 +51,28 @@ public class WebSocketAuthChannelInterceptor implements ChannelInterceptor {
 
                 if (authHeader != null && authHeader.startsWith("Bearer ")) {
                     String token = authHeader.substring(7);
-                    if (jwtUtils.validateJwtToken(token)) {
-                        String username = jwtUtils.getUserNameFromJwtToken(token);
-                        Optional<User> userOpt = userRepository.findByUsername(username);
-                        if (userOpt.isPresent()) {
-                            User user = userOpt.get();
-                            Principal principal = new Principal() {
-                                @Override
-                                public String getName() {
-                                    // Use user ID as Principal name so /user/{id}/ works
-                                    return user.getId().toString();
-                                }
-                            };
-                            accessor.setUser(principal);
-                            logger.info("WebSocket CONNECT authenticated for user {} (id={})", username, user.getId());
-                        } else {
-                            logger.warn("WebSocket CONNECT: user not found for username {}", username);
-                        }
+                    Claims claims = jwtUtils.getVerifiedClaims(token);
+                    if (claims != null) {
+                        String username = claims.getSubject();
+                        UserPrincipal user = principalCache.getByUsername(username,
+                                name -> (UserPrincipal) userDetailsService.loadUserByUsername(name));
+                        Principal principal = new Principal() {
+                            @Override
+                            public String getName() {
+                                // Use user ID as Principal name so /user/{id}/ works
+                                return user.getId().toString();
+                            }
+                        };
+                        accessor.setUser(principal);
+                        logger.info("WebSocket CONNECT authenticated for user {} (id={})", username, user.getId());
                     } else {
                         logger.warn("WebSocket CONNECT: invalid JWT token");
                     }
                 } else {
                     logger.debug("WebSocket CONNECT without Authorization header");
                 }
+            } catch (UsernameNotFoundException e) {
+                logger.warn("WebSocket CONNECT: {}", e.getMessage());
             } catch (Exception e) {
                 logger.error("WebSocket CONNECT authentication failed", e);
             }
@@ -1,5 +1,6 @@
 package com.mabsplace.mabsplaceback.domain.controllers;
 
+import com.mabsplace.mabsplaceback.utils.TimeWindow;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -7,8 +8,13 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 @RestController
@@ -16,168 +22,116 @@ import java.util.*;
 @PreAuthorize("@securityExpressionUtil.hasAnyRole(authentication, 'SEE_DASHBOARD')")
 public class DashboardController {
 
+    // Month series read the daily rollups kept by DailyRollupService, so they cost O(days) whatever the
+    // number of payments; months are bucketed over half-open TimeWindow bounds and missing ones filled with zeros
+    static final String MONTHLY_PAYMENTS_SQL = """
+            SELECT
+                DATE_FORMAT(r.day, '%Y-%m') AS month,
+                COALESCE(SUM(r.revenue), 0) AS revenue,
+                COALESCE(SUM(r.plan_revenue), 0) AS plan_revenue,
+                COALESCE(SUM(r.subscribers), 0) AS subscribers
+            FROM daily_revenue r
+            WHERE r.day >= :windowStart AND r.day < :windowEnd
+            GROUP BY DATE_FORMAT(r.day, '%Y-%m')
+            """;
+
+    static final String MONTHLY_SERVICE_PAYMENTS_SQL = """
+            SELECT
+                r.service_id,
+                DATE_FORMAT(r.day, '%Y-%m') AS month,
+                COALESCE(SUM(r.service_subscribers), 0) AS subscriptions,
+                COALESCE(SUM(r.plan_revenue), 0) AS revenue
+            FROM daily_revenue r
+            WHERE r.day >= :windowStart AND r.day < :windowEnd
+            GROUP BY r.service_id, DATE_FORMAT(r.day, '%Y-%m')
+            """;
+
+    static final String MONTHLY_EXPENSES_SQL = """
+            SELECT
+                DATE_FORMAT(e.day, '%Y-%m') AS month,
+                COALESCE(SUM(e.total_expenses), 0) AS total_expenses,
+                COALESCE(SUM(e.recurring_expenses), 0) AS recurring_expenses,
+                COALESCE(SUM(e.one_time_expenses), 0) AS one_time_expenses
+            FROM daily_expense e
+            WHERE e.day >= :windowStart AND e.day < :windowEnd
+            GROUP BY DATE_FORMAT(e.day, '%Y-%m')
+            """;
+
+    static final String YEARLY_METRICS_SQL = """
+            WITH YearlyData AS (
+                SELECT
+                    YEAR(day) as year,
+                    SUM(revenue) as revenue
+                FROM daily_revenue
+                GROUP BY YEAR(day)
+                HAVING SUM(payments) > 0
+            ),
+            YearlyExpenses AS (
+                SELECT
+                    YEAR(day) as year,
+                    SUM(total_expenses) as expenses
+                FROM daily_expense
+                GROUP BY YEAR(day)
+            )
+            SELECT
+                yd.year,
+                yd.revenue,
+                COALESCE(ye.expenses, 0) as expenses,
+                (yd.revenue - COALESCE(ye.expenses, 0)) as net_profit
+            FROM YearlyData yd
+            LEFT JOIN YearlyExpenses ye ON yd.year = ye.year
+            ORDER BY yd.year DESC
+            LIMIT 3
+            """;
+
+    private static final DateTimeFormatter SHORT_MONTH = DateTimeFormatter.ofPattern("MMM", Locale.ENGLISH);
+    private static final DateTimeFormatter MONTH_AND_YEAR = DateTimeFormatter.ofPattern("MMM yyyy", Locale.ENGLISH);
+    private static final DateTimeFormatter FULL_MONTH_AND_YEAR = DateTimeFormatter.ofPattern("MMMM yyyy", Locale.ENGLISH);
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
     @Autowired
     private com.mabsplace.mabsplaceback.domain.repositories.SubscriptionRepository subscriptionRepository;
 
     @Autowired
     private com.mabsplace.mabsplaceback.domain.repositories.ProfileRepository profileRepository;
 
+    @Autowired
+    private DashboardStatsEngine dashboardStatsEngine;
+
     @GetMapping("/stats")
-    @Cacheable(value = "dashboardStats", key = "'all'")
+    @Cacheable(value = "dashboardStats", key = "\'all\'", sync = true)
     public DashboardStats getStats() {
-        // Get total customers (count of distinct users who have made payments)
-        Integer totalCustomers = jdbcTemplate.queryForObject(
-                "SELECT COUNT(DISTINCT user_id) FROM payments WHERE status = 'PAID'",
-                Integer.class
-        );
-
-        // Get active subscribers (count of users with active non-trial subscription contracts)
-        Integer activeSubscribers = jdbcTemplate.queryForObject(
-                "SELECT COUNT(DISTINCT user_id) FROM subscriptions " +
-                "WHERE status = 'ACTIVE' " +
-                "AND start_date <= CURRENT_DATE " +
-                "AND (end_date IS NULL OR end_date > CURRENT_DATE) " +
-                "AND (is_trial IS NULL OR is_trial = FALSE)",
-                Integer.class
-        );
-
-        // Get monthly revenue (sum of payments in current month)
-        Double monthlyRevenue = jdbcTemplate.queryForObject(
-                "SELECT COALESCE(SUM(amount), 0) FROM payments " +
-                        "WHERE MONTH(payment_date) = MONTH(CURRENT_DATE) " +
-                        "AND YEAR(payment_date) = YEAR(CURRENT_DATE) " +
-                        "AND status = 'PAID'",
-                Double.class
-        );
-
-        // Calculate Monthly Recurring Revenue (MRR) from active subscriptions
-        Double monthlyRecurringRevenue = jdbcTemplate.queryForObject(
-                "SELECT COALESCE(SUM(" +
-                "  CASE sp.period " +
-                "    WHEN 'MONTHLY' THEN sp.price " +
-                "    WHEN 'YEARLY' THEN sp.price / 12 " +
-                "    WHEN 'QUARTERLY' THEN sp.price / 3 " +
-                "    WHEN 'SEMI_ANNUALLY' THEN sp.price / 6 " +
-                "    WHEN 'DAILY' THEN sp.price * 30 " +
-                "    ELSE sp.price " +
-                "  END" +
-                "), 0) FROM subscriptions s " +
-                "JOIN subscription_plans sp ON s.plan_id = sp.id " +
-                "WHERE s.status = 'ACTIVE' " +
-                "AND s.start_date <= CURRENT_DATE " +
-                "AND (s.end_date IS NULL OR s.end_date > CURRENT_DATE)",
-                Double.class
-        );
-
-        // Get average subscription value (average plan price chosen by active subscribers)
-        Double avgSubscriptionValue = jdbcTemplate.queryForObject(
-                "SELECT COALESCE(AVG(sp.price), 0) FROM subscriptions s " +
-                "JOIN subscription_plans sp ON s.plan_id = sp.id " +
-                "WHERE s.status = 'ACTIVE' " +
-                "AND s.start_date <= CURRENT_DATE " +
-                "AND (s.end_date IS NULL OR s.end_date > CURRENT_DATE)",
-                Double.class
-        );
-
-        // Get paying customers this month (users who made payments in current month)  
-        Integer payingCustomersThisMonth = jdbcTemplate.queryForObject(
-                "SELECT COUNT(DISTINCT user_id) FROM payments WHERE status = 'PAID' " +
-                "AND MONTH(payment_date) = MONTH(CURRENT_DATE) " +
-                "AND YEAR(payment_date) = YEAR(CURRENT_DATE)",
-                Integer.class
-        );
-
-        // Calculate growth percentages (comparing with previous month)
-        Double subscriberGrowth = calculateSubscriberGrowthRate();
-        Double revenueGrowth = calculateGrowthRate("payments");
-
-        // New expense stats
-        Double monthlyExpenses = jdbcTemplate.queryForObject(
-                "SELECT COALESCE(SUM(amount), 0) FROM expenses " +
-                        "WHERE MONTH(expense_date) = MONTH(CURRENT_DATE) " +
-                        "AND YEAR(expense_date) = YEAR(CURRENT_DATE)",
-                Double.class
-        );
-
-        // Calculate net profit
-        Double netProfit = (monthlyRevenue != null ? monthlyRevenue : 0) - (monthlyExpenses != null ? monthlyExpenses : 0);
-
-        // Calculate profit margin
-        Double profitMargin = (monthlyRevenue != null && monthlyRevenue > 0) ? (netProfit / monthlyRevenue) * 100 : 0;
-
-        // Calculate churn rate (percentage of customers who cancelled in the current month)
-        Double churnRate = calculateChurnRate();
-
-        // Calculate Customer Lifetime Value (CLV)
-        Double customerLifetimeValue = calculateCustomerLifetimeValue();
-
-        // Calculate Customer Acquisition Cost (CAC)
-        Double customerAcquisitionCost = calculateCustomerAcquisitionCost();
-
-        // Calculate LTV:CAC Ratio
-        Double ltvCacRatio = 0.0;
-        if (customerAcquisitionCost != null && customerAcquisitionCost > 0) {
-            ltvCacRatio = (customerLifetimeValue != null ? customerLifetimeValue : 0) / customerAcquisitionCost;
-        }
-
-        return new DashboardStats(
-                totalCustomers,
-                activeSubscribers,
-                monthlyRevenue,
-                monthlyRecurringRevenue,
-                avgSubscriptionValue,
-                payingCustomersThisMonth,
-                subscriberGrowth,
-                revenueGrowth,
-                monthlyExpenses,
-                netProfit,
-                profitMargin,
-                churnRate,
-                customerLifetimeValue,
-                customerAcquisitionCost,
-                ltvCacRatio
-        );
+        return dashboardStatsEngine.computeStats();
     }
 
     @GetMapping("/expense-trends")
-    @Cacheable(value = "expenseTrends", key = "'all'")
+    @Cacheable(value = "expenseTrends", key = "\'all\'", sync = true)
     public List<ExpenseTrend> getExpenseTrends() {
-        return jdbcTemplate.query(
-                """
-                        WITH RECURSIVE Months AS (
-                            SELECT DATE_SUB(CURRENT_DATE, INTERVAL 5 MONTH) as date
-                            UNION ALL
-                            SELECT DATE_ADD(date, INTERVAL 1 MONTH)
-                            FROM Months
-                            WHERE date < CURRENT_DATE
-                        )
-                        SELECT 
-                            DATE_FORMAT(m.date, '%b') as month,
-                            COALESCE(SUM(e.amount), 0) as total_expenses,
-                            COALESCE(SUM(CASE WHEN e.is_recurring = TRUE THEN e.amount ELSE 0 END), 0) as recurring_expenses,
-                            COALESCE(SUM(CASE WHEN e.is_recurring = FALSE THEN e.amount ELSE 0 END), 0) as one_time_expenses
-                        FROM Months m
-                        LEFT JOIN expenses e ON 
-                            MONTH(e.expense_date) = MONTH(m.date) 
-                            AND YEAR(e.expense_date) = YEAR(m.date)
-                        GROUP BY m.date
-                        ORDER BY m.date
-                        """,
-                (rs, rowNum) -> new ExpenseTrend(
-                        rs.getString("month"),
-                        rs.getDouble("total_expenses"),
-                        rs.getDouble("recurring_expenses"),
-                        rs.getDouble("one_time_expenses")
-                )
-        );
+        TimeWindow window = TimeWindow.lastMonths(6);
+        Map<YearMonth, ExpenseTrend> trends = new HashMap<>();
+        namedParameterJdbcTemplate.query(MONTHLY_EXPENSES_SQL, window.params("window"), rs -> {
+            YearMonth month = YearMonth.parse(rs.getString("month"));
+            trends.put(month, new ExpenseTrend(
+                    SHORT_MONTH.format(month),
+                    rs.getDouble("total_expenses"),
+                    rs.getDouble("recurring_expenses"),
+                    rs.getDouble("one_time_expenses")
+            ));
+        });
+
+        return window.months().stream()
+                .map(month -> trends.getOrDefault(month, new ExpenseTrend(SHORT_MONTH.format(month), 0.0, 0.0, 0.0)))
+                .toList();
     }
 
     @GetMapping("/expense-by-category")
     public List<ExpenseByCategory> getExpenseByCategory() {
-        return jdbcTemplate.query(
+        return namedParameterJdbcTemplate.query(
                 """
                         SELECT
                             ec.name as category,
@@ -185,11 +139,11 @@ public class DashboardController {
                             COUNT(e.id) as transaction_count
                         FROM expense_categories ec
                         LEFT JOIN expenses e ON ec.id = e.category_id
-                        WHERE MONTH(e.expense_date) = MONTH(CURRENT_DATE)
-                        AND YEAR(e.expense_date) = YEAR(CURRENT_DATE)
+                        WHERE e.expense_date >= :monthStart AND e.expense_date < :monthEnd
                         GROUP BY ec.id, ec.name
                         ORDER BY amount DESC
                         """,
+                TimeWindow.currentMonth().params("month"),
                 (rs, rowNum) -> new ExpenseByCategory(
                         rs.getString("category"),
                         rs.getDouble("amount"),
@@ -200,7 +154,7 @@ public class DashboardController {
 
     @GetMapping("/profitability-metrics")
     public ProfitabilityMetrics getProfitabilityMetrics() {
-        return jdbcTemplate.queryForObject(
+        return namedParameterJdbcTemplate.queryForObject(
                 """
                         WITH MonthlyMetrics AS (
                             SELECT
@@ -208,13 +162,11 @@ public class DashboardController {
                                 COALESCE((
                                     SELECT SUM(e.amount)
                                     FROM expenses e
-                                    WHERE MONTH(e.expense_date) = MONTH(CURRENT_DATE)
-                                    AND YEAR(e.expense_date) = YEAR(CURRENT_DATE)
+                                    WHERE e.expense_date >= :monthStart AND e.expense_date < :monthEnd
                                 ), 0) as expenses
                             FROM payments p
                             WHERE p.status = 'PAID'
-                            AND MONTH(p.payment_date) = MONTH(CURRENT_DATE)
-                            AND YEAR(p.payment_date) = YEAR(CURRENT_DATE)
+                            AND p.payment_date >= :monthStart AND p.payment_date < :monthEnd
                         )
                         SELECT
                             revenue,
@@ -226,6 +178,7 @@ public class DashboardController {
                             END as profit_margin
                         FROM MonthlyMetrics
                         """,
+                TimeWindow.currentMonth().params("month"),
                 (rs, rowNum) -> new ProfitabilityMetrics(
                         rs.getDouble("revenue"),
                         rs.getDouble("expenses"),
@@ -236,41 +189,21 @@ public class DashboardController {
     }
 
     @GetMapping("/revenue-trend")
-    @Cacheable(value = "revenueTrend", key = "'all'")
+    @Cacheable(value = "revenueTrend", key = "\'all\'", sync = true)
     public List<MonthlyRevenue> getRevenueAndSubscriptionsTrend() {
-        String sql = """
-                WITH RECURSIVE Months AS (
-                                       SELECT DATE_FORMAT(DATE_SUB(CURRENT_DATE, INTERVAL 5 MONTH), '%Y-%m-01') AS month_start
-                                       UNION ALL
-                                       SELECT DATE_ADD(month_start, INTERVAL 1 MONTH)
-                                       FROM Months
-                                       WHERE month_start <= DATE_FORMAT(CURRENT_DATE, '%Y-%m-01')
-                                   )
-                                   SELECT DATE_FORMAT(month_start, '%b') AS month,
-                                       COALESCE((SELECT SUM(amount) FROM payments\s
-                                           WHERE status = 'PAID'\s
-                                           AND payment_date BETWEEN month_start AND LAST_DAY(month_start)), 0) AS revenue,
-                                       COALESCE((SELECT COUNT(DISTINCT user_id) FROM payments
-                                                 WHERE status = 'PAID'\s
-                                                 AND MONTH(payment_date) = MONTH(month_start)
-                                                 AND YEAR(payment_date) = YEAR(month_start)
-                                                 AND subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')), 0) AS subscriptions
-                                   FROM Months
-                                   ORDER BY month_start;
-                """;
-
-        return jdbcTemplate.query(sql,
-                (rs, rowNum) -> new MonthlyRevenue(
-                        rs.getString("month"),
-                        rs.getDouble("revenue"),
-                        rs.getInt("subscriptions")
-                )
-        );
+        TimeWindow window = TimeWindow.lastMonths(6);
+        Map<YearMonth, MonthlyPayments> payments = monthlyPayments(window);
+
+        return window.months().stream()
+                .map(month -> {
+                    MonthlyPayments totals = payments.getOrDefault(month, MonthlyPayments.NONE);
+                    return new MonthlyRevenue(SHORT_MONTH.format(month), totals.revenue(), totals.subscribers());
+                })
+                .toList();
     }
 
-
     @GetMapping("/service-distribution")
-    @Cacheable(value = "serviceDistribution", key = "'all'")
+    @Cacheable(value = "serviceDistribution", key = "\'all\'", sync = true)
     public List<ServiceDistribution> getServiceDistribution() {
         return jdbcTemplate.query(
                 "SELECT s.name, COUNT(DISTINCT sub.user_id) as value " +
@@ -297,7 +230,7 @@ public class DashboardController {
     }
 
     @GetMapping("/top-services")
-    @Cacheable(value = "topServices", key = "'all'")
+    @Cacheable(value = "topServices", key = "\'all\'", sync = true)
     public List<TopService> getTopServices() {
         String sql = """
                     WITH CurrentMonthStats AS (
@@ -308,8 +241,7 @@ public class DashboardController {
                         FROM services s
                         LEFT JOIN payments p ON s.id = p.service_id
                             AND p.status = 'PAID'
-                            AND MONTH(p.payment_date) = MONTH(CURRENT_DATE)
-                            AND YEAR(p.payment_date) = YEAR(CURRENT_DATE)
+                            AND p.payment_date >= :monthStart AND p.payment_date < :monthEnd
                             AND p.subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')
                         GROUP BY s.id, s.name
                     ),
@@ -320,8 +252,7 @@ public class DashboardController {
                         FROM services s
                         LEFT JOIN payments p ON s.id = p.service_id
                             AND p.status = 'PAID'
-                            AND MONTH(p.payment_date) = MONTH(DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH))
-                            AND YEAR(p.payment_date) = YEAR(DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH))
+                            AND p.payment_date >= :previousStart AND p.payment_date < :previousEnd
                             AND p.subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')
                         GROUP BY s.id
                     )
@@ -341,7 +272,11 @@ public class DashboardController {
                     LIMIT 4
                 """;
 
-        return jdbcTemplate.query(sql,
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValues(TimeWindow.currentMonth().params("month"))
+                .addValues(TimeWindow.previousMonth().params("previous"));
+        return namedParameterJdbcTemplate.query(sql, params,
                 (rs, rowNum) -> new TopService(
                         rs.getString("name"),
                         rs.getInt("subscribers"),
@@ -350,115 +285,11 @@ public class DashboardController {
         );
     }
 
-    private Double calculateSubscriberGrowthRate() {
-        String query = """
-                WITH CurrentMonth AS (
-                    SELECT COUNT(DISTINCT user_id) as count
-                    FROM subscriptions
-                    WHERE status = 'ACTIVE'
-                    AND start_date <= CURRENT_DATE
-                    AND (end_date IS NULL OR end_date > CURRENT_DATE)
-                    AND (is_trial IS NULL OR is_trial = FALSE)
-                ),
-                PreviousMonth AS (
-                    SELECT COUNT(DISTINCT user_id) as count
-                    FROM subscriptions
-                    WHERE status = 'ACTIVE'
-                    AND start_date <= DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH)
-                    AND (end_date IS NULL OR end_date > DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH))
-                    AND (is_trial IS NULL OR is_trial = FALSE)
-                )
-                SELECT
-                    CASE WHEN p.count = 0 THEN 0
-                         ELSE ((c.count - p.count) / p.count * 100)
-                    END as growth_rate
-                FROM CurrentMonth c, PreviousMonth p
-                """;
-
-        return jdbcTemplate.queryForObject(query, Double.class);
-    }
-
-    private Double calculateGrowthRate(String table) {
-        String query = "";
-        if (table.equals("subscriptions")) {
-            query = """
-                    WITH CurrentMonth AS (
-                        SELECT COUNT(DISTINCT user_id) as count
-                        FROM subscriptions
-                        WHERE status = 'ACTIVE'
-                        AND start_date <= LAST_DAY(CURRENT_DATE)
-                        AND (end_date IS NULL OR end_date > LAST_DAY(CURRENT_DATE))
-                    ),
-                    PreviousMonth AS (
-                        SELECT COUNT(DISTINCT user_id) as count
-                        FROM subscriptions
-                        WHERE status = 'ACTIVE'
-                        AND start_date <= LAST_DAY(DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH))
-                        AND (end_date IS NULL OR end_date > LAST_DAY(DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH)))
-                    )
-                    SELECT
-                        CASE WHEN p.count = 0 THEN 0
-                             ELSE ((c.count - p.count) / p.count * 100)
-                        END as growth_rate
-                    FROM CurrentMonth c, PreviousMonth p
-                    """;
-        } else {
-            query = """
-                    WITH CurrentMonth AS (
-                        SELECT COALESCE(SUM(amount), 0) as amount
-                        FROM payments
-                        WHERE status = 'PAID'
-                        AND MONTH(payment_date) = MONTH(CURRENT_DATE)
-                        AND YEAR(payment_date) = YEAR(CURRENT_DATE)
-                    ),
-                    PreviousMonth AS (
-                        SELECT COALESCE(SUM(amount), 0) as amount
-                        FROM payments
-                        WHERE status = 'PAID'
-                        AND MONTH(payment_date) = MONTH(DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH))
-                        AND YEAR(payment_date) = YEAR(DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH))
-                    )
-                    SELECT
-                        CASE WHEN p.amount = 0 THEN 0
-                             ELSE ((c.amount - p.amount) / p.amount * 100)
-                        END as growth_rate
-                    FROM CurrentMonth c, PreviousMonth p
-                    """;
-        }
-        return jdbcTemplate.queryForObject(query, Double.class);
-    }
-
     @GetMapping("/historical-metrics")
-    @Cacheable(value = "historicalMetrics", key = "'all'")
+    @Cacheable(value = "historicalMetrics", key = "\'all\'", sync = true)
     public HistoricalMetrics getHistoricalMetrics() {
         // Get yearly data
-        List<YearlyMetric> yearlyMetrics = jdbcTemplate.query(
-                """
-                WITH YearlyData AS (
-                    SELECT
-                        YEAR(payment_date) as year,
-                        SUM(amount) as revenue
-                    FROM payments
-                    WHERE status = 'PAID'
-                    GROUP BY YEAR(payment_date)
-                ),
-                YearlyExpenses AS (
-                    SELECT
-                        YEAR(expense_date) as year,
-                        SUM(amount) as expenses
-                    FROM expenses
-                    GROUP BY YEAR(expense_date)
-                )
-                SELECT
-                    yd.year,
-                    yd.revenue,
-                    COALESCE(ye.expenses, 0) as expenses,
-                    (yd.revenue - COALESCE(ye.expenses, 0)) as net_profit
-                FROM YearlyData yd
-                LEFT JOIN YearlyExpenses ye ON yd.year = ye.year
-                ORDER BY yd.year DESC
-                LIMIT 3
-                """,
+        List<YearlyMetric> yearlyMetrics = jdbcTemplate.query(YEARLY_METRICS_SQL,
                 (rs, rowNum) -> new YearlyMetric(
                         rs.getInt("year"),
                         rs.getDouble("revenue"),
@@ -468,331 +299,110 @@ public class DashboardController {
         );
 
         // Get service performance history
-        List<ServiceHistoricalMetric> serviceMetrics = jdbcTemplate.query(
-                """
-                WITH RECURSIVE Months AS (
-                    SELECT DATE_FORMAT(DATE_SUB(CURRENT_DATE, INTERVAL 11 MONTH), '%Y-%m-01') AS month_start
-                    UNION ALL
-                    SELECT DATE_ADD(month_start, INTERVAL 1 MONTH)
-                    FROM Months
-                    WHERE month_start <= DATE_FORMAT(CURRENT_DATE, '%Y-%m-01')
-                ),
-                ServiceStats AS (
-                    SELECT
-                        s.id as service_id,
-                        s.name as service_name,
-                        m.month_start,
-                        DATE_FORMAT(m.month_start, '%b %Y') as month_display,
-                        COUNT(DISTINCT p.user_id) as subscriptions,
-                        COALESCE(SUM(p.amount), 0) as revenue
-                    FROM Months m
-                    CROSS JOIN services s
-                    LEFT JOIN payments p ON
-                        s.id = p.service_id
-                        AND p.status = 'PAID'
-                        AND p.payment_date BETWEEN m.month_start AND LAST_DAY(m.month_start)
-                        AND p.subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')
-                    GROUP BY s.id, s.name, m.month_start, month_display
-                )
-                SELECT
-                    service_name as serviceName,
-                    month_display as month,
-                    subscriptions,
-                    revenue
-                FROM ServiceStats
-                ORDER BY month_start, service_name
-                """,
-                (rs, rowNum) -> new ServiceHistoricalMetric(
-                        rs.getString("serviceName"),
-                        rs.getString("month"),
-                        rs.getInt("subscriptions"),
-                        rs.getDouble("revenue")
-                )
-        );
+        TimeWindow window = TimeWindow.lastMonths(12);
+
+        // Get service performance history, one row per month and service
+        Map<YearMonth, Map<Long, MonthlyPayments>> serviceTotals = new HashMap<>();
+        namedParameterJdbcTemplate.query(MONTHLY_SERVICE_PAYMENTS_SQL, window.params("window"), rs -> {
+            YearMonth month = YearMonth.parse(rs.getString("month"));
+            double revenue = rs.getDouble("revenue");
+            serviceTotals.computeIfAbsent(month, m -> new HashMap<>())
+                    .put(rs.getLong("service_id"), new MonthlyPayments(revenue, revenue, rs.getInt("subscriptions")));
+        });
+        List<Map.Entry<Long, String>> services = jdbcTemplate.query("SELECT id, name FROM services ORDER BY name",
+                (rs, rowNum) -> Map.entry(rs.getLong("id"), rs.getString("name")));
+
+        List<ServiceHistoricalMetric> serviceMetrics = new ArrayList<>();
+        for (YearMonth month : window.months()) {
+            Map<Long, MonthlyPayments> totals = serviceTotals.getOrDefault(month, Map.of());
+            for (Map.Entry<Long, String> service : services) {
+                MonthlyPayments serviceMonth = totals.getOrDefault(service.getKey(), MonthlyPayments.NONE);
+                serviceMetrics.add(new ServiceHistoricalMetric(
+                        service.getValue(),
+                        MONTH_AND_YEAR.format(month),
+                        serviceMonth.subscribers(),
+                        serviceMonth.planRevenue()
+                ));
+            }
+        }
 
         // Get top performing months
-        List<TopPerformingMonth> topMonths = jdbcTemplate.query(
-                """
-                WITH RECURSIVE Months AS (
-                    SELECT DATE_FORMAT(DATE_SUB(CURRENT_DATE, INTERVAL 11 MONTH), '%Y-%m-01') AS month_start
-                    UNION ALL
-                    SELECT DATE_ADD(month_start, INTERVAL 1 MONTH)
-                    FROM Months
-                    WHERE month_start <= DATE_FORMAT(CURRENT_DATE, '%Y-%m-01')
-                ),
-                MonthlyStats AS (
-                    SELECT
-                        m.month_start,
-                        DATE_FORMAT(m.month_start, '%b %Y') AS month_display,
-                        COALESCE(SUM(p.amount), 0) as revenue,
-                        COUNT(DISTINCT p.user_id) as new_subscriptions,
-                        COUNT(DISTINCT p.user_id) as active_subscribers
-                    FROM Months m
-                    LEFT JOIN payments p ON
-                        p.payment_date BETWEEN m.month_start AND LAST_DAY(m.month_start)
-                        AND p.status = 'PAID'
-                        AND p.subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')
-                    GROUP BY m.month_start, month_display
-                )
-                SELECT
-                    month_display as month,
-                    new_subscriptions,
-                    revenue,
-                    active_subscribers
-                FROM MonthlyStats
-                ORDER BY revenue DESC
-                LIMIT 5
-                """,
-                (rs, rowNum) -> new TopPerformingMonth(
-                        rs.getString("month"),
-                        rs.getInt("new_subscriptions"),
-                        rs.getDouble("revenue"),
-                        rs.getInt("active_subscribers")
-                )
-        );
+        Map<YearMonth, MonthlyPayments> payments = monthlyPayments(window);
+        List<TopPerformingMonth> topMonths = window.months().stream()
+                .map(month -> {
+                    MonthlyPayments totals = payments.getOrDefault(month, MonthlyPayments.NONE);
+                    return new TopPerformingMonth(MONTH_AND_YEAR.format(month), totals.subscribers(), totals.planRevenue(), totals.subscribers());
+                })
+                .sorted(Comparator.comparing(TopPerformingMonth::getRevenue).reversed())
+                .limit(5)
+                .toList();
 
         return new HistoricalMetrics(yearlyMetrics, serviceMetrics, topMonths);
     }
 
     @GetMapping("/monthly-performance")
-    @Cacheable(value = "monthlyPerformance", key = "'all'")
+    @Cacheable(value = "monthlyPerformance", key = "\'all\'", sync = true)
     public MonthlyPerformance getMonthlyPerformance() {
-        // Get current month overview
-        MonthlyOverview currentMonth = jdbcTemplate.queryForObject(
-                """
-                WITH CurrentMonth AS (
-                    SELECT DATE_FORMAT(CURRENT_DATE, '%Y-%m-01') AS month_start
-                )
-                SELECT
-                    DATE_FORMAT(month_start, '%M %Y') as month,
-                    COALESCE((
-                        SELECT SUM(amount)
-                        FROM payments
-                        WHERE status = 'PAID'
-                        AND payment_date BETWEEN month_start AND LAST_DAY(month_start)
-                    ), 0) as revenue,
-                    COALESCE((
-                        SELECT COUNT(DISTINCT user_id)
-                        FROM payments
-                        WHERE status = 'PAID'
-                        AND payment_date BETWEEN month_start AND LAST_DAY(month_start)
-                        AND subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')
-                    ), 0) as new_subscriptions,
-                    COALESCE((
-                        SELECT SUM(amount)
-                        FROM expenses
-                        WHERE expense_date BETWEEN month_start AND LAST_DAY(month_start)
-                    ), 0) as expenses,
-                    COALESCE((
-                        SELECT COUNT(DISTINCT user_id)
-                        FROM payments
-                        WHERE status = 'PAID'
-                        AND payment_date BETWEEN month_start AND LAST_DAY(month_start)
-                        AND subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')
-                    ), 0) as active_subscribers
-                FROM CurrentMonth
-                """,
-                (rs, rowNum) -> new MonthlyOverview(
-                        rs.getString("month"),
-                        rs.getDouble("revenue"),
-                        rs.getInt("new_subscriptions"),
-                        rs.getDouble("expenses"),
-                        rs.getDouble("revenue") - rs.getDouble("expenses"),
-                        rs.getInt("active_subscribers")
-                )
-        );
-
-        // Get previous month overview
-        MonthlyOverview previousMonth = jdbcTemplate.queryForObject(
-                """
-                WITH PreviousMonth AS (
-                    SELECT DATE_FORMAT(DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH), '%Y-%m-01') AS month_start
-                )
-                SELECT
-                    DATE_FORMAT(month_start, '%M %Y') as month,
-                    COALESCE((
-                        SELECT SUM(amount)
-                        FROM payments
-                        WHERE status = 'PAID'
-                        AND payment_date BETWEEN month_start AND LAST_DAY(month_start)
-                    ), 0) as revenue,
-                    COALESCE((
-                        SELECT COUNT(DISTINCT user_id)
-                        FROM payments
-                        WHERE status = 'PAID'
-                        AND payment_date BETWEEN month_start AND LAST_DAY(month_start)
-                        AND subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')
-                    ), 0) as new_subscriptions,
-                    COALESCE((
-                        SELECT SUM(amount)
-                        FROM expenses
-                        WHERE expense_date BETWEEN month_start AND LAST_DAY(month_start)
-                    ), 0) as expenses,
-                    COALESCE((
-                        SELECT COUNT(DISTINCT user_id)
-                        FROM payments
-                        WHERE status = 'PAID'
-                        AND payment_date BETWEEN month_start AND LAST_DAY(month_start)
-                        AND subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')
-                    ), 0) as active_subscribers
-                FROM PreviousMonth
-                """,
-                (rs, rowNum) -> new MonthlyOverview(
-                        rs.getString("month"),
-                        rs.getDouble("revenue"),
-                        rs.getInt("new_subscriptions"),
-                        rs.getDouble("expenses"),
-                        rs.getDouble("revenue") - rs.getDouble("expenses"),
-                        rs.getInt("active_subscribers")
-                )
-        );
+        TimeWindow window = TimeWindow.lastMonths(6);
+        Map<YearMonth, MonthlyPayments> payments = monthlyPayments(window);
+        Map<YearMonth, Double> expenses = new HashMap<>();
+        namedParameterJdbcTemplate.query(MONTHLY_EXPENSES_SQL, window.params("window"),
+                (RowCallbackHandler) rs -> expenses.put(YearMonth.parse(rs.getString("month")), rs.getDouble("total_expenses")));
+
+        List<MonthlyTrend> trends = new ArrayList<>();
+        for (YearMonth month : window.months()) {
+            MonthlyPayments totals = payments.getOrDefault(month, MonthlyPayments.NONE);
+            trends.add(new MonthlyTrend(
+                    MONTH_AND_YEAR.format(month),
+                    totals.revenue(),
+                    totals.subscribers(),
+                    expenses.getOrDefault(month, 0.0),
+                    totals.subscribers()
+            ));
+        }
 
-        // Get 6-month trend
-        List<MonthlyTrend> trends = jdbcTemplate.query(
-                """
-                WITH RECURSIVE Months AS (
-                    SELECT DATE_FORMAT(DATE_SUB(CURRENT_DATE, INTERVAL 5 MONTH), '%Y-%m-01') AS month_start
-                    UNION ALL
-                    SELECT DATE_ADD(month_start, INTERVAL 1 MONTH)
-                    FROM Months
-                    WHERE month_start <= DATE_FORMAT(CURRENT_DATE, '%Y-%m-01')
-                )
-                SELECT
-                    DATE_FORMAT(month_start, '%b %Y') as month,
-                    COALESCE((
-                        SELECT SUM(amount)
-                        FROM payments
-                        WHERE status = 'PAID'
-                        AND payment_date BETWEEN month_start AND LAST_DAY(month_start)
-                    ), 0) as revenue,
-                    COALESCE((
-                        SELECT COUNT(DISTINCT user_id)
-                        FROM payments
-                        WHERE status = 'PAID'
-                        AND payment_date BETWEEN month_start AND LAST_DAY(month_start)
-                        AND subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')
-                    ), 0) as new_subscriptions,
-                    COALESCE((
-                        SELECT SUM(amount)
-                        FROM expenses
-                        WHERE expense_date BETWEEN month_start AND LAST_DAY(month_start)
-                    ), 0) as expenses,
-                    COALESCE((
-                        SELECT COUNT(DISTINCT user_id)
-                        FROM payments
-                        WHERE status = 'PAID'
-                        AND payment_date BETWEEN month_start AND LAST_DAY(month_start)
-                        AND subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')
-                    ), 0) as active_subscribers
-                FROM Months
-                ORDER BY month_start
-                """,
-                (rs, rowNum) -> new MonthlyTrend(
-                        rs.getString("month"),
-                        rs.getDouble("revenue"),
-                        rs.getInt("new_subscriptions"),
-                        rs.getDouble("expenses"),
-                        rs.getInt("active_subscribers")
-                )
-        );
+        // The window ends with the current month
+        YearMonth currentMonth = window.months().getLast();
+        MonthlyOverview current = monthlyOverview(currentMonth, payments, expenses);
+        MonthlyOverview previous = monthlyOverview(currentMonth.minusMonths(1), payments, expenses);
 
-        return new MonthlyPerformance(currentMonth, previousMonth, trends);
+        return new MonthlyPerformance(current, previous, trends);
     }
 
-    private Double calculateChurnRate() {
-        String query = """
-                WITH CurrentMonthActive AS (
-                    SELECT COUNT(DISTINCT user_id) as count
-                    FROM subscriptions
-                    WHERE status = 'ACTIVE'
-                    AND start_date <= DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH)
-                    AND (end_date IS NULL OR end_date > DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH))
-                    AND (is_trial IS NULL OR is_trial = FALSE)
-                ),
-                ChurnedThisMonth AS (
-                    SELECT COUNT(DISTINCT user_id) as count
-                    FROM subscriptions
-                    WHERE status IN ('CANCELLED', 'EXPIRED')
-                    AND (end_date IS NOT NULL AND MONTH(end_date) = MONTH(CURRENT_DATE) AND YEAR(end_date) = YEAR(CURRENT_DATE))
-                    AND (is_trial IS NULL OR is_trial = FALSE)
-                )
-                SELECT
-                    CASE WHEN cma.count = 0 THEN 0
-                         ELSE (ctm.count * 100.0 / cma.count)
-                    END as churn_rate
-                FROM CurrentMonthActive cma, ChurnedThisMonth ctm
-                """;
-
-        return jdbcTemplate.queryForObject(query, Double.class);
+    private MonthlyOverview monthlyOverview(YearMonth month, Map<YearMonth, MonthlyPayments> payments, Map<YearMonth, Double> expenses) {
+        MonthlyPayments totals = payments.getOrDefault(month, MonthlyPayments.NONE);
+        double monthExpenses = expenses.getOrDefault(month, 0.0);
+        return new MonthlyOverview(
+                FULL_MONTH_AND_YEAR.format(month),
+                totals.revenue(),
+                totals.subscribers(),
+                monthExpenses,
+                totals.revenue() - monthExpenses,
+                totals.subscribers()
+        );
     }
 
-    private Double calculateCustomerLifetimeValue() {
-        String query = """
-                WITH CustomerMetrics AS (
-                    SELECT 
-                        AVG(total_revenue) as avg_revenue_per_customer,
-                        AVG(subscription_months) as avg_lifetime_months
-                    FROM (
-                        SELECT 
-                            p.user_id,
-                            SUM(p.amount) as total_revenue,
-                            DATEDIFF(
-                                COALESCE(MAX(s.end_date), CURRENT_DATE),
-                                MIN(s.start_date)
-                            ) / 30.0 as subscription_months
-                        FROM payments p
-                        JOIN subscriptions s ON p.user_id = s.user_id
-                        WHERE p.status = 'PAID'
-                        AND (s.is_trial IS NULL OR s.is_trial = FALSE)
-                        GROUP BY p.user_id
-                        HAVING subscription_months > 0
-                    ) customer_data
-                )
-                SELECT 
-                    COALESCE(avg_revenue_per_customer, 0) as clv
-                FROM CustomerMetrics
-                """;
-
-        return jdbcTemplate.queryForObject(query, Double.class);
+    private Map<YearMonth, MonthlyPayments> monthlyPayments(TimeWindow window) {
+        Map<YearMonth, MonthlyPayments> payments = new HashMap<>();
+        namedParameterJdbcTemplate.query(MONTHLY_PAYMENTS_SQL, window.params("window"), rs -> {
+            payments.put(YearMonth.parse(rs.getString("month")), new MonthlyPayments(
+                    rs.getDouble("revenue"),
+                    rs.getDouble("plan_revenue"),
+                    rs.getInt("subscribers")
+            ));
+        });
+        return payments;
     }
 
-    private Double calculateCustomerAcquisitionCost() {
-        String query = """
-                WITH MonthlyMetrics AS (
-                    SELECT
-                        COALESCE(SUM(e.amount), 0) as total_marketing_expenses,
-                        COUNT(DISTINCT p.user_id) as new_customers
-                    FROM expenses e
-                    RIGHT JOIN (
-                        SELECT DISTINCT user_id
-                        FROM payments
-                        WHERE status = 'PAID'
-                        AND MONTH(payment_date) = MONTH(CURRENT_DATE)
-                        AND YEAR(payment_date) = YEAR(CURRENT_DATE)
-                        AND subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')
-                        AND user_id NOT IN (
-                            SELECT DISTINCT user_id
-                            FROM payments
-                            WHERE status = 'PAID'
-                            AND payment_date < DATE_FORMAT(CURRENT_DATE, '%Y-%m-01')
-                        )
-                    ) p ON 1=1
-                    LEFT JOIN expense_categories ec ON e.category_id = ec.id
-                    WHERE e.expense_date BETWEEN DATE_FORMAT(CURRENT_DATE, '%Y-%m-01') AND LAST_DAY(CURRENT_DATE)
-                    AND (ec.name LIKE '%marketing%' OR ec.name LIKE '%advertising%' OR ec.name LIKE '%promotion%' OR ec.name LIKE '%publicite%' OR ec.name LIKE '%devs%' OR ec.name LIKE '%rewards%')
-                )
-                SELECT
-                    CASE WHEN new_customers = 0 THEN 0
-                         ELSE total_marketing_expenses / new_customers
-                    END as cac
-                FROM MonthlyMetrics
-                """;
-
-        return jdbcTemplate.queryForObject(query, Double.class);
+    /**
+     * Paid payments of one month: all revenue, revenue from non-trial plans, and distinct non-trial payers.
+     */
+    private record MonthlyPayments(double revenue, double planRevenue, int subscribers) {
+        static final MonthlyPayments NONE = new MonthlyPayments(0.0, 0.0, 0);
     }
 
     @GetMapping("/subscription-health")
-    @Cacheable(value = "subscriptionHealth", key = "'all'")
+    @Cacheable(value = "subscriptionHealth", key = "\'all\'", sync = true)
     public SubscriptionHealth getSubscriptionHealth() {
         // Calculate renewal metrics
         Long successfulRenewals = subscriptionRepository.countSuccessfulRenewals();
@@ -949,7 +559,7 @@ class DashboardStats {
     private Double profitMargin;            // (Net Profit / Revenue) * 100
     private Double churnRate;               // Monthly churn rate percentage
     private Double customerLifetimeValue;   // Average CLV in XAF
-    private Double customerAcquisitionCost; // Average CAC in XAF
+    private Double customerAcquisitionCost; // Marketing spend of the month per new customer in XAF
     private Double ltvCacRatio;             // LTV:CAC ratio (ideal > 3)
 }
 
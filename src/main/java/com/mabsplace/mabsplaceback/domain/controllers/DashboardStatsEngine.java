@@ -0,0 +1,269 @@
+package com.mabsplace.mabsplaceback.domain.controllers;
+
+import com.mabsplace.mabsplaceback.utils.TimeWindow;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes {@link DashboardStats} with one conditional-aggregation scan per source table
+ * (payments, subscriptions, expenses) instead of one query per metric. The three scans are
+ * independent and run in parallel on a small bounded pool; ratios that combine them are
+ * derived in Java exactly as the former per-metric queries did.
+ */
+@Component
+class DashboardStatsEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashboardStatsEngine.class);
+
+    // Per paying user: totals for this and the previous month, first payment and whether a
+    // non-trial plan was paid this month; joined with the user's non-trial contract span for CLV.
+    static final String PAYMENT_METRICS_SQL = """
+            SELECT
+                COUNT(u.user_id) AS total_customers,
+                COALESCE(SUM(u.current_amount), 0) AS monthly_revenue,
+                COUNT(CASE WHEN u.paid_this_month = 1 THEN u.user_id END) AS paying_this_month,
+                CASE WHEN COALESCE(SUM(u.previous_amount), 0) = 0 THEN 0
+                     ELSE ((SUM(u.current_amount) - SUM(u.previous_amount)) / SUM(u.previous_amount) * 100)
+                END AS revenue_growth,
+                COALESCE(AVG(CASE WHEN c.subscription_months > 0 THEN u.total_amount * c.contracts END), 0) AS clv,
+                COUNT(CASE WHEN u.paid_plan_this_month = 1
+                            AND u.first_payment >= :monthStart
+                           THEN u.user_id END) AS new_customers
+            FROM (
+                SELECT
+                    p.user_id,
+                    SUM(p.amount) AS total_amount,
+                    SUM(CASE WHEN p.payment_date >= :monthStart AND p.payment_date < :monthEnd
+                             THEN p.amount ELSE 0 END) AS current_amount,
+                    SUM(CASE WHEN p.payment_date >= :previousStart AND p.payment_date < :previousEnd
+                             THEN p.amount ELSE 0 END) AS previous_amount,
+                    MAX(CASE WHEN p.payment_date >= :monthStart AND p.payment_date < :monthEnd
+                             THEN 1 ELSE 0 END) AS paid_this_month,
+                    MAX(CASE WHEN p.payment_date >= :monthStart AND p.payment_date < :monthEnd
+                              AND p.subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')
+                             THEN 1 ELSE 0 END) AS paid_plan_this_month,
+                    MIN(p.payment_date) AS first_payment
+                FROM payments p
+                WHERE p.status = 'PAID'
+                GROUP BY p.user_id
+            ) u
+            LEFT JOIN (
+                SELECT
+                    user_id,
+                    COUNT(*) AS contracts,
+                    DATEDIFF(COALESCE(MAX(end_date), CURRENT_DATE), MIN(start_date)) / 30.0 AS subscription_months
+                FROM subscriptions
+                WHERE (is_trial IS NULL OR is_trial = FALSE)
+                GROUP BY user_id
+            ) c ON c.user_id = u.user_id
+            """;
+
+    static final String SUBSCRIPTION_METRICS_SQL = """
+            SELECT
+                active_subscribers,
+                CASE WHEN active_month_ago = 0 THEN 0
+                     ELSE ((active_subscribers - active_month_ago) / active_month_ago * 100)
+                END AS subscriber_growth,
+                CASE WHEN active_month_ago = 0 THEN 0
+                     ELSE (churned_this_month * 100.0 / active_month_ago)
+                END AS churn_rate,
+                monthly_recurring_revenue,
+                avg_subscription_value
+            FROM (
+                SELECT
+                    COUNT(DISTINCT CASE WHEN s.status = 'ACTIVE'
+                                         AND s.start_date <= CURRENT_DATE
+                                         AND (s.end_date IS NULL OR s.end_date > CURRENT_DATE)
+                                         AND (s.is_trial IS NULL OR s.is_trial = FALSE)
+                                        THEN s.user_id END) AS active_subscribers,
+                    COUNT(DISTINCT CASE WHEN s.status = 'ACTIVE'
+                                         AND s.start_date <= DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH)
+                                         AND (s.end_date IS NULL OR s.end_date > DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH))
+                                         AND (s.is_trial IS NULL OR s.is_trial = FALSE)
+                                        THEN s.user_id END) AS active_month_ago,
+                    COUNT(DISTINCT CASE WHEN s.status IN ('CANCELLED', 'EXPIRED')
+                                         AND s.end_date IS NOT NULL
+                                         AND s.end_date >= :monthStart AND s.end_date < :monthEnd
+                                         AND (s.is_trial IS NULL OR s.is_trial = FALSE)
+                                        THEN s.user_id END) AS churned_this_month,
+                    COALESCE(SUM(CASE WHEN s.status = 'ACTIVE'
+                                       AND s.start_date <= CURRENT_DATE
+                                       AND (s.end_date IS NULL OR s.end_date > CURRENT_DATE)
+                                      THEN CASE sp.period
+                                               WHEN 'MONTHLY' THEN sp.price
+                                               WHEN 'YEARLY' THEN sp.price / 12
+                                               WHEN 'QUARTERLY' THEN sp.price / 3
+                                               WHEN 'SEMI_ANNUALLY' THEN sp.price / 6
+                                               WHEN 'DAILY' THEN sp.price * 30
+                                               ELSE sp.price
+                                           END
+                                 END), 0) AS monthly_recurring_revenue,
+                    COALESCE(AVG(CASE WHEN s.status = 'ACTIVE'
+                                       AND s.start_date <= CURRENT_DATE
+                                       AND (s.end_date IS NULL OR s.end_date > CURRENT_DATE)
+                                      THEN sp.price END), 0) AS avg_subscription_value
+                FROM subscriptions s
+                LEFT JOIN subscription_plans sp ON s.plan_id = sp.id
+            ) t
+            """;
+
+    static final String EXPENSE_METRICS_SQL = """
+            SELECT
+                COALESCE(SUM(e.amount), 0) AS monthly_expenses,
+                COALESCE(SUM(CASE WHEN ec.name LIKE '%marketing%' OR ec.name LIKE '%advertising%' OR ec.name LIKE '%promotion%'
+                                    OR ec.name LIKE '%publicite%' OR ec.name LIKE '%devs%' OR ec.name LIKE '%rewards%'
+                                  THEN e.amount END), 0) AS marketing_expenses,
+                COUNT(CASE WHEN ec.name LIKE '%marketing%' OR ec.name LIKE '%advertising%' OR ec.name LIKE '%promotion%'
+                             OR ec.name LIKE '%publicite%' OR ec.name LIKE '%devs%' OR ec.name LIKE '%rewards%'
+                           THEN 1 END) AS marketing_entries
+            FROM expenses e
+            LEFT JOIN expense_categories ec ON e.category_id = ec.id
+            WHERE e.expense_date >= :monthStart AND e.expense_date < :monthEnd
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ThreadPoolExecutor executor;
+
+    DashboardStatsEngine(JdbcTemplate jdbcTemplate,
+                         @Value("${app.dashboard.query-threads:3}") int queryThreads) {
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        AtomicInteger threadCount = new AtomicInteger();
+        // Bounded both ways: at most queryThreads connections, and callers run the query
+        // themselves rather than queueing without limit when many cache misses pile up
+        this.executor = new ThreadPoolExecutor(queryThreads, queryThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queryThreads * 4),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "dashboard-stats-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    DashboardStats computeStats() {
+        return computeStats(Clock.systemDefaultZone());
+    }
+
+    DashboardStats computeStats(Clock clock) {
+        long start = System.nanoTime();
+        MapSqlParameterSource windows = new MapSqlParameterSource()
+                .addValues(TimeWindow.currentMonth(clock).params("month"))
+                .addValues(TimeWindow.previousMonth(clock).params("previous"));
+
+        CompletableFuture<PaymentMetrics> payments = CompletableFuture.supplyAsync(() -> paymentMetrics(windows), executor);
+        CompletableFuture<SubscriptionMetrics> subscriptions = CompletableFuture.supplyAsync(() -> subscriptionMetrics(windows), executor);
+        CompletableFuture<ExpenseMetrics> expenses = CompletableFuture.supplyAsync(() -> expenseMetrics(windows), executor);
+
+        DashboardStats stats = combine(join(payments), join(subscriptions), join(expenses));
+        logger.debug("Dashboard stats computed in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return stats;
+    }
+
+    static DashboardStats combine(PaymentMetrics payments, SubscriptionMetrics subscriptions, ExpenseMetrics expenses) {
+        Double monthlyRevenue = payments.monthlyRevenue();
+        Double monthlyExpenses = expenses.monthlyExpenses();
+
+        Double netProfit = monthlyRevenue - monthlyExpenses;
+        Double profitMargin = monthlyRevenue > 0 ? (netProfit / monthlyRevenue) * 100 : 0;
+
+        // Marketing spend of the month spread over the customers whose first payment is this month.
+        // The former query cross-joined expenses with new customers and so returned the whole spend.
+        Double customerAcquisitionCost = payments.newCustomers() == 0 || expenses.marketingEntries() == 0
+                ? 0.0
+                : expenses.marketingExpenses() / payments.newCustomers();
+
+        Double ltvCacRatio = 0.0;
+        if (customerAcquisitionCost > 0) {
+            ltvCacRatio = payments.customerLifetimeValue() / customerAcquisitionCost;
+        }
+
+        return new DashboardStats(
+                payments.totalCustomers(),
+                subscriptions.activeSubscribers(),
+                monthlyRevenue,
+                subscriptions.monthlyRecurringRevenue(),
+                subscriptions.avgSubscriptionValue(),
+                payments.payingCustomersThisMonth(),
+                subscriptions.subscriberGrowth(),
+                payments.revenueGrowth(),
+                monthlyExpenses,
+                netProfit,
+                profitMargin,
+                subscriptions.churnRate(),
+                payments.customerLifetimeValue(),
+                customerAcquisitionCost,
+                ltvCacRatio
+        );
+    }
+
+    private PaymentMetrics paymentMetrics(MapSqlParameterSource windows) {
+        return jdbcTemplate.queryForObject(PAYMENT_METRICS_SQL, windows, (rs, rowNum) -> new PaymentMetrics(
+                rs.getInt("total_customers"),
+                rs.getDouble("monthly_revenue"),
+                rs.getInt("paying_this_month"),
+                rs.getDouble("revenue_growth"),
+                rs.getDouble("clv"),
+                rs.getInt("new_customers")
+        ));
+    }
+
+    private SubscriptionMetrics subscriptionMetrics(MapSqlParameterSource windows) {
+        return jdbcTemplate.queryForObject(SUBSCRIPTION_METRICS_SQL, windows, (rs, rowNum) -> new SubscriptionMetrics(
+                rs.getInt("active_subscribers"),
+                rs.getDouble("subscriber_growth"),
+                rs.getDouble("churn_rate"),
+                rs.getDouble("monthly_recurring_revenue"),
+                rs.getDouble("avg_subscription_value")
+        ));
+    }
+
+    private ExpenseMetrics expenseMetrics(MapSqlParameterSource windows) {
+        return jdbcTemplate.queryForObject(EXPENSE_METRICS_SQL, windows, (rs, rowNum) -> new ExpenseMetrics(
+                rs.getDouble("monthly_expenses"),
+                rs.getDouble("marketing_expenses"),
+                rs.getInt("marketing_entries")
+        ));
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    record PaymentMetrics(int totalCustomers, double monthlyRevenue, int payingCustomersThisMonth,
+                          double revenueGrowth, double customerLifetimeValue, int newCustomers) {
+    }
+
+    record SubscriptionMetrics(int activeSubscribers, double subscriberGrowth, double churnRate,
+                               double monthlyRecurringRevenue, double avgSubscriptionValue) {
+    }
+
+    record ExpenseMetrics(double monthlyExpenses, double marketingExpenses, int marketingEntries) {
+    }
+}
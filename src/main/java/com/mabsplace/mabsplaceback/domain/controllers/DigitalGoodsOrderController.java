@@ -5,6 +5,7 @@ import com.mabsplace.mabsplaceback.domain.dtos.digitalgoods.OrderRequestDto;
 import com.mabsplace.mabsplaceback.domain.dtos.digitalgoods.PriceCalculationDto;
 import com.mabsplace.mabsplaceback.domain.entities.DigitalGoodsOrder;
 import com.mabsplace.mabsplaceback.domain.services.DigitalGoodsOrderService;
+import com.mabsplace.mabsplaceback.domain.services.IdempotencyService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -20,10 +21,12 @@ import java.util.Map;
 public class DigitalGoodsOrderController {
 
     private final DigitalGoodsOrderService orderService;
+    private final IdempotencyService idempotencyService;
     private static final Logger logger = LoggerFactory.getLogger(DigitalGoodsOrderController.class);
 
-    public DigitalGoodsOrderController(DigitalGoodsOrderService orderService) {
+    public DigitalGoodsOrderController(DigitalGoodsOrderService orderService, IdempotencyService idempotencyService) {
         this.orderService = orderService;
+        this.idempotencyService = idempotencyService;
     }
 
     @PostMapping("/calculate-price")
@@ -34,10 +37,13 @@ public class DigitalGoodsOrderController {
     }
 
     @PostMapping
-    public ResponseEntity<DigitalGoodsOrderDto> createOrder(@RequestBody OrderRequestDto orderRequest) {
-        logger.info("Creating digital goods order for user ID: {}", orderRequest.getUserId());
-        DigitalGoodsOrderDto created = orderService.createOrder(orderRequest);
-        return new ResponseEntity<>(created, HttpStatus.CREATED);
+    public ResponseEntity<DigitalGoodsOrderDto> createOrder(@RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                                            @RequestBody OrderRequestDto orderRequest) {
+        return idempotencyService.execute("create-digital-goods-order", idempotencyKey, orderRequest, DigitalGoodsOrderDto.class, () -> {
+            logger.info("Creating digital goods order for user ID: {}", orderRequest.getUserId());
+            DigitalGoodsOrderDto created = orderService.createOrder(orderRequest);
+            return new ResponseEntity<>(created, HttpStatus.CREATED);
+        });
     }
 
     @PostMapping("/{orderId}/deliver")
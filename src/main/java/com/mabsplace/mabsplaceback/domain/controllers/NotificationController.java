@@ -1,10 +1,11 @@
 package com.mabsplace.mabsplaceback.domain.controllers;
 
 import com.mabsplace.mabsplaceback.domain.dtos.notification.ApiResponse;
+import com.mabsplace.mabsplaceback.domain.dtos.notification.MarkNotificationsReadRequest;
 import com.mabsplace.mabsplaceback.domain.dtos.notification.NotificationDTO;
+import com.mabsplace.mabsplaceback.domain.dtos.notification.NotificationPage;
 import com.mabsplace.mabsplaceback.domain.dtos.notification.PushNotificationRequest;
 import com.mabsplace.mabsplaceback.domain.dtos.notification.UpdatePushTokenRequest;
-import com.mabsplace.mabsplaceback.domain.entities.Notification;
 import com.mabsplace.mabsplaceback.domain.entities.User;
 import com.mabsplace.mabsplaceback.domain.services.NotificationService;
 import com.mabsplace.mabsplaceback.domain.services.OneSignalService;
@@ -13,10 +14,12 @@ import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -70,19 +73,39 @@ public class NotificationController {
             @RequestParam(required = false) Boolean unreadOnly
     ) {
         logger.info("Fetching notifications for user: {}, page: {}, size: {}, unreadOnly: {}", authentication.getName(), page, size, unreadOnly);
-        List<Notification> notifications = notificationService.getUserNotifications(authentication.getName());
+        List<NotificationDTO> notifications = notificationService.getUserNotifications(authentication.getName());
 
         List<NotificationDTO> notificationDTOs = notifications.stream()
                 .filter(n -> unreadOnly == null || !unreadOnly || !n.isRead())
                 .skip((long) page * size)
                 .limit(size)
-                .map(this::convertToDTO)
                 .collect(Collectors.toList());
 
         logger.info("Fetched {} notifications for user: {}", notificationDTOs.size(), authentication.getName());
         return ResponseEntity.ok(notificationDTOs);
     }
 
+    /**
+     * Get a page of the user's inbox, newest first, after an optional cursor; with since, only newer notifications
+     */
+    @GetMapping("/inbox")
+    public ResponseEntity<NotificationPage> getInbox(
+            Authentication authentication,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String since,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") boolean unreadOnly
+    ) {
+        try {
+            NotificationPage page = notificationService.getInbox(authentication.getName(), cursor, since, limit, unreadOnly);
+            logger.info("Fetched {} inbox notifications for user: {}", page.getItems().size(), authentication.getName());
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid inbox cursor from user: {}: {}", authentication.getName(), e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     /**
      * Mark a notification as read
      */
@@ -110,9 +133,9 @@ public class NotificationController {
     public ResponseEntity<ApiResponse> markAllAsRead(Authentication authentication) {
         logger.info("Marking all notifications as read for user: {}", authentication.getName());
         try {
-            notificationService.markAllAsRead(authentication.getName());
+            int marked = notificationService.markAllAsRead(authentication.getName());
             logger.info("All notifications marked as read for user: {}", authentication.getName());
-            return ResponseEntity.ok(new ApiResponse(true, "All notifications marked as read"));
+            return ResponseEntity.ok(new ApiResponse(true, "All notifications marked as read (" + marked + ")"));
         } catch (Exception e) {
             logger.error("Failed to mark all notifications as read for user: {}", authentication.getName(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -120,6 +143,46 @@ public class NotificationController {
         }
     }
 
+    /**
+     * Mark a list of notifications as read
+     */
+    @PostMapping("/read")
+    public ResponseEntity<ApiResponse> markAsRead(
+            @RequestBody @Valid MarkNotificationsReadRequest request,
+            Authentication authentication
+    ) {
+        logger.info("Marking {} notifications as read for user: {}", request.getIds().size(), authentication.getName());
+        try {
+            int marked = notificationService.markAsRead(request.getIds(), authentication.getName());
+            return ResponseEntity.ok(new ApiResponse(true, marked + " notifications marked as read"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse(false, e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Failed to mark notifications as read for user: {}", authentication.getName(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse(false, "Failed to mark notifications as read: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Delete the user's notifications created before a date
+     */
+    @DeleteMapping
+    public ResponseEntity<ApiResponse> deleteOlderThan(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before,
+            Authentication authentication
+    ) {
+        logger.info("Deleting notifications older than {} for user: {}", before, authentication.getName());
+        try {
+            int deleted = notificationService.deleteOlderThan(authentication.getName(), before);
+            return ResponseEntity.ok(new ApiResponse(true, deleted + " notifications deleted"));
+        } catch (Exception e) {
+            logger.error("Failed to delete notifications for user: {}", authentication.getName(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse(false, "Failed to delete notifications: " + e.getMessage()));
+        }
+    }
+
     /**
      * Send notification to specific users (Admin only)
      */
@@ -268,17 +331,4 @@ public class NotificationController {
                     .body(new ApiResponse(false, "Failed to update preferences: " + e.getMessage()));
         }
     }
-
-    // Helper method to convert Notification to DTO
-    private NotificationDTO convertToDTO(Notification notification) {
-        return NotificationDTO.builder()
-                .id(notification.getId())
-                .title(notification.getTitle())
-                .message(notification.getMessage())
-                .type(notification.getType().name())
-                .read(notification.isRead())
-                .createdAt(notification.getCreatedAt())
-                .data(notification.getData())
-                .build();
-    }
 }
\ No newline at end of file
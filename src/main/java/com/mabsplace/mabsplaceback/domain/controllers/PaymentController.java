@@ -7,8 +7,8 @@ import com.mabsplace.mabsplaceback.domain.entities.Payment;
 import com.mabsplace.mabsplaceback.domain.enums.PaymentStatus;
 import com.mabsplace.mabsplaceback.domain.mappers.PaymentMapper;
 import com.mabsplace.mabsplaceback.domain.mappers.PaymentLightweightMapper;
+import com.mabsplace.mabsplaceback.domain.services.IdempotencyService;
 import com.mabsplace.mabsplaceback.domain.services.PaymentService;
-import jakarta.mail.MessagingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -27,19 +27,25 @@ public class PaymentController {
   private final PaymentService paymentService;
   private final PaymentMapper mapper;
   private final PaymentLightweightMapper lightweightMapper;
+  private final IdempotencyService idempotencyService;
 
-  public PaymentController(PaymentService paymentService, PaymentMapper paymentMapper, PaymentLightweightMapper lightweightMapper) {
+  public PaymentController(PaymentService paymentService, PaymentMapper paymentMapper, PaymentLightweightMapper lightweightMapper,
+                           IdempotencyService idempotencyService) {
     this.paymentService = paymentService;
     this.mapper = paymentMapper;
     this.lightweightMapper = lightweightMapper;
+    this.idempotencyService = idempotencyService;
   }
 
   @PostMapping
-  public ResponseEntity<PaymentResponseDto> createPayment(@RequestBody PaymentRequestDto paymentRequestDto) throws MessagingException {
-    logger.info("Creating payment with request: {}", paymentRequestDto);
-    Payment payment = paymentService.createPayment(paymentRequestDto);
-    logger.info("Created payment: {}", payment);
-    return new ResponseEntity<>(mapper.toDto(payment), HttpStatus.CREATED);
+  public ResponseEntity<PaymentResponseDto> createPayment(@RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                                          @RequestBody PaymentRequestDto paymentRequestDto) {
+    return idempotencyService.execute("create-payment", idempotencyKey, paymentRequestDto, PaymentResponseDto.class, () -> {
+      logger.info("Creating payment with request: {}", paymentRequestDto);
+      Payment payment = paymentService.createPayment(paymentRequestDto);
+      logger.info("Created payment: {}", payment);
+      return new ResponseEntity<>(mapper.toDto(payment), HttpStatus.CREATED);
+    });
   }
 
   // get all payments of a user
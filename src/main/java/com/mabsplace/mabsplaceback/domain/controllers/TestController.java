@@ -3,12 +3,12 @@ package com.mabsplace.mabsplaceback.domain.controllers;
 import com.mabsplace.mabsplaceback.domain.entities.Subscription;
 import com.mabsplace.mabsplaceback.domain.enums.SubscriptionStatus;
 import com.mabsplace.mabsplaceback.domain.repositories.SubscriptionRepository;
+import com.mabsplace.mabsplaceback.domain.services.ChunkedJobRunner;
 import com.mabsplace.mabsplaceback.domain.services.DiscordService;
 import com.mabsplace.mabsplaceback.domain.services.SubscriptionService;
 import com.mabsplace.mabsplaceback.domain.services.WhatsAppService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.mail.MessagingException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -186,23 +186,20 @@ public class TestController {
     @Operation(summary = "Manually trigger the subscription renewal cron job (autoRenew=true)")
     public ResponseEntity<Map<String, Object>> triggerRenewalCronJob() {
         try {
-            Date today = new Date();
-            List<Subscription> subscriptionsToRenew = subscriptionRepository
-                    .findByStatusAndEndDateBeforeAndAutoRenewTrue(
-                            SubscriptionStatus.ACTIVE,
-                            today
-                    );
-
-            subscriptionService.processSubscriptionRenewals();
+            List<ChunkedJobRunner.Summary> shards = subscriptionService.processSubscriptionRenewals();
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Renewal cron job triggered successfully");
-            response.put("subscriptionsProcessed", subscriptionsToRenew.size());
+            // Shards locked by another node are not run here
+            response.put("shardsRun", shards.size());
+            response.put("subscriptionsProcessed", shards.stream().mapToLong(ChunkedJobRunner.Summary::processed).sum());
+            response.put("subscriptionsFailed", shards.stream().mapToLong(ChunkedJobRunner.Summary::failed).sum());
+            response.put("resumed", shards.stream().anyMatch(ChunkedJobRunner.Summary::resumed));
             response.put("timestamp", new Date());
 
             return ResponseEntity.ok(response);
-        } catch (MessagingException e) {
+        } catch (Exception e) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
             errorResponse.put("message", "Error processing renewals: " + e.getMessage());
@@ -228,7 +225,7 @@ public class TestController {
             response.put("timestamp", new Date());
 
             return ResponseEntity.ok(response);
-        } catch (MessagingException e) {
+        } catch (Exception e) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
             errorResponse.put("message", "Error expiring subscriptions: " + e.getMessage());
@@ -249,7 +246,7 @@ public class TestController {
             response.put("timestamp", new Date());
 
             return ResponseEntity.ok(response);
-        } catch (MessagingException e) {
+        } catch (Exception e) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
             errorResponse.put("message", "Error notifying expiring subscriptions: " + e.getMessage());
@@ -8,6 +8,8 @@ import com.mabsplace.mabsplaceback.domain.enums.TransactionStatus;
 import com.mabsplace.mabsplaceback.domain.enums.TransactionType;
 import com.mabsplace.mabsplaceback.domain.mappers.TransactionMapper;
 import com.mabsplace.mabsplaceback.domain.mappers.TransactionLightweightMapper;
+import com.mabsplace.mabsplaceback.domain.services.CoolPayCallbackInbox;
+import com.mabsplace.mabsplaceback.domain.services.IdempotencyService;
 import com.mabsplace.mabsplaceback.domain.services.TransactionService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
@@ -27,29 +29,40 @@ public class TransactionController {
     private final TransactionService transactionService;
     private final TransactionMapper mapper;
     private final TransactionLightweightMapper lightweightMapper;
+    private final IdempotencyService idempotencyService;
+    private final CoolPayCallbackInbox callbackInbox;
 
     private static final Logger logger = LoggerFactory.getLogger(TransactionController.class);
 
-    public TransactionController(TransactionService transactionService, TransactionMapper mapper, TransactionLightweightMapper lightweightMapper) {
+    public TransactionController(TransactionService transactionService, TransactionMapper mapper, TransactionLightweightMapper lightweightMapper,
+                                 IdempotencyService idempotencyService, CoolPayCallbackInbox callbackInbox) {
         this.transactionService = transactionService;
         this.mapper = mapper;
         this.lightweightMapper = lightweightMapper;
+        this.idempotencyService = idempotencyService;
+        this.callbackInbox = callbackInbox;
     }
 
     @PostMapping("/top-up")
-    public ResponseEntity<Object> topUpWallet(@RequestBody TransactionRequestDto transactionRequestDto) {
-        logger.info("Top-up wallet requested with data: {}", transactionRequestDto);
-        Object createdTransaction = transactionService.topUpWallet(transactionRequestDto);
-        logger.info("Wallet top-up successful: {}", createdTransaction);
-        return new ResponseEntity<>(createdTransaction, HttpStatus.CREATED);
+    public ResponseEntity<Object> topUpWallet(@RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                              @RequestBody TransactionRequestDto transactionRequestDto) {
+        return idempotencyService.execute("top-up", idempotencyKey, transactionRequestDto, Object.class, () -> {
+            logger.info("Top-up wallet requested with data: {}", transactionRequestDto);
+            Object createdTransaction = transactionService.topUpWallet(transactionRequestDto);
+            logger.info("Wallet top-up successful: {}", createdTransaction);
+            return new ResponseEntity<>(createdTransaction, HttpStatus.CREATED);
+        });
     }
 
     @PostMapping("/top-up-mobile")
-    public ResponseEntity<TransactionResponseDto> topUpWalletMobile(@RequestBody TransactionRequestDto transactionRequestDto) {
-        logger.info("Mobile wallet top-up requested: {}", transactionRequestDto);
-        TransactionResponseDto createdTransaction = transactionService.topUpWalletMobile(transactionRequestDto);
-        logger.info("Mobile wallet top-up successful: {}", createdTransaction);
-        return new ResponseEntity<>(createdTransaction, HttpStatus.CREATED);
+    public ResponseEntity<TransactionResponseDto> topUpWalletMobile(@RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                                                    @RequestBody TransactionRequestDto transactionRequestDto) {
+        return idempotencyService.execute("top-up-mobile", idempotencyKey, transactionRequestDto, TransactionResponseDto.class, () -> {
+            logger.info("Mobile wallet top-up requested: {}", transactionRequestDto);
+            TransactionResponseDto createdTransaction = transactionService.topUpWalletMobile(transactionRequestDto);
+            logger.info("Mobile wallet top-up successful: {}", createdTransaction);
+            return new ResponseEntity<>(createdTransaction, HttpStatus.CREATED);
+        });
     }
 
     @PostMapping("/transfer")
@@ -62,16 +75,14 @@ public class TransactionController {
 
     @PostMapping("/transaction-callback")
     public ResponseEntity<String> handlePaymentCallback(HttpServletRequest request, @RequestBody Map<String, Object> callbackData) {
-        logger.info("Handling payment callback with data: {}", callbackData);
-
-        logger.info("Received callback from CoolPay");
-
-        logger.info("Updating payment status for transaction ref: {}", callbackData.get("app_transaction_ref"));
-        transactionService.updateTransactionStatus((String) callbackData.get("app_transaction_ref"), (String) callbackData.get("transaction_status"));
-
-        logger.info("Payment status updated successfully");
-
-        return ResponseEntity.ok("OK");
+        logger.info("Received callback from CoolPay for transaction ref: {}", callbackData.get("app_transaction_ref"));
+
+        // Acknowledged once stored: CoolPay stops redelivering, and the transaction is updated in the background
+        return switch (callbackInbox.receive(callbackData)) {
+            case ACCEPTED, DUPLICATE -> ResponseEntity.ok("OK");
+            case INVALID_SIGNATURE -> ResponseEntity.status(HttpStatus.FORBIDDEN).body("Invalid signature");
+            case MALFORMED -> ResponseEntity.badRequest().body("Missing app_transaction_ref or transaction_status");
+        };
     }
 
     @PutMapping("/{transactionRef}/status/{transactionStatus}")
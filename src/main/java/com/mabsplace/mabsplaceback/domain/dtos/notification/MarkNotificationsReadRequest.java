@@ -0,0 +1,12 @@
+package com.mabsplace.mabsplaceback.domain.dtos.notification;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class MarkNotificationsReadRequest {
+    @NotEmpty(message = "Notification ids are required")
+    private List<Long> ids;
+}
@@ -0,0 +1,36 @@
+package com.mabsplace.mabsplaceback.domain.dtos.notification;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * A position in a user's inbox: the creation time and id of a notification, which together order notifications
+ * even when several share a timestamp. Clients get it as an opaque string.
+ */
+public record NotificationCursor(LocalDateTime createdAt, long id) {
+
+    // Past either end of what a DATETIME column holds, for pages that are open on one side
+    public static final NotificationCursor NEWEST = new NotificationCursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59), Long.MAX_VALUE);
+    public static final NotificationCursor OLDEST = new NotificationCursor(LocalDateTime.of(1000, 1, 1, 0, 0), 0);
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor was not produced by {@link #encode()}
+     */
+    public static NotificationCursor parse(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf('|');
+            return new NotificationCursor(LocalDateTime.parse(decoded.substring(0, separator)),
+                    Long.parseLong(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid notification cursor: " + cursor, e);
+        }
+    }
+}
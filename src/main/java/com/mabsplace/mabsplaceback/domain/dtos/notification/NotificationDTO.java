@@ -17,4 +17,6 @@ public class NotificationDTO {
     private boolean read;
     private LocalDateTime createdAt;
     private String data;
+    // Sent to every user; marking it read also marks the older broadcasts read
+    private boolean broadcast;
 }
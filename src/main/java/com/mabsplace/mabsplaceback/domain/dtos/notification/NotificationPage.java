@@ -0,0 +1,20 @@
+package com.mabsplace.mabsplaceback.domain.dtos.notification;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of the inbox, newest first.
+ * nextCursor reads the following, older page and is null on the last one. syncCursor marks the newest
+ * notification the client has seen: passed back as {@code since}, it returns only what arrived afterwards.
+ */
+@Data
+@Builder
+public class NotificationPage {
+    private List<NotificationDTO> items;
+    private String nextCursor;
+    private String syncCursor;
+    private boolean hasMore;
+}
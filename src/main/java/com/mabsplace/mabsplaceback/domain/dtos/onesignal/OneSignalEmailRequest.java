@@ -1,12 +1,16 @@
 package com.mabsplace.mabsplaceback.domain.dtos.onesignal;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.util.Map;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class OneSignalEmailRequest {
     private String to;
     private String subject;
@@ -0,0 +1,36 @@
+package com.mabsplace.mabsplaceback.domain.entities;
+
+import com.mabsplace.mabsplaceback.domain.enums.NotificationType;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * A notification sent to every user, stored once and merged into each inbox when it is read.
+ */
+@Entity
+@Table(name = "broadcast_notifications",
+        indexes = @Index(name = "idx_broadcast_notifications_created", columnList = "created_at, id"))
+@Data
+public class BroadcastNotification {
+    // Drawn from the generator of notifications, so that an inbox cursor's id names one message in either table
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "broadcast_notification_id")
+    @TableGenerator(name = "broadcast_notification_id", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "notifications",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
+    private Long id;
+
+    private String title;
+    private String message;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "notification_type")
+    private NotificationType type;
+
+    private LocalDateTime createdAt;
+
+    @Column(columnDefinition = "JSON")
+    private String data;
+}
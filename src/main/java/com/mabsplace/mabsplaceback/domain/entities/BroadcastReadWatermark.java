@@ -0,0 +1,29 @@
+package com.mabsplace.mabsplaceback.domain.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * How far a user has read the broadcasts: those at or before this (createdAt, id) position are read.
+ * Users without one have read none.
+ */
+@Entity
+@Table(name = "broadcast_read_watermarks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BroadcastReadWatermark {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(nullable = false)
+    private LocalDateTime readCreatedAt;
+
+    @Column(nullable = false)
+    private Long readId;
+}
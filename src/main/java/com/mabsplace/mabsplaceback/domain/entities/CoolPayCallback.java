@@ -0,0 +1,57 @@
+package com.mabsplace.mabsplaceback.domain.entities;
+
+import com.mabsplace.mabsplaceback.domain.enums.CallbackStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A payment callback from CoolPay, stored by CoolPayCallbackInbox before it is acknowledged and applied to its
+ * transaction afterwards. CoolPay delivers callbacks at least once: the unique key on the transaction ref and
+ * status keeps one row per notified outcome, however many times it is delivered.
+ * While a row is PENDING or PROCESSING, nextAttemptAt is when the sweeper may pick it up again.
+ */
+@Entity
+@Table(name = "coolpay_callbacks",
+        uniqueConstraints = @UniqueConstraint(name = "uk_coolpay_callbacks_ref_status",
+                columnNames = {"transaction_ref", "transaction_status"}),
+        indexes = @Index(name = "idx_coolpay_callbacks_due", columnList = "status, next_attempt_at"))
+@Data
+@NoArgsConstructor
+public class CoolPayCallback {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // The app_transaction_ref of the callback, our Transaction.transactionRef
+    @Column(name = "transaction_ref", nullable = false)
+    private String transactionRef;
+
+    @Column(name = "transaction_status", nullable = false, length = 32)
+    private String transactionStatus;
+
+    // The callback as received, as JSON
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private CallbackStatus status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(nullable = false)
+    private LocalDateTime receivedAt;
+
+    private LocalDateTime processedAt;
+
+    @Column(length = 500)
+    private String lastError;
+}
@@ -0,0 +1,47 @@
+package com.mabsplace.mabsplaceback.domain.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Expense rollup of one day and expense category, maintained by DailyRollupService.
+ */
+@Entity
+@Table(name = "daily_expense")
+@IdClass(DailyExpense.Key.class)
+@Data
+@NoArgsConstructor
+public class DailyExpense {
+
+    @Id
+    private LocalDate day;
+
+    @Id
+    private Long categoryId;
+
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal totalExpenses;
+
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal recurringExpenses;
+
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal oneTimeExpenses;
+
+    @Column(nullable = false)
+    private int expenses;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate day;
+        private Long categoryId;
+    }
+}
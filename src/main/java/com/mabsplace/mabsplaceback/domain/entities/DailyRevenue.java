@@ -0,0 +1,63 @@
+package com.mabsplace.mabsplaceback.domain.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Revenue rollup of one day and service, maintained by DailyRollupService.
+ * Digital goods orders are not tied to a service and are rolled up under {@link #NO_SERVICE}.
+ */
+@Entity
+@Table(name = "daily_revenue")
+@IdClass(DailyRevenue.Key.class)
+@Data
+@NoArgsConstructor
+public class DailyRevenue {
+
+    public static final long NO_SERVICE = 0L;
+
+    @Id
+    private LocalDate day;
+
+    @Id
+    private Long serviceId;
+
+    // Paid payments, and the part of them on non-trial plans
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal revenue;
+
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal planRevenue;
+
+    @Column(nullable = false)
+    private int payments;
+
+    // Users whose first non-trial payment of the month fell on this day, over all services and for this
+    // service only; summing them over a month gives its distinct paying subscribers
+    @Column(nullable = false)
+    private int subscribers;
+
+    @Column(nullable = false)
+    private int serviceSubscribers;
+
+    // Paid digital goods orders that were not cancelled or refunded, by creation day
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal digitalGoodsRevenue;
+
+    @Column(nullable = false)
+    private int digitalGoodsOrders;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate day;
+        private Long serviceId;
+    }
+}
@@ -0,0 +1,48 @@
+package com.mabsplace.mabsplaceback.domain.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Subscription lifecycle rollup of one day and service, maintained by DailyRollupService.
+ * Active and trial counts are snapshotted after the nightly lifecycle crons; renewals and
+ * expirations are counted as the crons process them.
+ */
+@Entity
+@Table(name = "daily_subscription_state")
+@IdClass(DailySubscriptionState.Key.class)
+@Data
+@NoArgsConstructor
+public class DailySubscriptionState {
+
+    @Id
+    private LocalDate day;
+
+    @Id
+    private Long serviceId;
+
+    @Column(nullable = false)
+    private int active;
+
+    @Column(nullable = false)
+    private int trial;
+
+    @Column(nullable = false)
+    private int renewed;
+
+    @Column(nullable = false)
+    private int expired;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate day;
+        private Long serviceId;
+    }
+}
@@ -0,0 +1,22 @@
+package com.mabsplace.mabsplaceback.domain.entities;
+
+import java.util.List;
+
+/**
+ * The id_generators table, from which the entities written in bulk take their ids 50 at a time.
+ * MySQL has no sequences, and IDENTITY ids are only known after each INSERT, which keeps Hibernate
+ * from batching them.
+ */
+public final class IdGenerators {
+
+    public static final String TABLE = "id_generators";
+    public static final String NAME_COLUMN = "name";
+    public static final String VALUE_COLUMN = "next_val";
+    public static final int ALLOCATION_SIZE = 50;
+
+    // The generator of each of these tables is named after it
+    public static final List<String> TABLES = List.of("notifications", "tasks", "promo_code", "transactions", "payments");
+
+    private IdGenerators() {
+    }
+}
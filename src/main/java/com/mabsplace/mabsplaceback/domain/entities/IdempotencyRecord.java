@@ -0,0 +1,66 @@
+package com.mabsplace.mabsplaceback.domain.entities;
+
+import com.mabsplace.mabsplaceback.domain.enums.IdempotencyStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * An Idempotency-Key sent with a request, written by IdempotencyService. The key is claimed IN_PROGRESS by
+ * the first attempt, which stores its response as COMPLETED for retries to replay until expiresAt.
+ * While a key is IN_PROGRESS, lockedUntil is the end of the attempt's lease: past that, the attempt is taken
+ * to have died with its node and the key may be claimed again.
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = @Index(name = "idx_idempotency_keys_expires_at", columnList = "expires_at"))
+@IdClass(IdempotencyRecord.Key.class)
+@Data
+@NoArgsConstructor
+public class IdempotencyRecord {
+
+    // The operation and the user who sent the key: clients only choose keys unique to themselves
+    @Id
+    @Column(length = 128)
+    private String scope;
+
+    @Id
+    @Column(length = 128)
+    private String idempotencyKey;
+
+    // Identifies the attempt holding the key, so that one whose lease ran out cannot complete it
+    @Column(nullable = false, length = 36)
+    private String attemptId;
+
+    // SHA-256 of the request body, to refuse a key reused for another request
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private IdempotencyStatus status;
+
+    private Integer responseStatus;
+
+    @Column(columnDefinition = "MEDIUMTEXT")
+    private String responseBody;
+
+    private LocalDateTime lockedUntil;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String scope;
+        private String idempotencyKey;
+    }
+}
@@ -0,0 +1,44 @@
+package com.mabsplace.mabsplaceback.domain.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of the current or last run of one batch job, written by ChunkedJobRunner.
+ * Items are processed in id order; lastId is the last one done, so a run that stopped before completedAt was
+ * set carries on after it, with its cutoff moved up to the time it resumes.
+ */
+@Entity
+@Table(name = "job_checkpoints")
+@Data
+@NoArgsConstructor
+public class JobCheckpoint {
+
+    @Id
+    @Column(length = 64)
+    private String jobName;
+
+    // Items due before this instant belong to the run; moved up when the run resumes
+    @Column(nullable = false)
+    private LocalDateTime cutoff;
+
+    @Column(nullable = false)
+    private long lastId;
+
+    @Column(nullable = false)
+    private long processed;
+
+    @Column(nullable = false)
+    private long failed;
+
+    @Column(nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,32 @@
+package com.mabsplace.mabsplaceback.domain.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cluster-wide lease on a scheduled job, or on one shard of it, written by JobLockService.
+ * The job is held until lockUntil: the holder pushes it forward while it runs, and a node that died
+ * loses the lock when it passes.
+ */
+@Entity
+@Table(name = "job_locks")
+@Data
+@NoArgsConstructor
+public class JobLock {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(nullable = false, length = 128)
+    private String lockedBy;
+
+    @Column(nullable = false)
+    private LocalDateTime lockedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime lockUntil;
+}
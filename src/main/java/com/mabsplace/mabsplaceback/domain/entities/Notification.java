@@ -7,11 +7,19 @@ import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "notifications")
+// Serve the inbox's keyset reads, and the unread counts and bulk mark-as-read
+@Table(name = "notifications",
+        indexes = {
+                @Index(name = "idx_notifications_user_created", columnList = "user_id, created_at, id"),
+                @Index(name = "idx_notifications_user_unread", columnList = "user_id, is_read")
+        })
 @Data
 public class Notification {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "notification_id")
+    @TableGenerator(name = "notification_id", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "notifications",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne
@@ -0,0 +1,53 @@
+package com.mabsplace.mabsplaceback.domain.entities;
+
+import com.mabsplace.mabsplaceback.domain.enums.OutboxChannel;
+import com.mabsplace.mabsplaceback.domain.enums.OutboxStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One message waiting to be sent on one channel, written by NotificationOrchestrator in the transaction of
+ * the change it reports and sent by NotificationOutboxDispatcher.
+ * While a row is SENDING, nextAttemptAt is the end of the dispatcher's lease on it: past that, the row is
+ * claimed again, so messages are sent at least once.
+ */
+@Entity
+@Table(name = "notification_outbox",
+        indexes = @Index(name = "idx_notification_outbox_due", columnList = "status, next_attempt_at"))
+@Data
+@NoArgsConstructor
+public class NotificationOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private OutboxChannel channel;
+
+    // The channel's request, as JSON
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private OutboxStatus status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime sentAt;
+
+    @Column(length = 500)
+    private String lastError;
+}
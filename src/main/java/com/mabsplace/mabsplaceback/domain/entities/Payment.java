@@ -19,7 +19,10 @@ import java.util.Date;
 public class Payment {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.TABLE, generator = "payment_id")
+  @TableGenerator(name = "payment_id", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+          valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "payments",
+          allocationSize = IdGenerators.ALLOCATION_SIZE)
   private Long id;
 
   @ManyToOne
@@ -0,0 +1,29 @@
+package com.mabsplace.mabsplaceback.domain.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A push message Expo accepted, kept by ExpoPushClient until the receipt saying whether it reached the device
+ * is read, or until Expo no longer keeps it.
+ */
+@Entity
+@Table(name = "push_tickets", indexes = @Index(name = "idx_push_tickets_created", columnList = "created_at"))
+@Data
+@NoArgsConstructor
+public class PushTicket {
+
+    // The id Expo gave the ticket, by which its receipt is asked for
+    @Id
+    @Column(name = "ticket_id", length = 64)
+    private String ticketId;
+
+    @Column(name = "push_token", nullable = false)
+    private String pushToken;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
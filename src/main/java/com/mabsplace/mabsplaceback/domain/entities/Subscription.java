@@ -8,7 +8,9 @@ import java.time.LocalDateTime;
 import java.util.Date;
 
 @Entity
-@Table(name = "subscriptions")
+// Serves the renewal run's keyset reads: due subscriptions in id order
+@Table(name = "subscriptions",
+        indexes = @Index(name = "idx_subscriptions_renewal", columnList = "status, auto_renew, id"))
 @AllArgsConstructor
 @NoArgsConstructor
 @Getter
@@ -23,7 +23,10 @@ import java.util.List;
 public class Task {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.TABLE, generator = "task_id")
+  @TableGenerator(name = "task_id", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+          valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "tasks",
+          allocationSize = IdGenerators.ALLOCATION_SIZE)
   private Long id;
 
   @Column(nullable = false)
@@ -18,7 +18,10 @@ import java.util.Date;
 public class Transaction {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.TABLE, generator = "transaction_id")
+  @TableGenerator(name = "transaction_id", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+          valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "transactions",
+          allocationSize = IdGenerators.ALLOCATION_SIZE)
   private Long id;
 
   @ManyToOne
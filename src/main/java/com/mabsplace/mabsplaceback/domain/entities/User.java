@@ -93,6 +93,13 @@ public class User {
     @JoinColumn(name = "profile_id")
     private UserProfile userProfile;
 
+    /**
+     * Bumped whenever this user's own authorities change, e.g. when the user is given another profile,
+     * so that the user's tokens carrying an older version can be rejected without a DB lookup.
+     */
+    @Column(name = "authz_version")
+    private Long authzVersion = 0L;
+
     @ManyToOne
     @JoinColumn(name = "referrer_id")
     private User referrer;
@@ -100,6 +107,10 @@ public class User {
     @OneToMany(mappedBy = "referrer")
     private List<User> referrals;
 
+    public void bumpAuthzVersion() {
+        this.authzVersion = (authzVersion == null ? 0L : authzVersion) + 1;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -34,6 +34,17 @@ public class UserProfile {
     )
     private Set<Role> roles = new HashSet<>();
 
+    /**
+     * Bumped whenever the effective role set of this profile's holders changes,
+     * so that tokens carrying an older version can be rejected without a DB lookup.
+     */
+    @Column(name = "roles_version")
+    private Long rolesVersion = 0L;
+
+    public void bumpRolesVersion() {
+        this.rolesVersion = (rolesVersion == null ? 0L : rolesVersion) + 1;
+    }
+
     @CreationTimestamp
     private LocalDateTime createdAt;
 
@@ -0,0 +1,41 @@
+package com.mabsplace.mabsplaceback.domain.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * The balance of a wallet as the sum of its ledger entries up to lastEntryId, written periodically by
+ * WalletLedgerService so that a balance is computed from the latest snapshot and the entries after it.
+ */
+@Entity
+@Table(name = "wallet_balance_snapshots",
+        uniqueConstraints = @UniqueConstraint(name = "uk_wallet_snapshot_wallet_entry",
+                columnNames = {"wallet_id", "last_entry_id"}))
+@Data
+@NoArgsConstructor
+public class WalletBalanceSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long walletId;
+
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal balance;
+
+    @Column(nullable = false)
+    private Long lastEntryId;
+
+    // Creation time of the entry lastEntryId
+    @Column(nullable = false)
+    private LocalDateTime lastEntryAt;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
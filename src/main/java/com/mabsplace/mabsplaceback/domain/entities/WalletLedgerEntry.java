@@ -0,0 +1,39 @@
+package com.mabsplace.mabsplaceback.domain.entities;
+
+import com.mabsplace.mabsplaceback.domain.enums.LedgerEntryType;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One change to a wallet balance, appended by WalletLedgerService in the transaction that changes the balance.
+ * Rows are never updated or deleted: the balance of a wallet is the sum of its entries.
+ */
+@Entity
+@Table(name = "wallet_ledger_entries",
+        indexes = @Index(name = "idx_wallet_ledger_wallet", columnList = "wallet_id, id"))
+@Data
+@NoArgsConstructor
+public class WalletLedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long walletId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private LedgerEntryType entryType;
+
+    // Negative for debits
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,8 @@
+package com.mabsplace.mabsplaceback.domain.enums;
+
+public enum CallbackStatus {
+    PENDING,
+    PROCESSING,
+    PROCESSED,
+    FAILED
+}
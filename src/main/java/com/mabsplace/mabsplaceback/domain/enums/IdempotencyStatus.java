@@ -0,0 +1,6 @@
+package com.mabsplace.mabsplaceback.domain.enums;
+
+public enum IdempotencyStatus {
+    IN_PROGRESS,
+    COMPLETED
+}
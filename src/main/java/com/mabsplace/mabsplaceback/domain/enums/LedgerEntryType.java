@@ -0,0 +1,10 @@
+package com.mabsplace.mabsplaceback.domain.enums;
+
+public enum LedgerEntryType {
+    // The balance a wallet had when it joined the ledger
+    OPENING,
+    CREDIT,
+    DEBIT,
+    // Balance set by an administrator
+    ADJUSTMENT
+}
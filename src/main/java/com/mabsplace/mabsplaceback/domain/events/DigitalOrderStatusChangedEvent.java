@@ -0,0 +1,18 @@
+package com.mabsplace.mabsplaceback.domain.events;
+
+import com.mabsplace.mabsplaceback.domain.entities.DigitalGoodsOrder;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when a digital goods order is placed, or its status changes.
+ */
+@Getter
+public class DigitalOrderStatusChangedEvent extends ApplicationEvent {
+    private final DigitalGoodsOrder order;
+
+    public DigitalOrderStatusChangedEvent(Object source, DigitalGoodsOrder order) {
+        super(source);
+        this.order = order;
+    }
+}
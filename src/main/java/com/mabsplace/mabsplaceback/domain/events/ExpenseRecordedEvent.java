@@ -0,0 +1,18 @@
+package com.mabsplace.mabsplaceback.domain.events;
+
+import com.mabsplace.mabsplaceback.domain.entities.Expense;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when an expense is created, updated or deleted.
+ */
+@Getter
+public class ExpenseRecordedEvent extends ApplicationEvent {
+    private final Expense expense;
+
+    public ExpenseRecordedEvent(Object source, Expense expense) {
+        super(source);
+        this.expense = expense;
+    }
+}
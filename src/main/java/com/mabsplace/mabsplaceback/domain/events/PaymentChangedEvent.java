@@ -0,0 +1,18 @@
+package com.mabsplace.mabsplaceback.domain.events;
+
+import com.mabsplace.mabsplaceback.domain.entities.Payment;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when an existing payment's status or details are changed, or when it is deleted.
+ */
+@Getter
+public class PaymentChangedEvent extends ApplicationEvent {
+    private final Payment payment;
+
+    public PaymentChangedEvent(Object source, Payment payment) {
+        super(source);
+        this.payment = payment;
+    }
+}
@@ -0,0 +1,18 @@
+package com.mabsplace.mabsplaceback.domain.events;
+
+import com.mabsplace.mabsplaceback.domain.entities.Payment;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when a payment has been saved.
+ */
+@Getter
+public class PaymentCreatedEvent extends ApplicationEvent {
+    private final Payment payment;
+
+    public PaymentCreatedEvent(Object source, Payment payment) {
+        super(source);
+        this.payment = payment;
+    }
+}
@@ -0,0 +1,18 @@
+package com.mabsplace.mabsplaceback.domain.events;
+
+import com.mabsplace.mabsplaceback.domain.entities.Subscription;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when a subscription is created, deleted, or changes status, period or plan.
+ */
+@Getter
+public class SubscriptionStateChangedEvent extends ApplicationEvent {
+    private final Subscription subscription;
+
+    public SubscriptionStateChangedEvent(Object source, Subscription subscription) {
+        super(source);
+        this.subscription = subscription;
+    }
+}
@@ -0,0 +1,19 @@
+package com.mabsplace.mabsplaceback.domain.events;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.List;
+
+/**
+ * Published once per batch when the expiration run expires subscriptions with bulk updates.
+ */
+@Getter
+public class SubscriptionsExpiredEvent extends ApplicationEvent {
+    private final List<Long> subscriptionIds;
+
+    public SubscriptionsExpiredEvent(Object source, List<Long> subscriptionIds) {
+        super(source);
+        this.subscriptionIds = subscriptionIds;
+    }
+}
@@ -0,0 +1,67 @@
+package com.mabsplace.mabsplaceback.domain.listeners;
+
+import com.mabsplace.mabsplaceback.domain.events.DigitalOrderStatusChangedEvent;
+import com.mabsplace.mabsplaceback.domain.events.ExpenseRecordedEvent;
+import com.mabsplace.mabsplaceback.domain.events.PaymentChangedEvent;
+import com.mabsplace.mabsplaceback.domain.events.PaymentCreatedEvent;
+import com.mabsplace.mabsplaceback.domain.events.SubscriptionStateChangedEvent;
+import com.mabsplace.mabsplaceback.domain.events.SubscriptionsExpiredEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evicts the dashboard caches that read the data a domain event changed, once its transaction has committed
+ * (or right away when it was published outside of one). This is what keeps the dashboard fresh; the cache TTLs
+ * are only a backstop.
+ */
+@Component
+public class DashboardCacheInvalidationListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashboardCacheInvalidationListener.class);
+
+    private static final List<String> PAYMENT_CACHES = List.of("dashboardStats", "revenueTrend", "expenseTrends",
+            "topServices", "historicalMetrics", "monthlyPerformance");
+
+    static final Map<Class<? extends ApplicationEvent>, List<String>> AFFECTED_CACHES = Map.of(
+            PaymentCreatedEvent.class, PAYMENT_CACHES,
+            PaymentChangedEvent.class, PAYMENT_CACHES,
+            SubscriptionStateChangedEvent.class, List.of("dashboardStats", "serviceDistribution", "subscriptionHealth"),
+            SubscriptionsExpiredEvent.class, List.of("dashboardStats", "serviceDistribution", "subscriptionHealth"),
+            ExpenseRecordedEvent.class, List.of("dashboardStats", "expenseTrends", "historicalMetrics", "monthlyPerformance"),
+            // No dashboard view reads digital goods figures yet
+            DigitalOrderStatusChangedEvent.class, List.of());
+
+    private final CacheManager cacheManager;
+
+    public DashboardCacheInvalidationListener(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true, classes = {
+            PaymentCreatedEvent.class, PaymentChangedEvent.class, SubscriptionStateChangedEvent.class, SubscriptionsExpiredEvent.class,
+            ExpenseRecordedEvent.class, DigitalOrderStatusChangedEvent.class})
+    public void onDataChanged(ApplicationEvent event) {
+        for (String cacheName : AFFECTED_CACHES.getOrDefault(event.getClass(), List.of())) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache == null) {
+                continue;
+            }
+            // invalidate() applies immediately even on transaction-aware caches, whose deferred evictions
+            // would no longer run once the transaction has committed
+            try {
+                cache.invalidate();
+            } catch (RuntimeException e) {
+                logger.warn("Could not evict cache {} after {}: {}", cacheName, event.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.mabsplace.mabsplaceback.domain.repositories;
+
+import com.mabsplace.mabsplaceback.domain.entities.BroadcastNotification;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BroadcastNotificationRepository extends JpaRepository<BroadcastNotification, Long> {
+
+    /**
+     * Keyset page of the broadcasts created since {@code visibleFrom}, newest first, between the same
+     * (createdAt, id) positions as {@link NotificationRepository#findInboxPage}; with unreadOnly, only those
+     * after the user's read watermark.
+     */
+    @Query("SELECT b FROM BroadcastNotification b WHERE b.createdAt >= :visibleFrom " +
+           "AND (b.createdAt < :beforeCreatedAt OR (b.createdAt = :beforeCreatedAt AND b.id < :beforeId)) " +
+           "AND (b.createdAt > :sinceCreatedAt OR (b.createdAt = :sinceCreatedAt AND b.id > :sinceId)) " +
+           "AND (:unreadOnly = false OR b.createdAt > :readCreatedAt OR (b.createdAt = :readCreatedAt AND b.id > :readId)) " +
+           "ORDER BY b.createdAt DESC, b.id DESC")
+    List<BroadcastNotification> findInboxPage(@Param("visibleFrom") LocalDateTime visibleFrom,
+                                              @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt, @Param("beforeId") Long beforeId,
+                                              @Param("sinceCreatedAt") LocalDateTime sinceCreatedAt, @Param("sinceId") Long sinceId,
+                                              @Param("readCreatedAt") LocalDateTime readCreatedAt, @Param("readId") Long readId,
+                                              @Param("unreadOnly") boolean unreadOnly, Pageable pageable);
+
+    @Query("SELECT COUNT(b) FROM BroadcastNotification b WHERE b.createdAt >= :visibleFrom " +
+           "AND (b.createdAt > :readCreatedAt OR (b.createdAt = :readCreatedAt AND b.id > :readId))")
+    long countUnread(@Param("visibleFrom") LocalDateTime visibleFrom,
+                     @Param("readCreatedAt") LocalDateTime readCreatedAt, @Param("readId") Long readId);
+
+    Optional<BroadcastNotification> findFirstByOrderByCreatedAtDescIdDesc();
+}
@@ -0,0 +1,33 @@
+package com.mabsplace.mabsplaceback.domain.repositories;
+
+import com.mabsplace.mabsplaceback.domain.entities.BroadcastReadWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface BroadcastReadWatermarkRepository extends JpaRepository<BroadcastReadWatermark, Long> {
+
+    // Only ever moves the watermark forward, so that concurrent reads cannot take it back
+    @Transactional
+    @Modifying
+    @Query("UPDATE BroadcastReadWatermark w SET w.readCreatedAt = :readCreatedAt, w.readId = :readId " +
+           "WHERE w.userId = :userId " +
+           "AND (w.readCreatedAt < :readCreatedAt OR (w.readCreatedAt = :readCreatedAt AND w.readId < :readId))")
+    int advance(@Param("userId") Long userId,
+                @Param("readCreatedAt") LocalDateTime readCreatedAt, @Param("readId") Long readId);
+
+    // Fails rather than overwrite a watermark another request created meanwhile
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO broadcast_read_watermarks (user_id, read_created_at, read_id) " +
+                   "VALUES (:userId, :readCreatedAt, :readId)",
+           nativeQuery = true)
+    void insert(@Param("userId") Long userId,
+                @Param("readCreatedAt") LocalDateTime readCreatedAt, @Param("readId") Long readId);
+}
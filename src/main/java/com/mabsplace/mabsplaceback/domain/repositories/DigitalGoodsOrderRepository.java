@@ -26,17 +26,18 @@ public interface DigitalGoodsOrderRepository extends JpaRepository<DigitalGoodsO
     @Query("SELECT COUNT(o) FROM DigitalGoodsOrder o WHERE o.orderStatus IN ('PAID', 'DELIVERED')")
     Long countCompletedOrders();
 
-    @Query("SELECT COUNT(o) FROM DigitalGoodsOrder o WHERE o.createdAt >= :startDate AND o.orderStatus IN ('PAID', 'DELIVERED')")
-    Long countCompletedOrdersSince(@Param("startDate") Date startDate);
+    // Windowed analytics take half-open [startDate, endDate) bounds, see TimeWindow
+    @Query("SELECT COUNT(o) FROM DigitalGoodsOrder o WHERE o.createdAt >= :startDate AND o.createdAt < :endDate AND o.orderStatus IN ('PAID', 'DELIVERED')")
+    Long countCompletedOrdersBetween(@Param("startDate") Date startDate, @Param("endDate") Date endDate);
 
     @Query("SELECT SUM(o.totalAmount) FROM DigitalGoodsOrder o WHERE o.orderStatus IN ('PAID', 'DELIVERED')")
     BigDecimal calculateTotalRevenue();
 
-    @Query("SELECT SUM(o.totalAmount) FROM DigitalGoodsOrder o WHERE o.createdAt >= :startDate AND o.orderStatus IN ('PAID', 'DELIVERED')")
-    BigDecimal calculateRevenueSince(@Param("startDate") Date startDate);
+    @Query("SELECT SUM(o.totalAmount) FROM DigitalGoodsOrder o WHERE o.createdAt >= :startDate AND o.createdAt < :endDate AND o.orderStatus IN ('PAID', 'DELIVERED')")
+    BigDecimal calculateRevenueBetween(@Param("startDate") Date startDate, @Param("endDate") Date endDate);
 
-    @Query("SELECT SUM(o.profit) FROM DigitalGoodsOrder o WHERE o.createdAt >= :startDate AND o.orderStatus = 'DELIVERED'")
-    BigDecimal calculateProfitSince(@Param("startDate") Date startDate);
+    @Query("SELECT SUM(o.profit) FROM DigitalGoodsOrder o WHERE o.createdAt >= :startDate AND o.createdAt < :endDate AND o.orderStatus = 'DELIVERED'")
+    BigDecimal calculateProfitBetween(@Param("startDate") Date startDate, @Param("endDate") Date endDate);
 
     @Query("SELECT AVG(o.totalAmount) FROM DigitalGoodsOrder o WHERE o.orderStatus IN ('PAID', 'DELIVERED')")
     BigDecimal calculateAverageOrderValue();
@@ -44,16 +45,16 @@ public interface DigitalGoodsOrderRepository extends JpaRepository<DigitalGoodsO
     @Query("SELECT COUNT(DISTINCT o.user) FROM DigitalGoodsOrder o WHERE o.orderStatus IN ('PAID', 'DELIVERED')")
     Long countUniqueCustomers();
 
-    // Monthly revenue trend (last 6 months)
+    // Monthly revenue trend
     @Query(value = "SELECT DATE_FORMAT(created_at, '%Y-%m') as month, " +
             "SUM(total_amount) as revenue, " +
             "COUNT(*) as orderCount " +
             "FROM digital_goods_orders " +
-            "WHERE order_status IN ('PAID', 'DELIVERED') " +
-            "AND created_at >= DATE_SUB(NOW(), INTERVAL 6 MONTH) " +
+            "WHERE created_at >= :startDate AND created_at < :endDate " +
+            "AND order_status IN ('PAID', 'DELIVERED') " +
             "GROUP BY DATE_FORMAT(created_at, '%Y-%m') " +
             "ORDER BY month ASC", nativeQuery = true)
-    List<Object[]> getMonthlyRevenueTrend();
+    List<Object[]> getMonthlyRevenueTrend(@Param("startDate") Date startDate, @Param("endDate") Date endDate);
 
     // Top products by orders
     @Query("SELECT o.product.id, o.product.name, COUNT(o) as orderCount, SUM(o.totalAmount) as revenue, SUM(o.profit) as profit " +
@@ -2,17 +2,55 @@ package com.mabsplace.mabsplaceback.domain.repositories;
 
 import com.mabsplace.mabsplaceback.domain.entities.Notification;
 import com.mabsplace.mabsplaceback.domain.entities.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
     List<Notification> findByUserOrderByCreatedAtDesc(User user);
 
+    /**
+     * Keyset page of a user's notifications, newest first, strictly between two (createdAt, id) positions:
+     * older than {@code before} and newer than {@code since}.
+     */
+    @Query("SELECT n FROM Notification n WHERE n.user.id = :userId " +
+           "AND (n.createdAt < :beforeCreatedAt OR (n.createdAt = :beforeCreatedAt AND n.id < :beforeId)) " +
+           "AND (n.createdAt > :sinceCreatedAt OR (n.createdAt = :sinceCreatedAt AND n.id > :sinceId)) " +
+           "AND (:unreadOnly = false OR n.read = false) " +
+           "ORDER BY n.createdAt DESC, n.id DESC")
+    List<Notification> findInboxPage(@Param("userId") Long userId,
+                                     @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt, @Param("beforeId") Long beforeId,
+                                     @Param("sinceCreatedAt") LocalDateTime sinceCreatedAt, @Param("sinceId") Long sinceId,
+                                     @Param("unreadOnly") boolean unreadOnly, Pageable pageable);
+
     @Query("SELECT COUNT(n) FROM Notification n WHERE n.user.id = :userId AND n.read = false")
     long countUnreadNotifications(@Param("userId") Long userId);
+
+    // The bulk changes below touch at most :limit rows each, so that callers repeat them in short transactions
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE notifications SET is_read = true WHERE user_id = :userId AND is_read = false LIMIT :limit",
+           nativeQuery = true)
+    int markUnreadAsRead(@Param("userId") Long userId, @Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE notifications SET is_read = true WHERE user_id = :userId AND is_read = false AND id IN (:ids)",
+           nativeQuery = true)
+    int markAsReadByIdIn(@Param("userId") Long userId, @Param("ids") List<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM notifications WHERE user_id = :userId AND created_at < :before LIMIT :limit",
+           nativeQuery = true)
+    int deleteCreatedBefore(@Param("userId") Long userId, @Param("before") LocalDateTime before, @Param("limit") int limit);
 }
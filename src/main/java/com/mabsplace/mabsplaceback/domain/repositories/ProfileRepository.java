@@ -4,6 +4,7 @@ package com.mabsplace.mabsplaceback.domain.repositories;
 import com.mabsplace.mabsplaceback.domain.entities.Profile;
 import com.mabsplace.mabsplaceback.domain.enums.ProfileStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -37,6 +38,12 @@ public interface ProfileRepository extends JpaRepository<Profile, Long> {
             "AND p.id NOT IN (SELECT DISTINCT s.profile.id FROM Subscription s WHERE s.profile.id IS NOT NULL)")
     List<Profile> findTrulyAvailableProfilesByServiceId(@Param("serviceId") Long serviceId, @Param("status") ProfileStatus status);
 
+    // Sets the status of the profiles of the given subscriptions in one statement
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Profile p SET p.status = :status " +
+            "WHERE p.id IN (SELECT s.profile.id FROM Subscription s WHERE s.id IN :subscriptionIds)")
+    int updateStatusBySubscriptionIdIn(@Param("subscriptionIds") List<Long> subscriptionIds, @Param("status") ProfileStatus status);
+
     // Profile utilization queries for dashboard analytics
     @Query("SELECT COUNT(p) FROM Profile p WHERE p.status = :status")
     Long countByStatus(@Param("status") ProfileStatus status);
@@ -3,7 +3,9 @@ package com.mabsplace.mabsplaceback.domain.repositories;
 import com.mabsplace.mabsplaceback.domain.entities.Subscription;
 import com.mabsplace.mabsplaceback.domain.entities.User;
 import com.mabsplace.mabsplaceback.domain.enums.SubscriptionStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -21,21 +23,49 @@ public interface SubscriptionRepository extends JpaRepository<Subscription, Long
 
     List<Subscription> findByStatusAndEndDateBeforeAndAutoRenewTrue(SubscriptionStatus subscriptionStatus, Date today);
 
+    /**
+     * Keyset page of the ids of active auto-renewing subscriptions that ended before the cutoff, for one shard
+     * of the renewal run: the next page starts after the last id of the previous one.
+     */
+    @Query("SELECT s.id FROM Subscription s WHERE s.status = :status AND s.autoRenew = true " +
+           "AND s.endDate < :cutoff AND s.id > :afterId AND MOD(s.id, :shards) = :shard ORDER BY s.id")
+    List<Long> findRenewalIdsAfter(@Param("status") SubscriptionStatus status, @Param("cutoff") Date cutoff,
+                                   @Param("afterId") Long afterId, @Param("shards") int shards,
+                                   @Param("shard") int shard, Pageable pageable);
+
     List<Subscription> findByProfileId(Long id);
 
     List<Subscription> findByEndDateBeforeAndStatusNotAndAutoRenewFalse(Date date, SubscriptionStatus subscriptionStatus);
 
     /**
-     * Finds subscriptions that should be expired because either:
+     * Finds the ids of subscriptions that should be expired because either:
      * 1. autoRenew is false (user opted out), OR
      * 2. autoRenew is true BUT renewalAttempts >= 4 (exhausted all retries)
      *
      * This prevents premature expiration of subscriptions still in the renewal retry window.
      */
-    @Query(value = "SELECT * FROM subscriptions s WHERE s.end_date < ?1 AND s.status <> ?2 " +
-                   "AND (s.auto_renew = false OR COALESCE(s.renewal_attempts, 0) >= 4)",
+    @Query("SELECT s.id FROM Subscription s WHERE s.endDate < :date AND s.status <> :expired " +
+           "AND (s.autoRenew = false OR COALESCE(s.renewalAttempts, 0) >= 4) ORDER BY s.id")
+    List<Long> findIdsToExpire(@Param("date") Date date, @Param("expired") SubscriptionStatus expired);
+
+    /**
+     * Locks the subscriptions of the batch that are still to expire and returns their ids, so that a bulk update
+     * applies to exactly these rows: others may have been renewed or cancelled since the batch was read.
+     */
+    @Query(value = "SELECT s.id FROM subscriptions s WHERE s.id IN (:ids) AND s.end_date < :date " +
+                   "AND s.status <> 'EXPIRED' AND (s.auto_renew = false OR COALESCE(s.renewal_attempts, 0) >= 4) " +
+                   "FOR UPDATE",
            nativeQuery = true)
-    List<Subscription> findSubscriptionsToExpire(Date date, String status);
+    List<Long> lockIdsToExpire(@Param("ids") List<Long> ids, @Param("date") Date date);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Subscription s SET s.status = :status WHERE s.id IN :ids")
+    int updateStatusByIdIn(@Param("ids") List<Long> ids, @Param("status") SubscriptionStatus status);
+
+    // With what the notifications and tasks read, in one query
+    @Query("SELECT s FROM Subscription s LEFT JOIN FETCH s.user LEFT JOIN FETCH s.service " +
+           "LEFT JOIN FETCH s.subscriptionPlan LEFT JOIN FETCH s.profile WHERE s.id IN :ids")
+    List<Subscription> findWithDetailsByIdIn(@Param("ids") List<Long> ids);
 
     boolean existsByUserIdAndServiceIdAndIsTrial(Long id, Long id1, boolean b);
 
@@ -2,7 +2,11 @@ package com.mabsplace.mabsplaceback.domain.repositories;
 
 import com.mabsplace.mabsplaceback.domain.entities.Transaction;
 import com.mabsplace.mabsplaceback.domain.enums.TransactionStatus;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Date;
 import java.util.List;
@@ -11,6 +15,10 @@ import java.util.Optional;
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
     Optional<Transaction> findByTransactionRef(String transactionRef);
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Transaction t WHERE t.transactionRef = :transactionRef")
+    Optional<Transaction> findByTransactionRefForUpdate(@Param("transactionRef") String transactionRef);
+
     List<Transaction> findByTransactionStatusAndTransactionDateBefore(TransactionStatus transactionStatus, Date oneHourAgo);
 
     List<Transaction> findByReceiverWalletUserId(Long userId);
@@ -2,12 +2,20 @@ package com.mabsplace.mabsplaceback.domain.repositories;
 
 import com.mabsplace.mabsplaceback.domain.entities.UserProfile;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserProfileRepository extends JpaRepository<UserProfile, Long> {
     Optional<UserProfile> findByName(String name);
     boolean existsByName(String name);
+
+    List<UserProfile> findByRoles_Id(Long roleId);
+
+    @Query("SELECT COALESCE(p.rolesVersion, 0) FROM UserProfile p WHERE p.id = :id")
+    Optional<Long> findRolesVersionById(@Param("id") Long id);
 }
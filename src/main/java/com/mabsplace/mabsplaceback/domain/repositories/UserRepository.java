@@ -4,6 +4,7 @@ import com.mabsplace.mabsplaceback.domain.entities.Subscription;
 import com.mabsplace.mabsplaceback.domain.entities.User;
 import com.mabsplace.mabsplaceback.domain.entities.UserProfile;
 import com.mabsplace.mabsplaceback.domain.enums.AuthenticationType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -17,6 +18,9 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<User, Long> {
   Optional<User> findByUsername(String username);
 
+  @Query("SELECT COALESCE(u.authzVersion, 0) FROM User u WHERE u.id = :id")
+  Optional<Long> findAuthzVersionById(@Param("id") Long id);
+
   Boolean existsByUsername(String username);
 
   @Query("SELECT u FROM User u WHERE LOWER(TRIM(u.username)) = LOWER(TRIM(:username))")
@@ -47,4 +51,14 @@ public interface UserRepository extends JpaRepository<User, Long> {
   List<User> findByUserProfileIsNull();
 
   long countByUserProfileIsNotNull();
+
+  interface PushTarget {
+    Long getId();
+
+    String getPushToken();
+  }
+
+  // The users with a device token, a page at a time after the last id of the previous page
+  @Query("SELECT u.id AS id, u.pushToken AS pushToken FROM User u WHERE u.id > :afterId AND u.pushToken IS NOT NULL ORDER BY u.id")
+  List<PushTarget> findPushTargetsAfter(@Param("afterId") Long afterId, Pageable pageable);
 }
@@ -1,11 +1,40 @@
 package com.mabsplace.mabsplaceback.domain.repositories;
 
 import com.mabsplace.mabsplaceback.domain.entities.Wallet;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Optional;
+
 @Repository
 public interface WalletRepository extends JpaRepository<Wallet, Long> {
   Wallet findByUserId(Long userId);
 
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT w FROM Wallet w WHERE w.id = :id")
+  Optional<Wallet> findByIdForUpdate(@Param("id") Long id);
+
+  /**
+   * Debits the wallet in a single statement, only if its balance covers the amount.
+   * The row lock is held for this statement alone, so concurrent debits neither lose updates nor overdraw.
+   *
+   * @return 1 if the wallet was debited, 0 if it does not exist or its balance is too low
+   */
+  @Modifying(flushAutomatically = true)
+  @Query("UPDATE Wallet w SET w.balance = w.balance - :amount WHERE w.id = :id AND w.balance >= :amount")
+  int debitIfSufficient(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+  /**
+   * @return 1 if the wallet was credited, 0 if it does not exist
+   */
+  @Modifying(flushAutomatically = true)
+  @Query("UPDATE Wallet w SET w.balance = COALESCE(w.balance, 0) + :amount WHERE w.id = :id")
+  int credit(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
 }
@@ -0,0 +1,170 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Runs batch jobs over id-ordered items in chunks, with the progress kept in the job_checkpoints table.
+ * Each chunk of ids is read after the last id done (keyset paging), and each item is processed in its own
+ * short transaction that also moves the checkpoint, so an item is committed exactly when it is marked done:
+ * a run that crashes resumes after the last committed item instead of starting over or repeating one.
+ * A resumed run moves its cutoff up to the time it resumes, so that the items after the last one done that fell
+ * due while the job was down are not left for the next run; those before it are picked up by the next run.
+ * An item that throws is rolled back, counted as failed and skipped.
+ */
+@Service
+public class ChunkedJobRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedJobRunner.class);
+
+    /**
+     * Reads the ids of up to {@code limit} items due before {@code cutoff}, greater than {@code afterId},
+     * in ascending order.
+     */
+    @FunctionalInterface
+    public interface ChunkReader {
+        List<Long> read(LocalDateTime cutoff, long afterId, int limit);
+    }
+
+    /**
+     * Processes one item inside the transaction that marks it done.
+     */
+    @FunctionalInterface
+    public interface ItemProcessor {
+        void process(long id, LocalDateTime cutoff);
+    }
+
+    /**
+     * Totals of a run, including the items done before it was resumed.
+     */
+    public record Summary(String job, LocalDateTime cutoff, boolean resumed, long processed, long failed,
+                          Duration elapsed) {
+    }
+
+    private record Checkpoint(LocalDateTime cutoff, long lastId, long processed, long failed, boolean resumed) {
+    }
+
+    private static final String SELECT_SQL = """
+            SELECT cutoff, last_id, processed, failed, completed_at FROM job_checkpoints
+            WHERE job_name = ? FOR UPDATE
+            """;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO job_checkpoints (job_name, cutoff, last_id, processed, failed, started_at, updated_at)
+            VALUES (?, ?, 0, 0, 0, ?, ?)
+            """;
+
+    private static final String RESTART_SQL = """
+            UPDATE job_checkpoints SET cutoff = ?, last_id = 0, processed = 0, failed = 0, started_at = ?,
+                updated_at = ?, completed_at = NULL
+            WHERE job_name = ?
+            """;
+
+    private static final String RESUME_SQL = "UPDATE job_checkpoints SET cutoff = ?, updated_at = ? WHERE job_name = ?";
+
+    private static final String ADVANCE_SQL = """
+            UPDATE job_checkpoints SET last_id = ?, processed = processed + ?, failed = failed + ?, updated_at = ?
+            WHERE job_name = ?
+            """;
+
+    private static final String COMPLETE_SQL =
+            "UPDATE job_checkpoints SET completed_at = ?, updated_at = ? WHERE job_name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public ChunkedJobRunner(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Resumes the job's unfinished run, or starts a new one, with a cutoff of now, and runs it to the end.
+     *
+     * @param chunkSize how many ids are read at a time
+     */
+    public Summary run(String job, int chunkSize, ChunkReader reader, ItemProcessor processor) {
+        long start = System.nanoTime();
+        Checkpoint checkpoint = startOrResume(job);
+        LocalDateTime cutoff = checkpoint.cutoff();
+        if (checkpoint.resumed()) {
+            logger.info("Resuming {} after id {} ({} processed, {} failed so far, cutoff moved up to {})",
+                    job, checkpoint.lastId(), checkpoint.processed(), checkpoint.failed(), cutoff);
+        } else {
+            logger.info("Starting {} with cutoff {}", job, cutoff);
+        }
+
+        long lastId = checkpoint.lastId();
+        long processed = checkpoint.processed();
+        long failed = checkpoint.failed();
+        List<Long> ids = reader.read(cutoff, lastId, chunkSize);
+        while (!ids.isEmpty()) {
+            for (long id : ids) {
+                if (processItem(job, id, cutoff, processor)) {
+                    processed++;
+                } else {
+                    failed++;
+                }
+                lastId = id;
+            }
+            logger.debug("{}: {} processed, {} failed, up to id {}", job, processed, failed, lastId);
+            ids = ids.size() < chunkSize ? List.of() : reader.read(cutoff, lastId, chunkSize);
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update(COMPLETE_SQL, now, now, job);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        logger.info("Completed {}: {} processed, {} failed in {} ms", job, processed, failed, elapsed.toMillis());
+        return new Summary(job, cutoff, checkpoint.resumed(), processed, failed, elapsed);
+    }
+
+    /**
+     * @return false if the item failed and was skipped
+     */
+    private boolean processItem(String job, long id, LocalDateTime cutoff, ItemProcessor processor) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                processor.process(id, cutoff);
+                advance(job, id, 1, 0);
+            });
+            return true;
+        } catch (RuntimeException e) {
+            logger.error("{}: item {} failed and is skipped: {}", job, id, e.getMessage(), e);
+            transactionTemplate.executeWithoutResult(status -> advance(job, id, 0, 1));
+            return false;
+        }
+    }
+
+    private void advance(String job, long id, int processed, int failed) {
+        jdbcTemplate.update(ADVANCE_SQL, id, processed, failed, Timestamp.valueOf(LocalDateTime.now()), job);
+    }
+
+    private Checkpoint startOrResume(String job) {
+        return transactionTemplate.execute(status -> {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            List<Checkpoint> rows = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new Checkpoint(
+                    rs.getTimestamp("cutoff").toLocalDateTime(), rs.getLong("last_id"), rs.getLong("processed"),
+                    rs.getLong("failed"), rs.getTimestamp("completed_at") == null), job);
+            if (rows.isEmpty()) {
+                jdbcTemplate.update(INSERT_SQL, job, now, now, now);
+            } else if (rows.get(0).resumed()) {
+                Checkpoint unfinished = rows.get(0);
+                jdbcTemplate.update(RESUME_SQL, now, now, job);
+                return new Checkpoint(now.toLocalDateTime(), unfinished.lastId(), unfinished.processed(),
+                        unfinished.failed(), true);
+            } else {
+                jdbcTemplate.update(RESTART_SQL, now, now, now, job);
+            }
+            return new Checkpoint(now.toLocalDateTime(), 0, 0, 0, false);
+        });
+    }
+}
@@ -0,0 +1,300 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mabsplace.mabsplaceback.utils.CoolPaySignature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Takes in CoolPay's payment callbacks without making CoolPay wait for them to be applied.
+ * A callback is checked against its signature and written to the coolpay_callbacks table, which is all the
+ * request waits for; a redelivered callback hits the unique key and is acknowledged without a second row.
+ * Stored callbacks are applied to their transactions by a fixed pool of workers with a bounded queue. Callbacks
+ * that do not fit in the queue, that fail, or whose worker died with its node are picked up by the sweeper
+ * once due, and failures are retried with exponential backoff until they reach the maximum number of attempts.
+ */
+@Service
+public class CoolPayCallbackInbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoolPayCallbackInbox.class);
+
+    public enum Outcome {
+        ACCEPTED,
+        DUPLICATE,
+        INVALID_SIGNATURE,
+        MALFORMED
+    }
+
+    private record Callback(long id, String transactionRef, String transactionStatus, int attempts,
+                            LocalDateTime receivedAt) {
+    }
+
+    // A new row is left to its worker for the lease before the sweeper takes it
+    private static final String INSERT_SQL = """
+            INSERT INTO coolpay_callbacks (transaction_ref, transaction_status, payload, status, attempts,
+                                           next_attempt_at, received_at)
+            VALUES (?, ?, ?, 'PENDING', 0, ?, ?)
+            """;
+
+    // Only one worker gets a row: a PENDING one is submitted once when it arrives and then only when due,
+    // and a PROCESSING one only once its lease ran out
+    private static final String CLAIM_SQL = """
+            UPDATE coolpay_callbacks SET status = 'PROCESSING', next_attempt_at = ?
+            WHERE id = ? AND (status = 'PENDING' OR (status = 'PROCESSING' AND next_attempt_at <= ?))
+            """;
+
+    private static final String FIND_SQL =
+            "SELECT id, transaction_ref, transaction_status, attempts, received_at FROM coolpay_callbacks WHERE id = ?";
+
+    private static final String DUE_SQL = """
+            SELECT id FROM coolpay_callbacks
+            WHERE status IN ('PENDING', 'PROCESSING') AND next_attempt_at <= ?
+            LIMIT ?
+            """;
+
+    private static final String MARK_PROCESSED_SQL = """
+            UPDATE coolpay_callbacks SET status = 'PROCESSED', attempts = attempts + 1, processed_at = ?, last_error = NULL
+            WHERE id = ?
+            """;
+
+    private static final String MARK_FAILED_SQL = """
+            UPDATE coolpay_callbacks SET status = ?, attempts = attempts + 1, next_attempt_at = ?, last_error = ?
+            WHERE id = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionService transactionService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final String privateKey;
+    private final boolean verifySignature;
+    private final Duration lease;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final int sweepBatchSize;
+    private final ThreadPoolExecutor executor;
+    private final Timer processingTimer;
+    private final Timer processingLag;
+
+    public CoolPayCallbackInbox(JdbcTemplate jdbcTemplate,
+                                TransactionService transactionService,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                @Value("${mabsplace.app.privateKey}") String privateKey,
+                                @Value("${app.coolpay.callbacks.verify-signature:true}") boolean verifySignature,
+                                @Value("${app.coolpay.callbacks.workers:4}") int workers,
+                                @Value("${app.coolpay.callbacks.queue-capacity:1000}") int queueCapacity,
+                                @Value("${app.coolpay.callbacks.lease:PT2M}") Duration lease,
+                                @Value("${app.coolpay.callbacks.max-attempts:8}") int maxAttempts,
+                                @Value("${app.coolpay.callbacks.initial-backoff:PT30S}") Duration initialBackoff,
+                                @Value("${app.coolpay.callbacks.max-backoff:PT1H}") Duration maxBackoff,
+                                @Value("${app.coolpay.callbacks.sweep-batch-size:200}") int sweepBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionService = transactionService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.privateKey = privateKey;
+        this.verifySignature = verifySignature;
+        this.lease = lease;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.sweepBatchSize = sweepBatchSize;
+
+        // Bounded both ways: at most workers connections, and callbacks that do not fit wait in the table
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "coolpay-callback-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("coolpay.callbacks.queued", executor, e -> e.getQueue().size())
+                .description("Callbacks stored and waiting for a worker")
+                .register(meterRegistry);
+        this.processingTimer = Timer.builder("coolpay.callbacks.processing")
+                .description("Time to apply one callback to its transaction")
+                .register(meterRegistry);
+        this.processingLag = Timer.builder("coolpay.callbacks.lag")
+                .description("Time from receiving a callback to applying it")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stores the callback and hands it to a worker, without waiting for it to be applied.
+     */
+    public Outcome receive(Map<String, Object> callback) {
+        if (verifySignature && !CoolPaySignature.isValid(callback, privateKey)) {
+            count("invalid_signature");
+            logger.warn("Rejecting CoolPay callback for transaction ref {}: bad signature", callback.get("app_transaction_ref"));
+            return Outcome.INVALID_SIGNATURE;
+        }
+        Object transactionRef = callback.get("app_transaction_ref");
+        Object transactionStatus = callback.get("transaction_status");
+        if (transactionRef == null || transactionStatus == null) {
+            count("malformed");
+            return Outcome.MALFORMED;
+        }
+
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(callback);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize CoolPay callback", e);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        try {
+            jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
+                statement.setString(1, transactionRef.toString());
+                statement.setString(2, transactionStatus.toString());
+                statement.setString(3, payload);
+                statement.setTimestamp(4, Timestamp.valueOf(now.plus(lease)));
+                statement.setTimestamp(5, Timestamp.valueOf(now));
+                return statement;
+            }, keyHolder);
+        } catch (DuplicateKeyException e) {
+            count("duplicate");
+            logger.info("CoolPay callback {} for transaction ref {} was already received", transactionStatus, transactionRef);
+            return Outcome.DUPLICATE;
+        }
+        count("accepted");
+        submit(keyHolder.getKey().longValue());
+        return Outcome.ACCEPTED;
+    }
+
+    private void submit(long id) {
+        try {
+            executor.execute(() -> process(id));
+        } catch (RejectedExecutionException e) {
+            count("deferred");
+            logger.warn("Callback queue is full, CoolPay callback {} is left to the sweeper", id);
+        }
+    }
+
+    /**
+     * Submits the callbacks that are due: failed ones to retry, ones that did not fit in the queue, and ones
+     * whose worker did not finish within its lease. Any node may run it, as only one worker claims each row.
+     */
+    @Scheduled(fixedDelayString = "${app.coolpay.callbacks.sweep-interval-ms:10000}")
+    public void sweep() {
+        int room = executor.getQueue().remainingCapacity();
+        if (room == 0) {
+            return;
+        }
+        List<Long> due = jdbcTemplate.queryForList(DUE_SQL, Long.class,
+                Timestamp.valueOf(LocalDateTime.now()), Math.min(room, sweepBatchSize));
+        due.forEach(this::submit);
+    }
+
+    void process(long id) {
+        LocalDateTime now = LocalDateTime.now();
+        if (jdbcTemplate.update(CLAIM_SQL, Timestamp.valueOf(now.plus(lease)), id, Timestamp.valueOf(now)) == 0) {
+            // Taken by another worker, or already processed
+            return;
+        }
+        Callback callback = jdbcTemplate.queryForObject(FIND_SQL, (rs, rowNum) -> new Callback(
+                rs.getLong("id"),
+                rs.getString("transaction_ref"),
+                rs.getString("transaction_status"),
+                rs.getInt("attempts"),
+                rs.getTimestamp("received_at").toLocalDateTime()), id);
+
+        long start = System.nanoTime();
+        try {
+            transactionService.updateTransactionStatus(callback.transactionRef(), callback.transactionStatus());
+        } catch (RuntimeException e) {
+            processingTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            fail(callback, e);
+            return;
+        }
+        processingTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        LocalDateTime processedAt = LocalDateTime.now();
+        jdbcTemplate.update(MARK_PROCESSED_SQL, Timestamp.valueOf(processedAt), id);
+        processingLag.record(Duration.between(callback.receivedAt(), processedAt));
+        countProcessed("processed");
+    }
+
+    private void fail(Callback callback, RuntimeException error) {
+        int attempts = callback.attempts() + 1;
+        boolean giveUp = attempts >= maxAttempts;
+        LocalDateTime now = LocalDateTime.now();
+        String lastError = error.getMessage() != null && error.getMessage().length() > 500
+                ? error.getMessage().substring(0, 500) : error.getMessage();
+        jdbcTemplate.update(MARK_FAILED_SQL, giveUp ? "FAILED" : "PENDING",
+                Timestamp.valueOf(giveUp ? now : now.plus(backoff(attempts))), lastError, callback.id());
+        countProcessed(giveUp ? "failed" : "retried");
+        if (giveUp) {
+            logger.error("Giving up on CoolPay callback {} for transaction ref {} after {} attempts: {}",
+                    callback.id(), callback.transactionRef(), attempts, error.getMessage());
+        } else {
+            logger.warn("CoolPay callback {} for transaction ref {} failed (attempt {}): {}",
+                    callback.id(), callback.transactionRef(), attempts, error.getMessage());
+        }
+    }
+
+    // initialBackoff, doubled on each further attempt
+    Duration backoff(int attempts) {
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    private void count(String outcome) {
+        Counter.builder("coolpay.callbacks.received")
+                .description("CoolPay callbacks received, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void countProcessed(String result) {
+        Counter.builder("coolpay.callbacks.processed")
+                .description("Attempts to apply CoolPay callbacks, by result")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Lets the workers finish the callbacks they hold; queued ones stay PENDING and are swept after the restart.
+     */
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.getQueue().clear();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+}
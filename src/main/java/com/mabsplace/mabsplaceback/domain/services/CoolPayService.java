@@ -3,32 +3,88 @@ package com.mabsplace.mabsplaceback.domain.services;
 import com.mabsplace.mabsplaceback.domain.dtos.coolpay.AuthorizationRequest;
 import com.mabsplace.mabsplaceback.domain.dtos.coolpay.PaymentRequest;
 import com.mabsplace.mabsplaceback.domain.dtos.coolpay.PayoutRequest;
+import com.mabsplace.mabsplaceback.exceptions.CoolPayUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
 import java.util.Collections;
-
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Client of the CoolPay API.
+ * Every request runs on a fixed pool of threads with a bounded queue, which caps the connections held to
+ * CoolPay however many requests come in. A request that finds the queue full, or that is not answered within
+ * the call timeout (queueing included), fails at once with CoolPayUnavailableException rather than holding
+ * its caller; the HTTP client's own connect and read timeouts bound each attempt on the worker side.
+ */
 @Service
 public class CoolPayService {
 
-    private final RestTemplate restTemplate;
-
-    @Value("${mabsplace.app.baseUrl}")
-    private String baseUrl;
-
-    @Value("${mabsplace.app.privateKey}")
-    private String privateKey;
-
     private static final Logger logger = LoggerFactory.getLogger(CoolPayService.class);
 
-    public CoolPayService(RestTemplate restTemplate) {
-        this.restTemplate = restTemplate;
+    private final RestTemplate restTemplate;
+    private final MeterRegistry meterRegistry;
+    private final String baseUrl;
+    private final String privateKey;
+    private final Duration callTimeout;
+    private final ThreadPoolExecutor executor;
+
+    public CoolPayService(MeterRegistry meterRegistry,
+                          @Value("${mabsplace.app.baseUrl}") String baseUrl,
+                          @Value("${mabsplace.app.privateKey}") String privateKey,
+                          @Value("${app.coolpay.client.threads:8}") int threads,
+                          @Value("${app.coolpay.client.queue-capacity:50}") int queueCapacity,
+                          @Value("${app.coolpay.client.connect-timeout:PT5S}") Duration connectTimeout,
+                          @Value("${app.coolpay.client.read-timeout:PT30S}") Duration readTimeout,
+                          @Value("${app.coolpay.client.call-timeout:PT40S}") Duration callTimeout) {
+        this.meterRegistry = meterRegistry;
+        this.baseUrl = baseUrl;
+        this.privateKey = privateKey;
+        this.callTimeout = callTimeout;
+
+        // HTTP/1.1 as before: the JDK client would otherwise try to upgrade plain connections to HTTP/2
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .build());
+        requestFactory.setReadTimeout(readTimeout);
+        this.restTemplate = new RestTemplate(requestFactory);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "coolpay-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        new ExecutorServiceMetrics(executor, "coolpay", List.of()).bindTo(meterRegistry);
     }
 
     public Object makePayment(PaymentRequest paymentRequest) {
@@ -45,7 +101,7 @@ public class CoolPayService {
         logger.debug("Payment request entity: {}", entity);
 
         try {
-            Object response = restTemplate.postForObject(url, entity, Object.class);
+            Object response = call("payin", () -> restTemplate.postForObject(url, entity, Object.class));
             logger.info("Payment successful for transactionRef: {}", paymentRequest.getApp_transaction_ref());
             logger.debug("Payment response: {}", response);
             return response;
@@ -57,6 +113,34 @@ public class CoolPayService {
         }
     }
 
+    /**
+     * Starts the payment without waiting for CoolPay, which answers through the transaction callback.
+     *
+     * @throws CoolPayUnavailableException if the queue of CoolPay requests is full
+     */
+    public CompletableFuture<Object> makePaymentAsync(PaymentRequest paymentRequest) {
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+            HttpEntity<PaymentRequest> entity = new HttpEntity<>(paymentRequest, headers);
+
+            long submittedAt = System.nanoTime();
+            return CompletableFuture.supplyAsync(() -> timed("payin",
+                            () -> restTemplate.postForObject(baseUrl + "/payin", entity, Object.class), submittedAt), executor)
+                    .whenComplete((response, error) -> {
+                        if (error != null) {
+                            logger.error("Error during makePayment for transactionRef: {}. Error: {}", paymentRequest.getApp_transaction_ref(), error.getMessage());
+                        } else {
+                            logger.info("Payment successful for transactionRef: {}", paymentRequest.getApp_transaction_ref());
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            refused("payin", "rejected");
+            throw new CoolPayUnavailableException("Too many CoolPay requests in progress, try again later");
+        }
+    }
+
     public Object authorizePayment(AuthorizationRequest authorizationRequest) {
         String url = baseUrl + "/payin/authorize";
 
@@ -70,7 +154,7 @@ public class CoolPayService {
         logger.debug("Authorization request entity: {}", entity);
 
         try {
-            Object response = restTemplate.postForObject(url, entity, Object.class);
+            Object response = call("authorize", () -> restTemplate.postForObject(url, entity, Object.class));
             logger.info("Authorization successful for transactionRef: {}", authorizationRequest.getTransactionRef());
             logger.debug("Authorization response: {}", response);
             return response;
@@ -96,7 +180,7 @@ public class CoolPayService {
         logger.debug("Payout request entity: {}", entity);
 
         try {
-            Object response = restTemplate.postForObject(url, entity, Object.class);
+            Object response = call("payout", () -> restTemplate.postForObject(url, entity, Object.class));
             logger.info("Payout processed successfully for transactionRef: {}", payoutRequest.getApp_transaction_ref());
             logger.debug("Payout response: {}", response);
             return response;
@@ -114,7 +198,7 @@ public class CoolPayService {
         logger.info("Checking transaction status for transactionRef: {}", transactionRef);
 
         try {
-            ResponseEntity<Object> response = restTemplate.getForEntity(url, Object.class);
+            ResponseEntity<Object> response = call("check-status", () -> restTemplate.getForEntity(url, Object.class));
             logger.info("Transaction status retrieved successfully for transactionRef: {}", transactionRef);
             logger.debug("Transaction status response: {}", response.getBody());
             return response.getBody();
@@ -139,7 +223,7 @@ public class CoolPayService {
         logger.debug("Balance check request entity: {}", entity);
 
         try {
-            ResponseEntity<Object> response = restTemplate.exchange(url, HttpMethod.GET, entity, Object.class);
+            ResponseEntity<Object> response = call("balance", () -> restTemplate.exchange(url, HttpMethod.GET, entity, Object.class));
             logger.info("Balance retrieved successfully");
             logger.debug("Balance response: {}", response.getBody());
             return response.getBody();
@@ -164,7 +248,7 @@ public class CoolPayService {
         logger.debug("Payment link request entity: {}", entity);
 
         try {
-            Object response = restTemplate.postForObject(url, entity, Object.class);
+            Object response = call("paylink", () -> restTemplate.postForObject(url, entity, Object.class));
             logger.info("Payment link generated successfully for transactionRef: {}", paymentRequest.getApp_transaction_ref());
             logger.debug("Payment link response: {}", response);
             return response;
@@ -175,4 +259,74 @@ public class CoolPayService {
             logger.info("Completed generatePaymentLink for transactionRef: {}", paymentRequest.getApp_transaction_ref());
         }
     }
+
+    /**
+     * Runs the request on the pool and waits for it for the call timeout, rethrowing what the request threw.
+     */
+    private <T> T call(String operation, Supplier<T> request) {
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> timed(operation, request, submittedAt));
+        } catch (RejectedExecutionException e) {
+            refused(operation, "rejected");
+            throw new CoolPayUnavailableException("Too many CoolPay requests in progress, try again later");
+        }
+        try {
+            return future.get(callTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            refused(operation, "timed_out");
+            throw new CoolPayUnavailableException("CoolPay did not answer within " + callTimeout.toSeconds() + " seconds");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CoolPayUnavailableException("Interrupted while waiting for CoolPay");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("CoolPay " + operation + " request failed", e.getCause());
+        }
+    }
+
+    private <T> T timed(String operation, Supplier<T> request, long submittedAt) {
+        long start = System.nanoTime();
+        Timer.builder("coolpay.requests.queued")
+                .description("Time CoolPay requests wait for a thread")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .record(start - submittedAt, TimeUnit.NANOSECONDS);
+        String outcome = "error";
+        try {
+            T response = request.get();
+            outcome = "success";
+            return response;
+        } catch (HttpClientErrorException e) {
+            outcome = "client_error";
+            throw e;
+        } catch (HttpServerErrorException e) {
+            outcome = "server_error";
+            throw e;
+        } finally {
+            Timer.builder("coolpay.requests")
+                    .description("CoolPay API requests, by operation and outcome")
+                    .tags("operation", operation, "outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void refused(String operation, String reason) {
+        Counter.builder("coolpay.requests.refused")
+                .description("CoolPay requests failed without an answer: queue full or call timeout")
+                .tags("operation", operation, "reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
 }
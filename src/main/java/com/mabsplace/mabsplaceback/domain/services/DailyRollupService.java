@@ -0,0 +1,419 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.mabsplace.mabsplaceback.domain.entities.DailyRevenue;
+import com.mabsplace.mabsplaceback.domain.entities.DigitalGoodsOrder;
+import com.mabsplace.mabsplaceback.domain.entities.Expense;
+import com.mabsplace.mabsplaceback.domain.entities.Payment;
+import com.mabsplace.mabsplaceback.domain.entities.Subscription;
+import com.mabsplace.mabsplaceback.domain.enums.PaymentStatus;
+import com.mabsplace.mabsplaceback.utils.TimeWindow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Maintains the daily_revenue, daily_expense and daily_subscription_state rollups the dashboard reads,
+ * so that monthly series cost O(days) instead of O(payments).
+ * Writers call the record* methods inside their own transaction; the upserts join it, so a rollup row
+ * changes exactly when the payment, order or expense it summarises is committed. A nightly rebuild
+ * recomputes the recent months from the raw rows to absorb writes made outside these hooks.
+ */
+@Service
+public class DailyRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DailyRollupService.class);
+
+    private static final String TRIAL_PLAN = "Trial";
+
+    static final String REVENUE_UPSERT_SQL = """
+            INSERT INTO daily_revenue (day, service_id, revenue, plan_revenue, payments, subscribers,
+                                       service_subscribers, digital_goods_revenue, digital_goods_orders)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE
+                revenue = revenue + VALUES(revenue),
+                plan_revenue = plan_revenue + VALUES(plan_revenue),
+                payments = payments + VALUES(payments),
+                subscribers = subscribers + VALUES(subscribers),
+                service_subscribers = service_subscribers + VALUES(service_subscribers),
+                digital_goods_revenue = digital_goods_revenue + VALUES(digital_goods_revenue),
+                digital_goods_orders = digital_goods_orders + VALUES(digital_goods_orders)
+            """;
+
+    static final String EXPENSE_UPSERT_SQL = """
+            INSERT INTO daily_expense (day, category_id, total_expenses, recurring_expenses, one_time_expenses, expenses)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE
+                total_expenses = total_expenses + VALUES(total_expenses),
+                recurring_expenses = recurring_expenses + VALUES(recurring_expenses),
+                one_time_expenses = one_time_expenses + VALUES(one_time_expenses),
+                expenses = expenses + VALUES(expenses)
+            """;
+
+    static final String SUBSCRIPTION_EVENT_UPSERT_SQL = """
+            INSERT INTO daily_subscription_state (day, service_id, active, trial, renewed, expired)
+            VALUES (?, ?, 0, 0, ?, ?)
+            ON DUPLICATE KEY UPDATE
+                renewed = renewed + VALUES(renewed),
+                expired = expired + VALUES(expired)
+            """;
+
+    // One row per service of the subscriptions, added to the day's expired count
+    static final String SUBSCRIPTIONS_EXPIRED_UPSERT_SQL = """
+            INSERT INTO daily_subscription_state (day, service_id, active, trial, renewed, expired)
+            SELECT :day, COALESCE(s.service_id, :noService), 0, 0, 0, COUNT(*)
+            FROM subscriptions s
+            WHERE s.id IN (:subscriptionIds)
+            GROUP BY COALESCE(s.service_id, :noService)
+            ON DUPLICATE KEY UPDATE
+                expired = expired + VALUES(expired)
+            """;
+
+    // Other paid non-trial payments of the user in the payment's month, overall and for its service
+    static final String PRIOR_PLAN_PAYMENTS_SQL = """
+            SELECT
+                COUNT(*) AS in_month,
+                COALESCE(SUM(CASE WHEN COALESCE(p.service_id, 0) = :serviceId THEN 1 ELSE 0 END), 0) AS in_service_month
+            FROM payments p
+            WHERE p.user_id = :userId
+            AND p.id <> :paymentId
+            AND p.payment_date >= :monthStart AND p.payment_date < :monthEnd
+            AND p.status = 'PAID'
+            AND p.subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')
+            """;
+
+    // Ranks each user's non-trial payments within the month, so that the first one counts as a subscriber.
+    // Rebuilt windows are whole months. The rebuild inserts overwrite rows instead of failing on them, should
+    // a write hook add a row between the DELETE and the INSERT.
+    static final String REBUILD_PAYMENTS_SQL = """
+            INSERT INTO daily_revenue (day, service_id, revenue, plan_revenue, payments, subscribers,
+                                       service_subscribers, digital_goods_revenue, digital_goods_orders)
+            SELECT
+                DATE(ranked.payment_date),
+                ranked.service_id,
+                COALESCE(SUM(ranked.amount), 0),
+                COALESCE(SUM(CASE WHEN ranked.plan_payment = 1 THEN ranked.amount END), 0),
+                COUNT(*),
+                SUM(CASE WHEN ranked.plan_payment = 1 AND ranked.user_id IS NOT NULL AND ranked.month_rank = 1 THEN 1 ELSE 0 END),
+                SUM(CASE WHEN ranked.plan_payment = 1 AND ranked.user_id IS NOT NULL AND ranked.service_month_rank = 1 THEN 1 ELSE 0 END),
+                0,
+                0
+            FROM (
+                SELECT
+                    paid.*,
+                    ROW_NUMBER() OVER (PARTITION BY paid.user_id, paid.plan_payment, DATE_FORMAT(paid.payment_date, '%Y-%m')
+                                       ORDER BY paid.payment_date, paid.id) AS month_rank,
+                    ROW_NUMBER() OVER (PARTITION BY paid.user_id, paid.plan_payment, paid.service_id, DATE_FORMAT(paid.payment_date, '%Y-%m')
+                                       ORDER BY paid.payment_date, paid.id) AS service_month_rank
+                FROM (
+                    SELECT
+                        p.id,
+                        p.user_id,
+                        p.amount,
+                        p.payment_date,
+                        COALESCE(p.service_id, 0) AS service_id,
+                        CASE WHEN p.subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')
+                             THEN 1 ELSE 0 END AS plan_payment
+                    FROM payments p
+                    WHERE p.payment_date >= :windowStart AND p.payment_date < :windowEnd
+                    AND p.status = 'PAID'
+                ) paid
+            ) ranked
+            GROUP BY DATE(ranked.payment_date), ranked.service_id
+            ON DUPLICATE KEY UPDATE
+                revenue = VALUES(revenue),
+                plan_revenue = VALUES(plan_revenue),
+                payments = VALUES(payments),
+                subscribers = VALUES(subscribers),
+                service_subscribers = VALUES(service_subscribers)
+            """;
+
+    static final String REBUILD_DIGITAL_GOODS_SQL = """
+            INSERT INTO daily_revenue (day, service_id, revenue, plan_revenue, payments, subscribers,
+                                       service_subscribers, digital_goods_revenue, digital_goods_orders)
+            SELECT DATE(o.created_at), 0, 0, 0, 0, 0, 0, COALESCE(SUM(o.total_amount), 0), COUNT(*)
+            FROM digital_goods_orders o
+            WHERE o.created_at >= :windowStart AND o.created_at < :windowEnd
+            AND o.order_status IN ('PAID', 'PROCESSING', 'DELIVERED')
+            GROUP BY DATE(o.created_at)
+            ON DUPLICATE KEY UPDATE
+                digital_goods_revenue = VALUES(digital_goods_revenue),
+                digital_goods_orders = VALUES(digital_goods_orders)
+            """;
+
+    static final String REBUILD_EXPENSES_SQL = """
+            INSERT INTO daily_expense (day, category_id, total_expenses, recurring_expenses, one_time_expenses, expenses)
+            SELECT
+                DATE(e.expense_date),
+                e.category_id,
+                COALESCE(SUM(e.amount), 0),
+                COALESCE(SUM(CASE WHEN e.is_recurring = TRUE THEN e.amount ELSE 0 END), 0),
+                COALESCE(SUM(CASE WHEN e.is_recurring = FALSE THEN e.amount ELSE 0 END), 0),
+                COUNT(*)
+            FROM expenses e
+            WHERE e.expense_date >= :windowStart AND e.expense_date < :windowEnd
+            GROUP BY DATE(e.expense_date), e.category_id
+            ON DUPLICATE KEY UPDATE
+                total_expenses = VALUES(total_expenses),
+                recurring_expenses = VALUES(recurring_expenses),
+                one_time_expenses = VALUES(one_time_expenses),
+                expenses = VALUES(expenses)
+            """;
+
+    static final String SNAPSHOT_SUBSCRIPTIONS_SQL = """
+            INSERT INTO daily_subscription_state (day, service_id, active, trial, renewed, expired)
+            SELECT
+                :day,
+                COALESCE(s.service_id, 0),
+                SUM(CASE WHEN s.is_trial IS NULL OR s.is_trial = FALSE THEN 1 ELSE 0 END),
+                SUM(CASE WHEN s.is_trial = TRUE THEN 1 ELSE 0 END),
+                0,
+                0
+            FROM subscriptions s
+            WHERE s.status = 'ACTIVE'
+            GROUP BY COALESCE(s.service_id, 0)
+            ON DUPLICATE KEY UPDATE
+                active = VALUES(active),
+                trial = VALUES(trial)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLockService jobLockService;
+    private final int rebuildMonths;
+    private final boolean backfillOnStartup;
+
+    public DailyRollupService(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              JobLockService jobLockService,
+                              @Value("${app.rollups.rebuild-months:2}") int rebuildMonths,
+                              @Value("${app.rollups.backfill-on-startup:true}") boolean backfillOnStartup) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jobLockService = jobLockService;
+        this.rebuildMonths = Math.max(1, rebuildMonths);
+        this.backfillOnStartup = backfillOnStartup;
+    }
+
+    /**
+     * Adds a payment that was just saved as PAID to the revenue of its day and service.
+     */
+    @Transactional
+    public void recordPayment(Payment payment) {
+        upsertPayment(payment, 1);
+    }
+
+    /**
+     * Takes a PAID payment back out of its day, before it is changed, cancelled or deleted.
+     * Its subscriber count is only taken back when the user has no other paid plan payment that month,
+     * which keeps the monthly figures exact; the day holding that count is corrected by the nightly rebuild.
+     */
+    @Transactional
+    public void reversePayment(Payment payment) {
+        upsertPayment(payment, -1);
+    }
+
+    /**
+     * Adds a paid digital goods order to the revenue of its creation day.
+     */
+    @Transactional
+    public void recordDigitalGoodsOrder(DigitalGoodsOrder order) {
+        upsertDigitalGoodsOrder(order, 1);
+    }
+
+    /**
+     * Takes a paid digital goods order that is being cancelled or refunded back out of the revenue.
+     */
+    @Transactional
+    public void reverseDigitalGoodsOrder(DigitalGoodsOrder order) {
+        upsertDigitalGoodsOrder(order, -1);
+    }
+
+    @Transactional
+    public void recordExpense(Expense expense) {
+        upsertExpense(expense, 1);
+    }
+
+    /**
+     * Takes an expense back out of its day, before it is changed or deleted.
+     */
+    @Transactional
+    public void reverseExpense(Expense expense) {
+        upsertExpense(expense, -1);
+    }
+
+    @Transactional
+    public void recordSubscriptionRenewed(Subscription subscription) {
+        jdbcTemplate.update(SUBSCRIPTION_EVENT_UPSERT_SQL, LocalDate.now(), serviceIdOf(subscription), 1, 0);
+    }
+
+    @Transactional
+    public void recordSubscriptionExpired(Subscription subscription) {
+        jdbcTemplate.update(SUBSCRIPTION_EVENT_UPSERT_SQL, LocalDate.now(), serviceIdOf(subscription), 0, 1);
+    }
+
+    /**
+     * Adds subscriptions expired together to the expired counts of the day, with one statement.
+     */
+    @Transactional
+    public void recordSubscriptionsExpired(List<Long> subscriptionIds) {
+        if (subscriptionIds.isEmpty()) {
+            return;
+        }
+        namedParameterJdbcTemplate.update(SUBSCRIPTIONS_EXPIRED_UPSERT_SQL, new MapSqlParameterSource()
+                .addValue("day", LocalDate.now())
+                .addValue("noService", DailyRevenue.NO_SERVICE)
+                .addValue("subscriptionIds", subscriptionIds));
+    }
+
+    /**
+     * Stores the active and trial subscription counts of each service as the state of the given day.
+     */
+    @Transactional
+    public void snapshotSubscriptionState(LocalDate day) {
+        jdbcTemplate.update("UPDATE daily_subscription_state SET active = 0, trial = 0 WHERE day = ?", day);
+        namedParameterJdbcTemplate.update(SNAPSHOT_SUBSCRIPTIONS_SQL, Map.of("day", day));
+        logger.info("Snapshotted subscription state for {}", day);
+    }
+
+    @Scheduled(cron = "${app.rollups.rebuild-cron:0 30 3 * * *}") // Runs daily at 3:30 AM, after the lifecycle crons
+    public void scheduledRebuildRecentRollups() {
+        jobLockService.runOnce("rebuild-daily-rollups", this::rebuildRecentRollups);
+    }
+
+    public void rebuildRecentRollups() {
+        YearMonth currentMonth = YearMonth.now();
+        rebuild(currentMonth.minusMonths(rebuildMonths - 1L), currentMonth);
+    }
+
+    /**
+     * Recomputes the revenue and expense rollups of the given months from the raw rows, one month per transaction.
+     */
+    public void rebuild(YearMonth from, YearMonth to) {
+        logger.info("Rebuilding daily rollups from {} to {}", from, to);
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            Map<String, Object> window = TimeWindow.month(month).params("window");
+            transactionTemplate.executeWithoutResult(status -> {
+                namedParameterJdbcTemplate.update("DELETE FROM daily_revenue WHERE day >= :windowStart AND day < :windowEnd", window);
+                namedParameterJdbcTemplate.update(REBUILD_PAYMENTS_SQL, window);
+                namedParameterJdbcTemplate.update(REBUILD_DIGITAL_GOODS_SQL, window);
+                namedParameterJdbcTemplate.update("DELETE FROM daily_expense WHERE day >= :windowStart AND day < :windowEnd", window);
+                namedParameterJdbcTemplate.update(REBUILD_EXPENSES_SQL, window);
+            });
+        }
+        logger.info("Rebuilt daily rollups from {} to {}", from, to);
+    }
+
+    /**
+     * Rebuilds every month since the oldest payment, order or expense, and snapshots today's subscription state.
+     * Past subscription states cannot be reconstructed and start from the first snapshot.
+     */
+    public void backfill() {
+        YearMonth firstMonth = Stream.of(
+                        "SELECT MIN(payment_date) FROM payments",
+                        "SELECT MIN(created_at) FROM digital_goods_orders",
+                        "SELECT MIN(expense_date) FROM expenses")
+                .map(sql -> jdbcTemplate.queryForObject(sql, Timestamp.class))
+                .filter(Objects::nonNull)
+                .map(timestamp -> YearMonth.from(timestamp.toLocalDateTime()))
+                .min(YearMonth::compareTo)
+                .orElse(YearMonth.now());
+        rebuild(firstMonth, YearMonth.now());
+        snapshotSubscriptionState(LocalDate.now());
+    }
+
+    /**
+     * Backfills empty rollups on startup. Replicas deployed together all find them empty, so only the node
+     * that gets the lock backfills, and nodes starting later find the rows it wrote.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (backfillOnStartup) {
+            jobLockService.runOnce("backfill-daily-rollups", this::backfillIfEmpty);
+        }
+    }
+
+    public void backfillIfEmpty() {
+        Integer rows = jdbcTemplate.queryForObject(
+                "SELECT (SELECT COUNT(*) FROM daily_revenue) + (SELECT COUNT(*) FROM daily_expense)", Integer.class);
+        if (rows != null && rows == 0) {
+            logger.info("Daily rollups are empty, backfilling them from the raw rows");
+            backfill();
+        }
+    }
+
+    private void upsertPayment(Payment payment, int sign) {
+        if (payment.getStatus() != PaymentStatus.PAID) {
+            return;
+        }
+        LocalDate day = toLocalDate(payment.getPaymentDate());
+        long serviceId = payment.getService() != null ? payment.getService().getId() : DailyRevenue.NO_SERVICE;
+        BigDecimal amount = Objects.requireNonNullElse(payment.getAmount(), BigDecimal.ZERO)
+                .multiply(BigDecimal.valueOf(sign));
+        boolean planPayment = payment.getSubscriptionPlan() != null
+                && !TRIAL_PLAN.equals(payment.getSubscriptionPlan().getName());
+
+        int subscribers = 0;
+        int serviceSubscribers = 0;
+        if (planPayment && payment.getUser() != null) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("userId", payment.getUser().getId())
+                    .addValue("paymentId", payment.getId())
+                    .addValue("serviceId", serviceId)
+                    .addValues(TimeWindow.month(YearMonth.from(day)).params("month"));
+            Map<String, Object> prior = namedParameterJdbcTemplate.queryForMap(PRIOR_PLAN_PAYMENTS_SQL, params);
+            subscribers = ((Number) prior.get("in_month")).longValue() == 0 ? sign : 0;
+            serviceSubscribers = ((Number) prior.get("in_service_month")).longValue() == 0 ? sign : 0;
+        }
+
+        jdbcTemplate.update(REVENUE_UPSERT_SQL, day, serviceId, amount, planPayment ? amount : BigDecimal.ZERO, sign,
+                subscribers, serviceSubscribers, BigDecimal.ZERO, 0);
+    }
+
+    private void upsertDigitalGoodsOrder(DigitalGoodsOrder order, int sign) {
+        BigDecimal amount = Objects.requireNonNullElse(order.getTotalAmount(), BigDecimal.ZERO);
+        jdbcTemplate.update(REVENUE_UPSERT_SQL, toLocalDate(order.getCreatedAt()), DailyRevenue.NO_SERVICE,
+                BigDecimal.ZERO, BigDecimal.ZERO, 0, 0, 0, amount.multiply(BigDecimal.valueOf(sign)), sign);
+    }
+
+    private void upsertExpense(Expense expense, int sign) {
+        // Undated expenses fall outside every dashboard window
+        if (expense.getExpenseDate() == null) {
+            return;
+        }
+        BigDecimal amount = Objects.requireNonNullElse(expense.getAmount(), BigDecimal.ZERO)
+                .multiply(BigDecimal.valueOf(sign));
+        jdbcTemplate.update(EXPENSE_UPSERT_SQL, expense.getExpenseDate().toLocalDate(), expense.getCategory().getId(), amount,
+                expense.isRecurring() ? amount : BigDecimal.ZERO, expense.isRecurring() ? BigDecimal.ZERO : amount, sign);
+    }
+
+    private static long serviceIdOf(Subscription subscription) {
+        return subscription.getService() != null ? subscription.getService().getId() : DailyRevenue.NO_SERVICE;
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        // java.sql.Date does not support toInstant(), go through the epoch millis
+        return date == null ? LocalDate.now() : new Timestamp(date.getTime()).toLocalDateTime().toLocalDate();
+    }
+}
@@ -1,6 +1,7 @@
 package com.mabsplace.mabsplaceback.domain.services;
 
 import com.mabsplace.mabsplaceback.domain.repositories.DigitalGoodsOrderRepository;
+import com.mabsplace.mabsplaceback.utils.TimeWindow;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -24,30 +25,22 @@ public class DigitalGoodsAnalyticsService {
     public Map<String, Object> getOverviewStats() {
         logger.info("Fetching Digital Goods overview stats");
 
-        // Get current month and previous month dates
-        Calendar cal = Calendar.getInstance();
-        cal.set(Calendar.DAY_OF_MONTH, 1);
-        cal.set(Calendar.HOUR_OF_DAY, 0);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND, 0);
-        Date currentMonthStart = cal.getTime();
-
-        cal.add(Calendar.MONTH, -1);
-        Date previousMonthStart = cal.getTime();
+        // Get current month and previous month windows
+        TimeWindow currentMonth = TimeWindow.currentMonth();
+        TimeWindow previousMonth = TimeWindow.previousMonth();
 
         // Calculate stats
         Long totalOrders = orderRepository.countCompletedOrders();
-        Long currentMonthOrders = orderRepository.countCompletedOrdersSince(currentMonthStart);
-        Long previousMonthOrders = orderRepository.countCompletedOrdersSince(previousMonthStart) - currentMonthOrders;
+        Long currentMonthOrders = orderRepository.countCompletedOrdersBetween(currentMonth.startDate(), currentMonth.endDate());
+        Long previousMonthOrders = orderRepository.countCompletedOrdersBetween(previousMonth.startDate(), previousMonth.endDate());
 
         BigDecimal totalRevenue = orderRepository.calculateTotalRevenue();
-        BigDecimal currentMonthRevenue = orderRepository.calculateRevenueSince(currentMonthStart);
-        BigDecimal previousMonthRevenue = orderRepository.calculateRevenueSince(previousMonthStart).subtract(currentMonthRevenue);
+        BigDecimal currentMonthRevenue = orderRepository.calculateRevenueBetween(currentMonth.startDate(), currentMonth.endDate());
+        BigDecimal previousMonthRevenue = orderRepository.calculateRevenueBetween(previousMonth.startDate(), previousMonth.endDate());
 
         BigDecimal totalProfit = orderRepository.calculateTotalProfit();
-        BigDecimal currentMonthProfit = orderRepository.calculateProfitSince(currentMonthStart);
-        BigDecimal previousMonthProfit = orderRepository.calculateProfitSince(previousMonthStart).subtract(currentMonthProfit);
+        BigDecimal currentMonthProfit = orderRepository.calculateProfitBetween(currentMonth.startDate(), currentMonth.endDate());
+        BigDecimal previousMonthProfit = orderRepository.calculateProfitBetween(previousMonth.startDate(), previousMonth.endDate());
 
         BigDecimal averageOrderValue = orderRepository.calculateAverageOrderValue();
         Long uniqueCustomers = orderRepository.countUniqueCustomers();
@@ -79,7 +72,8 @@ public class DigitalGoodsAnalyticsService {
 
     public List<Map<String, Object>> getRevenueTrend() {
         logger.info("Fetching Digital Goods revenue trend");
-        List<Object[]> rawData = orderRepository.getMonthlyRevenueTrend();
+        TimeWindow window = TimeWindow.lastMonths(6);
+        List<Object[]> rawData = orderRepository.getMonthlyRevenueTrend(window.startDate(), window.endDate());
         List<Map<String, Object>> trend = new ArrayList<>();
 
         for (Object[] row : rawData) {
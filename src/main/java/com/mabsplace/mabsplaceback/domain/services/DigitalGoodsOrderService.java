@@ -12,6 +12,7 @@ import com.mabsplace.mabsplaceback.domain.entities.Transaction;
 import com.mabsplace.mabsplaceback.domain.entities.User;
 import com.mabsplace.mabsplaceback.domain.enums.TransactionStatus;
 import com.mabsplace.mabsplaceback.domain.enums.TransactionType;
+import com.mabsplace.mabsplaceback.domain.events.DigitalOrderStatusChangedEvent;
 import com.mabsplace.mabsplaceback.domain.mappers.DigitalGoodsOrderMapper;
 import com.mabsplace.mabsplaceback.domain.repositories.DigitalGoodsOrderRepository;
 import com.mabsplace.mabsplaceback.domain.repositories.DigitalProductRepository;
@@ -20,6 +21,7 @@ import com.mabsplace.mabsplaceback.domain.repositories.UserRepository;
 import com.mabsplace.mabsplaceback.exceptions.ResourceNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -39,6 +41,8 @@ public class DigitalGoodsOrderService {
     private final DigitalGoodsOrderMapper orderMapper;
     private final NotificationService notificationService;
     private final ObjectMapper objectMapper;
+    private final DailyRollupService dailyRollupService;
+    private final ApplicationEventPublisher eventPublisher;
     private static final Logger logger = LoggerFactory.getLogger(DigitalGoodsOrderService.class);
 
     public DigitalGoodsOrderService(DigitalGoodsOrderRepository orderRepository,
@@ -49,7 +53,9 @@ public class DigitalGoodsOrderService {
                                      PriceCalculationService priceCalculationService,
                                      DigitalGoodsOrderMapper orderMapper,
                                      NotificationService notificationService,
-                                     ObjectMapper objectMapper) {
+                                     ObjectMapper objectMapper,
+                                     DailyRollupService dailyRollupService,
+                                     ApplicationEventPublisher eventPublisher) {
         this.orderRepository = orderRepository;
         this.productRepository = productRepository;
         this.userRepository = userRepository;
@@ -59,6 +65,8 @@ public class DigitalGoodsOrderService {
         this.orderMapper = orderMapper;
         this.notificationService = notificationService;
         this.objectMapper = objectMapper;
+        this.dailyRollupService = dailyRollupService;
+        this.eventPublisher = eventPublisher;
     }
 
     public PriceCalculationDto calculateOrderPrice(Long productId) {
@@ -85,10 +93,10 @@ public class DigitalGoodsOrderService {
         // Calculate price (utilise le prix fixe)
         PriceCalculationDto priceCalc = priceCalculationService.calculatePrice(product);
 
-        // Check wallet balance (using user ID, not wallet ID)
-        if (!walletService.checkBalance(user.getId(), priceCalc.getTotalAmount())) {
-            throw new IllegalStateException("Insufficient wallet balance. Required: " + priceCalc.getTotalAmount() + " XAF");
-        }
+        // Debit wallet first: the conditional update checks the balance, and throws InsufficientFundsException
+        // before the order is created. The rest of the order is rolled back with it if a later step fails
+        walletService.debit(user.getWallet().getId(), priceCalc.getTotalAmount());
+        logger.info("Wallet debited for user ID: {}, wallet ID: {}", user.getId(), user.getWallet().getId());
 
         // NOUVEAU: Créer un snapshot du produit
         String productSnapshot = createProductSnapshot(product, priceCalc);
@@ -139,10 +147,6 @@ public class DigitalGoodsOrderService {
         Transaction savedTransaction = transactionRepository.save(transaction);
         logger.info("Transaction created with ID: {} for order ID: {}", savedTransaction.getId(), savedOrder.getId());
 
-        // Debit wallet (using correct wallet ID, not user ID)
-        walletService.debit(user.getWallet().getId(), priceCalc.getTotalAmount());
-        logger.info("Wallet debited for user ID: {}, wallet ID: {}", user.getId(), user.getWallet().getId());
-
         // Link transaction to order
         savedOrder.setTransactionId(savedTransaction.getId());
 
@@ -150,6 +154,8 @@ public class DigitalGoodsOrderService {
         savedOrder.setOrderStatus(DigitalGoodsOrder.OrderStatus.PAID);
         savedOrder.setPaidAt(new Date());
         DigitalGoodsOrder finalOrder = orderRepository.save(savedOrder);
+        dailyRollupService.recordDigitalGoodsOrder(finalOrder);
+        eventPublisher.publishEvent(new DigitalOrderStatusChangedEvent(this, finalOrder));
 
         // Notify admins of new order
         notificationService.notifyAdminsOfNewDigitalGoodsOrder(finalOrder);
@@ -174,6 +180,7 @@ public class DigitalGoodsOrderService {
         order.setDeliveredAt(new Date());
 
         DigitalGoodsOrder updated = orderRepository.save(order);
+        eventPublisher.publishEvent(new DigitalOrderStatusChangedEvent(this, updated));
         logger.info("Order delivered: {}", orderId);
 
         // NOUVEAU: Notifier le client de la livraison
@@ -219,10 +226,13 @@ public class DigitalGoodsOrderService {
             walletService.credit(order.getUser().getWallet().getId(), order.getTotalAmount());
             logger.info("Refunded {} XAF to user ID: {}, wallet ID: {}",
                 order.getTotalAmount(), order.getUser().getId(), order.getUser().getWallet().getId());
+
+            dailyRollupService.reverseDigitalGoodsOrder(order);
         }
 
         order.setOrderStatus(newStatus);
         DigitalGoodsOrder updated = orderRepository.save(order);
+        eventPublisher.publishEvent(new DigitalOrderStatusChangedEvent(this, updated));
 
         // Notify admins of order status change
         notificationService.notifyAdminsOfOrderStatusChange(updated, currentStatus);
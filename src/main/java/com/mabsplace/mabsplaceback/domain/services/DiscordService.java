@@ -26,6 +26,8 @@ public class DiscordService {
     private static final long MIN_REQUEST_INTERVAL_MS = 1200;
     private static final int MAX_RETRIES = 3;
 
+    public static final int MAX_EMBEDS_PER_MESSAGE = 10;
+
     // Track last request time per webhook URL to enforce rate limiting
     private final ConcurrentHashMap<String, Long> lastRequestTime = new ConcurrentHashMap<>();
 
@@ -47,7 +49,7 @@ public class DiscordService {
     /**
      * Send a Discord webhook request with rate limiting and retry logic
      */
-    private void sendWithRateLimitAndRetry(String webhookUrl, Map<String, Object> payload) {
+    private boolean sendWithRateLimitAndRetry(String webhookUrl, Map<String, Object> payload) {
         for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
             try {
                 // Enforce rate limiting
@@ -62,7 +64,7 @@ public class DiscordService {
 
                 // Success - update last request time
                 lastRequestTime.put(webhookUrl, System.currentTimeMillis());
-                return;
+                return true;
 
             } catch (HttpClientErrorException e) {
                 if (e.getStatusCode().value() == 429) {
@@ -80,7 +82,7 @@ public class DiscordService {
                     // Other HTTP error - log and give up
                     logger.error("Discord notification failed with HTTP {}: {}",
                             e.getStatusCode(), e.getMessage());
-                    return;
+                    return false;
                 }
             } catch (Exception e) {
                 // Unexpected error
@@ -96,6 +98,7 @@ public class DiscordService {
                 }
             }
         }
+        return false;
     }
 
     /**
@@ -144,6 +147,16 @@ public class DiscordService {
      * Build a standard Discord embed payload
      */
     private Map<String, Object> buildDiscordPayload(String title, String description, Integer color, String footerText) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("embeds", List.of(buildEmbed(title, description, color, footerText)));
+
+        return payload;
+    }
+
+    /**
+     * Build a standard Discord embed
+     */
+    private Map<String, Object> buildEmbed(String title, String description, Integer color, String footerText) {
         Map<String, Object> embed = new HashMap<>();
         embed.put("title", title);
         embed.put("description", description);
@@ -154,10 +167,58 @@ public class DiscordService {
         footer.put("text", footerText != null ? footerText : "MabsPlace");
         embed.put("footer", footer);
 
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("embeds", List.of(embed));
+        return embed;
+    }
 
-        return payload;
+    public Map<String, Object> subscriptionRenewedEmbed(String username, String serviceName, String newEndDate) {
+        String description = String.format(
+                "**User:** %s\n**Service:** %s\n**New End Date:** %s",
+                username, serviceName, newEndDate
+        );
+        return buildEmbed("✅ Subscription Renewed", description, 5763719, "MabsPlace Subscription Renewals");
+    }
+
+    public Map<String, Object> subscriptionRenewalFailedEmbed(String username, String serviceName, int attemptNumber) {
+        String description = String.format(
+                "**User:** %s\n**Service:** %s\n**Attempt:** %d/4\n**Status:** Will retry in 24 hours",
+                username, serviceName, attemptNumber
+        );
+        return buildEmbed("⚠️ Subscription Renewal Failed", description, 16776960, "MabsPlace Subscription Renewals");
+    }
+
+    public Map<String, Object> subscriptionExpiredEmbed(String username, String serviceName, String accountLogin, String profileName) {
+        String description = String.format(
+                "**User:** %s\n**Service:** %s\n**Account:** %s\n**Profile:** %s\n\n⚠️ **Action Required:** Change account password/PIN",
+                username, serviceName, accountLogin, profileName
+        );
+        return buildEmbed("❌ Subscription Expired", description, 15158332, "MabsPlace Subscription Renewals");
+    }
+
+    public Map<String, Object> subscriptionExpiringEmbed(String username, String serviceName, String expirationDate, String accountLogin, String profileName) {
+        String description = String.format(
+                "**User:** %s\n**Service:** %s\n**Expiration Date:** %s\n**Account:** %s\n**Profile:** %s",
+                username, serviceName, expirationDate, accountLogin, profileName
+        );
+        return buildEmbed("⏰ Subscription Expiring Soon", description, 3447003, "MabsPlace Subscription Renewals");
+    }
+
+    /**
+     * Post up to {@link #MAX_EMBEDS_PER_MESSAGE} embeds to the subscription renewals channel in one message.
+     *
+     * @return false when Discord did not accept the message; true once sent, or when the channel is not configured
+     */
+    public boolean sendSubscriptionRenewalEmbeds(List<Map<String, Object>> embeds) {
+        if (embeds.size() > MAX_EMBEDS_PER_MESSAGE) {
+            throw new IllegalArgumentException("A Discord message holds at most " + MAX_EMBEDS_PER_MESSAGE + " embeds");
+        }
+        if (subscriptionRenewalsWebhook == null || subscriptionRenewalsWebhook.isEmpty()) {
+            logger.warn("Discord webhook URL not configured for subscription renewals, dropping {} notifications", embeds.size());
+            return true;
+        }
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("embeds", embeds);
+        return sendWithRateLimitAndRetry(subscriptionRenewalsWebhook, payload);
     }
 
     @Async
@@ -206,12 +267,8 @@ public class DiscordService {
 
         logger.info("Sending Discord notification for subscription renewal: {} - {}", username, serviceName);
 
-        String description = String.format(
-                "**User:** %s\n**Service:** %s\n**New End Date:** %s",
-                username, serviceName, newEndDate
-        );
-
-        Map<String, Object> payload = buildDiscordPayload("✅ Subscription Renewed", description, 5763719, "MabsPlace Subscription Renewals");
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("embeds", List.of(subscriptionRenewedEmbed(username, serviceName, newEndDate)));
         sendWithRateLimitAndRetry(subscriptionRenewalsWebhook, payload);
 
         logger.info("Discord notification sent successfully for subscription renewal");
@@ -226,12 +283,8 @@ public class DiscordService {
 
         logger.info("Sending Discord notification for failed renewal: {} - {}", username, serviceName);
 
-        String description = String.format(
-                "**User:** %s\n**Service:** %s\n**Attempt:** %d/4\n**Status:** Will retry in 24 hours",
-                username, serviceName, attemptNumber
-        );
-
-        Map<String, Object> payload = buildDiscordPayload("⚠️ Subscription Renewal Failed", description, 16776960, "MabsPlace Subscription Renewals");
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("embeds", List.of(subscriptionRenewalFailedEmbed(username, serviceName, attemptNumber)));
         sendWithRateLimitAndRetry(subscriptionRenewalsWebhook, payload);
 
         logger.info("Discord notification sent successfully for failed renewal");
@@ -246,12 +299,8 @@ public class DiscordService {
 
         logger.info("Sending Discord notification for expired subscription: {} - {}", username, serviceName);
 
-        String description = String.format(
-                "**User:** %s\n**Service:** %s\n**Account:** %s\n**Profile:** %s\n\n⚠️ **Action Required:** Change account password/PIN",
-                username, serviceName, accountLogin, profileName
-        );
-
-        Map<String, Object> payload = buildDiscordPayload("❌ Subscription Expired", description, 15158332, "MabsPlace Subscription Renewals");
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("embeds", List.of(subscriptionExpiredEmbed(username, serviceName, accountLogin, profileName)));
         sendWithRateLimitAndRetry(subscriptionRenewalsWebhook, payload);
 
         logger.info("Discord notification sent successfully for expired subscription");
@@ -266,12 +315,8 @@ public class DiscordService {
 
         logger.info("Sending Discord notification for expiring subscription: {} - {}", username, serviceName);
 
-        String description = String.format(
-                "**User:** %s\n**Service:** %s\n**Expiration Date:** %s\n**Account:** %s\n**Profile:** %s",
-                username, serviceName, expirationDate, accountLogin, profileName
-        );
-
-        Map<String, Object> payload = buildDiscordPayload("⏰ Subscription Expiring Soon", description, 3447003, "MabsPlace Subscription Renewals");
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("embeds", List.of(subscriptionExpiringEmbed(username, serviceName, expirationDate, accountLogin, profileName)));
         sendWithRateLimitAndRetry(subscriptionRenewalsWebhook, payload);
 
         logger.info("Discord notification sent successfully for expiring subscription");
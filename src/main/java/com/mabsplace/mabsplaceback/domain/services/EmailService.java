@@ -25,13 +25,15 @@ public class EmailService {
     private final ServiceAccountRepository serviceAccountRepository;
     private final DiscordService discordService;
     private final NotificationOrchestrator notificationOrchestrator;
+    private final JobLockService jobLockService;
     private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
 
-    public EmailService(JavaMailSender mailSender, ServiceAccountRepository serviceAccountRepository, DiscordService discordService, NotificationOrchestrator notificationOrchestrator) {
+    public EmailService(JavaMailSender mailSender, ServiceAccountRepository serviceAccountRepository, DiscordService discordService, NotificationOrchestrator notificationOrchestrator, JobLockService jobLockService) {
         this.mailSender = mailSender;
         this.serviceAccountRepository = serviceAccountRepository;
         this.discordService = discordService;
         this.notificationOrchestrator = notificationOrchestrator;
+        this.jobLockService = jobLockService;
     }
 
     @Async
@@ -256,7 +258,11 @@ public class EmailService {
     }
 
     @Scheduled(cron = "0 20 0 * * ?") // Runs every day at 00:20 (staggered to reduce Discord rate limiting)
-    public void notifyUpcomingPayments() throws MessagingException {
+    public void scheduledNotifyUpcomingPayments() {
+        jobLockService.runOnce("notify-upcoming-payments", this::notifyUpcomingPayments);
+    }
+
+    public void notifyUpcomingPayments() {
         logger.info("Scheduled task started: Checking for upcoming payments.");
 
         Date today = new Date();
@@ -5,6 +5,7 @@ import com.mabsplace.mabsplaceback.domain.dtos.expense.ExpenseResponseDto;
 import com.mabsplace.mabsplaceback.domain.entities.Expense;
 import com.mabsplace.mabsplaceback.domain.entities.User;
 import com.mabsplace.mabsplaceback.domain.enums.RecurrencePeriod;
+import com.mabsplace.mabsplaceback.domain.events.ExpenseRecordedEvent;
 import com.mabsplace.mabsplaceback.domain.mappers.ExpenseMapper;
 import com.mabsplace.mabsplaceback.domain.repositories.CurrencyRepository;
 import com.mabsplace.mabsplaceback.domain.repositories.ExpenseCategoryRepository;
@@ -15,6 +16,7 @@ import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
@@ -34,6 +36,9 @@ public class ExpenseService {
     private final UserRepository userRepository;
     private final ExpenseCategoryRepository categoryRepository;
     private final CurrencyRepository currencyRepository;
+    private final DailyRollupService dailyRollupService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JobLockService jobLockService;
 
     public List<ExpenseResponseDto> getAllExpenses() {
         logger.info("Retrieving all expenses");
@@ -84,6 +89,8 @@ public class ExpenseService {
         }
 
         Expense savedExpense = expenseRepository.save(expense);
+        dailyRollupService.recordExpense(savedExpense);
+        eventPublisher.publishEvent(new ExpenseRecordedEvent(this, savedExpense));
         logger.info("Expense created successfully: {}", expenseMapper.toResponseDTO(savedExpense));
         return expenseMapper.toResponseDTO(savedExpense);
     }
@@ -98,19 +105,25 @@ public class ExpenseService {
 
         verifyRelatedEntities(requestDTO);
 
+        dailyRollupService.reverseExpense(expense);
         expenseMapper.updateEntityFromDTO(requestDTO, expense);
         Expense updatedExpense = expenseRepository.save(expense);
+        dailyRollupService.recordExpense(updatedExpense);
+        eventPublisher.publishEvent(new ExpenseRecordedEvent(this, updatedExpense));
         logger.info("Expense updated successfully: {}", expenseMapper.toResponseDTO(updatedExpense));
         return expenseMapper.toResponseDTO(updatedExpense);
     }
 
     public void deleteExpense(Long id) {
         logger.info("Deleting expense with ID: {}", id);
-        if (!expenseRepository.existsById(id)) {
-            logger.error("Expense not found with ID: {}", id);
-            throw new EntityNotFoundException("Expense not found with id: " + id);
-        }
-        expenseRepository.deleteById(id);
+        Expense expense = expenseRepository.findById(id)
+                .orElseThrow(() -> {
+                    logger.error("Expense not found with ID: {}", id);
+                    return new EntityNotFoundException("Expense not found with id: " + id);
+                });
+        dailyRollupService.reverseExpense(expense);
+        expenseRepository.delete(expense);
+        eventPublisher.publishEvent(new ExpenseRecordedEvent(this, expense));
         logger.info("Expense deleted successfully with ID: {}", id);
     }
 
@@ -174,6 +187,10 @@ public class ExpenseService {
     }
 
     @Scheduled(cron = "0 0 0 * * *") // Runs daily at midnight
+    public void scheduledProcessRecurringExpenses() {
+        jobLockService.runOnce("process-recurring-expenses", this::processRecurringExpenses);
+    }
+
     public void processRecurringExpenses() {
         logger.info("Processing recurring expenses");
         List<Expense> recurringExpenses = expenseRepository
@@ -201,6 +218,8 @@ public class ExpenseService {
         newExpense.setRecurring(false); // This is an instance, not the template
 
         expenseRepository.save(newExpense);
+        dailyRollupService.recordExpense(newExpense);
+        eventPublisher.publishEvent(new ExpenseRecordedEvent(this, newExpense));
         logger.info("Created recurring expense instance from template ID: {}", originalExpense.getId());
     }
 
@@ -0,0 +1,303 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Client of the Expo push service.
+ * Messages go out gzip-compressed in requests of at most 100, Expo's limit, a few requests at a time: when every
+ * thread is busy the sender runs the next request itself, which holds it back instead of queueing without end.
+ * Each message Expo accepts leaves a ticket in push_tickets, and a scheduled job asks for the receipts of the
+ * tickets once Expo has had time to deliver them. A token that Expo reports as DeviceNotRegistered, in a ticket
+ * or in a receipt, is removed from its user, so that later sends skip it.
+ */
+@Service
+public class ExpoPushClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpoPushClient.class);
+
+    static final int MAX_MESSAGES_PER_REQUEST = 100;
+    static final int MAX_RECEIPTS_PER_REQUEST = 1000;
+    private static final String DEVICE_NOT_REGISTERED = "DeviceNotRegistered";
+
+    /**
+     * What became of the messages of a send: accepted by Expo, or failed, the unregistered tokens included.
+     */
+    public record Result(int sent, int accepted, int failed, int unregistered) {
+
+        static final Result NONE = new Result(0, 0, 0, 0);
+
+        Result plus(Result other) {
+            return new Result(sent + other.sent, accepted + other.accepted, failed + other.failed,
+                    unregistered + other.unregistered);
+        }
+    }
+
+    private static final String INSERT_TICKET_SQL =
+            "INSERT INTO push_tickets (ticket_id, push_token, created_at) VALUES (?, ?, ?)";
+
+    // Keyset on the ticket id, so that tickets still without a receipt are passed over once per run
+    private static final String DUE_TICKETS_SQL = """
+            SELECT ticket_id, push_token FROM push_tickets
+            WHERE created_at <= ? AND ticket_id > ?
+            ORDER BY ticket_id
+            LIMIT ?
+            """;
+
+    private static final String DELETE_TICKETS_SQL = "DELETE FROM push_tickets WHERE ticket_id IN (:ticketIds)";
+
+    private static final String EXPIRE_TICKETS_SQL = "DELETE FROM push_tickets WHERE created_at <= ? LIMIT 1000";
+
+    private static final String UNREGISTER_SQL = "UPDATE users SET push_token = NULL WHERE push_token IN (:tokens)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final JobLockService jobLockService;
+    private final MeterRegistry meterRegistry;
+    private final RestTemplate restTemplate;
+    private final String sendUrl;
+    private final String receiptsUrl;
+    private final String accessToken;
+    private final Duration receiptDelay;
+    private final Duration ticketTtl;
+    private final ThreadPoolExecutor executor;
+
+    public ExpoPushClient(JdbcTemplate jdbcTemplate,
+                          ObjectMapper objectMapper,
+                          JobLockService jobLockService,
+                          MeterRegistry meterRegistry,
+                          @Value("${expo.push.api.url:https://exp.host/--/api/v2/push/send}") String sendUrl,
+                          @Value("${expo.push.api.receipts-url:https://exp.host/--/api/v2/push/getReceipts}") String receiptsUrl,
+                          @Value("${expo.push.access-token:}") String accessToken,
+                          @Value("${expo.push.concurrency:4}") int concurrency,
+                          @Value("${expo.push.connect-timeout:PT5S}") Duration connectTimeout,
+                          @Value("${expo.push.read-timeout:PT30S}") Duration readTimeout,
+                          @Value("${expo.push.receipt-delay:PT15M}") Duration receiptDelay,
+                          @Value("${expo.push.ticket-ttl:PT24H}") Duration ticketTtl) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.objectMapper = objectMapper;
+        this.jobLockService = jobLockService;
+        this.meterRegistry = meterRegistry;
+        this.sendUrl = sendUrl;
+        this.receiptsUrl = receiptsUrl;
+        this.accessToken = accessToken;
+        this.receiptDelay = receiptDelay;
+        this.ticketTtl = ticketTtl;
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .build());
+        requestFactory.setReadTimeout(readTimeout);
+        this.restTemplate = new RestTemplate(requestFactory);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(concurrency),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "expo-push-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        new ExecutorServiceMetrics(executor, "expo-push", List.of()).bindTo(meterRegistry);
+    }
+
+    /**
+     * Sends the messages, each a map of the fields of an Expo push message with the token in "to", and waits
+     * until every request has been answered. A request that fails counts its messages as failed without
+     * stopping the others.
+     */
+    public Result send(List<Map<String, Object>> messages) {
+        List<CompletableFuture<Result>> requests = new ArrayList<>();
+        for (int from = 0; from < messages.size(); from += MAX_MESSAGES_PER_REQUEST) {
+            List<Map<String, Object>> chunk = messages.subList(from, Math.min(from + MAX_MESSAGES_PER_REQUEST, messages.size()));
+            requests.add(CompletableFuture.supplyAsync(() -> sendChunk(chunk), executor));
+        }
+        Result result = Result.NONE;
+        for (CompletableFuture<Result> request : requests) {
+            result = result.plus(request.join());
+        }
+        logger.info("Sent {} push messages to Expo in {} requests: {} accepted, {} failed, {} tokens unregistered",
+                result.sent(), requests.size(), result.accepted(), result.failed(), result.unregistered());
+        return result;
+    }
+
+    private Result sendChunk(List<Map<String, Object>> chunk) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            JsonNode tickets = post(sendUrl, chunk).path("data");
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            List<Object[]> accepted = new ArrayList<>();
+            List<String> unregistered = new ArrayList<>();
+            for (int i = 0; i < chunk.size(); i++) {
+                // Tickets come in the order of the messages
+                JsonNode ticket = tickets.path(i);
+                String token = String.valueOf(chunk.get(i).get("to"));
+                if ("ok".equals(ticket.path("status").asText())) {
+                    accepted.add(new Object[]{ticket.path("id").asText(), token, now});
+                } else if (DEVICE_NOT_REGISTERED.equals(ticket.path("details").path("error").asText())) {
+                    unregistered.add(token);
+                } else {
+                    logger.warn("Expo refused a push message to {}: {}", token, ticket.path("message").asText("no ticket"));
+                }
+            }
+            if (!accepted.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_TICKET_SQL, accepted);
+            }
+            unregister(unregistered);
+            outcome = "success";
+            return new Result(chunk.size(), accepted.size(), chunk.size() - accepted.size(), unregistered.size());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to send {} push messages to Expo: {}", chunk.size(), e.getMessage());
+            return new Result(chunk.size(), 0, chunk.size(), 0);
+        } finally {
+            Timer.builder("expo.push.requests")
+                    .description("Requests sending push messages to Expo, by outcome")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${expo.push.receipts.poll-interval-ms:300000}")
+    public void scheduledPollReceipts() {
+        jobLockService.runOnce("poll-expo-push-receipts", this::pollReceipts);
+    }
+
+    /**
+     * Reads the receipts of the tickets older than the receipt delay, a thousand per request, unregisters the
+     * tokens they report as DeviceNotRegistered and forgets their tickets. Tickets Expo has no receipt for yet
+     * are asked for again on the next run, until the ticket TTL.
+     *
+     * @return the number of receipts read
+     */
+    public int pollReceipts() {
+        Timestamp dueBefore = Timestamp.valueOf(LocalDateTime.now().minus(receiptDelay));
+        int read = 0;
+        String afterTicketId = "";
+        List<Map.Entry<String, String>> tickets;
+        do {
+            tickets = jdbcTemplate.query(DUE_TICKETS_SQL, (rs, rowNum) -> Map.entry(rs.getString("ticket_id"),
+                    rs.getString("push_token")), dueBefore, afterTicketId, MAX_RECEIPTS_PER_REQUEST);
+            if (tickets.isEmpty()) {
+                break;
+            }
+            afterTicketId = tickets.get(tickets.size() - 1).getKey();
+            try {
+                read += readReceipts(tickets);
+            } catch (IOException | RuntimeException e) {
+                // The tickets are kept for the next run
+                logger.error("Failed to read {} push receipts from Expo: {}", tickets.size(), e.getMessage());
+                break;
+            }
+        } while (tickets.size() == MAX_RECEIPTS_PER_REQUEST);
+
+        Timestamp expiredBefore = Timestamp.valueOf(LocalDateTime.now().minus(ticketTtl));
+        int expired = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(EXPIRE_TICKETS_SQL, expiredBefore);
+            expired += deleted;
+        } while (deleted > 0);
+        logger.info("Read {} push receipts, dropped {} tickets Expo had no receipt for", read, expired);
+        return read;
+    }
+
+    private int readReceipts(List<Map.Entry<String, String>> tickets) throws IOException {
+        Map<String, String> tokenByTicket = new LinkedHashMap<>();
+        tickets.forEach(ticket -> tokenByTicket.put(ticket.getKey(), ticket.getValue()));
+        JsonNode receipts = post(receiptsUrl, Map.of("ids", tokenByTicket.keySet())).path("data");
+
+        List<String> read = new ArrayList<>();
+        List<String> unregistered = new ArrayList<>();
+        for (Map.Entry<String, String> ticket : tokenByTicket.entrySet()) {
+            JsonNode receipt = receipts.path(ticket.getKey());
+            if (receipt.isMissingNode()) {
+                continue;
+            }
+            read.add(ticket.getKey());
+            if (DEVICE_NOT_REGISTERED.equals(receipt.path("details").path("error").asText())) {
+                unregistered.add(ticket.getValue());
+            } else if (!"ok".equals(receipt.path("status").asText())) {
+                logger.warn("Expo could not deliver a push message to {}: {}", ticket.getValue(), receipt.path("message").asText());
+            }
+        }
+        unregister(unregistered);
+        if (!read.isEmpty()) {
+            namedParameterJdbcTemplate.update(DELETE_TICKETS_SQL, new MapSqlParameterSource("ticketIds", read));
+        }
+        return read.size();
+    }
+
+    private void unregister(List<String> tokens) {
+        if (tokens.isEmpty()) {
+            return;
+        }
+        int users = namedParameterJdbcTemplate.update(UNREGISTER_SQL, new MapSqlParameterSource("tokens", tokens));
+        logger.info("Removed {} push tokens Expo reports as not registered, from {} users", tokens.size(), users);
+        Counter.builder("expo.push.unregistered")
+                .description("Push tokens removed because Expo reported the device as not registered")
+                .register(meterRegistry)
+                .increment(tokens.size());
+    }
+
+    private JsonNode post(String url, Object body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(objectMapper.writeValueAsBytes(body));
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        if (!accessToken.isBlank()) {
+            headers.setBearerAuth(accessToken);
+        }
+        String response = restTemplate.postForObject(url, new HttpEntity<>(compressed.toByteArray(), headers), String.class);
+        return objectMapper.readTree(response != null ? response : "{}");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
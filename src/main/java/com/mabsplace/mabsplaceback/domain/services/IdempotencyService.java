@@ -0,0 +1,282 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.mabsplace.mabsplaceback.domain.enums.IdempotencyStatus;
+import com.mabsplace.mabsplaceback.exceptions.IdempotencyKeyException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Makes POST endpoints safe to retry with an Idempotency-Key header, using the idempotency_keys table.
+ * The first attempt with a key claims it and runs; its response is stored and replayed to every retry until
+ * the key expires, without running anything again. A retry arriving while the first attempt still runs waits
+ * for its response. An attempt that fails gives the key back, so that the client can try again. One that succeeds
+ * keeps it even if its response cannot be stored, so that a retry never runs it twice.
+ * Requests without the header run as before.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 128;
+    private static final Duration FIRST_PAUSE = Duration.ofMillis(50);
+    private static final Duration MAX_PAUSE = Duration.ofMillis(500);
+
+    private record Stored(String requestHash, IdempotencyStatus status, Integer responseStatus, String responseBody) {
+    }
+
+    private static final String CLAIM_SQL = """
+            INSERT INTO idempotency_keys (scope, idempotency_key, attempt_id, request_hash, status, locked_until,
+                                          created_at, expires_at)
+            VALUES (?, ?, ?, ?, 'IN_PROGRESS', ?, ?, ?)
+            """;
+
+    // An expired key, or one whose attempt died with its node, is claimed again
+    private static final String TAKE_OVER_SQL = """
+            UPDATE idempotency_keys
+            SET attempt_id = ?, request_hash = ?, status = 'IN_PROGRESS', response_status = NULL, response_body = NULL,
+                locked_until = ?, created_at = ?, expires_at = ?
+            WHERE scope = ? AND idempotency_key = ?
+            AND (expires_at <= ? OR (status = 'IN_PROGRESS' AND locked_until <= ?))
+            """;
+
+    private static final String COMPLETE_SQL = """
+            UPDATE idempotency_keys
+            SET status = 'COMPLETED', response_status = ?, response_body = ?, locked_until = NULL
+            WHERE scope = ? AND idempotency_key = ? AND attempt_id = ?
+            """;
+
+    private static final String RELEASE_SQL =
+            "DELETE FROM idempotency_keys WHERE scope = ? AND idempotency_key = ? AND attempt_id = ?";
+
+    private static final String FIND_SQL = """
+            SELECT request_hash, status, response_status, response_body FROM idempotency_keys
+            WHERE scope = ? AND idempotency_key = ? AND expires_at > ?
+            """;
+
+    private static final String PURGE_SQL = "DELETE FROM idempotency_keys WHERE expires_at <= ? LIMIT 1000";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final JobLockService jobLockService;
+    private final Duration ttl;
+    private final Duration lease;
+    private final Duration wait;
+
+    public IdempotencyService(JdbcTemplate jdbcTemplate,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              JobLockService jobLockService,
+                              @Value("${app.idempotency.ttl:P1D}") Duration ttl,
+                              @Value("${app.idempotency.lease:PT2M}") Duration lease,
+                              @Value("${app.idempotency.wait:PT30S}") Duration wait) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.jobLockService = jobLockService;
+        this.ttl = ttl;
+        this.lease = lease;
+        this.wait = wait;
+    }
+
+    /**
+     * Runs the action once per key, replaying its response to retries.
+     *
+     * @param operation    names the endpoint, so that a key is only matched against requests to the same one
+     * @param key          the Idempotency-Key header, or null to run the action without it
+     * @param request      the request body, which retries with the key must repeat
+     * @param responseType the type of the response body, to read a stored response back
+     * @throws IdempotencyKeyException if the key is malformed (400), was used for another request (422), or
+     *                                 is still held by an attempt that did not finish within the wait (409)
+     */
+    public <T> ResponseEntity<T> execute(String operation, String key, Object request, Class<T> responseType,
+                                         Supplier<ResponseEntity<T>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IdempotencyKeyException(HttpStatus.BAD_REQUEST,
+                    HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+        String scope = operation + ":" + currentUser();
+        String requestHash = hash(request);
+        long deadline = System.nanoTime() + wait.toNanos();
+        Duration pause = FIRST_PAUSE;
+        while (true) {
+            String attemptId = claim(scope, key, requestHash);
+            if (attemptId != null) {
+                count(operation, "executed");
+                return runClaimed(scope, key, attemptId, action);
+            }
+            Stored stored = find(scope, key);
+            if (stored == null) {
+                // Given back or expired since the claim failed
+                continue;
+            }
+            if (!stored.requestHash().equals(requestHash)) {
+                count(operation, "mismatch");
+                throw new IdempotencyKeyException(HttpStatus.UNPROCESSABLE_ENTITY,
+                        HEADER + " " + key + " was already used for a different request");
+            }
+            if (stored.status() == IdempotencyStatus.COMPLETED) {
+                count(operation, "replayed");
+                logger.info("Replaying the response to {} for {} {}", operation, HEADER, key);
+                return replay(stored, responseType);
+            }
+            if (System.nanoTime() > deadline) {
+                count(operation, "in_progress");
+                throw new IdempotencyKeyException(HttpStatus.CONFLICT,
+                        "A request with " + HEADER + " " + key + " is still being processed, retry later");
+            }
+            sleep(pause);
+            pause = pause.multipliedBy(2);
+            if (pause.compareTo(MAX_PAUSE) > 0) {
+                pause = MAX_PAUSE;
+            }
+        }
+    }
+
+    /**
+     * @return the attempt id if the key was claimed, or null if another attempt holds it
+     */
+    private String claim(String scope, String key, String requestHash) {
+        String attemptId = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp createdAt = Timestamp.valueOf(now);
+        Timestamp lockedUntil = Timestamp.valueOf(now.plus(lease));
+        Timestamp expiresAt = Timestamp.valueOf(now.plus(ttl));
+        try {
+            jdbcTemplate.update(CLAIM_SQL, scope, key, attemptId, requestHash, lockedUntil, createdAt, expiresAt);
+            return attemptId;
+        } catch (DuplicateKeyException e) {
+            int taken = jdbcTemplate.update(TAKE_OVER_SQL, attemptId, requestHash, lockedUntil, createdAt, expiresAt,
+                    scope, key, createdAt, createdAt);
+            return taken == 1 ? attemptId : null;
+        }
+    }
+
+    private <T> ResponseEntity<T> runClaimed(String scope, String key, String attemptId,
+                                             Supplier<ResponseEntity<T>> action) {
+        ResponseEntity<T> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException | Error e) {
+            jdbcTemplate.update(RELEASE_SQL, scope, key, attemptId);
+            throw e;
+        }
+        String body = null;
+        try {
+            body = response.getBody() != null ? objectMapper.writeValueAsString(response.getBody()) : null;
+        } catch (JsonProcessingException e) {
+            // Retries get the status code alone
+            logger.error("Could not write the response body for {} {}: {}", HEADER, key, e.getMessage());
+        }
+        try {
+            if (jdbcTemplate.update(COMPLETE_SQL, response.getStatusCode().value(), body, scope, key, attemptId) == 0) {
+                logger.warn("{} {} was claimed again while its first attempt ran", HEADER, key);
+            }
+        } catch (RuntimeException e) {
+            // The action ran: the key stays claimed until its lease runs out, and retries until then get a 409
+            logger.error("Could not store the response for {} {}: {}", HEADER, key, e.getMessage());
+        }
+        return response;
+    }
+
+    private Stored find(String scope, String key) {
+        List<Stored> stored = jdbcTemplate.query(FIND_SQL, (rs, rowNum) -> new Stored(
+                rs.getString("request_hash"),
+                IdempotencyStatus.valueOf(rs.getString("status")),
+                (Integer) rs.getObject("response_status"),
+                rs.getString("response_body")), scope, key, Timestamp.valueOf(LocalDateTime.now()));
+        return stored.isEmpty() ? null : stored.get(0);
+    }
+
+    private <T> ResponseEntity<T> replay(Stored stored, Class<T> responseType) {
+        try {
+            T body = stored.responseBody() != null ? objectMapper.readValue(stored.responseBody(), responseType) : null;
+            return ResponseEntity.status(stored.responseStatus())
+                    .header(REPLAYED_HEADER, "true")
+                    .body(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read the stored response as " + responseType.getSimpleName(), e);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] json = request != null ? objectMapper.writeValueAsBytes(request) : "null".getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Cannot hash the request", e);
+        }
+    }
+
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.isAuthenticated() ? authentication.getName() : "anonymous";
+    }
+
+    private void count(String operation, String outcome) {
+        Counter.builder("idempotency.requests")
+                .description("Requests sent with an Idempotency-Key, by outcome")
+                .tags("operation", operation, "outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static void sleep(Duration pause) {
+        try {
+            Thread.sleep(pause.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyException(HttpStatus.CONFLICT, "Interrupted while waiting for the first attempt");
+        }
+    }
+
+    @Scheduled(cron = "${app.idempotency.purge-cron:0 30 * * * *}")
+    public void scheduledPurgeExpired() {
+        jobLockService.runOnce("purge-idempotency-keys", this::purgeExpired);
+    }
+
+    /**
+     * Deletes expired keys, a thousand rows per statement.
+     */
+    public void purgeExpired() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now());
+        int purged = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(PURGE_SQL, cutoff);
+            purged += deleted;
+        } while (deleted > 0);
+        logger.info("Purged {} expired idempotency keys", purged);
+    }
+}
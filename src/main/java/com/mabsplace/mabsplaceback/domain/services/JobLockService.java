@@ -0,0 +1,253 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Makes each replica's scheduled jobs run once across the cluster, using leases in the job_locks table.
+ * A node runs a job only if it gets the job's lease, which it extends while the job runs and keeps for at
+ * least the minimum hold after it finishes, so that nodes whose clocks or schedulers fire a little later do not
+ * run it again. A node that dies loses its leases when they run out.
+ * Sharded jobs split their work set by id hash into a fixed number of shards, each with its own lease: every
+ * node takes the free shards, starting from a different one, until none is left, so the work spreads over the
+ * live nodes and a shard left by a dead node is picked up by the next run.
+ */
+@Service
+public class JobLockService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobLockService.class);
+
+    /**
+     * One shard of a job: the items whose id modulo {@code count} is {@code index}.
+     *
+     * @param name the shard's lock name, also usable as its checkpoint name
+     */
+    public record Shard(int index, int count, String name) {
+    }
+
+    private record Lease(String name, LocalDateTime lockedAt, AtomicBoolean released) {
+    }
+
+    private static final String TAKE_EXPIRED_SQL = """
+            UPDATE job_locks SET locked_by = ?, locked_at = ?, lock_until = ?
+            WHERE name = ? AND lock_until <= ?
+            """;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO job_locks (name, locked_by, locked_at, lock_until) VALUES (?, ?, ?, ?)";
+
+    // A lease is identified by its holder and when it was taken: the same node may take the lock again later
+    private static final String EXTEND_SQL =
+            "UPDATE job_locks SET lock_until = ? WHERE name = ? AND locked_by = ? AND locked_at = ?";
+
+    private static final String HOLDER_SQL = "SELECT locked_by, lock_until FROM job_locks WHERE name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate lockTransaction;
+    private final MeterRegistry meterRegistry;
+    private final String nodeId;
+    private final Duration lease;
+    private final Duration minHold;
+    private final ScheduledExecutorService keepAlive;
+
+    public JobLockService(JdbcTemplate jdbcTemplate,
+                          PlatformTransactionManager transactionManager,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.scheduler.node-id:}") String nodeId,
+                          @Value("${app.scheduler.lock.lease:PT5M}") Duration lease,
+                          @Value("${app.scheduler.lock.min-hold:PT2M}") Duration minHold) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Lock changes commit at once, even when the job is started from a transactional method
+        this.lockTransaction = new TransactionTemplate(transactionManager);
+        this.lockTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.meterRegistry = meterRegistry;
+        this.nodeId = nodeId.isBlank() ? defaultNodeId() : nodeId;
+        this.lease = lease;
+        this.minHold = minHold;
+        this.keepAlive = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "job-lock-keep-alive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Scheduled jobs of this node are locked as {}", this.nodeId);
+    }
+
+    /**
+     * Runs the task if no other node is running or has just run the job.
+     *
+     * @return whether the task ran here
+     */
+    public boolean runOnce(String job, Runnable task) {
+        return runLocked(job, job, () -> {
+            task.run();
+            return Boolean.TRUE;
+        }) != null;
+    }
+
+    /**
+     * Runs the task for each shard of the job that no other node is running or has just run.
+     *
+     * @return the results of the shards run here
+     */
+    public <T> List<T> runSharded(String job, int shards, Function<Shard, T> task) {
+        List<T> results = new ArrayList<>();
+        // Nodes start from different shards so that they do not all queue on the first one
+        int first = Math.floorMod(nodeId.hashCode(), shards);
+        for (int i = 0; i < shards; i++) {
+            int index = (first + i) % shards;
+            Shard shard = new Shard(index, shards, job + "#" + index + "/" + shards);
+            T result = runLocked(job, shard.name(), () -> task.apply(shard));
+            if (result != null) {
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return the task's result, or null if the lock was held elsewhere
+     */
+    private <T> T runLocked(String job, String name, Supplier<T> task) {
+        long start = System.nanoTime();
+        Lease held = tryAcquire(name);
+        Timer.builder("scheduler.lock.acquire")
+                .description("Time to try to take a job's lock, by outcome")
+                .tags("job", job, "outcome", held != null ? "acquired" : "busy")
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (held == null) {
+            logBusy(name);
+            return null;
+        }
+
+        logger.info("Running {} on {}", name, nodeId);
+        long period = Math.max(lease.toMillis() / 3, 1);
+        ScheduledFuture<?> extension = keepAlive.scheduleAtFixedRate(() -> extend(job, held), period, period,
+                TimeUnit.MILLISECONDS);
+        long heldFrom = System.nanoTime();
+        try {
+            return task.get();
+        } finally {
+            extension.cancel(false);
+            release(held);
+            Timer.builder("scheduler.lock.held")
+                    .description("Time a job's lock was held while it ran")
+                    .tag("job", job)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - heldFrom, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Lease tryAcquire(String name) {
+        // Millisecond precision, so that the lease can be matched on locked_at whatever the column keeps
+        LocalDateTime exact = LocalDateTime.now();
+        LocalDateTime now = exact.truncatedTo(ChronoUnit.MILLIS);
+        Timestamp lockedAt = Timestamp.valueOf(now);
+        Timestamp lockUntil = Timestamp.valueOf(now.plus(lease));
+        if (update(TAKE_EXPIRED_SQL, nodeId, lockedAt, lockUntil, name, Timestamp.valueOf(exact)) == 1) {
+            return new Lease(name, now, new AtomicBoolean());
+        }
+        try {
+            update(INSERT_SQL, name, nodeId, lockedAt, lockUntil);
+            return new Lease(name, now, new AtomicBoolean());
+        } catch (DuplicateKeyException e) {
+            return null;
+        }
+    }
+
+    // Synchronized with release, so that an extension running late cannot push back a released lease
+    private void extend(String job, Lease held) {
+        synchronized (held) {
+            if (!held.released().get()) {
+                extendHeld(job, held);
+            }
+        }
+    }
+
+    private void extendHeld(String job, Lease held) {
+        try {
+            LocalDateTime lockUntil = LocalDateTime.now().plus(lease);
+            if (update(EXTEND_SQL, Timestamp.valueOf(lockUntil), held.name(), nodeId,
+                    Timestamp.valueOf(held.lockedAt())) == 0) {
+                // Another node took the lock after the lease ran out: the job may now run twice
+                logger.error("Lost the lock on {} while running it", held.name());
+                Counter.builder("scheduler.lock.lost")
+                        .description("Leases that ran out while their job was still running")
+                        .tag("job", job)
+                        .register(meterRegistry)
+                        .increment();
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not extend the lock on {}: {}", held.name(), e.getMessage());
+        }
+    }
+
+    private void release(Lease held) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime heldUntil = held.lockedAt().plus(minHold);
+        LocalDateTime lockUntil = heldUntil.isAfter(now) ? heldUntil : now;
+        synchronized (held) {
+            held.released().set(true);
+            try {
+                update(EXTEND_SQL, Timestamp.valueOf(lockUntil), held.name(), nodeId,
+                        Timestamp.valueOf(held.lockedAt()));
+            } catch (RuntimeException e) {
+                // The lease runs out on its own
+                logger.warn("Could not release the lock on {}: {}", held.name(), e.getMessage());
+            }
+        }
+    }
+
+    private int update(String sql, Object... args) {
+        return lockTransaction.execute(status -> jdbcTemplate.update(sql, args));
+    }
+
+    private void logBusy(String name) {
+        jdbcTemplate.query(HOLDER_SQL, rs -> {
+            logger.info("Skipping {}: locked by {} until {}", name, rs.getString("locked_by"),
+                    rs.getTimestamp("lock_until").toLocalDateTime());
+        }, name);
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        keepAlive.shutdownNow();
+    }
+}
@@ -0,0 +1,294 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mabsplace.mabsplaceback.domain.dtos.onesignal.OneSignalEmailRequest;
+import com.mabsplace.mabsplaceback.domain.dtos.onesignal.OneSignalPushRequest;
+import com.mabsplace.mabsplaceback.domain.dtos.onesignal.OneSignalSMSRequest;
+import com.mabsplace.mabsplaceback.domain.enums.OutboxChannel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Sends the messages of the notification outbox.
+ * Each run claims due messages in batches, groups them by channel and sends each group in bulk: Discord embeds
+ * are packed into as few webhook messages as possible, and OneSignal messages that differ only by recipient are
+ * merged into one request, the remaining requests being sent concurrently. Failed messages are retried with
+ * exponential backoff until they reach the maximum number of attempts.
+ */
+@Service
+public class NotificationOutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationOutboxDispatcher.class);
+
+    private static final TypeReference<Map<String, Object>> EMBED = new TypeReference<>() {
+    };
+
+    private final NotificationOutboxService outbox;
+    private final OneSignalService oneSignalService;
+    private final DiscordService discordService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final int oneSignalConcurrency;
+    private final Duration oneSignalTimeout;
+    private final AtomicLong unsent = new AtomicLong();
+    private final Map<OutboxChannel, Timer> sendTimers = new EnumMap<>(OutboxChannel.class);
+
+    public NotificationOutboxDispatcher(NotificationOutboxService outbox,
+                                        OneSignalService oneSignalService,
+                                        DiscordService discordService,
+                                        ObjectMapper objectMapper,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${app.notifications.outbox.batch-size:200}") int batchSize,
+                                        @Value("${app.notifications.outbox.max-batches-per-run:10}") int maxBatchesPerRun,
+                                        @Value("${app.notifications.outbox.max-attempts:8}") int maxAttempts,
+                                        @Value("${app.notifications.outbox.initial-backoff:PT30S}") Duration initialBackoff,
+                                        @Value("${app.notifications.outbox.max-backoff:PT6H}") Duration maxBackoff,
+                                        @Value("${app.notifications.outbox.onesignal-concurrency:8}") int oneSignalConcurrency,
+                                        @Value("${app.notifications.outbox.onesignal-timeout:PT30S}") Duration oneSignalTimeout) {
+        this.outbox = outbox;
+        this.oneSignalService = oneSignalService;
+        this.discordService = discordService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.oneSignalConcurrency = oneSignalConcurrency;
+        this.oneSignalTimeout = oneSignalTimeout;
+
+        Gauge.builder("notification.outbox.unsent", unsent, AtomicLong::get)
+                .description("Messages waiting to be sent, as of the last dispatcher run")
+                .register(meterRegistry);
+        for (OutboxChannel channel : OutboxChannel.values()) {
+            sendTimers.put(channel, Timer.builder("notification.outbox.send")
+                    .description("Time to send one channel's share of a batch")
+                    .tag("channel", channel.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.notifications.outbox.poll-interval-ms:2000}")
+    public void dispatch() {
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            List<NotificationOutboxService.Message> messages = outbox.claim(batchSize);
+            if (!messages.isEmpty()) {
+                dispatchBatch(messages);
+            }
+            if (messages.size() < batchSize) {
+                break;
+            }
+        }
+        unsent.set(outbox.countUnsent());
+    }
+
+    void dispatchBatch(List<NotificationOutboxService.Message> messages) {
+        Map<OutboxChannel, List<NotificationOutboxService.Message>> byChannel = new EnumMap<>(OutboxChannel.class);
+        for (NotificationOutboxService.Message message : messages) {
+            byChannel.computeIfAbsent(message.channel(), channel -> new ArrayList<>()).add(message);
+        }
+
+        byChannel.forEach((channel, channelMessages) -> {
+            Map<Long, Throwable> failures = new HashMap<>();
+            sendTimers.get(channel).record(() -> {
+                try {
+                    failures.putAll(send(channel, channelMessages));
+                } catch (RuntimeException e) {
+                    logger.error("Sending {} {} notifications failed: {}", channelMessages.size(), channel, e.getMessage());
+                    channelMessages.forEach(message -> failures.put(message.id(), e));
+                }
+            });
+            record(channel, channelMessages, failures);
+        });
+    }
+
+    /**
+     * @return the error of each message that was not sent, by id
+     */
+    private Map<Long, Throwable> send(OutboxChannel channel, List<NotificationOutboxService.Message> messages) {
+        return switch (channel) {
+            case DISCORD -> sendDiscord(messages);
+            case EMAIL -> sendOneSignal(messages, OneSignalService.EMAIL_RECIPIENTS,
+                    payload -> oneSignalService.emailPayload(read(payload, OneSignalEmailRequest.class)));
+            case PUSH -> sendOneSignal(messages, OneSignalService.PUSH_RECIPIENTS,
+                    payload -> oneSignalService.pushPayload(read(payload, OneSignalPushRequest.class)));
+            case SMS -> sendOneSignal(messages, OneSignalService.SMS_RECIPIENTS,
+                    payload -> oneSignalService.smsPayload(read(payload, OneSignalSMSRequest.class)));
+        };
+    }
+
+    private Map<Long, Throwable> sendDiscord(List<NotificationOutboxService.Message> messages) {
+        Map<Long, Throwable> failures = new HashMap<>();
+        List<NotificationOutboxService.Message> readable = new ArrayList<>();
+        Map<Long, Map<String, Object>> embedsById = new HashMap<>();
+        for (NotificationOutboxService.Message message : messages) {
+            try {
+                embedsById.put(message.id(), objectMapper.readValue(message.payload(), EMBED));
+                readable.add(message);
+            } catch (JsonProcessingException e) {
+                failures.put(message.id(), new IllegalArgumentException("Unreadable outbox payload", e));
+            }
+        }
+
+        for (int from = 0; from < readable.size(); from += DiscordService.MAX_EMBEDS_PER_MESSAGE) {
+            List<NotificationOutboxService.Message> chunk =
+                    readable.subList(from, Math.min(from + DiscordService.MAX_EMBEDS_PER_MESSAGE, readable.size()));
+            List<Map<String, Object>> embeds = chunk.stream().map(message -> embedsById.get(message.id())).toList();
+            countRequest(OutboxChannel.DISCORD);
+            if (!discordService.sendSubscriptionRenewalEmbeds(embeds)) {
+                IllegalStateException error = new IllegalStateException("Discord did not accept the message");
+                chunk.forEach(message -> failures.put(message.id(), error));
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Merges the payloads that only differ by recipient, then sends all of them concurrently.
+     */
+    private Map<Long, Throwable> sendOneSignal(List<NotificationOutboxService.Message> messages, String recipientsKey,
+                                               Function<String, Map<String, Object>> toPayload) {
+        Map<Long, Throwable> failures = new HashMap<>();
+        Map<Map<String, Object>, List<NotificationOutboxService.Message>> byContent = new LinkedHashMap<>();
+        Map<Long, Object> recipients = new HashMap<>();
+        for (NotificationOutboxService.Message message : messages) {
+            // A message that cannot be turned into a request fails on its own, without holding up the others
+            Map<String, Object> payload;
+            try {
+                payload = new HashMap<>(toPayload.apply(message.payload()));
+                recipients.put(message.id(), recipient(payload.remove(recipientsKey), recipientsKey));
+            } catch (IllegalArgumentException e) {
+                failures.put(message.id(), e);
+                continue;
+            } catch (RuntimeException e) {
+                failures.put(message.id(), new IllegalArgumentException("Invalid outbox payload: " + e, e));
+                continue;
+            }
+            byContent.computeIfAbsent(payload, content -> new ArrayList<>()).add(message);
+        }
+
+        List<Map<String, Object>> requests = new ArrayList<>();
+        List<List<NotificationOutboxService.Message>> requestMessages = new ArrayList<>();
+        byContent.forEach((content, group) -> {
+            for (int from = 0; from < group.size(); from += OneSignalService.MAX_RECIPIENTS) {
+                List<NotificationOutboxService.Message> chunk =
+                        group.subList(from, Math.min(from + OneSignalService.MAX_RECIPIENTS, group.size()));
+                Map<String, Object> request = new HashMap<>(content);
+                request.put(recipientsKey, chunk.stream().map(message -> recipients.get(message.id())).toList());
+                requests.add(request);
+                requestMessages.add(chunk);
+            }
+        });
+
+        OutboxChannel channel = messages.get(0).channel();
+        requests.forEach(request -> countRequest(channel));
+        oneSignalService.sendAll(requests, oneSignalConcurrency, oneSignalTimeout)
+                .forEach((index, error) -> requestMessages.get(index).forEach(message -> failures.put(message.id(), error)));
+        return failures;
+    }
+
+    private void record(OutboxChannel channel, List<NotificationOutboxService.Message> messages, Map<Long, Throwable> failures) {
+        List<Long> sent = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (NotificationOutboxService.Message message : messages) {
+            Throwable error = failures.get(message.id());
+            if (error == null) {
+                sent.add(message.id());
+                Timer.builder("notification.outbox.delivery.lag")
+                        .description("Time from enqueueing a message to sending it")
+                        .tag("channel", channel.name())
+                        .register(meterRegistry)
+                        .record(Duration.between(message.createdAt(), now));
+                continue;
+            }
+
+            int attempts = message.attempts() + 1;
+            boolean giveUp = attempts >= maxAttempts || isPermanent(error);
+            LocalDateTime retryAt = giveUp ? null : now.plus(backoff(attempts));
+            outbox.markFailed(message.id(), error.getMessage(), retryAt);
+            count(channel, giveUp ? "failed" : "retried");
+            if (giveUp) {
+                logger.error("Giving up on {} notification {} after {} attempts: {}", channel, message.id(), attempts, error.getMessage());
+            } else {
+                logger.warn("{} notification {} failed (attempt {}), retrying at {}: {}", channel, message.id(), attempts, retryAt, error.getMessage());
+            }
+        }
+        outbox.markSent(sent);
+        sent.forEach(id -> count(channel, "sent"));
+    }
+
+    // initialBackoff, doubled on each further attempt
+    Duration backoff(int attempts) {
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    // Unreadable messages and rejected requests fail again however often they are retried, except when rate limited
+    /**
+     * The one recipient of a queued message, which is merged with the recipients of identical messages.
+     */
+    private static Object recipient(Object recipients, String recipientsKey) {
+        if (!(recipients instanceof List<?> list) || list.size() != 1 || list.get(0) == null) {
+            throw new IllegalArgumentException("Outbox payload must have exactly one recipient in " + recipientsKey);
+        }
+        return list.get(0);
+    }
+
+    private static boolean isPermanent(Throwable error) {
+        return error instanceof IllegalArgumentException
+                || error instanceof WebClientResponseException response
+                && response.getStatusCode().is4xxClientError()
+                && response.getStatusCode().value() != 429;
+    }
+
+    private void count(OutboxChannel channel, String result) {
+        Counter.builder("notification.outbox.messages")
+                .description("Outbox messages by outcome")
+                .tags("channel", channel.name(), "result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void countRequest(OutboxChannel channel) {
+        Counter.builder("notification.outbox.requests")
+                .description("Requests made to the provider of a channel")
+                .tag("channel", channel.name())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private <T> T read(String payload, Class<T> type) {
+        try {
+            return objectMapper.readValue(payload, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Unreadable outbox payload", e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mabsplace.mabsplaceback.domain.enums.OutboxChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Reads and writes the notification_outbox table.
+ * Messages are enqueued inside the transaction of the change they report, so they are sent if and only if
+ * that change is committed. NotificationOutboxDispatcher claims due messages in batches; claimed rows are
+ * locked with SKIP LOCKED, so several nodes can dispatch without blocking on or sending the same rows.
+ */
+@Service
+public class NotificationOutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationOutboxService.class);
+
+    /**
+     * A claimed message, and how many times sending it has failed before.
+     */
+    public record Message(long id, OutboxChannel channel, String payload, int attempts, LocalDateTime createdAt) {
+    }
+
+    private static final String INSERT_SQL = """
+            INSERT INTO notification_outbox (channel, payload, status, attempts, next_attempt_at, created_at)
+            VALUES (?, ?, 'PENDING', 0, ?, ?)
+            """;
+
+    // SENDING rows whose lease ran out belong to a dispatcher that died mid-batch.
+    // No ORDER BY: rows come in (status, next_attempt_at) index order, oldest due first
+    private static final String CLAIM_SQL = """
+            SELECT id, channel, payload, attempts, created_at
+            FROM notification_outbox
+            WHERE status IN ('PENDING', 'SENDING') AND next_attempt_at <= ?
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    private static final String MARK_SENDING_SQL = """
+            UPDATE notification_outbox SET status = 'SENDING', next_attempt_at = :leaseUntil
+            WHERE id IN (:ids)
+            """;
+
+    private static final String MARK_SENT_SQL = """
+            UPDATE notification_outbox SET status = 'SENT', sent_at = :sentAt, last_error = NULL
+            WHERE id IN (:ids)
+            """;
+
+    private static final String MARK_FAILED_SQL = """
+            UPDATE notification_outbox SET status = ?, attempts = attempts + 1, next_attempt_at = ?, last_error = ?
+            WHERE id = ?
+            """;
+
+    private static final String COUNT_UNSENT_SQL =
+            "SELECT COUNT(*) FROM notification_outbox WHERE status IN ('PENDING', 'SENDING')";
+
+    private static final String PURGE_SQL = "DELETE FROM notification_outbox WHERE status = 'SENT' AND sent_at < ? LIMIT 1000";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final JobLockService jobLockService;
+    private final Duration lease;
+    private final Duration retention;
+
+    public NotificationOutboxService(JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     ObjectMapper objectMapper,
+                                     JobLockService jobLockService,
+                                     @Value("${app.notifications.outbox.lease:PT2M}") Duration lease,
+                                     @Value("${app.notifications.outbox.retention:P7D}") Duration retention) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.jobLockService = jobLockService;
+        this.lease = lease;
+        this.retention = retention;
+    }
+
+    /**
+     * Queues a message, as part of the caller's transaction when there is one.
+     *
+     * @param request the channel's request, serialized as JSON
+     */
+    @Transactional
+    public void enqueue(OutboxChannel channel, Object request) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize " + channel + " notification", e);
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update(INSERT_SQL, channel.name(), payload, now, now);
+    }
+
+    /**
+     * Claims up to {@code limit} due messages for the lease duration, committing the claim before returning.
+     */
+    public List<Message> claim(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        return transactionTemplate.execute(status -> {
+            List<Message> messages = jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> new Message(
+                    rs.getLong("id"),
+                    OutboxChannel.valueOf(rs.getString("channel")),
+                    rs.getString("payload"),
+                    rs.getInt("attempts"),
+                    rs.getTimestamp("created_at").toLocalDateTime()), Timestamp.valueOf(now), limit);
+            if (!messages.isEmpty()) {
+                namedParameterJdbcTemplate.update(MARK_SENDING_SQL, new MapSqlParameterSource()
+                        .addValue("leaseUntil", Timestamp.valueOf(now.plus(lease)))
+                        .addValue("ids", messages.stream().map(Message::id).toList()));
+            }
+            return messages;
+        });
+    }
+
+    public void markSent(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        namedParameterJdbcTemplate.update(MARK_SENT_SQL, new MapSqlParameterSource()
+                .addValue("sentAt", Timestamp.valueOf(LocalDateTime.now()))
+                .addValue("ids", ids));
+    }
+
+    /**
+     * Records a failed attempt: the message is retried at {@code retryAt}, or given up on when it is null.
+     */
+    public void markFailed(long id, String error, LocalDateTime retryAt) {
+        String status = retryAt != null ? "PENDING" : "FAILED";
+        LocalDateTime nextAttemptAt = retryAt != null ? retryAt : LocalDateTime.now();
+        String lastError = error != null && error.length() > 500 ? error.substring(0, 500) : error;
+        jdbcTemplate.update(MARK_FAILED_SQL, status, Timestamp.valueOf(nextAttemptAt), lastError, id);
+    }
+
+    public long countUnsent() {
+        Long count = jdbcTemplate.queryForObject(COUNT_UNSENT_SQL, Long.class);
+        return count != null ? count : 0;
+    }
+
+    @Scheduled(cron = "${app.notifications.outbox.purge-cron:0 45 4 * * *}")
+    public void scheduledPurgeSent() {
+        jobLockService.runOnce("purge-notification-outbox", this::purgeSent);
+    }
+
+    /**
+     * Deletes sent messages past the retention period, a thousand rows per statement.
+     */
+    public void purgeSent() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(retention));
+        int purged = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(PURGE_SQL, cutoff);
+            purged += deleted;
+        } while (deleted > 0);
+        logger.info("Purged {} sent notifications older than {}", purged, retention);
+    }
+}
@@ -2,7 +2,10 @@ package com.mabsplace.mabsplaceback.domain.services;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mabsplace.mabsplaceback.domain.controllers.WebSocketNotificationController;
+import com.mabsplace.mabsplaceback.domain.dtos.notification.NotificationCursor;
 import com.mabsplace.mabsplaceback.domain.dtos.notification.NotificationDTO;
+import com.mabsplace.mabsplaceback.domain.dtos.notification.NotificationPage;
+import com.mabsplace.mabsplaceback.domain.entities.BroadcastNotification;
 import com.mabsplace.mabsplaceback.domain.entities.DigitalGoodsOrder;
 import com.mabsplace.mabsplaceback.domain.entities.DigitalProduct;
 import com.mabsplace.mabsplaceback.domain.entities.Notification;
@@ -11,29 +14,47 @@ import com.mabsplace.mabsplaceback.domain.entities.Subscription;
 import com.mabsplace.mabsplaceback.domain.entities.User;
 import com.mabsplace.mabsplaceback.domain.enums.NotificationType;
 import com.mabsplace.mabsplaceback.domain.enums.PaymentStatus;
+import com.mabsplace.mabsplaceback.domain.repositories.BroadcastNotificationRepository;
+import com.mabsplace.mabsplaceback.domain.repositories.BroadcastReadWatermarkRepository;
 import com.mabsplace.mabsplaceback.domain.repositories.NotificationRepository;
 import com.mabsplace.mabsplaceback.domain.repositories.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class NotificationService {
 
-    @Value("${expo.push.api.url:https://exp.host/--/api/v2/push/send}")
-    private String expoPushApiUrl;
+    @Value("${app.notifications.inbox.default-page-size:20}")
+    private int inboxDefaultPageSize;
+
+    @Value("${app.notifications.inbox.max-page-size:100}")
+    private int inboxMaxPageSize;
+
+    // Rows changed per bulk statement, and notification ids accepted per request
+    @Value("${app.notifications.bulk.batch-size:1000}")
+    private int bulkBatchSize;
+
+    // How long a broadcast stays in inboxes, those of users who joined after it included
+    @Value("${app.notifications.broadcast.retention:P90D}")
+    private Duration broadcastRetention;
+
+    // Device tokens read per page of a broadcast, which the Expo client sends 100 per request
+    @Value("${app.notifications.broadcast.push-page-size:1000}")
+    private int broadcastPushPageSize;
 
     @Autowired
     private UserRepository userRepository;
@@ -41,28 +62,131 @@ public class NotificationService {
     @Autowired
     private NotificationRepository notificationRepository;
 
-    @Autowired
-    private RestTemplate restTemplate;
-
     @Autowired
     private ObjectMapper objectMapper;
 
     @Autowired
     private WebSocketNotificationController webSocketNotificationController;
 
+    @Autowired
+    private UnreadNotificationCounter unreadCounter;
+
+    @Autowired
+    private BroadcastNotificationRepository broadcastNotificationRepository;
+
+    @Autowired
+    private BroadcastReadWatermarkRepository broadcastReadWatermarkRepository;
+
+    @Autowired
+    private ExpoPushClient expoPushClient;
+
     private static final Logger logger = LoggerFactory.getLogger(NotificationService.class);
 
-    public List<Notification> getUserNotifications(String username) {
+    private static final Comparator<NotificationCursor> CURSOR_ORDER =
+            Comparator.comparing(NotificationCursor::createdAt).thenComparingLong(NotificationCursor::id);
+
+    private static final Comparator<NotificationDTO> NEWEST_FIRST =
+            Comparator.comparing((NotificationDTO notification) -> cursorOf(notification), CURSOR_ORDER).reversed();
+
+    /**
+     * The user's notifications and the broadcasts still in inboxes, newest first.
+     */
+    public List<NotificationDTO> getUserNotifications(String username) {
         logger.info("Getting notifications for user: {}", username);
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
         logger.info("User found: {}", user.getEmail());
-        return notificationRepository.findByUserOrderByCreatedAtDesc(user);
+        NotificationCursor watermark = broadcastWatermark(user.getId());
+        List<BroadcastNotification> broadcasts = broadcastNotificationRepository.findInboxPage(broadcastsVisibleFrom(),
+                NotificationCursor.NEWEST.createdAt(), NotificationCursor.NEWEST.id(),
+                NotificationCursor.OLDEST.createdAt(), NotificationCursor.OLDEST.id(),
+                watermark.createdAt(), watermark.id(), false, Pageable.unpaged());
+        return Stream.concat(
+                        notificationRepository.findByUserOrderByCreatedAtDesc(user).stream().map(this::convertToNotificationDTO),
+                        broadcasts.stream().map(broadcast -> convertToNotificationDTO(broadcast, watermark)))
+                .sorted(NEWEST_FIRST)
+                .toList();
+    }
+
+    /**
+     * Reads one page of the user's inbox, newest first, with the broadcasts merged in.
+     *
+     * @param before    cursor of the page to continue after, or null for the newest notifications
+     * @param since     syncCursor of an earlier read, to get only what arrived afterwards, or null
+     * @param limit     page size, capped; null for the default
+     * @throws IllegalArgumentException if a cursor is invalid
+     */
+    public NotificationPage getInbox(String username, String before, String since, Integer limit, boolean unreadOnly) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        NotificationCursor beforeCursor = before != null ? NotificationCursor.parse(before) : NotificationCursor.NEWEST;
+        NotificationCursor sinceCursor = since != null ? NotificationCursor.parse(since) : NotificationCursor.OLDEST;
+        int pageSize = Math.min(Math.max(limit != null ? limit : inboxDefaultPageSize, 1), inboxMaxPageSize);
+
+        // One more than the page from each source, to tell whether there is a next one once merged
+        List<Notification> notifications = notificationRepository.findInboxPage(user.getId(),
+                beforeCursor.createdAt(), beforeCursor.id(), sinceCursor.createdAt(), sinceCursor.id(),
+                unreadOnly, PageRequest.of(0, pageSize + 1));
+        NotificationCursor watermark = broadcastWatermark(user.getId());
+        List<BroadcastNotification> broadcasts = broadcastNotificationRepository.findInboxPage(broadcastsVisibleFrom(),
+                beforeCursor.createdAt(), beforeCursor.id(), sinceCursor.createdAt(), sinceCursor.id(),
+                watermark.createdAt(), watermark.id(), unreadOnly, PageRequest.of(0, pageSize + 1));
+        List<NotificationDTO> merged = Stream.concat(
+                        notifications.stream().map(this::convertToNotificationDTO),
+                        broadcasts.stream().map(broadcast -> convertToNotificationDTO(broadcast, watermark)))
+                .sorted(NEWEST_FIRST)
+                .limit(pageSize + 1)
+                .toList();
+        boolean hasMore = merged.size() > pageSize;
+        List<NotificationDTO> page = hasMore ? merged.subList(0, pageSize) : merged;
+
+        String syncCursor = since;
+        if (before == null && !page.isEmpty()) {
+            syncCursor = cursorOf(page.get(0)).encode();
+        }
+        return NotificationPage.builder()
+                .items(page)
+                .nextCursor(hasMore ? cursorOf(page.get(page.size() - 1)).encode() : null)
+                .syncCursor(syncCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    private static NotificationCursor cursorOf(NotificationDTO notification) {
+        return new NotificationCursor(notification.getCreatedAt(), notification.getId());
+    }
+
+    private static NotificationCursor cursorOf(BroadcastNotification broadcast) {
+        return new NotificationCursor(broadcast.getCreatedAt(), broadcast.getId());
+    }
+
+    private NotificationCursor broadcastWatermark(Long userId) {
+        return broadcastReadWatermarkRepository.findById(userId)
+                .map(watermark -> new NotificationCursor(watermark.getReadCreatedAt(), watermark.getReadId()))
+                .orElse(NotificationCursor.OLDEST);
+    }
+
+    private LocalDateTime broadcastsVisibleFrom() {
+        return LocalDateTime.now().minus(broadcastRetention);
+    }
+
+    private void markBroadcastsReadUpTo(Long userId, NotificationCursor position) {
+        if (broadcastReadWatermarkRepository.advance(userId, position.createdAt(), position.id()) == 0
+                && !broadcastReadWatermarkRepository.existsById(userId)) {
+            try {
+                broadcastReadWatermarkRepository.insert(userId, position.createdAt(), position.id());
+            } catch (DataIntegrityViolationException e) {
+                // Created by a concurrent request in the meantime
+                broadcastReadWatermarkRepository.advance(userId, position.createdAt(), position.id());
+            }
+        }
     }
 
     public Long getUnreadCount(Long userId) {
         logger.info("Getting unread notification count for user ID: {}", userId);
-        Long count = notificationRepository.countUnreadNotifications(userId);
+        NotificationCursor watermark = broadcastWatermark(userId);
+        Long count = unreadCounter.get(userId)
+                + broadcastNotificationRepository.countUnread(broadcastsVisibleFrom(), watermark.createdAt(), watermark.id());
         logger.info("Unread count for user ID {}: {}", userId, count);
         return count;
     }
@@ -81,8 +205,15 @@ public class NotificationService {
 
         logger.info("User found: {}", user.getEmail());
 
-        Notification notification = notificationRepository.findById(notificationId)
-                .orElseThrow(() -> new RuntimeException("Notification not found"));
+        Optional<Notification> found = notificationRepository.findById(notificationId);
+        if (found.isEmpty()) {
+            BroadcastNotification broadcast = broadcastNotificationRepository.findById(notificationId)
+                    .orElseThrow(() -> new RuntimeException("Notification not found"));
+            // Broadcasts are read up to a watermark: the older ones are marked read with it
+            markBroadcastsReadUpTo(user.getId(), cursorOf(broadcast));
+            return;
+        }
+        Notification notification = found.get();
 
         logger.info("Notification found: {}", notification.getId());
 
@@ -91,24 +222,86 @@ public class NotificationService {
             throw new RuntimeException("Unauthorized access to notification");
         }
 
+        boolean wasUnread = !notification.isRead();
         notification.setRead(true);
         logger.info("Notification marked as read: {}", notification.getId());
         logger.info("Saving notification to database");
         notificationRepository.save(notification);
+        if (wasUnread) {
+            unreadCounter.read(user.getId(), 1);
+        }
     }
 
 
-    public void markAllAsRead(String username) {
+    /**
+     * Marks every unread notification of the user as read, in UPDATEs of at most the bulk batch size.
+     *
+     * @return the number of notifications marked
+     */
+    public int markAllAsRead(String username) {
         logger.info("Marking all notifications as read for user: {}", username);
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
         logger.info("User found: {}", user.getEmail());
-        logger.info("Marking all notifications as read");
 
-        List<Notification> notifications = notificationRepository.findByUserOrderByCreatedAtDesc(user);
+        int marked = 0;
+        int updated;
+        do {
+            updated = notificationRepository.markUnreadAsRead(user.getId(), bulkBatchSize);
+            marked += updated;
+        } while (updated == bulkBatchSize);
+        unreadCounter.recount(user.getId());
+        broadcastNotificationRepository.findFirstByOrderByCreatedAtDescIdDesc()
+                .ifPresent(latest -> markBroadcastsReadUpTo(user.getId(), cursorOf(latest)));
+        logger.info("Marked {} notifications as read for user: {}", marked, username);
+        return marked;
+    }
 
-        notifications.forEach(notification -> notification.setRead(true));
-        notificationRepository.saveAll(notifications);
+    /**
+     * Marks the user's notifications with these ids as read in one UPDATE; ids of other users' notifications
+     * are ignored. Broadcasts among them are read up to the newest one.
+     *
+     * @return the number of the user's own notifications that were unread
+     * @throws IllegalArgumentException if more ids are given than the bulk batch size
+     */
+    public int markAsRead(List<Long> notificationIds, String username) {
+        if (notificationIds.size() > bulkBatchSize) {
+            throw new IllegalArgumentException("At most " + bulkBatchSize + " notifications can be marked at once");
+        }
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        int marked = notificationRepository.markAsReadByIdIn(user.getId(), notificationIds);
+        unreadCounter.read(user.getId(), marked);
+        broadcastNotificationRepository.findAllById(notificationIds).stream()
+                .map(NotificationService::cursorOf)
+                .max(CURSOR_ORDER)
+                .ifPresent(newest -> markBroadcastsReadUpTo(user.getId(), newest));
+        logger.info("Marked {} of {} notifications as read for user: {}", marked, notificationIds.size(), username);
+        return marked;
+    }
+
+    /**
+     * Deletes the user's notifications created before the given time, in DELETEs of at most the bulk batch size.
+     * Broadcasts are shared and stay until they fall out of the retention.
+     *
+     * @return the number of notifications deleted
+     */
+    public int deleteOlderThan(String username, LocalDateTime before) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+
+        int deleted = 0;
+        int removed;
+        do {
+            removed = notificationRepository.deleteCreatedBefore(user.getId(), before, bulkBatchSize);
+            deleted += removed;
+        } while (removed == bulkBatchSize);
+        if (deleted > 0) {
+            // Some of them may have been unread
+            unreadCounter.evict(user.getId());
+        }
+        logger.info("Deleted {} notifications older than {} for user: {}", deleted, before, username);
+        return deleted;
     }
 
     public void updateUserPushToken(String username, String pushToken) {
@@ -150,7 +343,7 @@ public class NotificationService {
                     .map(user -> createNotification(user, title, body, data))
                     .collect(Collectors.toList());
             logger.info("Saving {} notifications to database", notifications.size());
-            notificationRepository.saveAll(notifications);
+            saveNotifications(notifications);
 
             logger.info("Sending push notifications");
             // Prepare and send push notifications
@@ -160,21 +353,25 @@ public class NotificationService {
 
             logger.debug("Prepared push notifications: {}", messages);
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            HttpEntity<List<Map<String, Object>>> request =
-                    new HttpEntity<>(messages, headers);
-
-            String s = restTemplate.postForObject(expoPushApiUrl, request, String.class);
+            ExpoPushClient.Result result = expoPushClient.send(messages);
 
-            logger.info("Push notifications sent successfully. Response: {}", s);
+            logger.info("Push notifications sent: {}", result);
 
         } catch (Exception e) {
             logger.error("Failed to send push notifications to users: {}. Error: {}", userIds, e.getMessage(), e);
         }
     }
 
+    /**
+     * Saves new notifications and counts them as unread for their recipients.
+     */
+    private void saveNotifications(List<Notification> notifications) {
+        notificationRepository.saveAll(notifications);
+        unreadCounter.added(notifications.stream()
+                .filter(notification -> !notification.isRead())
+                .collect(Collectors.groupingBy(notification -> notification.getUser().getId(), Collectors.counting())));
+    }
+
     private Notification createNotification(
             User user,
             String title,
@@ -188,17 +385,22 @@ public class NotificationService {
         notification.setRead(false);
         notification.setCreatedAt(LocalDateTime.now());
 
-        // Set notification type based on data or default to SYSTEM
-        String type = data.getOrDefault("type", "SYSTEM").toString();
-        notification.setType(NotificationType.valueOf(type));
+        notification.setType(typeOf(data));
+        notification.setData(toJson(data));
+        return notification;
+    }
 
+    // The type named in the data, or SYSTEM
+    private static NotificationType typeOf(Map<String, Object> data) {
+        return NotificationType.valueOf(data.getOrDefault("type", "SYSTEM").toString());
+    }
+
+    private String toJson(Map<String, Object> data) {
         try {
-            notification.setData(objectMapper.writeValueAsString(data));
+            return objectMapper.writeValueAsString(data);
         } catch (Exception e) {
-            notification.setData("{}");
+            return "{}";
         }
-
-        return notification;
     }
 
     private Map<String, Object> createPushMessage(
@@ -232,20 +434,40 @@ public class NotificationService {
         sendPushNotification(Collections.singletonList(userId), title, body, data);
     }
 
-    // Method to send notification to all users
+    /**
+     * Sends a notification to every user: it is stored once and merged into each inbox when read, and pushed
+     * to the device tokens a page at a time.
+     */
     @Async
     public void sendNotificationToAllUsers(
             String title,
             String body,
             Map<String, Object> data
     ) {
-        logger.info("Sending notification to all users");
-        List<Long> allUserIds = userRepository.findAll().stream()
-                .map(User::getId)
-                .collect(Collectors.toList());
-        logger.info("All users found: " + allUserIds.size());
-        logger.info("Sending notification to all users");
-        sendPushNotification(allUserIds, title, body, data);
+        logger.info("Broadcasting notification: {}", title);
+        BroadcastNotification broadcast = new BroadcastNotification();
+        broadcast.setTitle(title);
+        broadcast.setMessage(body);
+        broadcast.setType(typeOf(data));
+        broadcast.setData(toJson(data));
+        broadcast.setCreatedAt(LocalDateTime.now());
+        broadcastNotificationRepository.save(broadcast);
+        webSocketNotificationController.broadcastNotification(convertToNotificationDTO(broadcast, NotificationCursor.OLDEST));
+
+        ExpoPushClient.Result pushed = ExpoPushClient.Result.NONE;
+        long afterId = 0;
+        List<UserRepository.PushTarget> targets;
+        do {
+            targets = userRepository.findPushTargetsAfter(afterId, PageRequest.of(0, broadcastPushPageSize));
+            if (targets.isEmpty()) {
+                break;
+            }
+            afterId = targets.get(targets.size() - 1).getId();
+            pushed = pushed.plus(expoPushClient.send(targets.stream()
+                    .map(target -> createPushMessage(target.getPushToken(), title, body, data))
+                    .toList()));
+        } while (targets.size() == broadcastPushPageSize);
+        logger.info("Broadcast {} pushed: {}", broadcast.getId(), pushed);
     }
 
     public void notifyReferrerOfPromoCode(User referrer, String promoCode) {
@@ -300,6 +522,19 @@ public class NotificationService {
                 .build();
     }
 
+    private static NotificationDTO convertToNotificationDTO(BroadcastNotification broadcast, NotificationCursor watermark) {
+        return NotificationDTO.builder()
+                .id(broadcast.getId())
+                .title(broadcast.getTitle())
+                .message(broadcast.getMessage())
+                .type(broadcast.getType().name())
+                .read(CURSOR_ORDER.compare(cursorOf(broadcast), watermark) <= 0)
+                .createdAt(broadcast.getCreatedAt())
+                .data(broadcast.getData())
+                .broadcast(true)
+                .build();
+    }
+
     /**
      * Notify admins of a new digital goods order
      * @param order The newly created order
@@ -338,7 +573,7 @@ public class NotificationService {
                     .map(admin -> createNotification(admin, title, message, data))
                     .collect(Collectors.toList());
 
-            notificationRepository.saveAll(notifications);
+            saveNotifications(notifications);
             logger.info("Saved {} notifications to database for new digital goods order", notifications.size());
 
             // Send WebSocket notifications to all admins
@@ -402,7 +637,7 @@ public class NotificationService {
                     .map(admin -> createNotification(admin, title, message, data))
                     .collect(Collectors.toList());
 
-            notificationRepository.saveAll(notifications);
+            saveNotifications(notifications);
             logger.info("Saved {} notifications to database for new payment", notifications.size());
 
             // Send WebSocket notifications to all admins
@@ -461,7 +696,7 @@ public class NotificationService {
                     .map(admin -> createNotification(admin, title, message, data))
                     .collect(Collectors.toList());
 
-            notificationRepository.saveAll(notifications);
+            saveNotifications(notifications);
 
             // Send WebSocket notifications to all admins
             NotificationDTO notificationDTO = NotificationDTO.builder()
@@ -518,7 +753,7 @@ public class NotificationService {
                     .map(admin -> createNotification(admin, title, message, data))
                     .collect(Collectors.toList());
 
-            notificationRepository.saveAll(notifications);
+            saveNotifications(notifications);
 
             // Send WebSocket notifications to all admins
             NotificationDTO notificationDTO = NotificationDTO.builder()
@@ -561,7 +796,7 @@ public class NotificationService {
 
             // Save notification to database
             Notification notification = createNotification(customer, title, message, data);
-            notificationRepository.save(notification);
+            saveNotifications(List.of(notification));
 
             // Send WebSocket notification to customer (use same infrastructure as admin notifications)
             NotificationDTO notificationDTO = NotificationDTO.builder()
@@ -623,7 +858,7 @@ public class NotificationService {
                     .map(admin -> createNotification(admin, title, message, data))
                     .collect(Collectors.toList());
 
-            notificationRepository.saveAll(notifications);
+            saveNotifications(notifications);
 
             NotificationDTO notificationDTO = NotificationDTO.builder()
                     .id(notifications.get(0).getId())
@@ -689,7 +924,7 @@ public class NotificationService {
                     .map(admin -> createNotification(admin, title, message, data))
                     .collect(Collectors.toList());
 
-            notificationRepository.saveAll(notifications);
+            saveNotifications(notifications);
 
             NotificationDTO notificationDTO = NotificationDTO.builder()
                     .id(notifications.get(0).getId())
@@ -9,7 +9,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,6 +22,12 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class OneSignalService {
 
+    // Payload keys holding the recipients of a notification, up to MAX_RECIPIENTS of them
+    public static final String EMAIL_RECIPIENTS = "include_email_tokens";
+    public static final String PUSH_RECIPIENTS = "include_external_user_ids";
+    public static final String SMS_RECIPIENTS = "include_phone_numbers";
+    public static final int MAX_RECIPIENTS = 2000;
+
     private final WebClient oneSignalWebClient;
     private final OneSignalConfig oneSignalConfig;
 
@@ -30,23 +39,7 @@ public class OneSignalService {
         try {
             log.info("Sending email via OneSignal to: {}", request.getTo());
 
-            Map<String, Object> emailPayload = new HashMap<>();
-            emailPayload.put("app_id", oneSignalConfig.getAppId());
-
-            // Create email notification
-            Map<String, Object> email = new HashMap<>();
-            email.put("template_id", request.getTemplateId());
-            email.put("subject", request.getSubject());
-            email.put("from_email", request.getFromEmail() != null ?
-                request.getFromEmail() : oneSignalConfig.getDefaultFromEmail());
-
-            // Add custom data for template variables
-            if (request.getCustomData() != null) {
-                email.put("data", request.getCustomData());
-            }
-
-            emailPayload.put("email", email);
-            emailPayload.put("include_email_tokens", List.of(request.getTo()));
+            Map<String, Object> emailPayload = emailPayload(request);
 
             oneSignalWebClient.post()
                     .uri("/notifications")
@@ -70,30 +63,7 @@ public class OneSignalService {
         try {
             log.info("Sending push notification via OneSignal to user: {}", request.getExternalUserId());
 
-            Map<String, Object> pushPayload = new HashMap<>();
-            pushPayload.put("app_id", oneSignalConfig.getAppId());
-
-            // Set notification content
-            Map<String, String> headings = new HashMap<>();
-            headings.put("en", request.getTitle());
-            pushPayload.put("headings", headings);
-
-            Map<String, String> contents = new HashMap<>();
-            contents.put("en", request.getMessage());
-            pushPayload.put("contents", contents);
-
-            // Target specific user by external user ID
-            pushPayload.put("include_external_user_ids", List.of(request.getExternalUserId()));
-
-            // Add custom data
-            if (request.getData() != null) {
-                pushPayload.put("data", request.getData());
-            }
-
-            // Add deep link URL
-            if (request.getUrl() != null) {
-                pushPayload.put("url", request.getUrl());
-            }
+            Map<String, Object> pushPayload = pushPayload(request);
 
             oneSignalWebClient.post()
                     .uri("/notifications")
@@ -117,21 +87,7 @@ public class OneSignalService {
         try {
             log.info("Sending SMS via OneSignal to: {}", request.getPhoneNumber());
 
-            Map<String, Object> smsPayload = new HashMap<>();
-            smsPayload.put("app_id", oneSignalConfig.getAppId());
-
-            // Set SMS content
-            Map<String, String> contents = new HashMap<>();
-            contents.put("en", request.getMessage());
-            smsPayload.put("contents", contents);
-
-            // Target specific phone number
-            smsPayload.put("include_phone_numbers", List.of(formatToE164(request.getPhoneNumber())));
-
-            // Add custom data for template variables
-            if (request.getCustomData() != null) {
-                smsPayload.put("data", request.getCustomData());
-            }
+            Map<String, Object> smsPayload = smsPayload(request);
 
             oneSignalWebClient.post()
                     .uri("/notifications")
@@ -147,6 +103,101 @@ public class OneSignalService {
         }
     }
 
+    /**
+     * Build the /notifications payload of an email
+     */
+    public Map<String, Object> emailPayload(OneSignalEmailRequest request) {
+        Map<String, Object> emailPayload = new HashMap<>();
+        emailPayload.put("app_id", oneSignalConfig.getAppId());
+
+        // Create email notification
+        Map<String, Object> email = new HashMap<>();
+        email.put("template_id", request.getTemplateId());
+        email.put("subject", request.getSubject());
+        email.put("from_email", request.getFromEmail() != null ?
+            request.getFromEmail() : oneSignalConfig.getDefaultFromEmail());
+
+        // Add custom data for template variables
+        if (request.getCustomData() != null) {
+            email.put("data", request.getCustomData());
+        }
+
+        emailPayload.put("email", email);
+        emailPayload.put(EMAIL_RECIPIENTS, List.of(request.getTo()));
+        return emailPayload;
+    }
+
+    /**
+     * Build the /notifications payload of a push notification
+     */
+    public Map<String, Object> pushPayload(OneSignalPushRequest request) {
+        Map<String, Object> pushPayload = new HashMap<>();
+        pushPayload.put("app_id", oneSignalConfig.getAppId());
+
+        // Set notification content
+        Map<String, String> headings = new HashMap<>();
+        headings.put("en", request.getTitle());
+        pushPayload.put("headings", headings);
+
+        Map<String, String> contents = new HashMap<>();
+        contents.put("en", request.getMessage());
+        pushPayload.put("contents", contents);
+
+        // Target specific user by external user ID
+        pushPayload.put(PUSH_RECIPIENTS, List.of(request.getExternalUserId()));
+
+        // Add custom data
+        if (request.getData() != null) {
+            pushPayload.put("data", request.getData());
+        }
+
+        // Add deep link URL
+        if (request.getUrl() != null) {
+            pushPayload.put("url", request.getUrl());
+        }
+        return pushPayload;
+    }
+
+    /**
+     * Build the /notifications payload of an SMS
+     */
+    public Map<String, Object> smsPayload(OneSignalSMSRequest request) {
+        Map<String, Object> smsPayload = new HashMap<>();
+        smsPayload.put("app_id", oneSignalConfig.getAppId());
+
+        // Set SMS content
+        Map<String, String> contents = new HashMap<>();
+        contents.put("en", request.getMessage());
+        smsPayload.put("contents", contents);
+
+        // Target specific phone number
+        smsPayload.put(SMS_RECIPIENTS, List.of(formatToE164(request.getPhoneNumber())));
+
+        // Add custom data for template variables
+        if (request.getCustomData() != null) {
+            smsPayload.put("data", request.getCustomData());
+        }
+        return smsPayload;
+    }
+
+    /**
+     * Post /notifications payloads, at most {@code concurrency} at a time, and wait for OneSignal to answer them all.
+     *
+     * @return the error of each payload OneSignal did not accept, by index in {@code payloads}
+     */
+    public Map<Integer, Throwable> sendAll(List<Map<String, Object>> payloads, int concurrency, Duration timeout) {
+        return Flux.range(0, payloads.size())
+                .flatMap(index -> oneSignalWebClient.post()
+                        .uri("/notifications")
+                        .bodyValue(payloads.get(index))
+                        .retrieve()
+                        .bodyToMono(Map.class)
+                        .then(Mono.<Map.Entry<Integer, Throwable>>empty())
+                        .onErrorResume(error -> Mono.just(Map.entry(index, error))), concurrency)
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .block(timeout);
+    }
+
     /**
      * Create or update user in OneSignal
      */
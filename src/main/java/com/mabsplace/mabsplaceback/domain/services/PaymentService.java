@@ -5,16 +5,18 @@ import com.mabsplace.mabsplaceback.domain.dtos.email.EmailRequest;
 import com.mabsplace.mabsplaceback.domain.dtos.payment.PaymentRequestDto;
 import com.mabsplace.mabsplaceback.domain.dtos.subscription.SubscriptionRequestDto;
 import com.mabsplace.mabsplaceback.domain.entities.Payment;
+import com.mabsplace.mabsplaceback.domain.events.PaymentChangedEvent;
 import com.mabsplace.mabsplaceback.domain.entities.User;
 import com.mabsplace.mabsplaceback.domain.enums.PaymentStatus;
 import com.mabsplace.mabsplaceback.domain.enums.SubscriptionStatus;
 import com.mabsplace.mabsplaceback.domain.mappers.PaymentMapper;
 import com.mabsplace.mabsplaceback.domain.repositories.*;
 import com.mabsplace.mabsplaceback.exceptions.ResourceNotFoundException;
-import jakarta.mail.MessagingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.util.Date;
@@ -43,10 +45,14 @@ public class PaymentService {
 
     private final NotificationService notificationService;
 
+    private final DailyRollupService dailyRollupService;
+
+    private final ApplicationEventPublisher eventPublisher;
+
     private static final Logger logger = LoggerFactory.getLogger(PaymentService.class);
     private final SubscriptionPaymentOrchestrator subscriptionPaymentOrchestrator;
 
-    public PaymentService(PaymentRepository paymentRepository, PaymentMapper paymentMapper, UserRepository userRepository, CurrencyRepository currencyRepository, MyServiceRepository myServiceRepository, SubscriptionPlanRepository subscriptionPlanRepository, WalletService walletService, DiscountService discountService, EmailService emailService, SubscriptionPaymentOrchestrator orchestrator, SubscriptionPaymentOrchestrator subscriptionPaymentOrchestrator, NotificationService notificationService) {
+    public PaymentService(PaymentRepository paymentRepository, PaymentMapper paymentMapper, UserRepository userRepository, CurrencyRepository currencyRepository, MyServiceRepository myServiceRepository, SubscriptionPlanRepository subscriptionPlanRepository, WalletService walletService, DiscountService discountService, EmailService emailService, SubscriptionPaymentOrchestrator orchestrator, SubscriptionPaymentOrchestrator subscriptionPaymentOrchestrator, NotificationService notificationService, DailyRollupService dailyRollupService, ApplicationEventPublisher eventPublisher) {
         this.paymentRepository = paymentRepository;
         this.paymentMapper = paymentMapper;
         this.userRepository = userRepository;
@@ -59,15 +65,18 @@ public class PaymentService {
         this.orchestrator = orchestrator;
         this.subscriptionPaymentOrchestrator = subscriptionPaymentOrchestrator;
         this.notificationService = notificationService;
+        this.dailyRollupService = dailyRollupService;
+        this.eventPublisher = eventPublisher;
     }
 
-    public Payment createPayment(PaymentRequestDto paymentRequestDto) throws MessagingException {
+    public Payment createPayment(PaymentRequestDto paymentRequestDto) {
         logger.info("Create payment request: {}", paymentRequestDto);
         Payment payment = orchestrator.processPaymentAndCreateSubscription(paymentRequestDto);
         logger.info("Payment created: {}", payment);
         return payment;
     }
 
+    @Transactional
     public Payment changePaymentStatus(Long id, PaymentStatus status) {
         logger.info("Changing payment status for payment ID: {} to status: {}", id, status);
         Payment payment = paymentRepository.findById(id).orElseThrow(() -> {
@@ -93,9 +102,12 @@ public class PaymentService {
 
             subscriptionPaymentOrchestrator.createSubscription(subscription);
         }
+        dailyRollupService.reversePayment(payment);
         payment.setStatus(status);
 
         Payment updatedPayment = paymentRepository.save(payment);
+        dailyRollupService.recordPayment(updatedPayment);
+        eventPublisher.publishEvent(new PaymentChangedEvent(this, updatedPayment));
         logger.info("Payment status updated to {} for payment ID: {}", status, id);
 
         // Notify admins of payment status change
@@ -116,10 +128,13 @@ public class PaymentService {
         return paymentRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Payment", "id", id));
     }
 
+    @Transactional
     public Payment updatePayment(Long id, PaymentRequestDto updatedPayment) throws ResourceNotFoundException {
         logger.info("Updating payment with ID: {}, Request: {}", id, updatedPayment);
 
         Payment payment = paymentRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Payment", "id", id));
+        // Taken out with its current status, amount and date, and added back below as updated
+        dailyRollupService.reversePayment(payment);
         Payment updated = paymentMapper.partialUpdate(updatedPayment, payment);
         updated.setUser(userRepository.findById(updatedPayment.getUserId()).orElseThrow(() -> new ResourceNotFoundException("User", "id", updatedPayment.getUserId())));
         updated.setCurrency(currencyRepository.findById(updatedPayment.getCurrencyId()).orElseThrow(() -> new ResourceNotFoundException("Currency", "id", updatedPayment.getCurrencyId())));
@@ -144,12 +159,19 @@ public class PaymentService {
         }
 
         Payment save = paymentRepository.save(updated);
+        dailyRollupService.recordPayment(save);
+        eventPublisher.publishEvent(new PaymentChangedEvent(this, save));
         logger.info("Updated payment successfully: {}", save.getId());
         return save;
     }
 
+    @Transactional
     public void deletePayment(Long id) {
         logger.info("Deleting payment with ID: {}", id);
+        paymentRepository.findById(id).ifPresent(payment -> {
+            dailyRollupService.reversePayment(payment);
+            eventPublisher.publishEvent(new PaymentChangedEvent(this, payment));
+        });
         paymentRepository.deleteById(id);
         logger.info("Deleted payment successfully with ID: {}", id);
     }
@@ -24,7 +24,9 @@ import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -55,11 +57,16 @@ public class PromoCodeService {
                     .orElseThrow(() -> new ResourceNotFoundException("User", "id", request.getUserId()));
         }
 
-        List<PromoCode> generatedCodes = new ArrayList<>();
         int quantity = request.getQuantity() != null ? request.getQuantity() : 1;
 
-        for (int i = 0; i < quantity; i++) {
-            String code = generateUniqueCode();
+        // All codes are drawn before any is saved: the uniqueness query would flush the pending inserts one by one
+        Set<String> codes = new LinkedHashSet<>();
+        while (codes.size() < quantity) {
+            codes.add(generateUniqueCode());
+        }
+
+        List<PromoCode> generatedCodes = new ArrayList<>();
+        for (String code : codes) {
             PromoCode promoCode = PromoCode.builder()
                     .code(code)
                     .discountAmount(request.getDiscountAmount())
@@ -70,10 +77,10 @@ public class PromoCodeService {
                     .status(request.getStatus())
                     .build();
 
-            generatedCodes.add(promoCodeRepository.save(promoCode));
+            generatedCodes.add(promoCode);
         }
 
-        return promoCodeMapper.toDtoList(generatedCodes);
+        return promoCodeMapper.toDtoList(promoCodeRepository.saveAll(generatedCodes));
     }
 
     private String generateUniqueCode() {
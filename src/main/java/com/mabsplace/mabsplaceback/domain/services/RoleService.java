@@ -4,7 +4,10 @@ import com.mabsplace.mabsplaceback.domain.dtos.role.RoleRequestDto;
 import com.mabsplace.mabsplaceback.domain.entities.Role;
 import com.mabsplace.mabsplaceback.domain.mappers.RoleMapper;
 import com.mabsplace.mabsplaceback.domain.repositories.RoleRepository;
+import com.mabsplace.mabsplaceback.domain.repositories.UserProfileRepository;
 import com.mabsplace.mabsplaceback.exceptions.ResourceNotFoundException;
+import com.mabsplace.mabsplaceback.security.PermissionRegistry;
+import com.mabsplace.mabsplaceback.security.PrincipalCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -16,11 +19,21 @@ public class RoleService {
 
   private final RoleRepository roleRepository;
   private final RoleMapper mapper;
+  private final PrincipalCache principalCache;
+  private final UserProfileRepository userProfileRepository;
+  private final UserProfileService userProfileService;
+  private final PermissionRegistry permissionRegistry;
   private static final Logger logger = LoggerFactory.getLogger(RoleService.class);
 
-  public RoleService(RoleRepository roleRepository, RoleMapper mapper) {
+  public RoleService(RoleRepository roleRepository, RoleMapper mapper, PrincipalCache principalCache,
+                     UserProfileRepository userProfileRepository, UserProfileService userProfileService,
+                     PermissionRegistry permissionRegistry) {
     this.roleRepository = roleRepository;
     this.mapper = mapper;
+    this.principalCache = principalCache;
+    this.userProfileRepository = userProfileRepository;
+    this.userProfileService = userProfileService;
+    this.permissionRegistry = permissionRegistry;
   }
 
   public Role createRole(RoleRequestDto roleRequestDto) {
@@ -50,6 +63,9 @@ public class RoleService {
 
     Role updated = mapper.partialUpdate(updatedRole, existingRole);
     Role savedRole = roleRepository.save(updated);
+    userProfileRepository.findByRoles_Id(id).forEach(userProfileService::revokeProfileTokens);
+    principalCache.invalidateAll();
+    permissionRegistry.invalidateAll();
     logger.info("Role updated successfully: {}", savedRole);
     return savedRole;
   }
@@ -60,7 +76,10 @@ public class RoleService {
       logger.error("Role not found with ID: {}", id);
       throw new ResourceNotFoundException("Role", "id", id);
     }
+    userProfileRepository.findByRoles_Id(id).forEach(userProfileService::revokeProfileTokens);
     roleRepository.deleteById(id);
+    principalCache.invalidateAll();
+    permissionRegistry.invalidateAll();
     logger.info("Deleted role successfully with ID: {}", id);
   }
 
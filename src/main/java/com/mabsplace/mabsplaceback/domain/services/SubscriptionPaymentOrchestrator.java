@@ -6,14 +6,17 @@ import com.mabsplace.mabsplaceback.domain.dtos.subscription.SubscriptionRequestD
 import com.mabsplace.mabsplaceback.domain.dtos.expense.ExpenseRequestDto;
 import com.mabsplace.mabsplaceback.domain.entities.*;
 import com.mabsplace.mabsplaceback.domain.enums.*;
+import com.mabsplace.mabsplaceback.domain.events.PaymentCreatedEvent;
+import com.mabsplace.mabsplaceback.domain.events.SubscriptionStateChangedEvent;
 import com.mabsplace.mabsplaceback.domain.mappers.PaymentMapper;
 import com.mabsplace.mabsplaceback.domain.mappers.SubscriptionMapper;
 import com.mabsplace.mabsplaceback.domain.repositories.*;
+import com.mabsplace.mabsplaceback.exceptions.InsufficientFundsException;
 import com.mabsplace.mabsplaceback.exceptions.ResourceNotFoundException;
 import com.mabsplace.mabsplaceback.utils.Utils;
-import jakarta.mail.MessagingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -45,6 +48,8 @@ public class SubscriptionPaymentOrchestrator {
     private final TransactionRepository transactionRepository;
     private final ExpenseService expenseService;
     private final DiscordService discordService;
+    private final DailyRollupService dailyRollupService;
+    private final ApplicationEventPublisher eventPublisher;
 
     private static final Logger log = LoggerFactory.getLogger(SubscriptionPaymentOrchestrator.class);
     private final ExpenseCategoryService expenseCategoryService;
@@ -67,7 +72,9 @@ public class SubscriptionPaymentOrchestrator {
             TransactionRepository transactionRepository,
             ExpenseService expenseService,
             ExpenseCategoryService expenseCategoryService,
-            DiscordService discordService) {
+            DiscordService discordService,
+            DailyRollupService dailyRollupService,
+            ApplicationEventPublisher eventPublisher) {
         this.walletService = walletService;
         this.subscriptionRepository = subscriptionRepository;
         this.paymentRepository = paymentRepository;
@@ -86,6 +93,8 @@ public class SubscriptionPaymentOrchestrator {
         this.expenseService = expenseService;
         this.expenseCategoryService = expenseCategoryService;
         this.discordService = discordService;
+        this.dailyRollupService = dailyRollupService;
+        this.eventPublisher = eventPublisher;
     }
 
     public Payment processPaymentWithoutSubscription(PaymentRequestDto paymentRequest) {
@@ -94,31 +103,21 @@ public class SubscriptionPaymentOrchestrator {
         double discount = discountService.getDiscountForUser(user.getId());
 
         BigDecimal amountAfterDiscount = paymentRequest.getAmount().subtract(BigDecimal.valueOf(discount));
-        BigDecimal amountWithPromo = BigDecimal.ZERO;
+        // The amount to charge, less the promo code's discount when one was given, even if it makes it free
+        BigDecimal finalAmount = amountAfterDiscount;
 
         if (paymentRequest.getPromoCode() != null && !paymentRequest.getPromoCode().isEmpty()) {
             PromoCodeResponseDto promoCodeResponseDto = promoCodeService.validatePromoCode(paymentRequest.getPromoCode(), user);
             BigDecimal discountMultiplier = BigDecimal.ONE.subtract(
                     promoCodeResponseDto.getDiscountAmount().divide(BigDecimal.valueOf(100)));
-            amountWithPromo = amountAfterDiscount.multiply(discountMultiplier)
+            finalAmount = amountAfterDiscount.multiply(discountMultiplier)
                     .setScale(2, RoundingMode.HALF_UP);
         }
 
         log.info("Amount after discount: " + amountAfterDiscount);
+        log.info("Amount to charge: {}", finalAmount);
 
-        // Determine the final amount to charge
-        BigDecimal finalAmount = amountWithPromo.compareTo(BigDecimal.ZERO) != 0 ? amountWithPromo : amountAfterDiscount;
-
-        // Skip balance check for zero-dollar transactions (100% discount promo codes)
-        if (finalAmount.compareTo(BigDecimal.ZERO) > 0) {
-            if (!walletService.checkBalance(user.getWallet().getBalance(), finalAmount)) {
-                throw new RuntimeException("Insufficient funds");
-            }
-        } else {
-            log.info("Skipping balance check for zero-dollar transaction due to 100% discount");
-        }
-
-        Payment payment = createPayment(user, paymentRequest, amountAfterDiscount);
+        Payment payment = createPayment(user, paymentRequest, amountAfterDiscount, finalAmount);
 
         if (payment.getStatus() == PaymentStatus.PAID && user.getReferrer() != null && !payment.getSubscriptionPlan().getName().equals("Trial")) {
             User referrer = user.getReferrer();
@@ -131,7 +130,7 @@ public class SubscriptionPaymentOrchestrator {
     }
 
     @Transactional(rollbackFor = Exception.class)
-    public Payment processPaymentAndCreateSubscription(PaymentRequestDto paymentRequest) throws MessagingException {
+    public Payment processPaymentAndCreateSubscription(PaymentRequestDto paymentRequest) {
         log.info("Starting payment and subscription creation for user: {}, amount: {}",
                 paymentRequest.getUserId(), paymentRequest.getAmount());
 
@@ -141,33 +140,23 @@ public class SubscriptionPaymentOrchestrator {
         double discount = discountService.getDiscountForUser(user.getId());
 
         BigDecimal amountAfterDiscount = paymentRequest.getAmount().subtract(BigDecimal.valueOf(discount));
-        BigDecimal amountWithPromo = BigDecimal.ZERO;
+        // The amount to charge, less the promo code's discount when one was given, even if it makes it free
+        BigDecimal finalAmount = amountAfterDiscount;
 
         if (paymentRequest.getPromoCode() != null && !paymentRequest.getPromoCode().isEmpty()) {
             PromoCodeResponseDto promoCodeResponseDto = promoCodeService.validatePromoCode(paymentRequest.getPromoCode(), user);
             BigDecimal discountMultiplier = BigDecimal.ONE.subtract(
                     promoCodeResponseDto.getDiscountAmount().divide(BigDecimal.valueOf(100)));
-            amountWithPromo = amountAfterDiscount.multiply(discountMultiplier)
+            finalAmount = amountAfterDiscount.multiply(discountMultiplier)
                     .setScale(2, RoundingMode.HALF_UP);
         }
 
         log.info("Amount after discount: " + amountAfterDiscount);
-
-        // Determine the final amount to charge
-        BigDecimal finalAmount = amountWithPromo.compareTo(BigDecimal.ZERO) != 0 ? amountWithPromo : amountAfterDiscount;
-
-        // Skip balance check for zero-dollar transactions (100% discount promo codes)
-        if (finalAmount.compareTo(BigDecimal.ZERO) > 0) {
-            if (!walletService.checkBalance(user.getWallet().getBalance(), finalAmount)) {
-                throw new RuntimeException("Insufficient funds");
-            }
-        } else {
-            log.info("Skipping balance check for zero-dollar transaction due to 100% discount");
-        }
+        log.info("Amount to charge: {}", finalAmount);
 
         try {
             // Create payment and debit wallet - this is now part of the transaction
-            Payment payment = createPayment(user, paymentRequest, amountAfterDiscount);
+            Payment payment = createPayment(user, paymentRequest, amountAfterDiscount, finalAmount);
             log.info("Payment created successfully: {}, Status: {}", payment.getId(), payment.getStatus());
 
             // Create subscription if payment successful
@@ -252,6 +241,7 @@ public class SubscriptionPaymentOrchestrator {
                 log.info("Preventing trial renewal to trial plan for subscription ID: {}", subscription.getId());
                 subscription.setStatus(SubscriptionStatus.CANCELLED);
                 subscriptionRepository.save(subscription);
+                eventPublisher.publishEvent(new SubscriptionStateChangedEvent(this, subscription));
                 return false;
             }
             log.info("Allowing trial renewal to non-trial plan for subscription ID: {}", subscription.getId());
@@ -322,7 +312,17 @@ public class SubscriptionPaymentOrchestrator {
         }
     }
 
-    private Payment createPayment(User user, PaymentRequestDto paymentRequestDto, BigDecimal amountAfterDiscount) {
+    /**
+     * Debits the wallet with the amount to charge, then saves the payment and records the use of its promo code.
+     * The balance is checked here, before any write, so that a wallet that cannot pay fails the payment without
+     * marking the caller's transaction for rollback: a failed renewal is still recorded as an attempt. The debit's
+     * own check only fails if the balance dropped in the meantime, and then the whole transaction is rolled back.
+     *
+     * @param amountToCharge the amount after discount, less the promo code's discount when there is one
+     * @throws InsufficientFundsException if the balance does not cover the amount to charge
+     */
+    private Payment createPayment(User user, PaymentRequestDto paymentRequestDto, BigDecimal amountAfterDiscount,
+                                  BigDecimal amountToCharge) {
         Payment entity = paymentMapper.toEntity(paymentRequestDto);
 
         entity.setUser(user);
@@ -332,20 +332,25 @@ public class SubscriptionPaymentOrchestrator {
         entity.setAmount(amountAfterDiscount);
         entity.setStatus(PaymentStatus.PAID);
 
-        // Apply promo code if provided
-        if (paymentRequestDto.getPromoCode() != null && !paymentRequestDto.getPromoCode().isEmpty()) {
-            promoCodeService.applyPromoCode(paymentRequestDto.getPromoCode(), entity);
-        }
-
-        // Only debit wallet if the amount is greater than zero
-        if (entity.getAmount().compareTo(BigDecimal.ZERO) > 0) {
-            log.info("Debiting wallet with amount: {}", entity.getAmount());
-            walletService.debit(user.getWallet().getId(), entity.getAmount());
+        // Only debit wallet if the amount is greater than zero (100% discount promo codes)
+        if (amountToCharge.compareTo(BigDecimal.ZERO) > 0) {
+            if (!walletService.checkBalance(user.getId(), amountToCharge)) {
+                throw new InsufficientFundsException(user.getWallet().getId(), amountToCharge);
+            }
+            log.info("Debiting wallet with amount: {}", amountToCharge);
+            walletService.debit(user.getWallet().getId(), amountToCharge);
         } else {
             log.info("Skipping wallet debit for zero-dollar transaction");
         }
 
+        // Apply promo code if provided, now that the wallet was debited: sets the same discounted amount
+        if (paymentRequestDto.getPromoCode() != null && !paymentRequestDto.getPromoCode().isEmpty()) {
+            promoCodeService.applyPromoCode(paymentRequestDto.getPromoCode(), entity);
+        }
+
         Payment savedPayment = paymentRepository.save(entity);
+        dailyRollupService.recordPayment(savedPayment);
+        eventPublisher.publishEvent(new PaymentCreatedEvent(this, savedPayment));
 
         // Notify admins of new payment
         notificationService.notifyAdminsOfNewPayment(savedPayment);
@@ -679,7 +684,9 @@ public class SubscriptionPaymentOrchestrator {
         log.info("Sending notification to user ID: {}", newSubscription.getUser().getId());
         notificationService.sendNotificationToUser(newSubscription.getUser().getId(), "Subscription updated successfully", "Your subscription has been updated.", new HashMap<>());
         notificationService.notifyAdminsOfNewSubscription(newSubscription);
-        return subscriptionRepository.save(newSubscription);
+        Subscription savedSubscription = subscriptionRepository.save(newSubscription);
+        eventPublisher.publishEvent(new SubscriptionStateChangedEvent(this, savedSubscription));
+        return savedSubscription;
     }
 
     public void createSubscription(SubscriptionRequestDto subscription) {
@@ -10,6 +10,8 @@ import com.mabsplace.mabsplaceback.domain.enums.ProfileStatus;
 import com.mabsplace.mabsplaceback.domain.enums.SubscriptionStatus;
 import com.mabsplace.mabsplaceback.domain.enums.TaskStatus;
 import com.mabsplace.mabsplaceback.domain.enums.TaskType;
+import com.mabsplace.mabsplaceback.domain.events.SubscriptionStateChangedEvent;
+import com.mabsplace.mabsplaceback.domain.events.SubscriptionsExpiredEvent;
 import com.mabsplace.mabsplaceback.domain.mappers.SubscriptionMapper;
 import com.mabsplace.mabsplaceback.domain.repositories.*;
 import com.mabsplace.mabsplaceback.exceptions.ResourceNotFoundException;
@@ -18,11 +20,19 @@ import jakarta.mail.MessagingException;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
@@ -31,6 +41,7 @@ import java.util.List;
 @Service
 public class SubscriptionService {
     private static final Logger logger = LoggerFactory.getLogger(SubscriptionService.class);
+    private static final String RENEWAL_JOB = "subscription-renewals";
     private final SubscriptionRepository subscriptionRepository;
     private final SubscriptionMapper mapper;
     private final UserRepository userRepository;
@@ -48,8 +59,16 @@ public class SubscriptionService {
     private final TaskRepository taskRepository;
     private final PaymentRepository paymentRepository;
     private final NotificationOrchestrator notificationOrchestrator;
-
-    public SubscriptionService(SubscriptionRepository subscriptionRepository, SubscriptionMapper mapper, UserRepository userRepository, SubscriptionPlanRepository subscriptionPlanRepository, ProfileRepository profileRepository, ServiceAccountService serviceAccountService, MyServiceService myServiceService, MyServiceRepository myServiceRepository, NotificationService notificationService, WalletService walletService, SubscriptionPaymentOrchestrator orchestrator, DiscordService discordService, WhatsAppService whatsAppService, TaskService taskService, TaskRepository taskRepository, PaymentRepository paymentRepository, NotificationOrchestrator notificationOrchestrator) {
+    private final DailyRollupService dailyRollupService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ChunkedJobRunner jobRunner;
+    private final JobLockService jobLockService;
+    private final int renewalChunkSize;
+    private final int renewalShards;
+    private final int expiryBatchSize;
+
+    public SubscriptionService(SubscriptionRepository subscriptionRepository, SubscriptionMapper mapper, UserRepository userRepository, SubscriptionPlanRepository subscriptionPlanRepository, ProfileRepository profileRepository, ServiceAccountService serviceAccountService, MyServiceService myServiceService, MyServiceRepository myServiceRepository, NotificationService notificationService, WalletService walletService, SubscriptionPaymentOrchestrator orchestrator, DiscordService discordService, WhatsAppService whatsAppService, TaskService taskService, TaskRepository taskRepository, PaymentRepository paymentRepository, NotificationOrchestrator notificationOrchestrator, DailyRollupService dailyRollupService, ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager, ChunkedJobRunner jobRunner, JobLockService jobLockService, @Value("${app.renewals.chunk-size:500}") int renewalChunkSize, @Value("${app.renewals.shards:4}") int renewalShards, @Value("${app.expiry.batch-size:500}") int expiryBatchSize) {
         this.subscriptionRepository = subscriptionRepository;
         this.mapper = mapper;
         this.userRepository = userRepository;
@@ -67,27 +86,53 @@ public class SubscriptionService {
         this.taskRepository = taskRepository;
         this.paymentRepository = paymentRepository;
         this.notificationOrchestrator = notificationOrchestrator;
+        this.dailyRollupService = dailyRollupService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jobRunner = jobRunner;
+        this.jobLockService = jobLockService;
+        this.renewalChunkSize = renewalChunkSize;
+        this.renewalShards = Math.max(1, renewalShards);
+        this.expiryBatchSize = Math.max(1, expiryBatchSize);
     }
 
+    /**
+     * Renews due auto-renewing subscriptions in chunks of ids, one transaction per subscription, resuming
+     * after the last one done if the previous run did not finish.
+     * The subscriptions are split by id into shards that the nodes of the cluster share out, each shard with
+     * its own lock and checkpoint.
+     *
+     * @return the runs of the shards processed on this node
+     */
     @Scheduled(cron = "0 5 0 * * *") // Runs daily at 00:05 (staggered to reduce Discord rate limiting)
-    public void processSubscriptionRenewals() throws MessagingException {
+    public List<ChunkedJobRunner.Summary> processSubscriptionRenewals() {
         logger.info("Starting daily subscription renewal process");
-        Date today = new Date();
-        List<Subscription> subscriptionsToRenew = subscriptionRepository
-                .findByStatusAndEndDateBeforeAndAutoRenewTrue(
-                        SubscriptionStatus.ACTIVE,
-                        today
-                );
-        logger.info("Found {} subscriptions to renew", subscriptionsToRenew.size());
+        List<ChunkedJobRunner.Summary> summaries = jobLockService.runSharded(RENEWAL_JOB, renewalShards,
+                shard -> jobRunner.run(shard.name(), renewalChunkSize,
+                        (cutoff, afterId, limit) -> subscriptionRepository.findRenewalIdsAfter(
+                                SubscriptionStatus.ACTIVE, Timestamp.valueOf(cutoff), afterId,
+                                shard.count(), shard.index(), PageRequest.of(0, limit)),
+                        this::renewIfDue));
+        logger.info("Completed daily subscription renewal process: {} of {} shards run here, {} renewals processed, {} failed",
+                summaries.size(), renewalShards,
+                summaries.stream().mapToLong(ChunkedJobRunner.Summary::processed).sum(),
+                summaries.stream().mapToLong(ChunkedJobRunner.Summary::failed).sum());
+        return summaries;
+    }
 
-        for (Subscription subscription : subscriptionsToRenew) {
-            logger.debug("Processing renewal for subscription ID: {}", subscription.getId());
-            processRenewal(subscription);
+    private void renewIfDue(long subscriptionId, LocalDateTime cutoff) {
+        // Re-read in the item's transaction: it may have been renewed or cancelled since its id was read
+        Subscription subscription = subscriptionRepository.findById(subscriptionId).orElse(null);
+        if (subscription == null || subscription.getStatus() != SubscriptionStatus.ACTIVE || !subscription.isAutoRenew()
+                || !subscription.getEndDate().before(Timestamp.valueOf(cutoff))) {
+            logger.debug("Subscription ID: {} is no longer due for renewal", subscriptionId);
+            return;
         }
-        logger.info("Completed daily subscription renewal process");
+        logger.debug("Processing renewal for subscription ID: {}", subscriptionId);
+        processRenewal(subscription);
     }
 
-    private void processRenewal(Subscription subscription) throws MessagingException {
+    private void processRenewal(Subscription subscription) {
         logger.info("Processing renewal for subscription ID: {} - Attempt #{}",
                 subscription.getId(), subscription.getRenewalAttempts() + 1);
 
@@ -114,7 +159,7 @@ public class SubscriptionService {
 
     }
 
-    private void renewSubscription(Subscription subscription, SubscriptionPlan plan) throws MessagingException {
+    private void renewSubscription(Subscription subscription, SubscriptionPlan plan) {
         logger.info("Renewing subscription ID: {} with plan ID: {}", subscription.getId(), plan.getId());
 
         // Create new subscription period
@@ -130,50 +175,61 @@ public class SubscriptionService {
         subscription.setSubscriptionPlan(plan);
         subscription.setNextSubscriptionPlan(null);
 
-        subscriptionRepository.save(subscription);
-        logger.info("Successfully updated subscription details for ID: {}", subscription.getId());
+        // The notifications are queued in the outbox with the renewal, so they go out only if it commits
+        transactionTemplate.executeWithoutResult(status -> {
+            subscriptionRepository.save(subscription);
+            dailyRollupService.recordSubscriptionRenewed(subscription);
+            eventPublisher.publishEvent(new SubscriptionStateChangedEvent(this, subscription));
 
-        // Send multi-channel notifications (email, push, SMS, Discord)
-        notificationOrchestrator.notifySubscriptionRenewed(subscription);
+            // Send multi-channel notifications (email, push, SMS, Discord)
+            notificationOrchestrator.notifySubscriptionRenewed(subscription);
+        });
+        logger.info("Successfully updated subscription details for ID: {}", subscription.getId());
     }
 
-    private void handleFailedRenewal(Subscription subscription) throws MessagingException {
+    private void handleFailedRenewal(Subscription subscription) {
         subscription.setRenewalAttempts(subscription.getRenewalAttempts() + 1);
         subscription.setLastRenewalAttempt(new Date());
 
         if (subscription.getRenewalAttempts() >= 4) {
             cancelSubscription(subscription);
         } else {
-            subscriptionRepository.save(subscription);
+            transactionTemplate.executeWithoutResult(status -> {
+                subscriptionRepository.save(subscription);
 
-            // Send multi-channel notifications (email, push, SMS, Discord)
-            notificationOrchestrator.notifyRenewalFailed(subscription, subscription.getRenewalAttempts());
+                // Send multi-channel notifications (email, push, SMS, Discord)
+                notificationOrchestrator.notifyRenewalFailed(subscription, subscription.getRenewalAttempts());
+            });
 
             // Create a task for admin to follow up
             taskService.createSubscriptionRenewalFailedTask(subscription);
         }
     }
 
-    private void cancelSubscription(Subscription subscription) throws MessagingException {
+    private void cancelSubscription(Subscription subscription) {
         logger.info("Cancelling subscription ID: {}", subscription.getId());
 
-        Profile profile = subscription.getProfile();
-        if (profile != null) {
-            logger.debug("Setting profile ID: {} to INACTIVE", profile.getId());
-            profile.setStatus(ProfileStatus.INACTIVE);
-            profileRepository.save(profile);
-            logger.info("Profile status updated to INACTIVE successfully");
-        } else
-            logger.debug("No profile associated with subscription ID: {}", subscription.getId());
+        transactionTemplate.executeWithoutResult(status -> {
+            Profile profile = subscription.getProfile();
+            if (profile != null) {
+                logger.debug("Setting profile ID: {} to INACTIVE", profile.getId());
+                profile.setStatus(ProfileStatus.INACTIVE);
+                profileRepository.save(profile);
+                logger.info("Profile status updated to INACTIVE successfully");
+            } else
+                logger.debug("No profile associated with subscription ID: {}", subscription.getId());
 
-        logger.debug("Setting subscription status to EXPIRED and turning off auto-renewal");
-        subscription.setStatus(SubscriptionStatus.EXPIRED);
-        subscription.setAutoRenew(false);
-        subscriptionRepository.save(subscription);
-        logger.info("Subscription updated successfully with status: {}", SubscriptionStatus.EXPIRED);
+            logger.debug("Setting subscription status to EXPIRED and turning off auto-renewal");
+            subscription.setStatus(SubscriptionStatus.EXPIRED);
+            subscription.setAutoRenew(false);
+            subscriptionRepository.save(subscription);
+            dailyRollupService.recordSubscriptionExpired(subscription);
+            eventPublisher.publishEvent(new SubscriptionStateChangedEvent(this, subscription));
 
-        // Send multi-channel notifications (email, push, SMS, Discord)
-        notificationOrchestrator.notifySubscriptionExpired(subscription);
+            // Send multi-channel notifications (email, push, SMS, Discord)
+            notificationOrchestrator.notifySubscriptionExpired(subscription);
+        });
+        logger.info("Subscription updated successfully with status: {}", SubscriptionStatus.EXPIRED);
     }
 
     public void updateRenewalPlan(Long subscriptionId, Long newPlanId) {
@@ -222,7 +278,7 @@ public class SubscriptionService {
         }
 
         notificationService.sendNotificationToUser(newSubscription.getUser().getId(), "Subscription updated successfully", "Your subscription has been updated.", new HashMap<>());
-        return subscriptionRepository.save(newSubscription);
+        return saveAndPublish(newSubscription);
     }
 
     public void deleteSubscription(Long id) {
@@ -234,6 +290,7 @@ public class SubscriptionService {
             profileRepository.save(profile);
         }
         subscriptionRepository.deleteById(id);
+        eventPublisher.publishEvent(new SubscriptionStateChangedEvent(this, subscription));
     }
 
     public Subscription getSubscriptionById(Long id) throws ResourceNotFoundException {
@@ -335,11 +392,15 @@ public class SubscriptionService {
         }
 
         notificationService.sendNotificationToUser(updated.getUser().getId(), "Subscription updated successfully", "Your subscription has been updated.", new HashMap<>());
-        return subscriptionRepository.save(updated);
+        return saveAndPublish(updated);
     }
 
     @Scheduled(cron = "0 10 0 * * ?") // Runs every day at 00:10 (staggered to reduce Discord rate limiting)
-    public void notifyExpiringSubscriptions() throws MessagingException {
+    public void scheduledNotifyExpiringSubscriptions() {
+        jobLockService.runOnce("notify-expiring-subscriptions", this::notifyExpiringSubscriptions);
+    }
+
+    public void notifyExpiringSubscriptions() {
         logger.info("Starting notification for expiring subscriptions");
         Date today = new Date();
         Date sevenDaysFromNow = Utils.addDays(today, 7);
@@ -362,21 +423,22 @@ public class SubscriptionService {
                 long diffInMillies = Math.abs(subscription.getEndDate().getTime() - new Date().getTime());
                 int daysRemaining = (int) (diffInMillies / (1000 * 60 * 60 * 24));
 
-                // Send multi-channel notifications (email, push, SMS, Discord)
-                notificationOrchestrator.notifySubscriptionExpiring(subscription, daysRemaining);
+                // The queued notifications and the follow-up task commit together with the expirationNotified flag.
+                // The task joins this transaction, so a failure to create it rolls everything back and the
+                // subscription is picked up again on the next run.
+                transactionTemplate.executeWithoutResult(status -> {
+                    // Send multi-channel notifications (email, push, SMS, Discord)
+                    notificationOrchestrator.notifySubscriptionExpiring(subscription, daysRemaining);
 
-                // Create task for admin to follow up with customer
-                try {
+                    // Create task for admin to follow up with customer
                     taskService.createSubscriptionReminderTask(subscription, daysRemaining);
                     logger.info("Created task for subscription ID: {}", subscription.getId());
 
                     // Mark as notified only after task is created successfully
                     subscription.setExpirationNotified(true);
                     subscriptionRepository.save(subscription);
-                    logger.info("Sent multi-channel expiring notifications for subscription ID: {}", subscription.getId());
-                } catch (Exception taskEx) {
-                    logger.error("Failed to create task for subscription ID: {}", subscription.getId(), taskEx);
-                }
+                    logger.info("Queued multi-channel expiring notifications for subscription ID: {}", subscription.getId());
+                });
             } catch (Exception e) {
                 logger.error("Failed to send expiration notification for subscription ID: {}", subscription.getId(), e);
             }
@@ -384,38 +446,68 @@ public class SubscriptionService {
     }
 
     @Scheduled(cron = "0 15 0 * * ?") // Runs every day at 00:15 (staggered to reduce Discord rate limiting)
-    public void expireSubscriptions() throws MessagingException {
+    public void scheduledExpireSubscriptions() {
+        jobLockService.runOnce("expire-subscriptions", this::expireSubscriptions);
+    }
+
+    public void expireSubscriptions() {
         logger.info("Starting daily subscription expiration process");
-        List<Subscription> subscriptions = subscriptionRepository.findSubscriptionsToExpire(new Date(), "EXPIRED");
-        logger.info("Found {} subscriptions to expire (autoRenew=false or renewalAttempts>=4)", subscriptions.size());
+        Date now = new Date();
+        List<Long> ids = subscriptionRepository.findIdsToExpire(now, SubscriptionStatus.EXPIRED);
+        logger.info("Found {} subscriptions to expire (autoRenew=false or renewalAttempts>=4)", ids.size());
+
+        int expired = 0;
+        for (int from = 0; from < ids.size(); from += expiryBatchSize) {
+            List<Long> batch = ids.subList(from, Math.min(from + expiryBatchSize, ids.size()));
+            List<Subscription> subscriptions = transactionTemplate.execute(status -> expireBatch(batch, now));
+            expired += subscriptions.size();
+
+            // Create a task for admin to handle post-expiration actions
+            subscriptions.forEach(taskService::createPostExpirationTask);
+        }
+
+        logger.info("Completed daily subscription expiration process. Expired {} subscriptions", expired);
 
+        // Last lifecycle cron of the night: record the resulting state of each service
+        dailyRollupService.snapshotSubscriptionState(LocalDate.now());
+    }
+
+    /**
+     * Expires the subscriptions of the batch that are still to expire, with one update per table, and queues
+     * their notifications in the same transaction.
+     *
+     * @return the subscriptions expired
+     */
+    private List<Subscription> expireBatch(List<Long> batch, Date now) {
+        List<Long> ids = subscriptionRepository.lockIdsToExpire(batch, now);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        profileRepository.updateStatusBySubscriptionIdIn(ids, ProfileStatus.INACTIVE);
+        subscriptionRepository.updateStatusByIdIn(ids, SubscriptionStatus.EXPIRED);
+        dailyRollupService.recordSubscriptionsExpired(ids);
+        eventPublisher.publishEvent(new SubscriptionsExpiredEvent(this, ids));
+
+        // Loaded after the updates, so they carry the new statuses
+        List<Subscription> subscriptions = subscriptionRepository.findWithDetailsByIdIn(ids);
         for (Subscription subscription : subscriptions) {
             logger.info("Expiring subscription ID: {} - User: {} - Service: {}",
                     subscription.getId(),
                     subscription.getUser().getUsername(),
                     subscription.getService().getName());
 
-            subscription.setStatus(SubscriptionStatus.EXPIRED);
-            Profile profile = subscription.getProfile();
-            if (profile != null) {
-                profile.setStatus(ProfileStatus.INACTIVE);
-                profileRepository.save(profile);
-            }
-
-            subscriptionRepository.save(subscription);
-
             // Send multi-channel notifications (email, push, SMS, Discord)
             notificationOrchestrator.notifySubscriptionExpired(subscription);
-            logger.info("Sent multi-channel notifications for expired subscription ID: {}", subscription.getId());
-
-            // Create a task for admin to handle post-expiration actions
-            taskService.createPostExpirationTask(subscription);
         }
-
-        logger.info("Completed daily subscription expiration process. Expired {} subscriptions", subscriptions.size());
+        logger.info("Expired {} subscriptions and queued their notifications", subscriptions.size());
+        return subscriptions;
     }
 
     @Scheduled(cron = "0 0 1 * * ?") // Runs every day at 1:00 AM
+    public void scheduledAuditExpiredSubscriptionProfiles() {
+        jobLockService.runOnce("audit-expired-subscription-profiles", this::auditExpiredSubscriptionProfiles);
+    }
+
     public void auditExpiredSubscriptionProfiles() {
         logger.info("Starting profile security audit for expired subscriptions");
 
@@ -460,6 +552,10 @@ public class SubscriptionService {
     }
 
     @Scheduled(cron = "0 0 2 1 * *") // Runs at 2:00 AM on the 1st day of every month
+    public void scheduledCreateInactiveCustomerFollowupTasks() {
+        jobLockService.runOnce("inactive-customer-followup-tasks", this::createInactiveCustomerFollowupTasks);
+    }
+
     public void createInactiveCustomerFollowupTasks() {
         logger.info("Starting monthly inactive customer follow-up task creation");
 
@@ -518,6 +614,12 @@ public class SubscriptionService {
     }
 
     // Helper method to calculate days since a given date
+    private Subscription saveAndPublish(Subscription subscription) {
+        Subscription saved = subscriptionRepository.save(subscription);
+        eventPublisher.publishEvent(new SubscriptionStateChangedEvent(this, saved));
+        return saved;
+    }
+
     private long calculateDaysSince(Date paymentDate) {
         long diffInMillies = Math.abs(new Date().getTime() - paymentDate.getTime());
         return diffInMillies / (1000 * 60 * 60 * 24);
@@ -527,14 +629,14 @@ public class SubscriptionService {
     public Subscription updateSubscriptionStatus(Long id, SubscriptionStatus newStatus) {
         Subscription subscription = subscriptionRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Subscription", "id", id));
         subscription.setStatus(newStatus);
-        return subscriptionRepository.save(subscription);
+        return saveAndPublish(subscription);
     }
 
     // Extend Subscription
     public Subscription extendSubscription(Long id, int additionalDays) {
         Subscription subscription = subscriptionRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Subscription", "id", id));
         subscription.setEndDate(Utils.addDays(subscription.getEndDate(), additionalDays));
-        return subscriptionRepository.save(subscription);
+        return saveAndPublish(subscription);
     }
 
     // Find Subscriptions by User
@@ -552,7 +654,7 @@ public class SubscriptionService {
         List<Subscription> subscriptions = subscriptionRepository.findAllById(subscriptionIds);
         for (Subscription subscription : subscriptions) {
             mapper.partialUpdate(updatedData, subscription);
-            subscriptionRepository.save(subscription);
+            saveAndPublish(subscription);
         }
         return subscriptions;
     }
@@ -631,7 +733,7 @@ public class SubscriptionService {
             logger.info("Reactivated profile ID: {}", profile.getId());
         }
 
-        subscription = subscriptionRepository.save(subscription);
+        subscription = saveAndPublish(subscription);
         logger.info("Successfully saved renewed subscription ID: {}", subscription.getId());
 
         // Send multi-channel notifications (email, push, SMS, Discord)
@@ -712,7 +814,7 @@ public class SubscriptionService {
         subscription.setExpirationNotified(false); // Reset notification flag
         subscription.setIsTrial(false); // No longer trial after renewal
 
-        subscription = subscriptionRepository.save(subscription);
+        subscription = saveAndPublish(subscription);
         logger.info("Successfully saved renewed subscription ID: {}", subscription.getId());
 
         // 7. Send multi-channel notifications (email, push, SMS, Discord)
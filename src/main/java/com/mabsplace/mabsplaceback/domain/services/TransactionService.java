@@ -13,22 +13,20 @@ import com.mabsplace.mabsplaceback.domain.repositories.CurrencyRepository;
 import com.mabsplace.mabsplaceback.domain.repositories.TransactionRepository;
 import com.mabsplace.mabsplaceback.domain.repositories.UserRepository;
 import com.mabsplace.mabsplaceback.domain.repositories.WalletRepository;
+import com.mabsplace.mabsplaceback.exceptions.CoolPayUnavailableException;
 import com.mabsplace.mabsplaceback.exceptions.ResourceNotFoundException;
+import com.mabsplace.mabsplaceback.utils.CoolPaySignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 @Service
 public class TransactionService {
@@ -40,14 +38,13 @@ public class TransactionService {
     private final CurrencyRepository currencyRepository;
     private final UserRepository userRepository;
 
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
-
     private final CoolPayService coolPayService;
+    private final JobLockService jobLockService;
 
     @Value("${mabsplace.app.privateKey}")
     private String privateKey;
 
-    public TransactionService(TransactionRepository transactionRepository, TransactionMapper mapper, WalletRepository walletRepository, WalletService walletService, CurrencyRepository currencyRepository, UserRepository userRepository, CoolPayService coolPayService) {
+    public TransactionService(TransactionRepository transactionRepository, TransactionMapper mapper, WalletRepository walletRepository, WalletService walletService, CurrencyRepository currencyRepository, UserRepository userRepository, CoolPayService coolPayService, JobLockService jobLockService) {
         this.transactionRepository = transactionRepository;
         this.mapper = mapper;
         this.walletRepository = walletRepository;
@@ -55,6 +52,7 @@ public class TransactionService {
         this.currencyRepository = currencyRepository;
         this.userRepository = userRepository;
         this.coolPayService = coolPayService;
+        this.jobLockService = jobLockService;
     }
 
     // implement method to change a transaction status
@@ -111,7 +109,12 @@ public class TransactionService {
                 .customer_phone_number(transaction.getSenderPhoneNumber())
                 .build();
 
-        return coolPayService.generatePaymentLink(build);
+        try {
+            return coolPayService.generatePaymentLink(build);
+        } catch (CoolPayUnavailableException e) {
+            cancelUnsentTopUp(save);
+            throw e;
+        }
     }
 
     public TransactionResponseDto topUpWalletMobile(TransactionRequestDto transaction) throws ResourceNotFoundException {
@@ -141,11 +144,26 @@ public class TransactionService {
                 .customer_phone_number(transaction.getSenderPhoneNumber())
                 .build();
 
-        executorService.submit(() -> coolPayService.makePayment(build));
+        try {
+            coolPayService.makePaymentAsync(build);
+        } catch (CoolPayUnavailableException e) {
+            cancelUnsentTopUp(save);
+            throw e;
+        }
 
         return mapper.toDto(save);
     }
 
+    /**
+     * Cancels a top-up whose payment CoolPay never received, so that it does not stay PENDING until the hourly
+     * cleanup and cannot be credited by a late callback.
+     */
+    private void cancelUnsentTopUp(Transaction transaction) {
+        transaction.setTransactionStatus(TransactionStatus.CANCELLED);
+        transactionRepository.save(transaction);
+        logger.warn("CoolPay is unavailable, cancelled top-up transaction ID: {}", transaction.getId());
+    }
+
     // implement to transfer money from one wallet to another
     public TransactionResponseDto transferMoney(TransactionRequestDto transaction) throws ResourceNotFoundException {
         Transaction newTransaction = mapper.toEntity(transaction);
@@ -163,41 +181,17 @@ public class TransactionService {
     }
 
     public String calculateMD5Signature(Map<String, Object> data) {
-        logger.info("Calculating MD5 signature for data {}", data);
-        try {
-            // Construct the string as per the given concatenation rule
-            String dataString = String.valueOf(data.get("transaction_ref"))
-                    + data.get("transaction_type")
-                    + BigDecimal.valueOf(Double.parseDouble(data.get("transaction_amount").toString())).toPlainString()
-                    + data.get("transaction_currency")
-                    + data.get("transaction_operator")
-                    + privateKey;
-
-            logger.info("Data string for signature calculation: {}", dataString);
-
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] hashInBytes = md.digest(dataString.getBytes());
-
-            logger.info("MD5 hash for data string: {}", hashInBytes);
-
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashInBytes) {
-                sb.append(String.format("%02x", b));
-            }
-
-            logger.info("MD5 signature for data: {}", sb);
-
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            logger.error("MD5 cryptographic algorithm is not available.", e);
-            throw new RuntimeException("MD5 cryptographic algorithm is not available.", e);
-        }
+        return CoolPaySignature.of(data, privateKey);
     }
 
+    /**
+     * Applies a CoolPay callback to its transaction, once: the transaction is locked, and only moved while PENDING.
+     */
+    @Transactional
     public Transaction updateTransactionStatus(String transactionRef, String status) {
         logger.info("Updating payment status for transaction ref {}", transactionRef);
 
-        Transaction transaction = transactionRepository.findByTransactionRef(transactionRef).orElseThrow(() -> new RuntimeException("Payment not found."));
+        Transaction transaction = transactionRepository.findByTransactionRefForUpdate(transactionRef).orElseThrow(() -> new RuntimeException("Payment not found."));
 
         logger.info("Transaction status is {}", status);
 
@@ -218,6 +212,10 @@ public class TransactionService {
 
     // Runs every hour
     @Scheduled(fixedRate = 3600000)
+    public void scheduledCheckAndCancelPendingTransactions() {
+        jobLockService.runOnce("cancel-pending-transactions", this::checkAndCancelPendingTransactions);
+    }
+
     public void checkAndCancelPendingTransactions() {
         logger.info("Scheduled task initiated: Checking and cancelling pending transactions older than one hour.");
         // Calculate the time one hour ago
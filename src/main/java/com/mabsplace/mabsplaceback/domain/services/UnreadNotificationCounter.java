@@ -0,0 +1,260 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.mabsplace.mabsplaceback.domain.repositories.NotificationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps each user's count of unread notifications in Redis, so that the badge is read without counting rows.
+ * Counters are created from the database on the first read, and expire once they go unread for the TTL: every
+ * read pushes the expiry back. Changes are applied after
+ * their transaction commits, and only to counters that exist: a missing counter is rebuilt on its next read
+ * instead. A change that races a rebuild, or that is lost while Redis is unreachable, leaves the counter off
+ * until the reconciliation job compares it with the database again.
+ */
+@Service
+public class UnreadNotificationCounter {
+
+    private static final Logger logger = LoggerFactory.getLogger(UnreadNotificationCounter.class);
+
+    static final String KEY_PREFIX = "notifications:unread:";
+
+    // Adds ARGV[i] to KEYS[i] where the counter exists, never going below zero
+    private static final RedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>("""
+            for i, key in ipairs(KEYS) do
+              if redis.call('exists', key) == 1 and redis.call('incrby', key, ARGV[i]) < 0 then
+                redis.call('set', key, 0, 'KEEPTTL')
+              end
+            end
+            return #KEYS
+            """, Long.class);
+
+    private static final RedisScript<Long> SET_IF_EXISTS_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 1 then redis.call('set', KEYS[1], ARGV[1], 'KEEPTTL') return 1 end return 0",
+            Long.class);
+
+    // Corrects a counter only if it did not change since it was read
+    private static final RedisScript<Long> COMPARE_AND_SET_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then redis.call('set', KEYS[1], ARGV[2], 'KEEPTTL') return 1 end return 0",
+            Long.class);
+
+    private static final String COUNT_BY_USER_SQL = """
+            SELECT user_id, COUNT(*) AS unread FROM notifications
+            WHERE user_id IN (:userIds) AND is_read = false
+            GROUP BY user_id
+            """;
+
+    private static final int BATCH_SIZE = 500;
+
+    private final StringRedisTemplate redisTemplate;
+    private final NotificationRepository notificationRepository;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final JobLockService jobLockService;
+    private final MeterRegistry meterRegistry;
+    private final Duration ttl;
+
+    public UnreadNotificationCounter(StringRedisTemplate redisTemplate,
+                                     NotificationRepository notificationRepository,
+                                     JdbcTemplate jdbcTemplate,
+                                     JobLockService jobLockService,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${app.notifications.unread-counter.ttl:P30D}") Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.notificationRepository = notificationRepository;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.jobLockService = jobLockService;
+        this.meterRegistry = meterRegistry;
+        this.ttl = ttl;
+    }
+
+    /**
+     * The user's unread count, from Redis, or from the database when the counter is missing or Redis is down.
+     * Reading an existing counter renews its TTL.
+     */
+    public long get(Long userId) {
+        String key = KEY_PREFIX + userId;
+        try {
+            String cached = redisTemplate.opsForValue().getAndExpire(key, ttl);
+            if (cached != null) {
+                count("hit");
+                return Long.parseLong(cached);
+            }
+            long unread = countInDatabase(userId);
+            if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, Long.toString(unread), ttl))) {
+                // Rebuilt by another request in the meantime
+                String current = redisTemplate.opsForValue().get(key);
+                unread = current != null ? Long.parseLong(current) : unread;
+            }
+            count("miss");
+            return unread;
+        } catch (RuntimeException e) {
+            logger.warn("Unread counter of user {} unavailable, counting in the database: {}", userId, e.getMessage());
+            count("fallback");
+            return countInDatabase(userId);
+        }
+    }
+
+    /**
+     * Counts new unread notifications, once the transaction that inserts them commits.
+     */
+    public void added(Map<Long, Long> unreadByUser) {
+        if (!unreadByUser.isEmpty()) {
+            afterCommit(() -> add(unreadByUser));
+        }
+    }
+
+    /**
+     * Counts notifications read, once the transaction commits.
+     */
+    public void read(Long userId, long count) {
+        if (count > 0) {
+            afterCommit(() -> add(Map.of(userId, -count)));
+        }
+    }
+
+    /**
+     * Sets the user's counter to their count of unread notifications once the transaction commits, after all of
+     * their notifications were marked read: the ones that arrived meanwhile are still counted.
+     */
+    public void recount(Long userId) {
+        afterCommit(() -> {
+            try {
+                redisTemplate.execute(SET_IF_EXISTS_SCRIPT, List.of(KEY_PREFIX + userId), Long.toString(countInDatabase(userId)));
+            } catch (RuntimeException e) {
+                logger.warn("Could not recount the unread counter of user {}: {}", userId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Drops the user's counter once the transaction commits, for changes it cannot follow, such as deletes:
+     * it is rebuilt on its next read.
+     */
+    public void evict(Long userId) {
+        afterCommit(() -> {
+            try {
+                redisTemplate.delete(KEY_PREFIX + userId);
+            } catch (RuntimeException e) {
+                logger.warn("Could not drop the unread counter of user {}: {}", userId, e.getMessage());
+            }
+        });
+    }
+
+    private void add(Map<Long, Long> deltaByUser) {
+        List<Map.Entry<Long, Long>> entries = new ArrayList<>(deltaByUser.entrySet());
+        for (int from = 0; from < entries.size(); from += BATCH_SIZE) {
+            List<Map.Entry<Long, Long>> batch = entries.subList(from, Math.min(from + BATCH_SIZE, entries.size()));
+            try {
+                redisTemplate.execute(ADD_SCRIPT,
+                        batch.stream().map(entry -> KEY_PREFIX + entry.getKey()).toList(),
+                        batch.stream().map(entry -> entry.getValue().toString()).toArray());
+            } catch (RuntimeException e) {
+                logger.warn("Could not update {} unread counters: {}", batch.size(), e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(cron = "${app.notifications.unread-counter.reconcile-cron:0 20 * * * *}")
+    public void scheduledReconcile() {
+        jobLockService.runOnce("reconcile-unread-counters", this::reconcile);
+    }
+
+    /**
+     * Compares every existing counter with the database and corrects those that drifted.
+     *
+     * @return the number of counters corrected
+     */
+    public int reconcile() {
+        int checked = 0;
+        int corrected = 0;
+        List<String> keys = new ArrayList<>(BATCH_SIZE);
+        try (Cursor<String> cursor = redisTemplate.scan(ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(BATCH_SIZE).build())) {
+            while (cursor.hasNext()) {
+                keys.add(cursor.next());
+                if (keys.size() == BATCH_SIZE) {
+                    corrected += reconcile(keys);
+                    checked += keys.size();
+                    keys.clear();
+                }
+            }
+        }
+        if (!keys.isEmpty()) {
+            corrected += reconcile(keys);
+            checked += keys.size();
+        }
+        logger.info("Reconciled {} unread counters, {} corrected", checked, corrected);
+        return corrected;
+    }
+
+    private int reconcile(List<String> keys) {
+        // Read before counting: a counter that changes after this is left to the next run
+        List<String> cached = redisTemplate.opsForValue().multiGet(keys);
+        List<Long> userIds = keys.stream().map(key -> Long.parseLong(key.substring(KEY_PREFIX.length()))).toList();
+        Map<Long, Long> unreadByUser = new HashMap<>();
+        namedParameterJdbcTemplate.query(COUNT_BY_USER_SQL, new MapSqlParameterSource("userIds", userIds),
+                rs -> {
+                    unreadByUser.put(rs.getLong("user_id"), rs.getLong("unread"));
+                });
+
+        int corrected = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            String expected = cached.get(i);
+            String actual = Long.toString(unreadByUser.getOrDefault(userIds.get(i), 0L));
+            if (expected != null && !expected.equals(actual)
+                    && Long.valueOf(1).equals(redisTemplate.execute(COMPARE_AND_SET_SCRIPT, List.of(keys.get(i)), expected, actual))) {
+                corrected++;
+                Counter.builder("notifications.unread.corrected")
+                        .description("Unread counters the reconciliation found out of step with the database")
+                        .register(meterRegistry)
+                        .increment();
+            }
+        }
+        return corrected;
+    }
+
+    private long countInDatabase(Long userId) {
+        return notificationRepository.countUnreadNotifications(userId);
+    }
+
+    private static void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+
+    private void count(String result) {
+        Counter.builder("notifications.unread.reads")
+                .description("Unread count reads, by where they were served from")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+}
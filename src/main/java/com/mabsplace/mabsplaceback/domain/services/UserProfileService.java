@@ -11,6 +11,9 @@ import com.mabsplace.mabsplaceback.domain.repositories.ProfileRoleRepository;
 import com.mabsplace.mabsplaceback.domain.repositories.RoleRepository;
 import com.mabsplace.mabsplaceback.domain.repositories.UserProfileRepository;
 import com.mabsplace.mabsplaceback.domain.repositories.UserRepository;
+import com.mabsplace.mabsplaceback.security.PermissionRegistry;
+import com.mabsplace.mabsplaceback.security.PrincipalCache;
+import com.mabsplace.mabsplaceback.security.AuthorizationVersionRegistry;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -29,6 +32,9 @@ public class UserProfileService {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final ProfileRoleRepository profileRoleRepository;
+    private final PrincipalCache principalCache;
+    private final AuthorizationVersionRegistry authorizationVersionRegistry;
+    private final PermissionRegistry permissionRegistry;
 
     private static final Logger logger = LoggerFactory.getLogger(UserProfileService.class);
 
@@ -73,9 +79,14 @@ public class UserProfileService {
                             .orElseThrow(() -> new RuntimeException("Role not found: " + roleName)))
                     .collect(Collectors.toSet());
             profile.setRoles(roles);
+            profile.bumpRolesVersion();
         }
 
         UserProfile updatedProfile = userProfileRepository.save(profile);
+        // Every user holding this profile carries its roles in the cached principal
+        principalCache.invalidateAll();
+        authorizationVersionRegistry.invalidateProfile(profileId);
+        permissionRegistry.invalidateProfile(profileId);
         logger.info("User profile updated successfully: {}", profileId);
         return convertToDTO(updatedProfile);
     }
@@ -92,10 +103,13 @@ public class UserProfileService {
         usersWithProfile.forEach(user -> {
             user.setUserProfile(null);
             userRepository.save(user);
+            principalCache.invalidate(user.getId());
             logger.info("Removed profile from user ID: {}", user.getId());
         });
 
         userProfileRepository.delete(profile);
+        authorizationVersionRegistry.invalidateProfile(profileId);
+        permissionRegistry.invalidateProfile(profileId);
         logger.info("User profile deleted successfully: {}", profileId);
     }
 
@@ -113,8 +127,12 @@ public class UserProfileService {
                     return new RuntimeException("Profile not found");
                 });
 
+        if (user.getUserProfile() != null && !user.getUserProfile().getId().equals(profile.getId())) {
+            revokeUserTokens(user);
+        }
         user.setUserProfile(profile);
         userRepository.save(user);
+        principalCache.invalidate(user.getId());
         logger.info("Profile ID: {} assigned to user ID: {}", request.getProfileId(), request.getUserId());
 
         return convertToDTO(profile);
@@ -128,8 +146,12 @@ public class UserProfileService {
                     return new RuntimeException("User not found");
                 });
 
+        if (user.getUserProfile() != null) {
+            revokeUserTokens(user);
+        }
         user.setUserProfile(null);
         userRepository.save(user);
+        principalCache.invalidate(userId);
         logger.info("Profile removed successfully from user ID: {}", userId);
     }
 
@@ -153,6 +175,28 @@ public class UserProfileService {
         return convertToDTO(profile);
     }
 
+    /**
+     * Invalidates the authority-claim tokens of every holder of the profile, for changes to the
+     * profile's own roles. A change that concerns a single user goes through {@link #revokeUserTokens}.
+     */
+    public void revokeProfileTokens(UserProfile profile) {
+        if (profile == null) {
+            return;
+        }
+        profile.bumpRolesVersion();
+        userProfileRepository.save(profile);
+        authorizationVersionRegistry.invalidateProfile(profile.getId());
+    }
+
+    /**
+     * Invalidates the authority-claim tokens of one user, e.g. when the user is moved off a profile.
+     * The caller saves the user.
+     */
+    public void revokeUserTokens(User user) {
+        user.bumpAuthzVersion();
+        authorizationVersionRegistry.invalidateUser(user.getId());
+    }
+
     private UserProfileDTO convertToDTO(UserProfile profile) {
         UserProfileDTO dto = new UserProfileDTO();
         dto.setId(profile.getId());
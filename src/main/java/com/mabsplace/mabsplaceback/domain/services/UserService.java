@@ -10,6 +10,7 @@ import com.mabsplace.mabsplaceback.domain.mappers.UserMapper;
 import com.mabsplace.mabsplaceback.domain.repositories.UserProfileRepository;
 import com.mabsplace.mabsplaceback.domain.repositories.UserRepository;
 import com.mabsplace.mabsplaceback.minio.MinioService;
+import com.mabsplace.mabsplaceback.security.PrincipalCache;
 import com.mabsplace.mabsplaceback.utils.PasswordGenerator;
 import com.mabsplace.mabsplaceback.utils.PromoCodeGenerator;
 import jakarta.persistence.EntityNotFoundException;
@@ -37,19 +38,24 @@ public class UserService {
     private final UserProfileRepository userProfileRepository;
     private final PromoCodeGenerator promoCodeGenerator;
     private final PasswordGenerator passwordGenerator;
+    private final PrincipalCache principalCache;
+    private final UserProfileService userProfileService;
 
     @Autowired
     private PasswordEncoder passwordEncoder;
 
     public UserService(UserRepository userRepository, UserMapper mapper, MinioService minioService,
                       UserProfileRepository userProfileRepository, PromoCodeGenerator promoCodeGenerator,
-                      PasswordGenerator passwordGenerator) {
+                      PasswordGenerator passwordGenerator, PrincipalCache principalCache,
+                      UserProfileService userProfileService) {
         this.userRepository = userRepository;
         this.mapper = mapper;
         this.minioService = minioService;
         this.userProfileRepository = userProfileRepository;
         this.promoCodeGenerator = promoCodeGenerator;
         this.passwordGenerator = passwordGenerator;
+        this.principalCache = principalCache;
+        this.userProfileService = userProfileService;
     }
 
     public User getById(Long id) throws EntityNotFoundException {
@@ -64,6 +70,7 @@ public class UserService {
 
     public void deleteUser(Long id) {
         userRepository.deleteById(id);
+        principalCache.invalidate(id);
     }
 
     public User updateUser(Long id, UserRequestDto updatedUser) throws EntityNotFoundException {
@@ -102,6 +109,9 @@ public class UserService {
         
         if (updatedUser.getProfileName() != null && !updatedUser.getProfileName().isEmpty()) {
             UserProfile defaultProfile = userProfileRepository.findByName(updatedUser.getProfileName()).orElseThrow(() -> new EntityNotFoundException("Profile not found"));
+            if (updated.getUserProfile() != null && !updated.getUserProfile().getId().equals(defaultProfile.getId())) {
+                userProfileService.revokeUserTokens(updated);
+            }
             updated.setUserProfile(defaultProfile);
         }
         
@@ -117,7 +127,9 @@ public class UserService {
             updated.setReferralCode(originalReferralCode);
         }
         
-        return userRepository.save(updated);
+        User saved = userRepository.save(updated);
+        principalCache.invalidate(id);
+        return saved;
     }
 
     /**
@@ -220,6 +232,7 @@ public class UserService {
         if (optionalUser.isPresent() && passwordEncoder.matches(oldPassword, optionalUser.get().getPassword())) {
             optionalUser.get().setPassword(passwordEncoder.encode(newPassword));
             userRepository.save(optionalUser.get());
+            principalCache.invalidate(optionalUser.get().getId());
             logger.info("Password changed successfully for username: {}", username);
             return true;
         } else {
@@ -250,6 +263,7 @@ public class UserService {
         // Encode and save
         user.setPassword(passwordEncoder.encode(generatedPassword));
         userRepository.save(user);
+        principalCache.invalidate(user.getId());
 
         logger.info("Password reset successfully for user ID: {}", userId);
 
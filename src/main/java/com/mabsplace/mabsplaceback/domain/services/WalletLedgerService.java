@@ -0,0 +1,337 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.mabsplace.mabsplaceback.domain.enums.LedgerEntryType;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Maintains the append-only wallet ledger: wallet_ledger_entries, written by WalletService in the transaction
+ * that changes a balance, and wallet_balance_snapshots, written periodically so that the balance of a wallet
+ * at any time is its latest snapshot before that time plus the few entries after it.
+ * A nightly verification streams the whole ledger against Wallet.balance and reports the wallets that drifted.
+ */
+@Service
+public class WalletLedgerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalletLedgerService.class);
+
+    private static final int WALLET_CHUNK = 500;
+
+    /**
+     * A wallet whose balance is not the sum of its ledger entries.
+     */
+    public record Drift(long walletId, BigDecimal balance, BigDecimal ledgerBalance) {
+    }
+
+    /**
+     * @param drifts the first wallets found to drift, up to the report limit
+     */
+    public record VerificationReport(long wallets, long entries, long drifted, List<Drift> drifts) {
+    }
+
+    private static final String INSERT_ENTRY_SQL =
+            "INSERT INTO wallet_ledger_entries (wallet_id, entry_type, amount, created_at) VALUES (?, ?, ?, ?)";
+
+    private static final String SNAPSHOT_AT_SQL = """
+            SELECT balance, last_entry_id FROM wallet_balance_snapshots
+            WHERE wallet_id = ? AND last_entry_at <= ?
+            ORDER BY last_entry_id DESC
+            LIMIT 1
+            """;
+
+    private static final String TAIL_SQL = """
+            SELECT COALESCE(SUM(amount), 0) FROM wallet_ledger_entries
+            WHERE wallet_id = ? AND id > ? AND created_at <= ?
+            """;
+
+    // Entry ids are allocated before their transaction commits, so a recent id may be visible while a lower one
+    // is not yet: only entries older than the settle period are snapshotted
+    private static final String SNAPSHOT_CUTOFF_SQL =
+            "SELECT id FROM wallet_ledger_entries WHERE created_at <= ? ORDER BY id DESC LIMIT 1";
+
+    // Adds the entries after its latest snapshot to the balance of each wallet of the id range that has any.
+    // A snapshot up to the same entry is the same balance, so one already written by a concurrent run is kept.
+    private static final String SNAPSHOT_SQL = """
+            INSERT IGNORE INTO wallet_balance_snapshots (wallet_id, balance, last_entry_id, last_entry_at, created_at)
+            SELECT e.wallet_id, COALESCE(MAX(s.balance), 0) + SUM(e.amount), MAX(e.id), MAX(e.created_at), :now
+            FROM wallet_ledger_entries e
+            LEFT JOIN wallet_balance_snapshots s ON s.wallet_id = e.wallet_id AND s.last_entry_id = (
+                SELECT MAX(latest.last_entry_id) FROM wallet_balance_snapshots latest WHERE latest.wallet_id = e.wallet_id)
+            WHERE e.wallet_id > :fromWalletId AND e.wallet_id <= :toWalletId
+            AND e.id <= :cutoffId
+            AND e.id > COALESCE(s.last_entry_id, 0)
+            GROUP BY e.wallet_id
+            """;
+
+    // Ordered by wallet only: the entries of a wallet are summed, in any order
+    private static final String VERIFY_SQL = """
+            SELECT w.id AS wallet_id, COALESCE(w.balance, 0) AS balance, e.amount
+            FROM wallets w
+            LEFT JOIN wallet_ledger_entries e ON e.wallet_id = w.id
+            ORDER BY w.id
+            """;
+
+    private static final String LOCK_WALLETS_SQL =
+            "SELECT id, COALESCE(balance, 0) AS balance FROM wallets WHERE id > ? ORDER BY id LIMIT ? FOR UPDATE";
+
+    private static final String LEDGER_SUMS_SQL = """
+            SELECT wallet_id, SUM(amount) AS total, MAX(CASE WHEN entry_type = 'OPENING' THEN 1 ELSE 0 END) AS opened
+            FROM wallet_ledger_entries
+            WHERE wallet_id IN (:walletIds)
+            GROUP BY wallet_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate snapshotReadTemplate;
+    private final JobLockService jobLockService;
+    private final Duration settle;
+    private final int driftReportLimit;
+    private final boolean backfillOnStartup;
+    private final AtomicLong drifted = new AtomicLong();
+
+    public WalletLedgerService(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               JobLockService jobLockService,
+                               @Value("${app.wallet-ledger.settle:PT5M}") Duration settle,
+                               @Value("${app.wallet-ledger.drift-report-limit:100}") int driftReportLimit,
+                               @Value("${app.wallet-ledger.backfill-on-startup:true}") boolean backfillOnStartup) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jobLockService = jobLockService;
+        this.settle = settle;
+        this.driftReportLimit = driftReportLimit;
+        this.backfillOnStartup = backfillOnStartup;
+
+        // Rows are streamed one at a time by the MySQL driver rather than loaded all at once
+        this.streamingJdbcTemplate = new JdbcTemplate(Objects.requireNonNull(jdbcTemplate.getDataSource()));
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        // One consistent read, so balances and entries are seen as of the same instant
+        this.snapshotReadTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotReadTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotReadTemplate.setReadOnly(true);
+
+        Gauge.builder("wallet.ledger.drifted", drifted, AtomicLong::get)
+                .description("Wallets whose balance differed from their ledger at the last verification")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Appends an entry. Must run in the transaction that changes the balance, after the change, so that
+     * entries are written in the order the wallet row lock grants the changes.
+     *
+     * @param amount signed: negative for debits
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(long walletId, LedgerEntryType type, BigDecimal amount) {
+        if (amount == null || amount.signum() == 0) {
+            return;
+        }
+        jdbcTemplate.update(INSERT_ENTRY_SQL, walletId, type.name(), amount, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    /**
+     * The balance of the wallet at the given time, from its latest snapshot before then and the entries after it.
+     */
+    public BigDecimal balanceAt(long walletId, LocalDateTime at) {
+        Timestamp time = Timestamp.valueOf(at);
+        List<Map<String, Object>> snapshot = jdbcTemplate.queryForList(SNAPSHOT_AT_SQL, walletId, time);
+        BigDecimal balance = snapshot.isEmpty() ? BigDecimal.ZERO : (BigDecimal) snapshot.get(0).get("balance");
+        long lastEntryId = snapshot.isEmpty() ? 0 : ((Number) snapshot.get(0).get("last_entry_id")).longValue();
+        return balance.add(jdbcTemplate.queryForObject(TAIL_SQL, BigDecimal.class, walletId, lastEntryId, time));
+    }
+
+    @Scheduled(cron = "${app.wallet-ledger.snapshot-cron:0 0 4 * * *}") // Runs daily at 4:00 AM
+    public void scheduledSnapshot() {
+        jobLockService.runOnce("snapshot-wallet-balances", this::snapshot);
+    }
+
+    /**
+     * Snapshots every wallet with entries since its latest snapshot, a range of wallets per statement.
+     */
+    public void snapshot() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> cutoff = jdbcTemplate.queryForList(SNAPSHOT_CUTOFF_SQL, Long.class, Timestamp.valueOf(now.minus(settle)));
+        Long maxWalletId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM wallets", Long.class);
+        if (cutoff.isEmpty() || maxWalletId == null) {
+            return;
+        }
+        int snapshots = 0;
+        for (long from = 0; from < maxWalletId; from += WALLET_CHUNK) {
+            snapshots += namedParameterJdbcTemplate.update(SNAPSHOT_SQL, new MapSqlParameterSource()
+                    .addValue("now", Timestamp.valueOf(now))
+                    .addValue("fromWalletId", from)
+                    .addValue("toWalletId", from + WALLET_CHUNK)
+                    .addValue("cutoffId", cutoff.get(0)));
+        }
+        logger.info("Snapshotted the balance of {} wallets up to ledger entry {}", snapshots, cutoff.get(0));
+    }
+
+    @Scheduled(cron = "${app.wallet-ledger.verify-cron:0 30 4 * * *}") // Runs daily at 4:30 AM
+    public void verifyLedger() {
+        jobLockService.runOnce("verify-wallet-ledger", this::verify);
+    }
+
+    /**
+     * Streams every wallet with its ledger entries and compares each balance with the sum of its entries.
+     * Memory is bounded by the report limit, whatever the size of the ledger.
+     */
+    public VerificationReport verify() {
+        VerificationReport report = snapshotReadTemplate.execute(status -> {
+            DriftCollector collector = new DriftCollector();
+            streamingJdbcTemplate.query(VERIFY_SQL, collector);
+            return collector.finish();
+        });
+        drifted.set(report.drifted());
+        if (report.drifted() > 0) {
+            report.drifts().forEach(drift -> logger.warn("Wallet {} has balance {} but its ledger sums to {}",
+                    drift.walletId(), drift.balance(), drift.ledgerBalance()));
+            logger.warn("Ledger verification: {} of {} wallets drifted ({} entries read)",
+                    report.drifted(), report.wallets(), report.entries());
+        } else {
+            logger.info("Ledger verification: {} wallets match their {} ledger entries", report.wallets(), report.entries());
+        }
+        return report;
+    }
+
+    /**
+     * Gives every wallet whose balance predates the ledger an OPENING entry for the part of its balance that no
+     * entry accounts for. Each chunk of wallets is locked while it is read, so no debit or credit interleaves.
+     */
+    public void backfillOpeningBalances() {
+        long lastWalletId = 0;
+        int opened = 0;
+        while (true) {
+            long from = lastWalletId;
+            List<Map<String, Object>> wallets = new ArrayList<>();
+            int chunkOpened = transactionTemplate.execute(status -> {
+                wallets.addAll(jdbcTemplate.queryForList(LOCK_WALLETS_SQL, from, WALLET_CHUNK));
+                if (wallets.isEmpty()) {
+                    return 0;
+                }
+                Map<Long, BigDecimal> totals = new HashMap<>();
+                Set<Long> alreadyOpened = new HashSet<>();
+                namedParameterJdbcTemplate.query(LEDGER_SUMS_SQL,
+                        Map.of("walletIds", wallets.stream().map(wallet -> ((Number) wallet.get("id")).longValue()).toList()),
+                        (RowCallbackHandler) rs -> {
+                            totals.put(rs.getLong("wallet_id"), rs.getBigDecimal("total"));
+                            if (rs.getInt("opened") == 1) {
+                                alreadyOpened.add(rs.getLong("wallet_id"));
+                            }
+                        });
+                int inserted = 0;
+                for (Map<String, Object> wallet : wallets) {
+                    long walletId = ((Number) wallet.get("id")).longValue();
+                    BigDecimal missing = ((BigDecimal) wallet.get("balance"))
+                            .subtract(totals.getOrDefault(walletId, BigDecimal.ZERO));
+                    if (!alreadyOpened.contains(walletId) && missing.signum() != 0) {
+                        record(walletId, LedgerEntryType.OPENING, missing);
+                        inserted++;
+                    }
+                }
+                return inserted;
+            });
+            if (wallets.isEmpty()) {
+                break;
+            }
+            opened += chunkOpened;
+            lastWalletId = ((Number) wallets.get(wallets.size() - 1).get("id")).longValue();
+        }
+        logger.info("Opened the ledger of {} wallets with their existing balance", opened);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfNeverOpened() {
+        if (!backfillOnStartup) {
+            return;
+        }
+        Integer opened = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM (SELECT 1 FROM wallet_ledger_entries WHERE entry_type = 'OPENING' LIMIT 1) opening",
+                Integer.class);
+        if (opened != null && opened == 0) {
+            logger.info("Wallet ledger has no opening balances, backfilling them from the wallets");
+            backfillOpeningBalances();
+        }
+    }
+
+    /**
+     * Sums the rows of one wallet at a time, as they arrive ordered by wallet.
+     */
+    private class DriftCollector implements RowCallbackHandler {
+
+        private final List<Drift> drifts = new ArrayList<>();
+        private long wallets;
+        private long entries;
+        private long driftCount;
+        private Long walletId;
+        private BigDecimal balance;
+        private BigDecimal ledgerBalance;
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long rowWalletId = rs.getLong("wallet_id");
+            if (walletId == null || walletId != rowWalletId) {
+                compare();
+                walletId = rowWalletId;
+                balance = rs.getBigDecimal("balance");
+                ledgerBalance = BigDecimal.ZERO;
+                wallets++;
+            }
+            BigDecimal amount = rs.getBigDecimal("amount");
+            if (amount != null) {
+                ledgerBalance = ledgerBalance.add(amount);
+                entries++;
+            }
+        }
+
+        VerificationReport finish() {
+            compare();
+            return new VerificationReport(wallets, entries, driftCount, List.copyOf(drifts));
+        }
+
+        private void compare() {
+            if (walletId == null || balance.compareTo(ledgerBalance) == 0) {
+                return;
+            }
+            driftCount++;
+            if (drifts.size() < driftReportLimit) {
+                drifts.add(new Drift(walletId, balance, ledgerBalance));
+            }
+        }
+    }
+}
@@ -3,11 +3,14 @@ package com.mabsplace.mabsplaceback.domain.services;
 import com.mabsplace.mabsplaceback.domain.dtos.wallet.WalletRequestDto;
 import com.mabsplace.mabsplaceback.domain.entities.User;
 import com.mabsplace.mabsplaceback.domain.entities.Wallet;
+import com.mabsplace.mabsplaceback.domain.enums.LedgerEntryType;
 import com.mabsplace.mabsplaceback.domain.mappers.WalletMapper;
 import com.mabsplace.mabsplaceback.domain.repositories.CurrencyRepository;
 import com.mabsplace.mabsplaceback.domain.repositories.UserRepository;
 import com.mabsplace.mabsplaceback.domain.repositories.WalletRepository;
+import com.mabsplace.mabsplaceback.exceptions.InsufficientFundsException;
 import com.mabsplace.mabsplaceback.exceptions.ResourceNotFoundException;
+import jakarta.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -24,14 +27,18 @@ public class WalletService {
   private final WalletMapper mapper;
   private final UserRepository userRepository;
   private final CurrencyRepository currencyRepository;
+  private final EntityManager entityManager;
+  private final WalletLedgerService ledgerService;
 
   private static final Logger logger = LoggerFactory.getLogger(WalletService.class);
 
-  public WalletService(WalletRepository walletRepository, WalletMapper mapper, UserRepository userRepository, CurrencyRepository currencyRepository) {
+  public WalletService(WalletRepository walletRepository, WalletMapper mapper, UserRepository userRepository, CurrencyRepository currencyRepository, EntityManager entityManager, WalletLedgerService ledgerService) {
     this.walletRepository = walletRepository;
     this.mapper = mapper;
     this.userRepository = userRepository;
     this.currencyRepository = currencyRepository;
+    this.entityManager = entityManager;
+    this.ledgerService = ledgerService;
   }
 
   public Wallet createWallet(WalletRequestDto wallet) throws ResourceNotFoundException {
@@ -48,6 +55,7 @@ public class WalletService {
             return new ResourceNotFoundException("Currency", "id", wallet.getCurrencyId());
         }));
     Wallet savedWallet = walletRepository.save(newWallet);
+    ledgerService.record(savedWallet.getId(), LedgerEntryType.OPENING, savedWallet.getBalance());
     logger.info("Wallet created successfully with ID: {}", savedWallet.getId());
     return savedWallet;
   }
@@ -88,11 +96,15 @@ public class WalletService {
   }
 
   public Wallet updateWallet(Long id, WalletRequestDto updatedWallet) throws ResourceNotFoundException{
-    Wallet target = walletRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Wallet", "id", id));
+    // Locked, so that no debit or credit lands between reading the balance and recording the adjustment
+    Wallet target = walletRepository.findByIdForUpdate(id).orElseThrow(() -> new ResourceNotFoundException("Wallet", "id", id));
+    BigDecimal previousBalance = balanceOf(target);
     Wallet updated = mapper.partialUpdate(updatedWallet, target);
     updated.setUser(userRepository.findById(updatedWallet.getUserId()).orElseThrow(() -> new ResourceNotFoundException("User", "id", updatedWallet.getUserId())));
     updated.setCurrency(currencyRepository.findById(updatedWallet.getCurrencyId()).orElseThrow(() -> new ResourceNotFoundException("Currency", "id", updatedWallet.getCurrencyId())));
-    return walletRepository.save(updated);
+    Wallet savedWallet = walletRepository.save(updated);
+    ledgerService.record(id, LedgerEntryType.ADJUSTMENT, balanceOf(savedWallet).subtract(previousBalance));
+    return savedWallet;
   }
 
   // check if a user has enough balance in his wallet
@@ -102,34 +114,43 @@ public class WalletService {
     logger.info("User found: {}", wallet.getUser().getUsername());
     logger.info("User balance: {}", wallet.getBalance());
     logger.info("Amount to be deducted: {}", amount);
-    return wallet.getBalance().compareTo(amount) >= 0;
+    return balanceOf(wallet).compareTo(amount) >= 0;
   }
 
   public boolean checkBalance(BigDecimal userBalance, BigDecimal amount) {
     return userBalance.compareTo(amount) >= 0;
   }
 
+  /**
+   * Debits the wallet with a conditional update, which also checks the balance: there is no need to call
+   * checkBalance first.
+   *
+   * @throws InsufficientFundsException if the balance does not cover the amount. Like any exception it marks
+   *                                    the caller's transaction for rollback: callers that go on after a wallet
+   *                                    cannot pay check the balance beforehand.
+   */
   public Wallet debit(Long id, BigDecimal amount) {
     logger.info("Debiting wallet ID: {} with amount: {}", id, amount);
-    Wallet wallet = walletRepository.findById(id).orElseThrow(() -> {
-        logger.error("Wallet not found with ID: {}", id);
-        return new ResourceNotFoundException("Wallet", "id", id);
-    });
-    wallet.setBalance(wallet.getBalance().subtract(amount));
-    Wallet updatedWallet = walletRepository.save(wallet);
-    logger.info("Wallet debited successfully. New balance: {}", wallet.getBalance());
+    if (walletRepository.debitIfSufficient(id, amount) == 0) {
+      Wallet wallet = findWallet(id);
+      logger.warn("Insufficient funds in wallet ID: {}. Balance: {}, amount: {}", id, wallet.getBalance(), amount);
+      throw new InsufficientFundsException(id, amount);
+    }
+    ledgerService.record(id, LedgerEntryType.DEBIT, amount.negate());
+    Wallet updatedWallet = reload(id);
+    logger.info("Wallet debited successfully. New balance: {}", updatedWallet.getBalance());
     return updatedWallet;
   }
 
   public Wallet credit(Long id, BigDecimal amount) {
     logger.info("Crediting wallet ID: {} with amount: {}", id, amount);
-    Wallet wallet = walletRepository.findById(id).orElseThrow(() -> {
-        logger.error("Wallet not found with ID: {}", id);
-        return new ResourceNotFoundException("Wallet", "id", id);
-    });
-    wallet.setBalance(wallet.getBalance().add(amount));
-    Wallet updatedWallet = walletRepository.save(wallet);
-    logger.info("Wallet credited successfully: {}", updatedWallet);
+    if (walletRepository.credit(id, amount) == 0) {
+      logger.error("Wallet not found with ID: {}", id);
+      throw new ResourceNotFoundException("Wallet", "id", id);
+    }
+    ledgerService.record(id, LedgerEntryType.CREDIT, amount);
+    Wallet updatedWallet = reload(id);
+    logger.info("Wallet credited successfully. New balance: {}", updatedWallet.getBalance());
     return updatedWallet;
   }
 
@@ -140,9 +161,27 @@ public class WalletService {
         logger.error("Wallet not found for referrer user ID: {}", referrer.getId());
         throw new ResourceNotFoundException("Wallet", "userId", referrer.getId());
     }
-    wallet.setBalance(wallet.getBalance().add(referralReward));
-    walletRepository.save(wallet);
+    credit(wallet.getId(), referralReward);
     logger.info("Reward added successfully to referrer user ID: {}", referrer.getId());
   }
 
+  private static BigDecimal balanceOf(Wallet wallet) {
+    return wallet.getBalance() != null ? wallet.getBalance() : BigDecimal.ZERO;
+  }
+
+  private Wallet findWallet(Long id) {
+    return walletRepository.findById(id).orElseThrow(() -> {
+        logger.error("Wallet not found with ID: {}", id);
+        return new ResourceNotFoundException("Wallet", "id", id);
+    });
+  }
+
+  // The update bypassed the persistence context: bring an already loaded wallet up to date, so that it is
+  // neither returned stale nor written back over the new balance
+  private Wallet reload(Long id) {
+    Wallet wallet = findWallet(id);
+    entityManager.refresh(wallet);
+    return wallet;
+  }
+
 }
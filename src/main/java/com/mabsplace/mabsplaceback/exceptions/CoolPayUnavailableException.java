@@ -0,0 +1,12 @@
+package com.mabsplace.mabsplaceback.exceptions;
+
+/**
+ * A CoolPay request that was not made, or not answered in time, because the client is saturated or CoolPay is
+ * slow. Nothing is known about its effect: the caller may retry it later.
+ */
+public class CoolPayUnavailableException extends RuntimeException {
+
+  public CoolPayUnavailableException(String message) {
+    super(message);
+  }
+}
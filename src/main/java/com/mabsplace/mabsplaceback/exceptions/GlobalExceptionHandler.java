@@ -31,6 +31,26 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(apiException, apiException.getHttpStatus());
     }
 
+    @ExceptionHandler(value = {IdempotencyKeyException.class})
+    public ResponseEntity<Object> handleIdempotencyKeyException(IdempotencyKeyException e) {
+        ApiException apiException = new ApiException(
+                e.getMessage(),
+                e.getHttpStatus(),
+                ZonedDateTime.now()
+        );
+        return new ResponseEntity<>(apiException, apiException.getHttpStatus());
+    }
+
+    @ExceptionHandler(value = {CoolPayUnavailableException.class})
+    public ResponseEntity<Object> handleCoolPayUnavailableException(CoolPayUnavailableException e) {
+        ApiException apiException = new ApiException(
+                e.getMessage(),
+                HttpStatus.SERVICE_UNAVAILABLE,
+                ZonedDateTime.now()
+        );
+        return new ResponseEntity<>(apiException, apiException.getHttpStatus());
+    }
+
     @ExceptionHandler(value = {Exception.class})
     public ResponseEntity<Object> handleException(Exception e) {
         // Log the exception with stack trace for debugging purposes
@@ -0,0 +1,19 @@
+package com.mabsplace.mabsplaceback.exceptions;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * A request whose Idempotency-Key cannot be honoured: malformed, reused for another request, or still held
+ * by an attempt that did not finish in time.
+ */
+@Getter
+public class IdempotencyKeyException extends RuntimeException {
+
+  private final HttpStatus httpStatus;
+
+  public IdempotencyKeyException(HttpStatus httpStatus, String message) {
+    super(message);
+    this.httpStatus = httpStatus;
+  }
+}
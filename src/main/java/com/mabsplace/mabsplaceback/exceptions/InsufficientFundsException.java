@@ -0,0 +1,9 @@
+package com.mabsplace.mabsplaceback.exceptions;
+
+import java.math.BigDecimal;
+
+public class InsufficientFundsException extends RuntimeException {
+  public InsufficientFundsException(Long walletId, BigDecimal amount) {
+    super(String.format("Insufficient funds in wallet %s to debit %s", walletId, amount));
+  }
+}
@@ -0,0 +1,62 @@
+package com.mabsplace.mabsplaceback.initDb;
+
+import com.mabsplace.mabsplaceback.domain.entities.IdGenerators;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves each id generator past the ids already in its table before the application writes anything.
+ * The tables kept their AUTO_INCREMENT ids when they moved to pooled ids, and a generator row created
+ * from scratch would hand them out again. Running it on every start is harmless, as it never moves a
+ * generator back.
+ */
+@Component
+// After the schema update has created the id_generators table
+@DependsOn("entityManagerFactory")
+public class IdGeneratorSeeder {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdGeneratorSeeder.class);
+
+    private static final String INSERT_SQL = "INSERT INTO " + IdGenerators.TABLE + " ("
+            + IdGenerators.NAME_COLUMN + ", " + IdGenerators.VALUE_COLUMN + ") VALUES (?, ?)";
+
+    private static final String RAISE_SQL = "UPDATE " + IdGenerators.TABLE + " SET " + IdGenerators.VALUE_COLUMN
+            + " = ? WHERE " + IdGenerators.NAME_COLUMN + " = ? AND " + IdGenerators.VALUE_COLUMN + " < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdGeneratorSeeder(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void seed() {
+        for (String table : IdGenerators.TABLES) {
+            Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+            // A generator at n hands out n - 49 to n next
+            long floor = (maxId != null ? maxId : 0) + IdGenerators.ALLOCATION_SIZE;
+            if (!exists(table)) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, table, floor);
+                    logger.info("Started the {} id generator at {}", table, floor);
+                    continue;
+                } catch (DuplicateKeyException e) {
+                    // Just created by another node starting up
+                }
+            }
+            if (jdbcTemplate.update(RAISE_SQL, floor, table, floor) == 1) {
+                logger.info("Moved the {} id generator to {}", table, floor);
+            }
+        }
+    }
+
+    private boolean exists(String name) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + IdGenerators.TABLE + " WHERE "
+                + IdGenerators.NAME_COLUMN + " = ?", Integer.class, name) > 0;
+    }
+}
@@ -0,0 +1,83 @@
+package com.mabsplace.mabsplaceback.security;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.mabsplace.mabsplaceback.domain.repositories.UserProfileRepository;
+import com.mabsplace.mabsplaceback.domain.repositories.UserRepository;
+import com.mabsplace.mabsplaceback.security.config.AppProperties;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Keeps the current roles version of every user profile, and the authorization version of recently
+ * seen users, in memory so that tokens carrying authority claims can be checked without loading the
+ * user and its roles. A profile version covers edits to the profile's roles and so every holder of
+ * the profile; a user version covers changes to that one user, such as being moved to another profile.
+ * Other nodes pick up a version bump once their local entry expires.
+ */
+@Component
+public class AuthorizationVersionRegistry {
+
+    /** Returned for profiles and users that no longer exist, so that every token referencing them is stale. */
+    public static final long UNKNOWN = Long.MAX_VALUE;
+
+    private final LoadingCache<Long, Long> profileVersions;
+    private final LoadingCache<Long, Long> userVersions;
+
+    public AuthorizationVersionRegistry(UserProfileRepository userProfileRepository, UserRepository userRepository,
+                                        AppProperties appProperties,
+                                        @Value("${app.auth.principal-cache.max-size:10000}") long maxUsers) {
+        this.profileVersions = Caffeine.newBuilder()
+                .maximumSize(1_000)
+                .expireAfterWrite(appProperties.getAuth().getAuthorityClaims().getVersionTtl())
+                .build(profileId -> userProfileRepository.findRolesVersionById(profileId).orElse(UNKNOWN));
+        this.userVersions = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(appProperties.getAuth().getAuthorityClaims().getVersionTtl())
+                .build(userId -> userRepository.findAuthzVersionById(userId).orElse(UNKNOWN));
+    }
+
+    public long currentProfileVersion(Long profileId) {
+        return profileVersions.get(profileId);
+    }
+
+    public long currentUserVersion(Long userId) {
+        return userVersions.get(userId);
+    }
+
+    /**
+     * Whether a token issued with these versions still reflects the user's authorities.
+     * A {@code null} profile id means the token was issued for a user without a profile.
+     */
+    public boolean isCurrent(Long userId, long userVersion, Long profileId, long profileVersion) {
+        if (userVersion < currentUserVersion(userId)) {
+            return false;
+        }
+        return profileId == null || profileVersion >= currentProfileVersion(profileId);
+    }
+
+    public void invalidateProfile(Long profileId) {
+        invalidate(profileVersions, profileId);
+    }
+
+    public void invalidateUser(Long userId) {
+        invalidate(userVersions, userId);
+    }
+
+    private static void invalidate(LoadingCache<Long, Long> versions, Long key) {
+        if (key == null) {
+            return;
+        }
+        versions.invalidate(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    versions.invalidate(key);
+                }
+            });
+        }
+    }
+}
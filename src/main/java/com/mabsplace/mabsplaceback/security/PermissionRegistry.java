@@ -0,0 +1,115 @@
+package com.mabsplace.mabsplaceback.security;
+
+import com.mabsplace.mabsplaceback.domain.entities.Role;
+import com.mabsplace.mabsplaceback.domain.repositories.RoleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gives every role name a dense integer id and keeps one immutable bitset per user profile,
+ * so that role checks on hot paths are a handful of word ANDs instead of string comparisons.
+ */
+@Component
+public class PermissionRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(PermissionRegistry.class);
+
+    private final RoleRepository roleRepository;
+
+    private final Map<String, Integer> roleIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextRoleId = new AtomicInteger();
+
+    private final Map<Long, ProfilePermissions> profilePermissions = new ConcurrentHashMap<>();
+    // Keyed by the role list of an annotation, so its size is bounded by the code base
+    private final Map<List<String>, long[]> requiredPermissions = new ConcurrentHashMap<>();
+
+    public PermissionRegistry(RoleRepository roleRepository) {
+        this.roleRepository = roleRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexRoles() {
+        roleRepository.findAll().stream()
+                .map(Role::getName)
+                .sorted()
+                .forEach(this::roleId);
+        logger.info("Indexed {} roles for permission checks", roleIds.size());
+    }
+
+    public boolean hasAnyRole(UserPrincipal principal, String... roles) {
+        if (principal.getProfileRoles() == null || roles.length == 0) {
+            return false;
+        }
+
+        long[] granted = grantedPermissions(principal);
+        long[] required = requiredPermissions.computeIfAbsent(List.of(roles), this::toBits);
+
+        int words = Math.min(granted.length, required.length);
+        for (int i = 0; i < words; i++) {
+            if ((granted[i] & required[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean hasRole(UserPrincipal principal, String role) {
+        return hasAnyRole(principal, role);
+    }
+
+    public void invalidateProfile(Long profileId) {
+        if (profileId != null) {
+            profilePermissions.remove(profileId);
+        }
+    }
+
+    public void invalidateAll() {
+        profilePermissions.clear();
+    }
+
+    private long[] grantedPermissions(UserPrincipal principal) {
+        long version = principal.getProfileVersion() == null ? 0L : principal.getProfileVersion();
+        if (principal.getProfileId() == null) {
+            return toBits(principal.getProfileRoles());
+        }
+
+        ProfilePermissions cached = profilePermissions.get(principal.getProfileId());
+        if (cached != null && cached.version() == version) {
+            return cached.bits();
+        }
+
+        long[] bits = toBits(principal.getProfileRoles());
+        profilePermissions.put(principal.getProfileId(), new ProfilePermissions(version, bits));
+        return bits;
+    }
+
+    private long[] toBits(Collection<String> roleNames) {
+        long[] bits = new long[0];
+        for (String roleName : roleNames) {
+            int id = roleId(roleName);
+            int word = id >>> 6;
+            if (word >= bits.length) {
+                bits = Arrays.copyOf(bits, word + 1);
+            }
+            bits[word] |= 1L << id;
+        }
+        return bits;
+    }
+
+    private int roleId(String roleName) {
+        return roleIds.computeIfAbsent(roleName, name -> nextRoleId.getAndIncrement());
+    }
+
+    private record ProfilePermissions(long version, long[] bits) {
+    }
+}
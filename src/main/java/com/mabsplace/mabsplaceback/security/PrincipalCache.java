@@ -0,0 +1,107 @@
+package com.mabsplace.mabsplaceback.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Bounded, TTL-based cache of authenticated principals keyed by user id.
+ * Shared by every token filter / interceptor so that an authenticated request
+ * does not have to reload the user and its profile roles from the database.
+ * Entries must be invalidated whenever a user's credentials, profile or roles change.
+ */
+@Component
+public class PrincipalCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrincipalCache.class);
+
+    private final Cache<Long, UserPrincipal> principals;
+    private final Cache<String, Long> userIdsByUsername;
+
+    public PrincipalCache(MeterRegistry meterRegistry,
+                          @Value("${app.auth.principal-cache.max-size:10000}") long maxSize,
+                          @Value("${app.auth.principal-cache.ttl:PT5M}") Duration ttl) {
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.userIdsByUsername = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "principalCache");
+    }
+
+    public UserPrincipal getById(Long userId, Function<Long, UserPrincipal> loader) {
+        return principals.get(userId, loader);
+    }
+
+    public UserPrincipal getByUsername(String username, Function<String, UserPrincipal> loader) {
+        Long userId = userIdsByUsername.getIfPresent(username);
+        if (userId != null) {
+            UserPrincipal cached = principals.getIfPresent(userId);
+            // The user may have been renamed and reloaded by id since this mapping was cached.
+            // Usernames are looked up ignoring case, like CustomUserDetailsService does.
+            if (cached != null && username.trim().equalsIgnoreCase(cached.getUsername())) {
+                return cached;
+            }
+            userIdsByUsername.asMap().remove(username, userId);
+        }
+
+        UserPrincipal principal = loader.apply(username);
+        principals.put(principal.getId(), principal);
+        userIdsByUsername.put(username, principal.getId());
+        return principal;
+    }
+
+    /**
+     * Evicts a single user. When called inside a transaction the eviction is repeated
+     * after commit so that a concurrent request cannot re-cache the pre-commit state.
+     */
+    public void invalidate(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        runNowAndAfterCommit(() -> {
+            UserPrincipal removed = principals.asMap().remove(userId);
+            if (removed != null) {
+                userIdsByUsername.invalidate(removed.getUsername());
+            }
+        });
+    }
+
+    public void invalidateAll() {
+        runNowAndAfterCommit(() -> {
+            principals.invalidateAll();
+            userIdsByUsername.invalidateAll();
+        });
+        logger.info("Principal cache cleared");
+    }
+
+    public long size() {
+        return principals.estimatedSize();
+    }
+
+    private void runNowAndAfterCommit(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        }
+    }
+}
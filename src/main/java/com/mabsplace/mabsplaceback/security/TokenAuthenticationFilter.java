@@ -1,5 +1,7 @@
 package com.mabsplace.mabsplaceback.security;
 
+import com.mabsplace.mabsplaceback.security.config.AppProperties;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -24,6 +26,15 @@ public class TokenAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private CustomUserDetailsService customUserDetailsService;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private AuthorizationVersionRegistry authorizationVersionRegistry;
+
+    @Autowired
+    private AppProperties appProperties;
+
     private static final Logger logger = LoggerFactory.getLogger(TokenAuthenticationFilter.class);
 
     @Override
@@ -31,14 +42,17 @@ public class TokenAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
 
-            if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
-                Long userId = tokenProvider.getUserIdFromToken(jwt);
+            Claims claims = StringUtils.hasText(jwt) ? tokenProvider.getVerifiedClaims(jwt) : null;
 
-                UserDetails userDetails = customUserDetailsService.loadUserById(userId);
-                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            if (claims != null) {
+                UserDetails userDetails = resolvePrincipal(claims);
 
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                if (userDetails != null) {
+                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                }
             }
         } catch (Exception ex) {
             logger.error("Could not set user authentication in security context", ex);
@@ -47,6 +61,22 @@ public class TokenAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private UserPrincipal resolvePrincipal(Claims claims) {
+        if (appProperties.getAuth().getAuthorityClaims().isEnabled() && tokenProvider.hasAuthorityClaims(claims)) {
+            UserPrincipal principal = tokenProvider.getPrincipalFromClaims(claims);
+            if (!authorizationVersionRegistry.isCurrent(principal.getId(), principal.getAuthzVersion(),
+                    principal.getProfileId(), principal.getProfileVersion() == null ? 0L : principal.getProfileVersion())) {
+                logger.warn("Rejecting token for user {} issued before a change to its roles or profile {}",
+                        principal.getId(), principal.getProfileId());
+                return null;
+            }
+            return principal;
+        }
+
+        Long userId = Long.parseLong(claims.getSubject());
+        return principalCache.getById(userId, id -> (UserPrincipal) customUserDetailsService.loadUserById(id));
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
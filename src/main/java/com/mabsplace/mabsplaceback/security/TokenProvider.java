@@ -1,21 +1,38 @@
 package com.mabsplace.mabsplaceback.security;
 
 import com.mabsplace.mabsplaceback.security.config.AppProperties;
+import com.mabsplace.mabsplaceback.security.jwt.JwtVerifier;
 import io.jsonwebtoken.*;
+import io.jsonwebtoken.io.Decoders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.spec.SecretKeySpec;
+import java.security.Key;
 import java.util.Date;
+import java.util.List;
 
 @Service
 public class TokenProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(TokenProvider.class);
 
+    // Authority claims, only present when app.auth.authority-claims.enabled is set
+    static final String CLAIM_USERNAME = "usr";
+    static final String CLAIM_ROLES = "roles";
+    static final String CLAIM_PROFILE_ID = "pid";
+    static final String CLAIM_PROFILE_VERSION = "pv";
+    static final String CLAIM_USER_VERSION = "uv";
+
     private AppProperties appProperties;
 
+    // Built once on first use; the key and parser are immutable and thread-safe
+    private volatile Key signingKey;
+    private volatile JwtVerifier verifier;
+
     public TokenProvider(AppProperties appProperties) {
         this.appProperties = appProperties;
     }
@@ -23,32 +40,41 @@ public class TokenProvider {
     public String createToken(Authentication authentication) {
         UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
 
-        System.out.println(userPrincipal.getAuthorities());
-
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + appProperties.getAuth().getTokenExpirationMsec());
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setSubject(Long.toString(userPrincipal.getId()))
                 .setIssuedAt(new Date())
-                .setExpiration(expiryDate)
-                .signWith(SignatureAlgorithm.HS512, appProperties.getAuth().getTokenSecret())
+                .setExpiration(expiryDate);
+
+        if (appProperties.getAuth().getAuthorityClaims().isEnabled()) {
+            builder.claim(CLAIM_USERNAME, userPrincipal.getUsername())
+                    .claim(CLAIM_ROLES, userPrincipal.getAuthorities().stream()
+                            .map(GrantedAuthority::getAuthority)
+                            .toList())
+                    .claim(CLAIM_USER_VERSION, userPrincipal.getAuthzVersion());
+            if (userPrincipal.getProfileId() != null) {
+                builder.claim(CLAIM_PROFILE_ID, userPrincipal.getProfileId())
+                        .claim(CLAIM_PROFILE_VERSION, userPrincipal.getProfileVersion() == null ? 0L : userPrincipal.getProfileVersion());
+            }
+        }
+
+        return builder
+                .signWith(signingKey(), SignatureAlgorithm.HS512)
                 .compact();
     }
 
-    public Long getUserIdFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .setSigningKey(appProperties.getAuth().getTokenSecret())
-                .parseClaimsJws(token)
-                .getBody();
-
-        return Long.parseLong(claims.getSubject());
+    public Claims getClaimsFromToken(String token) {
+        return verifier().verify(token);
     }
 
-    public boolean validateToken(String authToken) {
+    /**
+     * Verifies the token once and returns its claims, or {@code null} when it is not valid.
+     */
+    public Claims getVerifiedClaims(String authToken) {
         try {
-            Jwts.parser().setSigningKey(appProperties.getAuth().getTokenSecret()).parseClaimsJws(authToken);
-            return true;
+            return verifier().verify(authToken);
         } catch (SignatureException ex) {
             logger.error("Invalid JWT signature");
         } catch (MalformedJwtException ex) {
@@ -59,8 +85,44 @@ public class TokenProvider {
             logger.error("Unsupported JWT token");
         } catch (IllegalArgumentException ex) {
             logger.error("JWT claims string is empty.");
+        } catch (JwtException ex) {
+            logger.error("Invalid JWT token: {}", ex.getMessage());
         }
-        return false;
+        return null;
+    }
+
+    public boolean hasAuthorityClaims(Claims claims) {
+        return claims.containsKey(CLAIM_ROLES);
+    }
+
+    /**
+     * Builds the principal straight from the authority claims of a token.
+     * Callers must check the user and profile versions before trusting the result.
+     */
+    @SuppressWarnings("unchecked")
+    public UserPrincipal getPrincipalFromClaims(Claims claims) {
+        Number profileId = claims.get(CLAIM_PROFILE_ID, Number.class);
+        Number profileVersion = claims.get(CLAIM_PROFILE_VERSION, Number.class);
+        Number userVersion = claims.get(CLAIM_USER_VERSION, Number.class);
+        List<String> roles = claims.get(CLAIM_ROLES, List.class);
+
+        UserPrincipal principal = UserPrincipal.fromClaims(
+                Long.parseLong(claims.getSubject()),
+                claims.get(CLAIM_USERNAME, String.class),
+                roles == null ? List.of() : roles,
+                profileId == null ? null : profileId.longValue(),
+                profileVersion == null ? null : profileVersion.longValue());
+        // Tokens issued before user versions existed count as version 0
+        principal.setAuthzVersion(userVersion == null ? 0L : userVersion.longValue());
+        return principal;
+    }
+
+    public Long getUserIdFromToken(String token) {
+        return Long.parseLong(getClaimsFromToken(token).getSubject());
+    }
+
+    public boolean validateToken(String authToken) {
+        return getVerifiedClaims(authToken) != null;
     }
 
     public String createToken(String email) {
@@ -71,7 +133,35 @@ public class TokenProvider {
                 .setSubject(email)
                 .setIssuedAt(new Date())
                 .setExpiration(expiryDate)
-                .signWith(SignatureAlgorithm.HS512, appProperties.getAuth().getTokenSecret())
+                .signWith(signingKey(), SignatureAlgorithm.HS512)
                 .compact();
     }
+
+    private Key signingKey() {
+        Key key = signingKey;
+        if (key == null) {
+            synchronized (this) {
+                if (signingKey == null) {
+                    // Same derivation as the former signWith(HS512, String): the secret is base64
+                    byte[] secret = Decoders.BASE64.decode(appProperties.getAuth().getTokenSecret());
+                    signingKey = new SecretKeySpec(secret, SignatureAlgorithm.HS512.getJcaName());
+                }
+                key = signingKey;
+            }
+        }
+        return key;
+    }
+
+    private JwtVerifier verifier() {
+        JwtVerifier current = verifier;
+        if (current == null) {
+            synchronized (this) {
+                if (verifier == null) {
+                    verifier = new JwtVerifier(signingKey(), appProperties.getAuth().getVerifiedTokenCacheSize());
+                }
+                current = verifier;
+            }
+        }
+        return current;
+    }
 }
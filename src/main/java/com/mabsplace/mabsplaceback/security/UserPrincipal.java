@@ -1,5 +1,6 @@
 package com.mabsplace.mabsplaceback.security;
 
+import com.mabsplace.mabsplaceback.domain.entities.Role;
 import com.mabsplace.mabsplaceback.domain.entities.User;
 import lombok.Getter;
 import lombok.Setter;
@@ -23,6 +24,10 @@ public class UserPrincipal implements OAuth2User, UserDetails {
     private User user; // The actual user entity
     private Collection<? extends GrantedAuthority> authorities;
     private Map<String, Object> attributes;
+    private Long profileId;
+    private Long profileVersion;
+    private long authzVersion;
+    private Set<String> profileRoles; // null when the user has no profile
 
     public UserPrincipal(Long id, String username, String email, String password,
                          Collection<? extends GrantedAuthority> authorities,
@@ -38,10 +43,15 @@ public class UserPrincipal implements OAuth2User, UserDetails {
     public static UserPrincipal create(User user) {
         Set<GrantedAuthority> authorities;
 
+        Set<String> profileRoles = null;
+
         // Get roles from user's profile if it exists
         if (user.getUserProfile() != null) {
-            authorities = user.getUserProfile().getRoles().stream()
-                    .map(role -> new SimpleGrantedAuthority(role.getName()))
+            profileRoles = user.getUserProfile().getRoles().stream()
+                    .map(Role::getName)
+                    .collect(Collectors.toUnmodifiableSet());
+            authorities = profileRoles.stream()
+                    .map(SimpleGrantedAuthority::new)
                     .collect(Collectors.toSet());
         } else {
             // Fallback to direct role assignment if no profile
@@ -50,7 +60,7 @@ public class UserPrincipal implements OAuth2User, UserDetails {
                     .collect(Collectors.toSet());
         }
 
-        return new UserPrincipal(
+        UserPrincipal principal = new UserPrincipal(
                 user.getId(),
                 user.getUsername(),
                 user.getEmail(),
@@ -58,6 +68,32 @@ public class UserPrincipal implements OAuth2User, UserDetails {
                 authorities,
                 user
         );
+        principal.setAuthzVersion(user.getAuthzVersion() == null ? 0L : user.getAuthzVersion());
+        if (user.getUserProfile() != null) {
+            principal.setProfileId(user.getUserProfile().getId());
+            principal.setProfileVersion(user.getUserProfile().getRolesVersion());
+            principal.setProfileRoles(profileRoles);
+        }
+        return principal;
+    }
+
+    /**
+     * Rebuilds a principal from the authority claims of a token, without loading the user.
+     * The resulting principal carries no user entity.
+     */
+    public static UserPrincipal fromClaims(Long id, String username, Collection<String> roles,
+                                           Long profileId, Long profileVersion) {
+        Set<GrantedAuthority> authorities = roles.stream()
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toSet());
+
+        UserPrincipal principal = new UserPrincipal(id, username, null, null, authorities, null);
+        if (profileId != null) {
+            principal.setProfileId(profileId);
+            principal.setProfileVersion(profileVersion);
+            principal.setProfileRoles(Set.copyOf(roles));
+        }
+        return principal;
     }
 
     public static UserPrincipal create(User user, Map<String, Object> attributes) {
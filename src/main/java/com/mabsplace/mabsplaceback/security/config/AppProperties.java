@@ -2,6 +2,7 @@ package com.mabsplace.mabsplaceback.security.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -13,6 +14,8 @@ public class AppProperties {
     public static class Auth {
         private String tokenSecret;
         private long tokenExpirationMsec;
+        private long verifiedTokenCacheSize = 10_000;
+        private final AuthorityClaims authorityClaims = new AuthorityClaims();
 
         public String getTokenSecret() {
             return tokenSecret;
@@ -29,6 +32,43 @@ public class AppProperties {
         public void setTokenExpirationMsec(long tokenExpirationMsec) {
             this.tokenExpirationMsec = tokenExpirationMsec;
         }
+
+        public long getVerifiedTokenCacheSize() {
+            return verifiedTokenCacheSize;
+        }
+
+        public void setVerifiedTokenCacheSize(long verifiedTokenCacheSize) {
+            this.verifiedTokenCacheSize = verifiedTokenCacheSize;
+        }
+
+        public AuthorityClaims getAuthorityClaims() {
+            return authorityClaims;
+        }
+    }
+
+    /**
+     * Opt-in token format that embeds the profile id, its role names and the profile
+     * roles version, so that authorization can be evaluated without loading the user.
+     */
+    public static class AuthorityClaims {
+        private boolean enabled = false;
+        private Duration versionTtl = Duration.ofSeconds(30);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getVersionTtl() {
+            return versionTtl;
+        }
+
+        public void setVersionTtl(Duration versionTtl) {
+            this.versionTtl = versionTtl;
+        }
     }
 
     public static final class OAuth2 {
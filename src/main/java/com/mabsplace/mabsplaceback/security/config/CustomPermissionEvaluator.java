@@ -1,6 +1,6 @@
 package com.mabsplace.mabsplaceback.security.config;
 
-import com.mabsplace.mabsplaceback.domain.entities.User;
+import com.mabsplace.mabsplaceback.security.PermissionRegistry;
 import com.mabsplace.mabsplaceback.security.UserPrincipal;
 import org.springframework.security.access.PermissionEvaluator;
 import org.springframework.security.core.Authentication;
@@ -10,6 +10,13 @@ import java.io.Serializable;
 
 @Component
 public class CustomPermissionEvaluator implements PermissionEvaluator {
+
+    private final PermissionRegistry permissionRegistry;
+
+    public CustomPermissionEvaluator(PermissionRegistry permissionRegistry) {
+        this.permissionRegistry = permissionRegistry;
+    }
+
     @Override
     public boolean hasPermission(Authentication auth, Object targetDomainObject, Object permission) {
         if (auth == null || targetDomainObject == null || !(permission instanceof String)) {
@@ -17,7 +24,7 @@ public class CustomPermissionEvaluator implements PermissionEvaluator {
         }
 
         UserPrincipal userPrincipal = (UserPrincipal) auth.getPrincipal();
-        return hasUserProfileRole(userPrincipal.getUser(), permission.toString());
+        return hasUserProfileRole(userPrincipal, permission.toString());
     }
 
     @Override
@@ -27,16 +34,10 @@ public class CustomPermissionEvaluator implements PermissionEvaluator {
         }
 
         UserPrincipal userPrincipal = (UserPrincipal) auth.getPrincipal();
-        return hasUserProfileRole(userPrincipal.getUser(), permission.toString());
+        return hasUserProfileRole(userPrincipal, permission.toString());
     }
 
-    private boolean hasUserProfileRole(User user, String requiredRole) {
-        if (user.getUserProfile() == null) {
-            return false;
-        }
-
-        return user.getUserProfile().getRoles()
-                .stream()
-                .anyMatch(role -> role.getName().equals(requiredRole));
+    private boolean hasUserProfileRole(UserPrincipal userPrincipal, String requiredRole) {
+        return permissionRegistry.hasRole(userPrincipal, requiredRole);
     }
 }
@@ -1,7 +1,10 @@
 package com.mabsplace.mabsplaceback.security.jwt;
 
 
-import com.mabsplace.mabsplaceback.security.services.UserDetailsServiceImpl;
+import com.mabsplace.mabsplaceback.security.CustomUserDetailsService;
+import com.mabsplace.mabsplaceback.security.PrincipalCache;
+import com.mabsplace.mabsplaceback.security.UserPrincipal;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -23,7 +26,10 @@ public class AuthTokenFilter extends OncePerRequestFilter {
   private JwtUtils jwtUtils;
 
   @Autowired
-  private UserDetailsServiceImpl userDetailsService;
+  private CustomUserDetailsService userDetailsService;
+
+  @Autowired
+  private PrincipalCache principalCache;
 
   private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
@@ -32,10 +38,12 @@ public class AuthTokenFilter extends OncePerRequestFilter {
           throws ServletException, IOException {
     try {
       String jwt = parseJwt(request);
-      if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-        String username = jwtUtils.getUserNameFromJwtToken(jwt);
+      Claims claims = jwt != null ? jwtUtils.getVerifiedClaims(jwt) : null;
+      if (claims != null) {
+        String username = claims.getSubject();
 
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        UserDetails userDetails = principalCache.getByUsername(username,
+                name -> (UserPrincipal) userDetailsService.loadUserByUsername(name));
 
         UsernamePasswordAuthenticationToken authentication =
                 new UsernamePasswordAuthenticationToken(userDetails,
@@ -29,6 +29,13 @@ public class JwtUtils {
   @Value("${mabsplace.app.jwtCookieName}")
   private String jwtCookie;
 
+  @Value("${mabsplace.app.jwtVerifiedCacheSize:10000}")
+  private long verifiedCacheSize;
+
+  // Built once on first use; the key and parser are immutable and thread-safe
+  private volatile Key signingKey;
+  private volatile JwtVerifier verifier;
+
   public String getJwtFromCookies(HttpServletRequest request) {
     Cookie cookie = WebUtils.getCookie(request, jwtCookie);
     if (cookie != null) {
@@ -50,18 +57,45 @@ public class JwtUtils {
   }
 
   public String getUserNameFromJwtToken(String token) {
-    return Jwts.parserBuilder().setSigningKey(key()).build()
-            .parseClaimsJws(token).getBody().getSubject();
+    return verifier().verify(token).getSubject();
   }
 
   private Key key() {
-    return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+    Key key = signingKey;
+    if (key == null) {
+      synchronized (this) {
+        if (signingKey == null) {
+          signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        }
+        key = signingKey;
+      }
+    }
+    return key;
+  }
+
+  private JwtVerifier verifier() {
+    JwtVerifier current = verifier;
+    if (current == null) {
+      synchronized (this) {
+        if (verifier == null) {
+          verifier = new JwtVerifier(key(), verifiedCacheSize);
+        }
+        current = verifier;
+      }
+    }
+    return current;
   }
 
   public boolean validateJwtToken(String authToken) {
+    return getVerifiedClaims(authToken) != null;
+  }
+
+  /**
+   * Verifies the token once and returns its claims, or {@code null} when it is not valid.
+   */
+  public Claims getVerifiedClaims(String authToken) {
     try {
-      Jwts.parserBuilder().setSigningKey(key()).build().parse(authToken);
-      return true;
+      return verifier().verify(authToken);
     } catch (MalformedJwtException e) {
       logger.error("Invalid JWT token: {}", e.getMessage());
     } catch (ExpiredJwtException e) {
@@ -70,9 +104,11 @@ public class JwtUtils {
       logger.error("JWT token is unsupported: {}", e.getMessage());
     } catch (IllegalArgumentException e) {
       logger.error("JWT claims string is empty: {}", e.getMessage());
+    } catch (JwtException e) {
+      logger.error("Invalid JWT signature: {}", e.getMessage());
     }
 
-    return false;
+    return null;
   }
 
   public String generateTokenFromUsername(String username) {
@@ -0,0 +1,95 @@
+package com.mabsplace.mabsplaceback.security.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+
+import java.security.Key;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies signed JWTs with a pre-built, thread-safe parser and remembers recently verified
+ * tokens until they expire, so that repeated calls from the same client skip the HMAC work.
+ * Cached entries are keyed by the whole compact token, never by the signature alone.
+ * The claims returned are read-only, since a cached instance is shared by every request using the token.
+ */
+public class JwtVerifier {
+
+    private static final Duration MAX_CACHE_TTL = Duration.ofMinutes(15);
+
+    private final JwtParser parser;
+    private final Cache<String, Claims> verifiedTokens;
+
+    public JwtVerifier(Key key, long cacheSize) {
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+        // A size of zero disables the cache entirely (Caffeine evicts asynchronously)
+        this.verifiedTokens = cacheSize <= 0 ? null : Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new UntilTokenExpiry())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the verified claims of the token.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, expired or badly signed
+     * @throws IllegalArgumentException     if the token is empty
+     */
+    public Claims verify(String token) {
+        if (verifiedTokens == null) {
+            return new ReadOnlyClaims(parser.parseClaimsJws(token).getBody());
+        }
+
+        Claims cached = verifiedTokens.getIfPresent(token);
+        if (cached != null && !isExpired(cached)) {
+            return cached;
+        }
+
+        Claims claims = new ReadOnlyClaims(parser.parseClaimsJws(token).getBody());
+        verifiedTokens.put(token, claims);
+        return claims;
+    }
+
+    public void evict(String token) {
+        if (verifiedTokens != null) {
+            verifiedTokens.invalidate(token);
+        }
+    }
+
+    public double hitRate() {
+        return verifiedTokens == null ? 0.0 : verifiedTokens.stats().hitRate();
+    }
+
+    private static boolean isExpired(Claims claims) {
+        Date expiration = claims.getExpiration();
+        return expiration != null && expiration.getTime() <= System.currentTimeMillis();
+    }
+
+    private static class UntilTokenExpiry implements Expiry<String, Claims> {
+        @Override
+        public long expireAfterCreate(String token, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            long ttlMillis = MAX_CACHE_TTL.toMillis();
+            if (expiration != null) {
+                ttlMillis = Math.min(ttlMillis, Math.max(0, expiration.getTime() - System.currentTimeMillis()));
+            }
+            return TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(token, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
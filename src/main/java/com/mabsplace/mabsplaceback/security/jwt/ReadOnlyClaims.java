@@ -0,0 +1,143 @@
+package com.mabsplace.mabsplaceback.security.jwt;
+
+import io.jsonwebtoken.Claims;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only view of verified claims. {@link JwtVerifier} hands the same cached claims to every request
+ * presenting the token, so neither the claims nor the lists and maps inside them may be changed.
+ */
+final class ReadOnlyClaims extends AbstractMap<String, Object> implements Claims {
+
+    private final Claims claims;
+    private final Map<String, Object> values;
+
+    ReadOnlyClaims(Claims claims) {
+        this.claims = claims;
+        Map<String, Object> copy = new LinkedHashMap<>();
+        claims.forEach((name, value) -> copy.put(name, readOnly(value)));
+        this.values = Collections.unmodifiableMap(copy);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return values.entrySet();
+    }
+
+    @Override
+    public Object get(Object name) {
+        Object value = values.get(name);
+        return value instanceof Date date ? copy(date) : value;
+    }
+
+    @Override
+    public boolean containsKey(Object name) {
+        return values.containsKey(name);
+    }
+
+    @Override
+    public <T> T get(String name, Class<T> requiredType) {
+        T value = claims.get(name, requiredType);
+        return value instanceof Date date ? requiredType.cast(new Date(date.getTime())) : requiredType.cast(readOnly(value));
+    }
+
+    @Override
+    public String getIssuer() {
+        return claims.getIssuer();
+    }
+
+    @Override
+    public String getSubject() {
+        return claims.getSubject();
+    }
+
+    @Override
+    public String getAudience() {
+        return claims.getAudience();
+    }
+
+    @Override
+    public Date getExpiration() {
+        return copy(claims.getExpiration());
+    }
+
+    @Override
+    public Date getNotBefore() {
+        return copy(claims.getNotBefore());
+    }
+
+    @Override
+    public Date getIssuedAt() {
+        return copy(claims.getIssuedAt());
+    }
+
+    @Override
+    public String getId() {
+        return claims.getId();
+    }
+
+    @Override
+    public Claims setIssuer(String iss) {
+        throw readOnly();
+    }
+
+    @Override
+    public Claims setSubject(String sub) {
+        throw readOnly();
+    }
+
+    @Override
+    public Claims setAudience(String aud) {
+        throw readOnly();
+    }
+
+    @Override
+    public Claims setExpiration(Date exp) {
+        throw readOnly();
+    }
+
+    @Override
+    public Claims setNotBefore(Date nbf) {
+        throw readOnly();
+    }
+
+    @Override
+    public Claims setIssuedAt(Date iat) {
+        throw readOnly();
+    }
+
+    @Override
+    public Claims setId(String jti) {
+        throw readOnly();
+    }
+
+    private static Date copy(Date date) {
+        return date == null ? null : new Date(date.getTime());
+    }
+
+    private static Object readOnly(Object value) {
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            list.forEach(element -> copy.add(readOnly(element)));
+            return Collections.unmodifiableList(copy);
+        }
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            map.forEach((key, element) -> copy.put(key, readOnly(element)));
+            return Collections.unmodifiableMap(copy);
+        }
+        return value instanceof Date date ? copy(date) : value;
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Verified claims are shared between requests and cannot be changed");
+    }
+}
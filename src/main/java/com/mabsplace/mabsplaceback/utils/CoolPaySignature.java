@@ -0,0 +1,49 @@
+package com.mabsplace.mabsplaceback.utils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * The MD5 signature CoolPay puts on its callbacks: the hex digest of the transaction ref, type, amount,
+ * currency and operator followed by the merchant's private key.
+ */
+public final class CoolPaySignature {
+
+    private CoolPaySignature() {
+    }
+
+    public static String of(Map<String, Object> data, String privateKey) {
+        String dataString = String.valueOf(data.get("transaction_ref"))
+                + data.get("transaction_type")
+                + BigDecimal.valueOf(Double.parseDouble(data.get("transaction_amount").toString())).toPlainString()
+                + data.get("transaction_currency")
+                + data.get("transaction_operator")
+                + privateKey;
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            return HexFormat.of().formatHex(md.digest(dataString.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 cryptographic algorithm is not available.", e);
+        }
+    }
+
+    /**
+     * Whether the callback carries the signature of its fields, compared in constant time.
+     */
+    public static boolean isValid(Map<String, Object> callback, String privateKey) {
+        Object signature = callback.get("signature");
+        if (signature == null || callback.get("transaction_amount") == null) {
+            return false;
+        }
+        try {
+            return MessageDigest.isEqual(of(callback, privateKey).getBytes(StandardCharsets.UTF_8),
+                    signature.toString().toLowerCase().getBytes(StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.mabsplace.mabsplaceback.utils;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Half-open interval {@code [start, end)} of local date-times used to bound analytics queries.
+ * Queries compare the indexed date column against both bounds ({@code col >= :start AND col < :end})
+ * instead of wrapping it in MONTH()/YEAR(), so the date indexes can be range-scanned.
+ * Bounds are computed in the JVM time zone, the zone the timestamps are written in.
+ */
+public record TimeWindow(LocalDateTime start, LocalDateTime end) {
+
+    public TimeWindow {
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("Time window start " + start + " must be before its end " + end);
+        }
+    }
+
+    public static TimeWindow currentMonth() {
+        return currentMonth(Clock.systemDefaultZone());
+    }
+
+    public static TimeWindow currentMonth(Clock clock) {
+        return month(YearMonth.now(clock));
+    }
+
+    public static TimeWindow previousMonth() {
+        return previousMonth(Clock.systemDefaultZone());
+    }
+
+    public static TimeWindow previousMonth(Clock clock) {
+        return month(YearMonth.now(clock).minusMonths(1));
+    }
+
+    /**
+     * The current calendar month and the {@code months - 1} before it.
+     */
+    public static TimeWindow lastMonths(int months) {
+        return lastMonths(months, Clock.systemDefaultZone());
+    }
+
+    public static TimeWindow lastMonths(int months, Clock clock) {
+        if (months < 1) {
+            throw new IllegalArgumentException("A time window spans at least one month");
+        }
+        YearMonth current = YearMonth.now(clock);
+        return new TimeWindow(current.minusMonths(months - 1L).atDay(1).atStartOfDay(),
+                current.plusMonths(1).atDay(1).atStartOfDay());
+    }
+
+    public static TimeWindow month(YearMonth month) {
+        return new TimeWindow(month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay());
+    }
+
+    public static TimeWindow between(LocalDate from, LocalDate toExclusive) {
+        return new TimeWindow(from.atStartOfDay(), toExclusive.atStartOfDay());
+    }
+
+    /**
+     * Calendar months overlapping the window, oldest first.
+     */
+    public List<YearMonth> months() {
+        List<YearMonth> months = new ArrayList<>();
+        YearMonth last = YearMonth.from(end.minusNanos(1));
+        for (YearMonth month = YearMonth.from(start); !month.isAfter(last); month = month.plusMonths(1)) {
+            months.add(month);
+        }
+        return months;
+    }
+
+    public Date startDate() {
+        return Date.from(start.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    public Date endDate() {
+        return Date.from(end.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * Named parameters {@code <prefix>Start} and {@code <prefix>End} for a NamedParameterJdbcTemplate query.
+     */
+    public Map<String, Object> params(String prefix) {
+        return Map.of(prefix + "Start", start, prefix + "End", end);
+    }
+}
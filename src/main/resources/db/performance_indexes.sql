@@ -21,6 +21,9 @@ CREATE INDEX IF NOT EXISTS idx_expenses_date ON expenses(expense_date);
 CREATE INDEX IF NOT EXISTS idx_expenses_category_date ON expenses(category_id, expense_date);
 CREATE INDEX IF NOT EXISTS idx_expenses_recurring_date ON expenses(is_recurring, expense_date);
 
+-- Index for digital goods analytics (windowed on created_at, see TimeWindow)
+CREATE INDEX IF NOT EXISTS idx_digital_goods_orders_created_status ON digital_goods_orders(created_at, order_status);
+
 -- Indexes for profiles table (for utilization tracking)
 CREATE INDEX IF NOT EXISTS idx_profiles_status ON profiles(status);
 CREATE INDEX IF NOT EXISTS idx_profiles_account_status ON profiles(service_account_id, status);
@@ -0,0 +1,89 @@
+package com.mabsplace.mabsplaceback.base;
+
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.MySQLDialect;
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.test.context.TestPropertySource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Map;
+
+/**
+ * Base class for tests that need MySQL itself: its locking, its SQL dialect or its query plans. All of them
+ * share one MySQL container, started on first use, holding the schema Hibernate generates from the entities
+ * as it does in production. Every table is emptied before each test class. Skipped without Docker.
+ * Data JPA tests extending this class connect to the same container and leave the schema as it is.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@TestPropertySource(properties = {
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.database-platform=org.hibernate.dialect.MySQLDialect"
+})
+public abstract class BaseMySqlTest {
+
+    // Not a @Container, which would stop it after the first class while Spring keeps the contexts pointing at it
+    @ServiceConnection
+    protected static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0")
+            .withUrlParam("rewriteBatchedStatements", "true");
+
+    protected static final DriverManagerDataSource dataSource;
+
+    static {
+        MYSQL.start();
+        dataSource = new DriverManagerDataSource(MYSQL.getJdbcUrl(), MYSQL.getUsername(), MYSQL.getPassword());
+        createSchema();
+    }
+
+    @BeforeAll
+    static void truncateTables() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.queryForList("SELECT table_name FROM information_schema.tables WHERE table_schema = DATABASE() "
+                        + "AND table_type = 'BASE TABLE'", String.class).stream()
+                // Contexts cached by earlier classes still hand out the ids they reserved from it
+                .filter(table -> !table.equals("id_generators"))
+                .forEach(table -> jdbcTemplate.execute("TRUNCATE TABLE " + table));
+    }
+
+    /**
+     * Adds an index the entities do not declare, such as those of performance_indexes.sql, unless an earlier class did.
+     */
+    protected static void createIndex(String name, String table, String columns) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Integer existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.statistics "
+                + "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?", Integer.class, table, name);
+        if (existing == 0) {
+            jdbcTemplate.execute("CREATE INDEX " + name + " ON " + table + "(" + columns + ")");
+        }
+    }
+
+    /**
+     * Creates the tables of all entities, then drops their foreign keys so that tests only insert the rows they read.
+     */
+    private static void createSchema() {
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setPackagesToScan("com.mabsplace.mabsplaceback.domain.entities");
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(Map.of(
+                AvailableSettings.HBM2DDL_AUTO, "create",
+                AvailableSettings.DIALECT, MySQLDialect.class.getName(),
+                AvailableSettings.PHYSICAL_NAMING_STRATEGY, CamelCaseToUnderscoresNamingStrategy.class.getName(),
+                AvailableSettings.IMPLICIT_NAMING_STRATEGY, SpringImplicitNamingStrategy.class.getName()));
+        factory.afterPropertiesSet();
+        factory.destroy();
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.query("SELECT table_name, constraint_name FROM information_schema.referential_constraints "
+                        + "WHERE constraint_schema = DATABASE()", (RowCallbackHandler) foreignKey -> jdbcTemplate.execute(
+                "ALTER TABLE " + foreignKey.getString(1) + " DROP FOREIGN KEY " + foreignKey.getString(2)));
+    }
+}
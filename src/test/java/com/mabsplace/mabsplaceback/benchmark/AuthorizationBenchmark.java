@@ -0,0 +1,106 @@
+package com.mabsplace.mabsplaceback.benchmark;
+
+import com.mabsplace.mabsplaceback.domain.entities.Role;
+import com.mabsplace.mabsplaceback.domain.entities.User;
+import com.mabsplace.mabsplaceback.domain.entities.UserProfile;
+import com.mabsplace.mabsplaceback.domain.repositories.RoleRepository;
+import com.mabsplace.mabsplaceback.security.PermissionRegistry;
+import com.mabsplace.mabsplaceback.security.UserPrincipal;
+import com.mabsplace.mabsplaceback.utils.SecurityExpressionUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the entity-graph walk previously done by {@code @securityExpressionUtil.hasAnyRole(...)}
+ * with a role-name set lookup and with the {@link PermissionRegistry} bitset check.
+ * Run with {@code mvn test -Dtest=AuthorizationBenchmark -Dbenchmarks=true}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthorizationBenchmark {
+
+    private static final String[] REQUIRED = {"GET_DASHBOARD", "MANAGE_USERS", "ADMIN"};
+
+    private SecurityExpressionUtil securityExpressionUtil;
+    private Authentication entityAuthentication;
+    private Authentication claimsAuthentication;
+
+    @Setup
+    public void setUp() {
+        securityExpressionUtil = new SecurityExpressionUtil(new PermissionRegistry(Mockito.mock(RoleRepository.class)));
+
+        Set<Role> roles = IntStream.range(0, 40)
+                .mapToObj(i -> Role.builder().id((long) i).name("ROLE_" + i).code("R" + i).build())
+                .collect(Collectors.toSet());
+        roles.add(Role.builder().id(99L).name("ADMIN").code("ADMIN").build());
+
+        UserProfile profile = new UserProfile();
+        profile.setId(1L);
+        profile.setName("ADMIN");
+        profile.setRoles(roles);
+
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("admin");
+        user.setUserProfile(profile);
+
+        UserPrincipal entityPrincipal = UserPrincipal.create(user);
+        entityAuthentication = new UsernamePasswordAuthenticationToken(entityPrincipal, null, entityPrincipal.getAuthorities());
+
+        List<String> roleNames = roles.stream().map(Role::getName).toList();
+        UserPrincipal claimsPrincipal = UserPrincipal.fromClaims(1L, "admin", roleNames, 1L, 0L);
+        claimsAuthentication = new UsernamePasswordAuthenticationToken(claimsPrincipal, null, claimsPrincipal.getAuthorities());
+    }
+
+    @Benchmark
+    public boolean entityGraphHasAnyRole() {
+        UserPrincipal principal = (UserPrincipal) entityAuthentication.getPrincipal();
+        return Arrays.stream(REQUIRED)
+                .anyMatch(role -> principal.getUser()
+                        .getUserProfile()
+                        .getRoles()
+                        .stream()
+                        .anyMatch(r -> r.getName().equals(role)));
+    }
+
+    @Benchmark
+    public boolean roleNameSetHasAnyRole() {
+        Set<String> profileRoles = ((UserPrincipal) claimsAuthentication.getPrincipal()).getProfileRoles();
+        for (String role : REQUIRED) {
+            if (profileRoles.contains(role)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean permissionIndexHasAnyRole() {
+        return securityExpressionUtil.hasAnyRole(claimsAuthentication, REQUIRED);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void runBenchmark() throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(AuthorizationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
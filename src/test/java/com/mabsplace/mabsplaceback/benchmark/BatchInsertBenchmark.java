@@ -0,0 +1,112 @@
+package com.mabsplace.mabsplaceback.benchmark;
+
+import com.mabsplace.mabsplaceback.base.BaseMySqlTest;
+import com.mabsplace.mabsplaceback.domain.entities.Notification;
+import com.mabsplace.mabsplaceback.domain.enums.NotificationType;
+import com.mabsplace.mabsplaceback.domain.repositories.NotificationRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Notification inserts per second through saveAll, the way a broadcast writes them, with pooled ids:
+ * one INSERT per row, as IDENTITY ids forced, against the JDBC batches of the application's settings.
+ * Run with {@code mvn test -Dtest=BatchInsertBenchmark -Dbenchmarks=true} (needs Docker).
+ */
+@DataJpaTest
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.datasource.hikari.data-source-properties.rewriteBatchedStatements=true",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO"
+})
+class BatchInsertBenchmark extends BaseMySqlTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchInsertBenchmark.class);
+
+    private static final int ROWS = 50_000;
+    // Recipients of one broadcast, saved together
+    private static final int PER_TRANSACTION = 1_000;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void insertRate() {
+        // Warms up the generator and the statements
+        insert(PER_TRANSACTION, 1);
+        insert(PER_TRANSACTION, null);
+
+        long rowByRow = insert(ROWS, 1);
+        long batched = insert(ROWS, null);
+
+        logger.info("Inserting {} notifications, {} per transaction: row by row {} rows/s, batched {} rows/s",
+                ROWS, PER_TRANSACTION, rowByRow, batched);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT id) FROM notifications", Long.class))
+                .isEqualTo(2L * (ROWS + PER_TRANSACTION));
+    }
+
+    /**
+     * @param batchSize the JDBC batch size of the session, or null for the configured one
+     * @return rows inserted per second
+     */
+    private long insert(int rows, Integer batchSize) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long start = System.nanoTime();
+        for (int from = 0; from < rows; from += PER_TRANSACTION) {
+            int count = Math.min(PER_TRANSACTION, rows - from);
+            transactionTemplate.executeWithoutResult(status -> {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+                notificationRepository.saveAll(notifications(count));
+                entityManager.flush();
+                entityManager.clear();
+            });
+        }
+        return rows * 1_000_000_000L / Math.max(System.nanoTime() - start, 1);
+    }
+
+    private static List<Notification> notifications(int count) {
+        List<Notification> notifications = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Notification notification = new Notification();
+            notification.setTitle("Maintenance");
+            notification.setMessage("Services will be unavailable tonight from 1am to 2am");
+            notification.setType(NotificationType.SYSTEM);
+            notification.setCreatedAt(LocalDateTime.now());
+            notifications.add(notification);
+        }
+        return notifications;
+    }
+}
@@ -0,0 +1,145 @@
+package com.mabsplace.mabsplaceback.benchmark;
+
+import com.mabsplace.mabsplaceback.base.BaseMySqlTest;
+import com.mabsplace.mabsplaceback.domain.entities.Notification;
+import com.mabsplace.mabsplaceback.domain.entities.User;
+import com.mabsplace.mabsplaceback.domain.enums.AuthProvider;
+import com.mabsplace.mabsplaceback.domain.enums.NotificationType;
+import com.mabsplace.mabsplaceback.domain.repositories.NotificationRepository;
+import com.mabsplace.mabsplaceback.domain.repositories.UserRepository;
+import com.mabsplace.mabsplaceback.utils.TestDataBuilder;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Time to mark all notifications of a user with 50k of them as read: loading them and saving each one, as
+ * markAllAsRead used to, against bounded set-based UPDATEs; and to delete them in bounded DELETEs.
+ * Run with {@code mvn test -Dtest=BulkNotificationUpdateBenchmark -Dbenchmarks=true} (needs Docker).
+ */
+@DataJpaTest
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.jpa.properties.hibernate.order_updates=true",
+        "spring.datasource.hikari.data-source-properties.rewriteBatchedStatements=true",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO"
+})
+class BulkNotificationUpdateBenchmark extends BaseMySqlTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkNotificationUpdateBenchmark.class);
+
+    private static final int ROWS = 50_000;
+    // Same as app.notifications.bulk.batch-size
+    private static final int BATCH_SIZE = 1_000;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void markAllAsRead() {
+        User user = userRepository.save(TestDataBuilder.createUserBuilder()
+                .username("alice")
+                .email("alice@example.com")
+                .phonenumber("677000001")
+                .lastname("alice")
+                .referralCode("ALICE")
+                .emailVerified(false)
+                .provider(AuthProvider.local)
+                .build());
+        insert(user);
+
+        long rowByRow = time(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<Notification> notifications = notificationRepository.findByUserOrderByCreatedAtDesc(user);
+            notifications.forEach(notification -> notification.setRead(true));
+            notificationRepository.saveAll(notifications);
+            entityManager.flush();
+            entityManager.clear();
+        }));
+        assertThat(notificationRepository.countUnreadNotifications(user.getId())).isZero();
+
+        jdbcTemplate.update("UPDATE notifications SET is_read = false");
+        long setBased = time(() -> {
+            int updated;
+            do {
+                updated = notificationRepository.markUnreadAsRead(user.getId(), BATCH_SIZE);
+            } while (updated == BATCH_SIZE);
+        });
+        assertThat(notificationRepository.countUnreadNotifications(user.getId())).isZero();
+
+        long deleted = time(() -> {
+            int removed;
+            do {
+                removed = notificationRepository.deleteCreatedBefore(user.getId(), LocalDateTime.now().plusDays(1), BATCH_SIZE);
+            } while (removed == BATCH_SIZE);
+        });
+        assertThat(notificationRepository.count()).isZero();
+
+        logger.info("Marking {} notifications of one user as read: loaded and saved {} ms, {} rows per UPDATE {} ms; "
+                + "deleting them {} ms", ROWS, rowByRow, BATCH_SIZE, setBased, deleted);
+    }
+
+    private void insert(User user) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int from = 0; from < ROWS; from += BATCH_SIZE) {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Notification> notifications = new ArrayList<>(BATCH_SIZE);
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    Notification notification = new Notification();
+                    notification.setUser(user);
+                    notification.setTitle("Subscription renewed");
+                    notification.setMessage("Your Netflix subscription was renewed");
+                    notification.setType(NotificationType.SYSTEM);
+                    notification.setCreatedAt(LocalDateTime.now());
+                    notifications.add(notification);
+                }
+                notificationRepository.saveAll(notifications);
+                entityManager.flush();
+                entityManager.clear();
+            });
+        }
+    }
+
+    /**
+     * @return the duration of the run in milliseconds
+     */
+    private static long time(Runnable run) {
+        long start = System.nanoTime();
+        run.run();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
@@ -0,0 +1,192 @@
+package com.mabsplace.mabsplaceback.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.verification.LoggedRequest;
+import com.mabsplace.mabsplaceback.base.BaseMySqlTest;
+import com.mabsplace.mabsplaceback.domain.services.CoolPayCallbackInbox;
+import com.mabsplace.mabsplaceback.domain.services.TransactionService;
+import com.mabsplace.mabsplaceback.utils.CoolPaySignature;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Replays thousands of CoolPay callbacks, a fifth of them delivered twice, from many concurrent senders.
+ * Applying a callback is stood in for by a WireMock server answering after a fixed delay, the time the
+ * transaction update and its side effects take. The latency CoolPay sees when the callback is applied before
+ * answering, as the endpoint used to, is compared with the inbox's store-and-acknowledge; every transaction
+ * must then have been applied exactly once.
+ * Run with {@code mvn test -Dtest=CallbackInboxLoadBenchmark -Dbenchmarks=true} (needs Docker).
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class CallbackInboxLoadBenchmark extends BaseMySqlTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CallbackInboxLoadBenchmark.class);
+
+    private static final String PRIVATE_KEY = "benchmark-private-key";
+    private static final int TRANSACTIONS = 3_000;
+    private static final int REDELIVERED = TRANSACTIONS / 5;
+    private static final int SENDERS = 32;
+    private static final int APPLY_DELAY_MS = 150;
+
+    private static final WireMockServer WIREMOCK = new WireMockServer(options().dynamicPort().containerThreads(SENDERS + 16));
+    private static final HttpClient HTTP = HttpClient.newHttpClient();
+
+    private static HikariDataSource pool;
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void start() {
+        WIREMOCK.start();
+        WIREMOCK.stubFor(get(urlPathMatching("/apply/.*"))
+                .willReturn(okJson("{\"transaction_status\":\"SUCCESS\"}").withFixedDelay(APPLY_DELAY_MS)));
+
+        pool = new HikariDataSource();
+        pool.setJdbcUrl(dataSource.getUrl());
+        pool.setUsername(dataSource.getUsername());
+        pool.setPassword(dataSource.getPassword());
+        pool.setMaximumPoolSize(SENDERS + 8);
+        jdbcTemplate = new JdbcTemplate(pool);
+    }
+
+    @AfterAll
+    static void stop() {
+        WIREMOCK.stop();
+        pool.close();
+    }
+
+    @Test
+    void acknowledgeLatency() throws Exception {
+        TransactionService transactionService = mock(TransactionService.class);
+        when(transactionService.updateTransactionStatus(anyString(), anyString()))
+                .thenAnswer(invocation -> apply(invocation.getArgument(0)));
+        CoolPayCallbackInbox inbox = new CoolPayCallbackInbox(jdbcTemplate, transactionService, new ObjectMapper(),
+                new SimpleMeterRegistry(), PRIVATE_KEY, true, 16, TRANSACTIONS, Duration.ofMinutes(2), 8,
+                Duration.ofSeconds(1), Duration.ofSeconds(10), 500);
+
+        long[] synchronous = replay(callbacks("sync"), callback -> apply(callback.get("app_transaction_ref").toString()));
+        WIREMOCK.resetRequests();
+
+        long start = System.nanoTime();
+        long[] inboxed = replay(callbacks("inbox"), inbox::receive);
+        long acknowledged = System.nanoTime() - start;
+        while (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM coolpay_callbacks WHERE status <> 'PROCESSED'", Long.class) > 0) {
+            inbox.sweep();
+            Thread.sleep(50);
+        }
+        long drained = System.nanoTime() - start;
+
+        logger.info("{} callbacks ({} redelivered) from {} senders: synchronous p50 {} ms p99 {} ms, "
+                        + "inbox p50 {} ms p99 {} ms; all acknowledged in {} ms, applied in {} ms",
+                TRANSACTIONS + REDELIVERED, REDELIVERED, SENDERS,
+                percentile(synchronous, 50), percentile(synchronous, 99), percentile(inboxed, 50), percentile(inboxed, 99),
+                acknowledged / 1_000_000, drained / 1_000_000);
+
+        Map<String, Long> applied = WIREMOCK.findAll(getRequestedFor(urlPathMatching("/apply/.*"))).stream()
+                .collect(Collectors.groupingBy(LoggedRequest::getUrl, Collectors.counting()));
+        assertThat(applied).hasSize(TRANSACTIONS);
+        assertThat(applied.values()).containsOnly(1L);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM coolpay_callbacks", Long.class)).isEqualTo(TRANSACTIONS);
+    }
+
+    private static Object apply(String transactionRef) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(WIREMOCK.baseUrl() + "/apply/" + transactionRef)).build();
+        try {
+            HTTP.send(request, HttpResponse.BodyHandlers.discarding());
+        } catch (IOException | InterruptedException e) {
+            throw new IllegalStateException("Applying " + transactionRef + " failed", e);
+        }
+        return null;
+    }
+
+    /**
+     * Every transaction's callback, with a fifth of them again, shuffled.
+     */
+    private static List<Map<String, Object>> callbacks(String prefix) {
+        List<Map<String, Object>> callbacks = new ArrayList<>(TRANSACTIONS + REDELIVERED);
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            Map<String, Object> callback = new HashMap<>();
+            callback.put("app_transaction_ref", prefix + "-" + i);
+            callback.put("transaction_ref", "cp-" + prefix + "-" + i);
+            callback.put("transaction_type", "PAYIN");
+            callback.put("transaction_amount", 500 + i % 50 * 100);
+            callback.put("transaction_currency", "XAF");
+            callback.put("transaction_operator", i % 2 == 0 ? "CM_MOMO" : "CM_OM");
+            callback.put("transaction_status", "SUCCESS");
+            callback.put("signature", CoolPaySignature.of(callback, PRIVATE_KEY));
+            callbacks.add(callback);
+        }
+        callbacks.addAll(callbacks.subList(0, REDELIVERED));
+        Collections.shuffle(callbacks, new Random(42));
+        return callbacks;
+    }
+
+    /**
+     * @return the time each callback took to be answered, in nanoseconds
+     */
+    private static long[] replay(List<Map<String, Object>> callbacks, Function<Map<String, Object>, ?> handler) throws Exception {
+        long[] latencies = new long[callbacks.size()];
+        ExecutorService senders = Executors.newFixedThreadPool(SENDERS);
+        try {
+            List<Future<?>> futures = new ArrayList<>(callbacks.size());
+            for (int i = 0; i < callbacks.size(); i++) {
+                int index = i;
+                futures.add(senders.submit(() -> {
+                    long start = System.nanoTime();
+                    handler.apply(callbacks.get(index));
+                    latencies[index] = System.nanoTime() - start;
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            senders.shutdown();
+        }
+        return latencies;
+    }
+
+    // In milliseconds
+    private static long percentile(long[] latencies, int percentile) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1_000_000;
+    }
+}
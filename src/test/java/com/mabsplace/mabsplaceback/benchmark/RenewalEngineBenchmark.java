@@ -0,0 +1,128 @@
+package com.mabsplace.mabsplaceback.benchmark;
+
+import com.mabsplace.mabsplaceback.base.BaseMySqlTest;
+import com.mabsplace.mabsplaceback.domain.entities.Subscription;
+import com.mabsplace.mabsplaceback.domain.enums.Period;
+import com.mabsplace.mabsplaceback.domain.enums.SubscriptionStatus;
+import com.mabsplace.mabsplaceback.domain.repositories.SubscriptionRepository;
+import com.mabsplace.mabsplaceback.domain.services.ChunkedJobRunner;
+import com.mabsplace.mabsplaceback.utils.Utils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Renewals per second over 100k due subscriptions: the former run (every due subscription loaded into one
+ * list, then saved one by one) against ChunkedJobRunner at a few chunk sizes. Each renewal only moves the
+ * subscription's dates, so this measures the engine rather than payments and notifications.
+ * Run with {@code mvn test -Dtest=RenewalEngineBenchmark -Dbenchmarks=true} (needs Docker).
+ */
+@DataJpaTest
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO"
+})
+class RenewalEngineBenchmark extends BaseMySqlTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(RenewalEngineBenchmark.class);
+
+    private static final int DUE = 100_000;
+    private static final int[] CHUNK_SIZES = {100, 1000};
+
+    @Autowired
+    private SubscriptionRepository subscriptionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void renewalRate() {
+        seed();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        makeDue();
+        long start = System.nanoTime();
+        List<Subscription> due = subscriptionRepository.findByStatusAndEndDateBeforeAndAutoRenewTrue(
+                SubscriptionStatus.ACTIVE, new Date());
+        for (Subscription subscription : due) {
+            renew(subscription);
+            transactionTemplate.executeWithoutResult(status -> subscriptionRepository.save(subscription));
+        }
+        logger.info("Single list: {} renewals at {} renewals/s", due.size(), rate(due.size(), System.nanoTime() - start));
+        assertThat(due).hasSize(DUE);
+
+        ChunkedJobRunner runner = new ChunkedJobRunner(jdbcTemplate, transactionManager);
+        for (int chunkSize : CHUNK_SIZES) {
+            makeDue();
+            ChunkedJobRunner.Summary summary = runner.run("renewal-benchmark", chunkSize,
+                    (cutoff, afterId, limit) -> subscriptionRepository.findRenewalIdsAfter(
+                            SubscriptionStatus.ACTIVE, Timestamp.valueOf(cutoff), afterId, 1, 0, PageRequest.of(0, limit)),
+                    (id, cutoff) -> renew(subscriptionRepository.findById(id).orElseThrow()));
+            logger.info("Chunks of {}: {} renewals at {} renewals/s", chunkSize, summary.processed(),
+                    rate(summary.processed(), summary.elapsed().toNanos()));
+            assertThat(summary.processed()).isEqualTo(DUE);
+        }
+    }
+
+    private static void renew(Subscription subscription) {
+        subscription.setStartDate(subscription.getEndDate());
+        subscription.setEndDate(Utils.addPeriod(subscription.getEndDate(), Period.MONTHLY));
+        subscription.setRenewalAttempts(0);
+    }
+
+    /**
+     * Inserts the due subscriptions, plus a tenth as many that are not due: expired or not auto-renewing.
+     */
+    private void seed() {
+        // Numbers 0 to 109999 from five cross-joined digit tables, the last one running to 10
+        String numbers = "SELECT a.d + 10 * b.d + 100 * c.d + 1000 * e.d + 10000 * f.d AS n FROM "
+                + digits(9) + " a, " + digits(9) + " b, " + digits(9) + " c, " + digits(9) + " e, " + digits(10) + " f";
+        jdbcTemplate.update("INSERT INTO subscriptions (start_date, end_date, status, auto_renew, renewal_attempts, "
+                        + "is_trial, expiration_notified) "
+                        + "SELECT ?, ?, IF(n % 22 = 10, 'EXPIRED', 'ACTIVE'), n % 22 <> 21, 0, false, false "
+                        + "FROM (" + numbers + ") numbers",
+                Timestamp.valueOf(LocalDateTime.now().minusMonths(1)), Timestamp.valueOf(LocalDateTime.now().minusDays(1)));
+    }
+
+    private static String digits(int max) {
+        StringBuilder digits = new StringBuilder("(SELECT 0 d");
+        for (int d = 1; d <= max; d++) {
+            digits.append(" UNION ALL SELECT ").append(d);
+        }
+        return digits.append(")").toString();
+    }
+
+    private void makeDue() {
+        jdbcTemplate.update("UPDATE subscriptions SET end_date = ? WHERE status = 'ACTIVE' AND auto_renew",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(1)));
+    }
+
+    private static long rate(long renewals, long nanos) {
+        return renewals * 1_000_000_000L / Math.max(nanos, 1);
+    }
+}
@@ -0,0 +1,136 @@
+package com.mabsplace.mabsplaceback.benchmark;
+
+import com.mabsplace.mabsplaceback.base.BaseMySqlTest;
+import com.mabsplace.mabsplaceback.domain.entities.Subscription;
+import com.mabsplace.mabsplaceback.domain.enums.ProfileStatus;
+import com.mabsplace.mabsplaceback.domain.enums.SubscriptionStatus;
+import com.mabsplace.mabsplaceback.domain.repositories.ProfileRepository;
+import com.mabsplace.mabsplaceback.domain.repositories.SubscriptionRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Time to expire 10k and 100k subscriptions: the former run (entities loaded, then saved one transaction each)
+ * against the set-based one (ids read, then locked and updated 500 at a time). Only the database work is
+ * measured, not the notifications and tasks of either.
+ * Run with {@code mvn test -Dtest=SubscriptionExpiryBenchmark -Dbenchmarks=true} (needs Docker).
+ */
+@DataJpaTest
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO"
+})
+class SubscriptionExpiryBenchmark extends BaseMySqlTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionExpiryBenchmark.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    // The former run's query, which loaded every subscription to expire as an entity
+    private static final String ROW_BY_ROW_SQL = "SELECT * FROM subscriptions s WHERE s.end_date < ?1 AND s.status <> ?2 "
+            + "AND (s.auto_renew = false OR COALESCE(s.renewal_attempts, 0) >= 4)";
+
+    @Autowired
+    private SubscriptionRepository subscriptionRepository;
+
+    @Autowired
+    private ProfileRepository profileRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void clearTable() {
+        jdbcTemplate.execute("DELETE FROM subscriptions");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10_000, 100_000})
+    void expiryTime(int rows) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        seed(rows);
+
+        long start = System.nanoTime();
+        @SuppressWarnings("unchecked")
+        List<Subscription> subscriptions = entityManager.createNativeQuery(ROW_BY_ROW_SQL, Subscription.class)
+                .setParameter(1, new Date())
+                .setParameter(2, "EXPIRED")
+                .getResultList();
+        for (Subscription subscription : subscriptions) {
+            transactionTemplate.executeWithoutResult(status -> {
+                subscription.setStatus(SubscriptionStatus.EXPIRED);
+                subscriptionRepository.save(subscription);
+            });
+        }
+        long rowByRowMillis = (System.nanoTime() - start) / 1_000_000;
+        assertThat(expiredCount()).isEqualTo(rows);
+
+        jdbcTemplate.update("UPDATE subscriptions SET status = 'ACTIVE'");
+        start = System.nanoTime();
+        Date now = new Date();
+        List<Long> ids = subscriptionRepository.findIdsToExpire(now, SubscriptionStatus.EXPIRED);
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Long> locked = subscriptionRepository.lockIdsToExpire(batch, now);
+                profileRepository.updateStatusBySubscriptionIdIn(locked, ProfileStatus.INACTIVE);
+                subscriptionRepository.updateStatusByIdIn(locked, SubscriptionStatus.EXPIRED);
+            });
+        }
+        long bulkMillis = (System.nanoTime() - start) / 1_000_000;
+        assertThat(expiredCount()).isEqualTo(rows);
+
+        logger.info("Expiring {} subscriptions: row by row {} ms, bulk in batches of {} {} ms ({}x)",
+                rows, rowByRowMillis, BATCH_SIZE, bulkMillis, rowByRowMillis / Math.max(bulkMillis, 1));
+    }
+
+    /**
+     * Inserts subscriptions that ended yesterday without auto-renewal.
+     */
+    private void seed(int rows) {
+        String digits = "(SELECT 0 d UNION ALL SELECT 1 UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4 "
+                + "UNION ALL SELECT 5 UNION ALL SELECT 6 UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9)";
+        jdbcTemplate.update("INSERT INTO subscriptions (start_date, end_date, status, auto_renew, renewal_attempts, "
+                        + "is_trial, expiration_notified) "
+                        + "SELECT ?, ?, 'ACTIVE', false, 0, false, false "
+                        + "FROM " + digits + " a, " + digits + " b, " + digits + " c, " + digits + " e, " + digits + " f "
+                        + "LIMIT ?",
+                Timestamp.valueOf(LocalDateTime.now().minusMonths(1)), Timestamp.valueOf(LocalDateTime.now().minusDays(1)),
+                rows);
+    }
+
+    private int expiredCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM subscriptions WHERE status = 'EXPIRED'", Integer.class);
+    }
+}
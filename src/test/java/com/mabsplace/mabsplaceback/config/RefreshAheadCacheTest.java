@@ -0,0 +1,143 @@
+package com.mabsplace.mabsplaceback.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RefreshAheadCacheTest {
+
+    private final ConcurrentMapCache redis = new ConcurrentMapCache("dashboardStats");
+    private final InMemoryLoadLock lock = new InMemoryLoadLock();
+    private final MutableClock clock = new MutableClock();
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void should_LoadOnce_When_ConcurrentRequestsMissTheSameKey() throws Exception {
+        RefreshAheadCache cache = cache(Runnable::run);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return cache.get("all", () -> {
+                    loads.incrementAndGet();
+                    Thread.sleep(100);
+                    return "computed";
+                });
+            }));
+        }
+        start.countDown();
+
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("computed");
+        }
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void should_ServeStaleValueAndRefreshInBackground_When_EntryIsDueForRefresh() throws Exception {
+        RefreshAheadCache cache = cache(executor);
+        cache.get("all", () -> "v1");
+
+        clock.advance(Duration.ofMinutes(3));
+        assertThat(cache.get("all", () -> "unused")).isEqualTo("v1");
+
+        clock.advance(Duration.ofMinutes(2));
+        CountDownLatch refreshed = new CountDownLatch(1);
+        assertThat(cache.get("all", () -> {
+            refreshed.countDown();
+            return "v2";
+        })).isEqualTo("v1");
+
+        assertThat(refreshed.await(5, TimeUnit.SECONDS)).isTrue();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!"v2".equals(cache.get("all", String.class)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(cache.get("all", String.class)).isEqualTo("v2");
+    }
+
+    @Test
+    void should_WaitForOtherNode_When_ItHoldsTheLoadLock() throws Exception {
+        RefreshAheadCache cache = cache(Runnable::run);
+        String otherNode = lock.tryAcquire("cache-lock:dashboardStats:all", Duration.ofSeconds(30));
+
+        Future<String> result = executor.submit(() -> cache.get("all", () -> "computed here"));
+        Thread.sleep(100);
+        // The other node finishes loading and stores its value
+        cache(Runnable::run).put("all", "computed elsewhere");
+        lock.release("cache-lock:dashboardStats:all", otherNode);
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("computed elsewhere");
+    }
+
+    private RefreshAheadCache cache(java.util.concurrent.Executor refreshExecutor) {
+        return new RefreshAheadCache(redis, Duration.ofMinutes(4), Duration.ofSeconds(30), lock, refreshExecutor, clock);
+    }
+
+    private static class InMemoryLoadLock implements CacheLoadLock {
+
+        private final Map<String, String> holders = new ConcurrentHashMap<>();
+
+        @Override
+        public String tryAcquire(String lockKey, Duration lease) {
+            String token = UUID.randomUUID().toString();
+            return holders.putIfAbsent(lockKey, token) == null ? token : null;
+        }
+
+        @Override
+        public void release(String lockKey, String token) {
+            holders.remove(lockKey, token);
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private volatile Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.mabsplace.mabsplaceback.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TwoLevelCacheManagerTest {
+
+    private final ConcurrentMapCacheManager redis = new ConcurrentMapCacheManager("dashboardStats", "subscriptionHealth");
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<TwoLevelCacheManager> nodes = new ArrayList<>();
+
+    private TwoLevelCacheManager nodeA;
+    private TwoLevelCacheManager nodeB;
+
+    @BeforeEach
+    void setUp() {
+        // Two nodes sharing one L2, with the pub/sub channel delivering to every node
+        Map<String, TwoLevelCacheManager.L1Spec> l1Specs = Map.of("dashboardStats", new TwoLevelCacheManager.L1Spec(10, Duration.ofMinutes(1)));
+        nodeA = new TwoLevelCacheManager(redis, l1Specs, message -> nodes.forEach(node -> node.handleInvalidation(message)), meterRegistry);
+        nodeB = new TwoLevelCacheManager(redis, l1Specs, message -> nodes.forEach(node -> node.handleInvalidation(message)), new SimpleMeterRegistry());
+        nodes.addAll(List.of(nodeA, nodeB));
+    }
+
+    @Test
+    void should_ServeFromL1_When_ValueWasAlreadyReadOnThisNode() {
+        Cache cache = nodeA.getCache("dashboardStats");
+        assertThat(cache.get("all", () -> "computed")).isEqualTo("computed");
+
+        // Changed behind the node's back: L1 keeps answering until it expires or is invalidated
+        redis.getCache("dashboardStats").put("all", "changed in redis");
+
+        assertThat(cache.get("all", () -> "recomputed")).isEqualTo("computed");
+        assertThat(meterRegistry.get("cache.gets").tags("cache", "dashboardStats", "level", "l1", "result", "hit").functionCounter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("cache.gets").tags("cache", "dashboardStats", "level", "l2", "result", "miss").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("cache.hit.ratio").tags("cache", "dashboardStats", "level", "l1").gauge().value())
+                .isEqualTo(0.5);
+    }
+
+    @Test
+    void should_DropPeerL1Entries_When_NodeWritesOrClears() {
+        Cache onA = nodeA.getCache("dashboardStats");
+        Cache onB = nodeB.getCache("dashboardStats");
+        onA.get("all", () -> "v1");
+        assertThat(onB.get("all", () -> "unused")).isEqualTo("v1");
+
+        onA.put("all", "v2");
+        assertThat(onB.get("all", String.class)).isEqualTo("v2");
+
+        onB.clear();
+        assertThat(onA.get("all")).isNull();
+    }
+
+    @Test
+    void should_UseRedisAlone_When_CacheHasNoL1() {
+        Cache cache = nodeA.getCache("subscriptionHealth");
+        cache.put("all", "v1");
+        redis.getCache("subscriptionHealth").put("all", "v2");
+
+        assertThat(cache.get("all", String.class)).isEqualTo("v2");
+        assertThat(nodeA.getCache("unknown")).isNull();
+    }
+}
@@ -0,0 +1,119 @@
+package com.mabsplace.mabsplaceback.domain.controllers;
+
+import com.mabsplace.mabsplaceback.base.BaseMySqlTest;
+import com.mabsplace.mabsplaceback.domain.repositories.DigitalGoodsOrderRepository;
+import com.mabsplace.mabsplaceback.utils.TimeWindow;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks with EXPLAIN that the time-windowed dashboard and digital goods queries range-scan the
+ * date indexes of performance_indexes.sql, or the day key of the rollups, instead of reading every row (needs Docker).
+ */
+class DashboardQueryPlanTest extends BaseMySqlTest {
+
+    private static final int YEARS_OF_HISTORY = 10;
+    private static final int ROWS = 40_000;
+
+    private static JdbcTemplate jdbcTemplate;
+    private static NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @BeforeAll
+    static void seed() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+
+        // Same definitions as src/main/resources/db/performance_indexes.sql
+        createIndex("idx_payments_date_status", "payments", "payment_date, status");
+        createIndex("idx_expenses_date", "expenses", "expense_date");
+        createIndex("idx_digital_goods_orders_created_status", "digital_goods_orders", "created_at, order_status");
+
+        jdbcTemplate.update("INSERT INTO subscription_plans (id, name, description, price, period) VALUES "
+                + "(1, 'Trial', '', 0, 'MONTHLY'), (2, 'Basic', '', 2500, 'MONTHLY')");
+        jdbcTemplate.update("INSERT INTO expense_categories (id, name) VALUES (1, 'marketing'), (2, 'servers')");
+
+        Random random = new Random(7);
+        LocalDateTime now = LocalDateTime.now();
+        int historyMinutes = YEARS_OF_HISTORY * 365 * 24 * 60;
+        List<Object[]> payments = new ArrayList<>();
+        List<Object[]> expenses = new ArrayList<>();
+        List<Object[]> orders = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            payments.add(new Object[]{i + 1, 1 + random.nextInt(5_000), BigDecimal.valueOf(2500),
+                    Timestamp.valueOf(now.minusMinutes(random.nextInt(historyMinutes))), "PAID", 1 + random.nextInt(2), 1 + random.nextInt(10)});
+            expenses.add(new Object[]{BigDecimal.valueOf(1000), Timestamp.valueOf(now.minusMinutes(random.nextInt(historyMinutes))),
+                    1 + random.nextInt(2), random.nextBoolean()});
+            BigDecimal orderAmount = BigDecimal.valueOf(5000);
+            orders.add(new Object[]{orderAmount, orderAmount, orderAmount, orderAmount, "DELIVERED",
+                    Timestamp.valueOf(now.minusMinutes(random.nextInt(historyMinutes)))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO payments (id, user_id, amount, payment_date, status, subscription_plan_id, service_id) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)", payments);
+        jdbcTemplate.batchUpdate("INSERT INTO expenses (amount, expense_date, category_id, is_recurring, created_by, currency_id) "
+                + "VALUES (?, ?, ?, ?, 1, 1)", expenses);
+        jdbcTemplate.batchUpdate("INSERT INTO digital_goods_orders (amount, base_currency, base_currency_price, converted_price, "
+                + "exchange_rate, service_fee, total_amount, product_id, user_id, payment_method, order_status, created_at) "
+                + "VALUES (?, 'XAF', ?, ?, 1, 0, ?, 1, 1, 'WALLET', ?, ?)", orders);
+
+        // Roughly what DailyRollupService keeps for this history
+        jdbcTemplate.update("INSERT INTO daily_revenue (day, service_id, revenue, plan_revenue, payments, subscribers, "
+                + "service_subscribers, digital_goods_revenue, digital_goods_orders) SELECT DATE(payment_date), service_id, "
+                + "SUM(amount), SUM(amount), COUNT(*), COUNT(*), COUNT(*), 0, 0 FROM payments GROUP BY DATE(payment_date), service_id");
+        jdbcTemplate.update("INSERT INTO daily_expense (day, category_id, total_expenses, recurring_expenses, one_time_expenses, "
+                + "expenses) SELECT DATE(expense_date), category_id, SUM(amount), SUM(amount), 0, COUNT(*) "
+                + "FROM expenses GROUP BY DATE(expense_date), category_id");
+        jdbcTemplate.execute("ANALYZE TABLE payments, expenses, digital_goods_orders, daily_revenue, daily_expense");
+    }
+
+    @Test
+    void should_RangeScanRollupDayKey_When_BucketingMonths() {
+        Map<String, Object> window = TimeWindow.lastMonths(6).params("window");
+
+        assertThat(indexUsedOn("r", DashboardController.MONTHLY_PAYMENTS_SQL, window)).isEqualTo("PRIMARY");
+        assertThat(indexUsedOn("r", DashboardController.MONTHLY_SERVICE_PAYMENTS_SQL, window)).isEqualTo("PRIMARY");
+        assertThat(indexUsedOn("e", DashboardController.MONTHLY_EXPENSES_SQL, window)).isEqualTo("PRIMARY");
+    }
+
+    @Test
+    void should_RangeScanExpenseDateIndex_When_ComputingMonthStats() {
+        assertThat(indexUsedOn("e", DashboardStatsEngine.EXPENSE_METRICS_SQL, TimeWindow.currentMonth().params("month")))
+                .isEqualTo("idx_expenses_date");
+    }
+
+    @Test
+    void should_RangeScanCreatedAtIndex_When_ReadingDigitalGoodsRevenueTrend() throws Exception {
+        String sql = DigitalGoodsOrderRepository.class
+                .getMethod("getMonthlyRevenueTrend", Date.class, Date.class)
+                .getAnnotation(Query.class).value();
+        TimeWindow window = TimeWindow.lastMonths(6);
+        Map<String, Object> params = new HashMap<>();
+        params.put("startDate", window.start());
+        params.put("endDate", window.end());
+
+        assertThat(indexUsedOn("digital_goods_orders", sql, params)).isEqualTo("idx_digital_goods_orders_created_status");
+    }
+
+    private static String indexUsedOn(String table, String sql, Map<String, ?> params) {
+        List<Map<String, Object>> plan = namedParameterJdbcTemplate.queryForList("EXPLAIN " + sql, params);
+        return plan.stream()
+                .filter(row -> table.equals(row.get("table")))
+                .map(row -> (String) row.get("key"))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No plan row for " + table + " in " + plan));
+    }
+}
@@ -0,0 +1,240 @@
+package com.mabsplace.mabsplaceback.domain.controllers;
+
+import com.mabsplace.mabsplaceback.base.BaseMySqlTest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Seeds a MySQL container with a few hundred thousand rows and compares the former
+ * one-query-per-metric implementation of /api/dashboard/stats with {@link DashboardStatsEngine}:
+ * both must return the same {@link DashboardStats}, and the average latency of each is printed.
+ * Run with {@code mvn test -Dtest=DashboardStatsEngineBenchmark -Dbenchmarks=true} (needs Docker).
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class DashboardStatsEngineBenchmark extends BaseMySqlTest {
+
+    private static final int USERS = 20_000;
+    private static final int PAYMENTS = 200_000;
+    private static final int SUBSCRIPTIONS = 40_000;
+    private static final int EXPENSES = 5_000;
+    private static final int ITERATIONS = 10;
+
+    private static JdbcTemplate jdbcTemplate;
+    private static DashboardStatsEngine engine;
+
+    @BeforeAll
+    static void seed() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        engine = new DashboardStatsEngine(jdbcTemplate, 3);
+
+        // Same definitions as src/main/resources/db/performance_indexes.sql
+        createIndex("idx_payments_date_status", "payments", "payment_date, status");
+        createIndex("idx_expenses_date", "expenses", "expense_date");
+
+        jdbcTemplate.update("INSERT INTO subscription_plans (id, name, description, price, period) VALUES "
+                + "(1, 'Trial', '', 0, 'MONTHLY'), (2, 'Basic', '', 2500, 'MONTHLY'), (3, 'Family', '', 6500, 'QUARTERLY'), "
+                + "(4, 'Premium', '', 48000, 'YEARLY'), (5, 'Day pass', '', 300, 'DAILY')");
+        jdbcTemplate.update("INSERT INTO expense_categories (id, name) VALUES (1, 'marketing'), (2, 'servers'), (3, 'rewards'), (4, 'salaries')");
+
+        Random random = new Random(42);
+        LocalDateTime now = LocalDateTime.now();
+        String[] paymentStatuses = {"PAID", "PAID", "PAID", "PENDING", "CANCELLED"};
+        String[] subscriptionStatuses = {"ACTIVE", "ACTIVE", "CANCELLED", "EXPIRED"};
+
+        List<Object[]> payments = new ArrayList<>(PAYMENTS);
+        for (int i = 0; i < PAYMENTS; i++) {
+            payments.add(new Object[]{
+                    i + 1,
+                    1 + random.nextInt(USERS),
+                    BigDecimal.valueOf(500 + random.nextInt(50_000), 2),
+                    Timestamp.valueOf(now.minusMinutes(random.nextInt(60 * 24 * 730))),
+                    paymentStatuses[random.nextInt(paymentStatuses.length)],
+                    1 + random.nextInt(5),
+                    1 + random.nextInt(20)
+            });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO payments (id, user_id, amount, payment_date, status, subscription_plan_id, service_id) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)", payments);
+
+        List<Object[]> subscriptions = new ArrayList<>(SUBSCRIPTIONS);
+        for (int i = 0; i < SUBSCRIPTIONS; i++) {
+            LocalDateTime start = now.minusDays(random.nextInt(730));
+            subscriptions.add(new Object[]{
+                    1 + random.nextInt(USERS),
+                    1 + random.nextInt(5),
+                    subscriptionStatuses[random.nextInt(subscriptionStatuses.length)],
+                    Timestamp.valueOf(start),
+                    random.nextInt(10) == 0 ? null : Timestamp.valueOf(start.plusDays(30 + random.nextInt(365))),
+                    random.nextInt(8) == 0
+            });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO subscriptions (user_id, plan_id, status, start_date, end_date, is_trial, auto_renew) "
+                + "VALUES (?, ?, ?, ?, ?, ?, FALSE)", subscriptions);
+
+        List<Object[]> expenses = new ArrayList<>(EXPENSES);
+        for (int i = 0; i < EXPENSES; i++) {
+            expenses.add(new Object[]{
+                    BigDecimal.valueOf(1_000 + random.nextInt(500_000), 2),
+                    Timestamp.valueOf(now.minusMinutes(random.nextInt(60 * 24 * 365))),
+                    1 + random.nextInt(4),
+                    random.nextBoolean()
+            });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO expenses (amount, expense_date, category_id, is_recurring, created_by, currency_id) "
+                + "VALUES (?, ?, ?, ?, 1, 1)", expenses);
+    }
+
+    @AfterAll
+    static void shutdown() {
+        if (engine != null) {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void should_ReturnSameStatsFaster_When_UsingConsolidatedEngine() {
+        DashboardStats legacy = legacyStats();
+        DashboardStats consolidated = engine.computeStats();
+        assertThat(consolidated).isEqualTo(legacy);
+
+        double legacyMillis = averageMillis(DashboardStatsEngineBenchmark::legacyStats);
+        double engineMillis = averageMillis(engine::computeStats);
+        System.out.printf("dashboard stats: legacy %.1f ms, consolidated engine %.1f ms (%d iterations)%n",
+                legacyMillis, engineMillis, ITERATIONS);
+    }
+
+    private static double averageMillis(Supplier<DashboardStats> stats) {
+        stats.get();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            stats.get();
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / ITERATIONS;
+    }
+
+    /** The per-metric queries DashboardController.getStats ran before the engine existed. */
+    private static DashboardStats legacyStats() {
+        Integer totalCustomers = jdbcTemplate.queryForObject(
+                "SELECT COUNT(DISTINCT user_id) FROM payments WHERE status = 'PAID'", Integer.class);
+        Integer activeSubscribers = jdbcTemplate.queryForObject(
+                "SELECT COUNT(DISTINCT user_id) FROM subscriptions WHERE status = 'ACTIVE' AND start_date <= CURRENT_DATE "
+                        + "AND (end_date IS NULL OR end_date > CURRENT_DATE) AND (is_trial IS NULL OR is_trial = FALSE)", Integer.class);
+        Double monthlyRevenue = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(amount), 0) FROM payments WHERE MONTH(payment_date) = MONTH(CURRENT_DATE) "
+                        + "AND YEAR(payment_date) = YEAR(CURRENT_DATE) AND status = 'PAID'", Double.class);
+        Double monthlyRecurringRevenue = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(CASE sp.period WHEN 'MONTHLY' THEN sp.price WHEN 'YEARLY' THEN sp.price / 12 "
+                        + "WHEN 'QUARTERLY' THEN sp.price / 3 WHEN 'SEMI_ANNUALLY' THEN sp.price / 6 WHEN 'DAILY' THEN sp.price * 30 "
+                        + "ELSE sp.price END), 0) FROM subscriptions s JOIN subscription_plans sp ON s.plan_id = sp.id "
+                        + "WHERE s.status = 'ACTIVE' AND s.start_date <= CURRENT_DATE AND (s.end_date IS NULL OR s.end_date > CURRENT_DATE)",
+                Double.class);
+        Double avgSubscriptionValue = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(AVG(sp.price), 0) FROM subscriptions s JOIN subscription_plans sp ON s.plan_id = sp.id "
+                        + "WHERE s.status = 'ACTIVE' AND s.start_date <= CURRENT_DATE AND (s.end_date IS NULL OR s.end_date > CURRENT_DATE)",
+                Double.class);
+        Integer payingCustomersThisMonth = jdbcTemplate.queryForObject(
+                "SELECT COUNT(DISTINCT user_id) FROM payments WHERE status = 'PAID' AND MONTH(payment_date) = MONTH(CURRENT_DATE) "
+                        + "AND YEAR(payment_date) = YEAR(CURRENT_DATE)", Integer.class);
+        Double subscriberGrowth = jdbcTemplate.queryForObject("""
+                WITH CurrentMonth AS (
+                    SELECT COUNT(DISTINCT user_id) as count FROM subscriptions
+                    WHERE status = 'ACTIVE' AND start_date <= CURRENT_DATE
+                    AND (end_date IS NULL OR end_date > CURRENT_DATE) AND (is_trial IS NULL OR is_trial = FALSE)
+                ),
+                PreviousMonth AS (
+                    SELECT COUNT(DISTINCT user_id) as count FROM subscriptions
+                    WHERE status = 'ACTIVE' AND start_date <= DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH)
+                    AND (end_date IS NULL OR end_date > DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH))
+                    AND (is_trial IS NULL OR is_trial = FALSE)
+                )
+                SELECT CASE WHEN p.count = 0 THEN 0 ELSE ((c.count - p.count) / p.count * 100) END
+                FROM CurrentMonth c, PreviousMonth p
+                """, Double.class);
+        Double revenueGrowth = jdbcTemplate.queryForObject("""
+                WITH CurrentMonth AS (
+                    SELECT COALESCE(SUM(amount), 0) as amount FROM payments
+                    WHERE status = 'PAID' AND MONTH(payment_date) = MONTH(CURRENT_DATE) AND YEAR(payment_date) = YEAR(CURRENT_DATE)
+                ),
+                PreviousMonth AS (
+                    SELECT COALESCE(SUM(amount), 0) as amount FROM payments
+                    WHERE status = 'PAID' AND MONTH(payment_date) = MONTH(DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH))
+                    AND YEAR(payment_date) = YEAR(DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH))
+                )
+                SELECT CASE WHEN p.amount = 0 THEN 0 ELSE ((c.amount - p.amount) / p.amount * 100) END
+                FROM CurrentMonth c, PreviousMonth p
+                """, Double.class);
+        Double monthlyExpenses = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(amount), 0) FROM expenses WHERE MONTH(expense_date) = MONTH(CURRENT_DATE) "
+                        + "AND YEAR(expense_date) = YEAR(CURRENT_DATE)", Double.class);
+        Double netProfit = monthlyRevenue - monthlyExpenses;
+        Double profitMargin = monthlyRevenue > 0 ? (netProfit / monthlyRevenue) * 100 : 0;
+        Double churnRate = jdbcTemplate.queryForObject("""
+                WITH CurrentMonthActive AS (
+                    SELECT COUNT(DISTINCT user_id) as count FROM subscriptions
+                    WHERE status = 'ACTIVE' AND start_date <= DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH)
+                    AND (end_date IS NULL OR end_date > DATE_SUB(CURRENT_DATE, INTERVAL 1 MONTH))
+                    AND (is_trial IS NULL OR is_trial = FALSE)
+                ),
+                ChurnedThisMonth AS (
+                    SELECT COUNT(DISTINCT user_id) as count FROM subscriptions
+                    WHERE status IN ('CANCELLED', 'EXPIRED')
+                    AND (end_date IS NOT NULL AND MONTH(end_date) = MONTH(CURRENT_DATE) AND YEAR(end_date) = YEAR(CURRENT_DATE))
+                    AND (is_trial IS NULL OR is_trial = FALSE)
+                )
+                SELECT CASE WHEN cma.count = 0 THEN 0 ELSE (ctm.count * 100.0 / cma.count) END
+                FROM CurrentMonthActive cma, ChurnedThisMonth ctm
+                """, Double.class);
+        Double customerLifetimeValue = jdbcTemplate.queryForObject("""
+                SELECT COALESCE(AVG(total_revenue), 0) FROM (
+                    SELECT p.user_id, SUM(p.amount) as total_revenue,
+                        DATEDIFF(COALESCE(MAX(s.end_date), CURRENT_DATE), MIN(s.start_date)) / 30.0 as subscription_months
+                    FROM payments p
+                    JOIN subscriptions s ON p.user_id = s.user_id
+                    WHERE p.status = 'PAID' AND (s.is_trial IS NULL OR s.is_trial = FALSE)
+                    GROUP BY p.user_id
+                    HAVING subscription_months > 0
+                ) customer_data
+                """, Double.class);
+        // The cross join repeats every expense once per new customer, so the former query returned the whole
+        // marketing spend; the extra division gives the spend per new customer that the engine now reports
+        Double customerAcquisitionCost = jdbcTemplate.queryForObject("""
+                WITH MonthlyMetrics AS (
+                    SELECT COALESCE(SUM(e.amount), 0) as total_marketing_expenses, COUNT(DISTINCT p.user_id) as new_customers
+                    FROM expenses e
+                    RIGHT JOIN (
+                        SELECT DISTINCT user_id FROM payments
+                        WHERE status = 'PAID' AND MONTH(payment_date) = MONTH(CURRENT_DATE) AND YEAR(payment_date) = YEAR(CURRENT_DATE)
+                        AND subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')
+                        AND user_id NOT IN (
+                            SELECT DISTINCT user_id FROM payments
+                            WHERE status = 'PAID' AND payment_date < DATE_FORMAT(CURRENT_DATE, '%Y-%m-01')
+                        )
+                    ) p ON 1=1
+                    LEFT JOIN expense_categories ec ON e.category_id = ec.id
+                    WHERE e.expense_date BETWEEN DATE_FORMAT(CURRENT_DATE, '%Y-%m-01') AND LAST_DAY(CURRENT_DATE)
+                    AND (ec.name LIKE '%marketing%' OR ec.name LIKE '%advertising%' OR ec.name LIKE '%promotion%'
+                         OR ec.name LIKE '%publicite%' OR ec.name LIKE '%devs%' OR ec.name LIKE '%rewards%')
+                )
+                SELECT CASE WHEN new_customers = 0 THEN 0 ELSE total_marketing_expenses / new_customers / new_customers END
+                FROM MonthlyMetrics
+                """, Double.class);
+        Double ltvCacRatio = customerAcquisitionCost > 0 ? customerLifetimeValue / customerAcquisitionCost : 0.0;
+
+        return new DashboardStats(totalCustomers, activeSubscribers, monthlyRevenue, monthlyRecurringRevenue,
+                avgSubscriptionValue, payingCustomersThisMonth, subscriberGrowth, revenueGrowth, monthlyExpenses,
+                netProfit, profitMargin, churnRate, customerLifetimeValue, customerAcquisitionCost, ltvCacRatio);
+    }
+}
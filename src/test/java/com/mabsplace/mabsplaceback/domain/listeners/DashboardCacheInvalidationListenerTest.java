@@ -0,0 +1,117 @@
+package com.mabsplace.mabsplaceback.domain.listeners;
+
+import com.mabsplace.mabsplaceback.domain.entities.Payment;
+import com.mabsplace.mabsplaceback.domain.entities.Subscription;
+import com.mabsplace.mabsplaceback.domain.events.PaymentChangedEvent;
+import com.mabsplace.mabsplaceback.domain.events.SubscriptionStateChangedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DashboardCacheInvalidationListenerTest {
+
+    private AnnotationConfigApplicationContext context;
+    private CacheManager cacheManager;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(TestConfig.class, DashboardCacheInvalidationListener.class);
+        cacheManager = context.getBean(CacheManager.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        cacheManager.getCache("dashboardStats").put("all", "stats");
+        cacheManager.getCache("subscriptionHealth").put("all", "health");
+        cacheManager.getCache("revenueTrend").put("all", "trend");
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void should_EvictAffectedCaches_When_TransactionCommits() {
+        transactionTemplate.executeWithoutResult(status -> {
+            context.publishEvent(new SubscriptionStateChangedEvent(this, new Subscription()));
+            assertThat(cacheManager.getCache("dashboardStats").get("all")).isNotNull();
+        });
+
+        assertThat(cacheManager.getCache("dashboardStats").get("all")).isNull();
+        assertThat(cacheManager.getCache("subscriptionHealth").get("all")).isNull();
+        assertThat(cacheManager.getCache("revenueTrend").get("all", String.class)).isEqualTo("trend");
+    }
+
+    @Test
+    void should_KeepCaches_When_TransactionRollsBack() {
+        transactionTemplate.executeWithoutResult(status -> {
+            context.publishEvent(new SubscriptionStateChangedEvent(this, new Subscription()));
+            status.setRollbackOnly();
+        });
+
+        assertThat(cacheManager.getCache("dashboardStats").get("all", String.class)).isEqualTo("stats");
+    }
+
+    @Test
+    void should_EvictRevenueCaches_When_PaymentIsChanged() {
+        transactionTemplate.executeWithoutResult(status -> context.publishEvent(new PaymentChangedEvent(this, new Payment())));
+
+        assertThat(cacheManager.getCache("dashboardStats").get("all")).isNull();
+        assertThat(cacheManager.getCache("revenueTrend").get("all")).isNull();
+        assertThat(cacheManager.getCache("subscriptionHealth").get("all", String.class)).isEqualTo("health");
+    }
+
+    @Test
+    void should_EvictImmediately_When_PublishedOutsideTransaction() {
+        context.publishEvent(new SubscriptionStateChangedEvent(this, new Subscription()));
+
+        assertThat(cacheManager.getCache("subscriptionHealth").get("all")).isNull();
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    static class TestConfig {
+
+        @Bean
+        CacheManager cacheManager() {
+            // Transaction aware like the production cache manager, which defers evict() to after commit
+            return new TransactionAwareCacheManagerProxy(
+                    new ConcurrentMapCacheManager("dashboardStats", "subscriptionHealth", "revenueTrend"));
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return new AbstractPlatformTransactionManager() {
+                @Override
+                protected Object doGetTransaction() {
+                    return new Object();
+                }
+
+                @Override
+                protected void doBegin(Object transaction, TransactionDefinition definition) {
+                }
+
+                @Override
+                protected void doCommit(DefaultTransactionStatus status) {
+                }
+
+                @Override
+                protected void doRollback(DefaultTransactionStatus status) {
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.mabsplace.mabsplaceback.domain.repositories;
+
+import com.mabsplace.mabsplaceback.domain.dtos.notification.NotificationCursor;
+import com.mabsplace.mabsplaceback.domain.entities.BroadcastNotification;
+import com.mabsplace.mabsplaceback.domain.entities.Notification;
+import com.mabsplace.mabsplaceback.domain.enums.NotificationType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+class BroadcastNotificationRepositoryTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 1, 9, 0);
+
+    @Autowired
+    private BroadcastNotificationRepository broadcastNotificationRepository;
+
+    @Autowired
+    private BroadcastReadWatermarkRepository watermarkRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    // Oldest first
+    private final List<BroadcastNotification> broadcasts = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 6; i++) {
+            broadcasts.add(broadcastNotificationRepository.save(broadcast(START.plusDays(i))));
+        }
+    }
+
+    @Test
+    void should_ReturnOnlyUnreadVisibleBroadcasts_When_UserHasReadSome() {
+        BroadcastNotification read = broadcasts.get(3);
+        LocalDateTime visibleFrom = START.plusDays(1);
+
+        List<BroadcastNotification> unread = broadcastNotificationRepository.findInboxPage(visibleFrom,
+                NotificationCursor.NEWEST.createdAt(), NotificationCursor.NEWEST.id(),
+                NotificationCursor.OLDEST.createdAt(), NotificationCursor.OLDEST.id(),
+                read.getCreatedAt(), read.getId(), true, PageRequest.of(0, 10));
+        List<BroadcastNotification> all = broadcastNotificationRepository.findInboxPage(visibleFrom,
+                NotificationCursor.NEWEST.createdAt(), NotificationCursor.NEWEST.id(),
+                NotificationCursor.OLDEST.createdAt(), NotificationCursor.OLDEST.id(),
+                read.getCreatedAt(), read.getId(), false, PageRequest.of(0, 10));
+
+        assertThat(unread).containsExactly(broadcasts.get(5), broadcasts.get(4));
+        assertThat(all).containsExactly(broadcasts.get(5), broadcasts.get(4), broadcasts.get(3), broadcasts.get(2),
+                broadcasts.get(1));
+        assertThat(broadcastNotificationRepository.countUnread(visibleFrom, read.getCreatedAt(), read.getId())).isEqualTo(2);
+        assertThat(broadcastNotificationRepository.countUnread(visibleFrom,
+                NotificationCursor.OLDEST.createdAt(), NotificationCursor.OLDEST.id())).isEqualTo(5);
+    }
+
+    @Test
+    void should_OnlyMoveWatermarkForward_When_Advanced() {
+        BroadcastNotification older = broadcasts.get(1);
+        BroadcastNotification newer = broadcasts.get(4);
+        watermarkRepository.insert(7L, newer.getCreatedAt(), newer.getId());
+
+        assertThat(watermarkRepository.advance(7L, older.getCreatedAt(), older.getId())).isZero();
+        assertThat(watermarkRepository.advance(7L, broadcasts.get(5).getCreatedAt(), broadcasts.get(5).getId())).isEqualTo(1);
+        assertThatThrownBy(() -> watermarkRepository.insert(7L, older.getCreatedAt(), older.getId()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    void should_NotReuseNotificationIds_When_BroadcastIsSaved() {
+        Notification notification = new Notification();
+        notification.setTitle("Subscription renewed");
+        notification.setType(NotificationType.SYSTEM);
+        notification.setCreatedAt(START);
+        notification = notificationRepository.save(notification);
+
+        BroadcastNotification broadcast = broadcastNotificationRepository.save(broadcast(START));
+
+        assertThat(broadcasts).extracting(BroadcastNotification::getId)
+                .doesNotContain(notification.getId())
+                .doesNotContain(broadcast.getId());
+        assertThat(broadcast.getId()).isNotEqualTo(notification.getId());
+    }
+
+    private static BroadcastNotification broadcast(LocalDateTime createdAt) {
+        BroadcastNotification broadcast = new BroadcastNotification();
+        broadcast.setTitle("Maintenance");
+        broadcast.setMessage("Services will be unavailable tonight from 1am to 2am");
+        broadcast.setType(NotificationType.SYSTEM);
+        broadcast.setCreatedAt(createdAt);
+        return broadcast;
+    }
+}
@@ -0,0 +1,144 @@
+package com.mabsplace.mabsplaceback.domain.repositories;
+
+import com.mabsplace.mabsplaceback.domain.dtos.notification.NotificationCursor;
+import com.mabsplace.mabsplaceback.domain.entities.Notification;
+import com.mabsplace.mabsplaceback.domain.entities.User;
+import com.mabsplace.mabsplaceback.domain.enums.AuthProvider;
+import com.mabsplace.mabsplaceback.domain.enums.NotificationType;
+import com.mabsplace.mabsplaceback.utils.TestDataBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class NotificationRepositoryTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 1, 9, 0);
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+    private Notification othersNotification;
+    private final List<Notification> inbox = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        user = save("alice", "677000001");
+        User other = save("bob", "677000002");
+        // Three notifications per minute: cursors have to break ties on the id
+        for (int i = 0; i < 25; i++) {
+            inbox.add(notificationRepository.save(notification(user, START.plusMinutes(i / 3), i % 4 == 0)));
+        }
+        othersNotification = notificationRepository.save(notification(other, START, false));
+        inbox.sort(Comparator.comparing(Notification::getCreatedAt).thenComparing(Notification::getId).reversed());
+    }
+
+    @Test
+    void should_ReturnEachNotificationOnceNewestFirst_When_FollowingCursors() {
+        List<Long> read = new ArrayList<>();
+        NotificationCursor before = NotificationCursor.NEWEST;
+        List<Notification> page;
+        do {
+            page = notificationRepository.findInboxPage(user.getId(), before.createdAt(), before.id(),
+                    NotificationCursor.OLDEST.createdAt(), NotificationCursor.OLDEST.id(), false, PageRequest.of(0, 10));
+            page.forEach(notification -> read.add(notification.getId()));
+            if (!page.isEmpty()) {
+                Notification last = page.get(page.size() - 1);
+                before = new NotificationCursor(last.getCreatedAt(), last.getId());
+            }
+        } while (page.size() == 10);
+
+        assertThat(read).containsExactlyElementsOf(inbox.stream().map(Notification::getId).toList());
+    }
+
+    @Test
+    void should_ReturnOnlyNewerNotifications_When_SinceIsGiven() {
+        Notification seen = inbox.get(10);
+
+        List<Notification> newer = notificationRepository.findInboxPage(user.getId(),
+                NotificationCursor.NEWEST.createdAt(), NotificationCursor.NEWEST.id(),
+                seen.getCreatedAt(), seen.getId(), false, PageRequest.of(0, 100));
+
+        assertThat(newer).extracting(Notification::getId)
+                .containsExactlyElementsOf(inbox.subList(0, 10).stream().map(Notification::getId).toList());
+    }
+
+    @Test
+    void should_SkipReadNotifications_When_UnreadOnly() {
+        List<Notification> unread = notificationRepository.findInboxPage(user.getId(),
+                NotificationCursor.NEWEST.createdAt(), NotificationCursor.NEWEST.id(),
+                NotificationCursor.OLDEST.createdAt(), NotificationCursor.OLDEST.id(), true, PageRequest.of(0, 100));
+
+        assertThat(unread).extracting(Notification::getId)
+                .containsExactlyElementsOf(inbox.stream().filter(n -> !n.isRead()).map(Notification::getId).toList());
+    }
+
+    @Test
+    void should_MarkAtMostLimitRows_When_MarkingAllAsRead() {
+        long unread = inbox.stream().filter(n -> !n.isRead()).count();
+
+        assertThat(notificationRepository.markUnreadAsRead(user.getId(), 10)).isEqualTo(10);
+        assertThat(notificationRepository.countUnreadNotifications(user.getId())).isEqualTo(unread - 10);
+        assertThat(notificationRepository.markUnreadAsRead(user.getId(), 10)).isEqualTo(unread - 10);
+        assertThat(notificationRepository.countUnreadNotifications(user.getId())).isZero();
+        assertThat(notificationRepository.countUnreadNotifications(othersNotification.getUser().getId())).isEqualTo(1);
+    }
+
+    @Test
+    void should_OnlyMarkOwnUnreadNotifications_When_MarkingByIds() {
+        List<Long> unread = inbox.stream().filter(n -> !n.isRead()).limit(2).map(Notification::getId).toList();
+        Long alreadyRead = inbox.stream().filter(Notification::isRead).findFirst().orElseThrow().getId();
+
+        int marked = notificationRepository.markAsReadByIdIn(user.getId(),
+                List.of(unread.get(0), unread.get(1), alreadyRead, othersNotification.getId()));
+
+        assertThat(marked).isEqualTo(2);
+        assertThat(notificationRepository.countUnreadNotifications(othersNotification.getUser().getId())).isEqualTo(1);
+    }
+
+    @Test
+    void should_DeleteOnlyOlderNotificationsOfUser_When_DeletingBefore() {
+        assertThat(notificationRepository.deleteCreatedBefore(user.getId(), START.plusMinutes(3), 100)).isEqualTo(9);
+
+        assertThat(notificationRepository.findAllById(inbox.stream().map(Notification::getId).toList()))
+                .allMatch(n -> !n.getCreatedAt().isBefore(START.plusMinutes(3)))
+                .hasSize(16);
+        assertThat(notificationRepository.existsById(othersNotification.getId())).isTrue();
+    }
+
+    private User save(String username, String phoneNumber) {
+        return userRepository.save(TestDataBuilder.createUserBuilder()
+                .username(username)
+                .email(username + "@example.com")
+                .phonenumber(phoneNumber)
+                .lastname(username)
+                .referralCode(username.toUpperCase())
+                .emailVerified(false)
+                .provider(AuthProvider.local)
+                .build());
+    }
+
+    private static Notification notification(User user, LocalDateTime createdAt, boolean read) {
+        Notification notification = new Notification();
+        notification.setUser(user);
+        notification.setTitle("Subscription renewed");
+        notification.setMessage("Your Netflix subscription was renewed");
+        notification.setType(NotificationType.SYSTEM);
+        notification.setCreatedAt(createdAt);
+        notification.setRead(read);
+        return notification;
+    }
+}
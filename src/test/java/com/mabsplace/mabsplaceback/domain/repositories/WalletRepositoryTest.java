@@ -0,0 +1,198 @@
+package com.mabsplace.mabsplaceback.domain.repositories;
+
+import com.mabsplace.mabsplaceback.base.BaseMySqlTest;
+import com.mabsplace.mabsplaceback.domain.entities.Wallet;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hammers one wallet from hundreds of threads to check that the conditional update neither loses updates nor
+ * overdraws, and logs its throughput against the locked read-modify-write it replaces (needs Docker).
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.datasource.hikari.maximum-pool-size=32",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO"
+})
+class WalletRepositoryTest extends BaseMySqlTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalletRepositoryTest.class);
+
+    private static final int THREADS = 200;
+    private static final int OPERATIONS_PER_THREAD = 10;
+    private static final BigDecimal ONE = new BigDecimal("1.00");
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        walletRepository.deleteAll();
+    }
+
+    @Test
+    void should_NeverOverdraw_When_HundredsOfThreadsDebitConcurrently() throws Exception {
+        // Room for half of the 2000 debits
+        Long walletId = createWallet("1000.00");
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        int debited = runConcurrently(THREADS, () -> transactionTemplate.execute(status ->
+                walletRepository.debitIfSufficient(walletId, ONE) == 1));
+
+        assertThat(debited).isEqualTo(1000);
+        assertThat(balance(walletId)).isEqualByComparingTo("0.00");
+    }
+
+    @Test
+    void should_ApplyEveryUpdate_When_CreditsAndDebitsInterleave() throws Exception {
+        Long walletId = createWallet("10000.00");
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        BigDecimal three = new BigDecimal("3.00");
+        BigDecimal two = new BigDecimal("2.00");
+
+        List<Future<Integer>> workers = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < THREADS; i++) {
+            boolean credit = i % 2 == 0;
+            workers.add(executor.submit(() -> {
+                start.await();
+                int applied = 0;
+                for (int op = 0; op < OPERATIONS_PER_THREAD; op++) {
+                    applied += transactionTemplate.execute(status -> credit
+                            ? walletRepository.credit(walletId, three)
+                            : walletRepository.debitIfSufficient(walletId, two));
+                }
+                return applied;
+            }));
+        }
+        start.countDown();
+        int applied = 0;
+        for (Future<Integer> worker : workers) {
+            applied += worker.get();
+        }
+
+        assertThat(applied).isEqualTo(THREADS * OPERATIONS_PER_THREAD);
+        // 1000 credits of 3.00 and 1000 debits of 2.00
+        assertThat(balance(walletId)).isEqualByComparingTo("11000.00");
+    }
+
+    @Test
+    void should_LoseNoUpdate_When_ComparedWithReadModifyWrite() throws Exception {
+        int operations = THREADS * OPERATIONS_PER_THREAD;
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        // What debit() did before: read, subtract in Java, save
+        Long unlocked = createWallet("100000.00");
+        long start = System.nanoTime();
+        runConcurrently(THREADS, () -> transactionTemplate.execute(status -> {
+            Wallet wallet = walletRepository.findById(unlocked).orElseThrow();
+            wallet.setBalance(wallet.getBalance().subtract(ONE));
+            walletRepository.save(wallet);
+            return true;
+        }));
+        long unlockedNanos = System.nanoTime() - start;
+        BigDecimal lost = balance(unlocked).subtract(new BigDecimal(100000 - operations));
+
+        // The same with the row locked for the whole transaction
+        Long locked = createWallet("100000.00");
+        start = System.nanoTime();
+        runConcurrently(THREADS, () -> transactionTemplate.execute(status -> {
+            Wallet wallet = entityManager.find(Wallet.class, locked, LockModeType.PESSIMISTIC_WRITE);
+            if (wallet.getBalance().compareTo(ONE) < 0) {
+                return false;
+            }
+            wallet.setBalance(wallet.getBalance().subtract(ONE));
+            return true;
+        }));
+        long lockedNanos = System.nanoTime() - start;
+
+        Long conditional = createWallet("100000.00");
+        start = System.nanoTime();
+        runConcurrently(THREADS, () -> transactionTemplate.execute(status ->
+                walletRepository.debitIfSufficient(conditional, ONE) == 1));
+        long conditionalNanos = System.nanoTime() - start;
+
+        logger.info("{} debits from {} threads: read-modify-write {} ops/s ({} lost), locked read-modify-write {} ops/s, "
+                        + "conditional update {} ops/s",
+                operations, THREADS, throughput(operations, unlockedNanos), lost,
+                throughput(operations, lockedNanos), throughput(operations, conditionalNanos));
+        assertThat(balance(locked)).isEqualByComparingTo(new BigDecimal(100000 - operations));
+        assertThat(balance(conditional)).isEqualByComparingTo(new BigDecimal(100000 - operations));
+    }
+
+    /**
+     * Runs the operation {@link #OPERATIONS_PER_THREAD} times on each thread, all threads starting together.
+     *
+     * @return how many times it returned true
+     */
+    private int runConcurrently(int threads, BooleanSupplier operation) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(executor.submit(() -> {
+                start.await();
+                int succeeded = 0;
+                for (int op = 0; op < OPERATIONS_PER_THREAD; op++) {
+                    if (operation.getAsBoolean()) {
+                        succeeded++;
+                    }
+                }
+                return succeeded;
+            }));
+        }
+        start.countDown();
+        int succeeded = 0;
+        for (Future<Integer> worker : workers) {
+            succeeded += worker.get();
+        }
+        return succeeded;
+    }
+
+    private Long createWallet(String balance) {
+        return walletRepository.save(Wallet.builder().balance(new BigDecimal(balance)).build()).getId();
+    }
+
+    private BigDecimal balance(Long walletId) {
+        return walletRepository.findById(walletId).orElseThrow().getBalance();
+    }
+
+    private static long throughput(int operations, long nanos) {
+        return operations * 1_000_000_000L / Math.max(nanos, 1);
+    }
+}
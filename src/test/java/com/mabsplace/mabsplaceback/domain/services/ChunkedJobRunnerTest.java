@@ -0,0 +1,128 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.mabsplace.mabsplaceback.base.BaseRepositoryTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Checks that chunked runs process every due item once, skip failing items and resume after a crash.
+ * The runner commits each chunk itself, so no test transaction wraps it.
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ChunkedJobRunnerTest extends BaseRepositoryTest {
+
+    private static final String JOB = "test-renewals";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ChunkedJobRunner runner;
+
+    private final ChunkedJobRunner.ChunkReader reader = (cutoff, afterId, limit) -> jdbcTemplate.queryForList(
+            "SELECT id FROM items WHERE due_at < ? AND id > ? ORDER BY id LIMIT ?", Long.class,
+            Timestamp.valueOf(cutoff), afterId, limit);
+
+    @Override
+    protected void setupTestData() {
+        runner = new ChunkedJobRunner(jdbcTemplate, transactionManager);
+        // The items a job would renew, in a table of their own
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS items (id BIGINT AUTO_INCREMENT PRIMARY KEY, due_at TIMESTAMP(6) NOT NULL, "
+                + "renewals INT NOT NULL)");
+        jdbcTemplate.execute("DELETE FROM job_checkpoints");
+        jdbcTemplate.execute("DELETE FROM items");
+    }
+
+    @Test
+    void should_ProcessEachDueItemOnce_When_ItemsSpanSeveralChunks() {
+        seed(25, LocalDateTime.now().minusDays(1));
+        seed(5, LocalDateTime.now().plusDays(1));
+
+        ChunkedJobRunner.Summary summary = runner.run(JOB, 10, reader, this::renew);
+
+        assertThat(summary.processed()).isEqualTo(25);
+        assertThat(summary.resumed()).isFalse();
+        assertThat(jdbcTemplate.queryForList("SELECT renewals FROM items ORDER BY id", Integer.class))
+                .containsExactlyElementsOf(expectedRenewals(25, 5));
+    }
+
+    @Test
+    void should_RollBackAndSkipItem_When_ItFails() {
+        List<Long> ids = seed(6, LocalDateTime.now().minusDays(1));
+        long failing = ids.get(2);
+
+        ChunkedJobRunner.Summary summary = runner.run(JOB, 4, reader, (id, cutoff) -> {
+            renew(id, cutoff);
+            if (id == failing) {
+                throw new IllegalStateException("Payment declined");
+            }
+        });
+
+        assertThat(summary.processed()).isEqualTo(5);
+        assertThat(summary.failed()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT renewals FROM items WHERE id = ?", Integer.class, failing)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT SUM(renewals) FROM items", Integer.class)).isEqualTo(5);
+    }
+
+    @Test
+    void should_ResumeAfterLastCommittedItem_When_PreviousRunCrashed() {
+        List<Long> ids = seed(30, LocalDateTime.now().minusDays(1));
+        long crashAt = ids.get(17);
+
+        // The node dies while renewing the 18th item
+        assertThatThrownBy(() -> runner.run(JOB, 10, reader, (id, cutoff) -> {
+            renew(id, cutoff);
+            if (id == crashAt) {
+                throw new OutOfMemoryError("Simulated crash");
+            }
+        })).isInstanceOf(OutOfMemoryError.class);
+        // The crashed run started an hour ago, and this item fell due while the job was down
+        LocalDateTime firstCutoff = LocalDateTime.now().minusHours(1);
+        jdbcTemplate.update("UPDATE job_checkpoints SET cutoff = ?", Timestamp.valueOf(firstCutoff));
+        seed(1, LocalDateTime.now().minusMinutes(30));
+
+        ChunkedJobRunner.Summary resumed = runner.run(JOB, 10, reader, this::renew);
+
+        assertThat(resumed.resumed()).isTrue();
+        assertThat(resumed.cutoff()).isAfter(firstCutoff);
+        assertThat(resumed.processed()).isEqualTo(31);
+        assertThat(jdbcTemplate.queryForList("SELECT renewals FROM items ORDER BY id", Integer.class))
+                .containsExactlyElementsOf(expectedRenewals(31, 0));
+
+        ChunkedJobRunner.Summary next = runner.run(JOB, 10, reader, this::renew);
+
+        assertThat(next.resumed()).isFalse();
+        assertThat(next.processed()).isZero();
+    }
+
+    private void renew(long id, LocalDateTime cutoff) {
+        jdbcTemplate.update("UPDATE items SET renewals = renewals + 1, due_at = ? WHERE id = ?",
+                Timestamp.valueOf(cutoff.plusMonths(1)), id);
+    }
+
+    private List<Long> seed(int count, LocalDateTime dueAt) {
+        for (int i = 0; i < count; i++) {
+            jdbcTemplate.update("INSERT INTO items (due_at, renewals) VALUES (?, 0)", Timestamp.valueOf(dueAt));
+        }
+        return jdbcTemplate.queryForList("SELECT id FROM items ORDER BY id", Long.class);
+    }
+
+    private static List<Integer> expectedRenewals(int renewed, int untouched) {
+        return Stream.concat(Collections.nCopies(renewed, 1).stream(), Collections.nCopies(untouched, 0).stream()).toList();
+    }
+}
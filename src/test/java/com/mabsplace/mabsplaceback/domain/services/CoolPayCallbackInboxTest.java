@@ -0,0 +1,123 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mabsplace.mabsplaceback.base.BaseMySqlTest;
+import com.mabsplace.mabsplaceback.utils.CoolPaySignature;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that CoolPay callbacks are stored once, however often they are delivered, and applied once,
+ * against MySQL (needs Docker).
+ */
+class CoolPayCallbackInboxTest extends BaseMySqlTest {
+
+    private static final String PRIVATE_KEY = "test-private-key";
+
+    private static final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+    private TransactionService transactionService;
+    private CoolPayCallbackInbox inbox;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("DELETE FROM coolpay_callbacks");
+        transactionService = mock(TransactionService.class);
+        inbox = new CoolPayCallbackInbox(jdbcTemplate, transactionService, new ObjectMapper(), new SimpleMeterRegistry(),
+                PRIVATE_KEY, true, 2, 100, Duration.ofMinutes(2), 3, Duration.ofSeconds(30), Duration.ofHours(1), 200);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        inbox.shutdown();
+    }
+
+    @Test
+    void should_StoreAndApplyOnce_When_CallbackIsRedelivered() throws Exception {
+        Map<String, Object> callback = callback("ref-1", "SUCCESS");
+
+        assertThat(inbox.receive(callback)).isEqualTo(CoolPayCallbackInbox.Outcome.ACCEPTED);
+        for (int i = 0; i < 4; i++) {
+            assertThat(inbox.receive(callback)).isEqualTo(CoolPayCallbackInbox.Outcome.DUPLICATE);
+        }
+
+        assertThat(awaitAttempts("ref-1", 1)).isEqualTo("PROCESSED");
+        verify(transactionService, times(1)).updateTransactionStatus("ref-1", "SUCCESS");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM coolpay_callbacks", Long.class)).isEqualTo(1L);
+    }
+
+    @Test
+    void should_RejectCallback_When_SignatureIsWrong() {
+        Map<String, Object> callback = callback("ref-2", "SUCCESS");
+        callback.put("transaction_amount", 1_000_000);
+
+        assertThat(inbox.receive(callback)).isEqualTo(CoolPayCallbackInbox.Outcome.INVALID_SIGNATURE);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM coolpay_callbacks", Long.class)).isZero();
+        verify(transactionService, never()).updateTransactionStatus(anyString(), anyString());
+    }
+
+    @Test
+    void should_RetryWhenDue_When_ApplyingFails() throws Exception {
+        when(transactionService.updateTransactionStatus("ref-3", "SUCCESS"))
+                .thenThrow(new IllegalStateException("Lock wait timeout exceeded"))
+                .thenReturn(null);
+
+        inbox.receive(callback("ref-3", "SUCCESS"));
+        assertThat(awaitAttempts("ref-3", 1)).isEqualTo("PENDING");
+        assertThat(jdbcTemplate.queryForObject("SELECT last_error FROM coolpay_callbacks", String.class))
+                .isEqualTo("Lock wait timeout exceeded");
+
+        // Not due yet: the sweeper leaves it
+        inbox.sweep();
+        Thread.sleep(200);
+        verify(transactionService, times(1)).updateTransactionStatus("ref-3", "SUCCESS");
+
+        jdbcTemplate.update("UPDATE coolpay_callbacks SET next_attempt_at = NOW(6) - INTERVAL 1 SECOND");
+        inbox.sweep();
+        assertThat(awaitAttempts("ref-3", 2)).isEqualTo("PROCESSED");
+    }
+
+    private static Map<String, Object> callback(String transactionRef, String status) {
+        Map<String, Object> callback = new HashMap<>();
+        callback.put("app_transaction_ref", transactionRef);
+        callback.put("transaction_ref", "cp-" + transactionRef);
+        callback.put("transaction_type", "PAYIN");
+        callback.put("transaction_amount", 5000);
+        callback.put("transaction_currency", "XAF");
+        callback.put("transaction_operator", "CM_MOMO");
+        callback.put("transaction_status", status);
+        callback.put("signature", CoolPaySignature.of(callback, PRIVATE_KEY));
+        return callback;
+    }
+
+    /**
+     * @return the status of the callback once it has been through that many attempts
+     */
+    private static String awaitAttempts(String transactionRef, int attempts) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (System.nanoTime() < deadline) {
+            Map<String, Object> row = jdbcTemplate.queryForMap(
+                    "SELECT status, attempts FROM coolpay_callbacks WHERE transaction_ref = ?", transactionRef);
+            if (((Number) row.get("attempts")).intValue() >= attempts) {
+                return (String) row.get("status");
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Callback " + transactionRef + " was not attempted " + attempts + " times");
+    }
+}
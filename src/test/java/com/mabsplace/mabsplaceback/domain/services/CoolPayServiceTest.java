@@ -0,0 +1,118 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.mabsplace.mabsplaceback.domain.dtos.coolpay.PaymentRequest;
+import com.mabsplace.mabsplaceback.exceptions.CoolPayUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.badRequest;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the CoolPay client against a WireMock server standing in for CoolPay.
+ */
+class CoolPayServiceTest {
+
+    private static final WireMockServer COOLPAY = new WireMockServer(options().dynamicPort());
+
+    private SimpleMeterRegistry meterRegistry;
+    private CoolPayService coolPayService;
+
+    @BeforeAll
+    static void startCoolPay() {
+        COOLPAY.start();
+    }
+
+    @AfterAll
+    static void stopCoolPay() {
+        COOLPAY.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        COOLPAY.resetAll();
+        meterRegistry = new SimpleMeterRegistry();
+        coolPayService = new CoolPayService(meterRegistry, COOLPAY.baseUrl(), "test-private-key", 1, 1,
+                Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofMillis(500));
+    }
+
+    @AfterEach
+    void tearDown() {
+        coolPayService.shutdown();
+    }
+
+    @Test
+    void should_ReturnResponseAndTimeIt_When_CoolPayAnswers() {
+        COOLPAY.stubFor(get(urlEqualTo("/checkStatus/ref-1")).willReturn(okJson("{\"transaction_status\":\"SUCCESS\"}")));
+
+        Object response = coolPayService.checkTransactionStatus("ref-1");
+
+        assertThat(response).isEqualTo(Map.of("transaction_status", "SUCCESS"));
+        assertThat(meterRegistry.get("coolpay.requests").tags("operation", "check-status", "outcome", "success").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void should_RethrowError_When_CoolPayRejectsRequest() {
+        COOLPAY.stubFor(post(urlEqualTo("/payin")).willReturn(badRequest()));
+
+        assertThatThrownBy(() -> coolPayService.makePayment(payment("ref-2")))
+                .isInstanceOf(HttpClientErrorException.class);
+        assertThat(meterRegistry.get("coolpay.requests").tags("operation", "payin", "outcome", "client_error").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void should_GiveUpAtCallTimeout_When_CoolPayIsSlow() {
+        COOLPAY.stubFor(get(urlEqualTo("/checkStatus/ref-3")).willReturn(okJson("{}").withFixedDelay(3_000)));
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> coolPayService.checkTransactionStatus("ref-3"))
+                .isInstanceOf(CoolPayUnavailableException.class);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+        assertThat(meterRegistry.get("coolpay.requests.refused").tags("reason", "timed_out").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_RejectAtOnce_When_QueueIsFull() {
+        COOLPAY.stubFor(post(urlEqualTo("/payin")).willReturn(aResponse().withStatus(200).withFixedDelay(1_000)));
+
+        // One on the thread, one in the queue
+        CompletableFuture<Object> running = coolPayService.makePaymentAsync(payment("ref-4"));
+        CompletableFuture<Object> queued = coolPayService.makePaymentAsync(payment("ref-5"));
+
+        assertThatThrownBy(() -> coolPayService.makePaymentAsync(payment("ref-6")))
+                .isInstanceOf(CoolPayUnavailableException.class);
+        assertThat(running.join()).isNull();
+        assertThat(queued.join()).isNull();
+        assertThat(meterRegistry.get("coolpay.requests.refused").tags("reason", "rejected").counter().count()).isEqualTo(1);
+    }
+
+    private static PaymentRequest payment(String transactionRef) {
+        return PaymentRequest.builder()
+                .transaction_amount(5000.0)
+                .transaction_currency("XAF")
+                .transaction_reason("Top-up")
+                .app_transaction_ref(transactionRef)
+                .customer_phone_number("677000000")
+                .build();
+    }
+}
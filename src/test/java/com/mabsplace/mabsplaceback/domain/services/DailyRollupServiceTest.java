@@ -0,0 +1,350 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.mabsplace.mabsplaceback.base.BaseMySqlTest;
+import com.mabsplace.mabsplaceback.domain.entities.DailyRevenue;
+import com.mabsplace.mabsplaceback.domain.entities.DigitalGoodsOrder;
+import com.mabsplace.mabsplaceback.domain.entities.Expense;
+import com.mabsplace.mabsplaceback.domain.entities.ExpenseCategory;
+import com.mabsplace.mabsplaceback.domain.entities.MyService;
+import com.mabsplace.mabsplaceback.domain.entities.Payment;
+import com.mabsplace.mabsplaceback.domain.entities.Subscription;
+import com.mabsplace.mabsplaceback.domain.entities.SubscriptionPlan;
+import com.mabsplace.mabsplaceback.domain.entities.User;
+import com.mabsplace.mabsplaceback.domain.enums.PaymentStatus;
+import com.mabsplace.mabsplaceback.utils.TimeWindow;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Checks that the rollups maintained write by write match a rebuild from the raw rows, and that the
+ * monthly payment figures read from them match the former aggregation over payments (needs Docker).
+ */
+class DailyRollupServiceTest extends BaseMySqlTest {
+
+    private static final int MONTHS = 4;
+
+    // The per-month aggregation the dashboard ran over payments before the rollups
+    private static final String RAW_MONTHLY_PAYMENTS_SQL = """
+            SELECT
+                DATE_FORMAT(p.payment_date, '%Y-%m') AS month,
+                COALESCE(SUM(p.amount), 0) AS revenue,
+                COALESCE(SUM(CASE WHEN p.subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')
+                                  THEN p.amount END), 0) AS plan_revenue,
+                COUNT(DISTINCT CASE WHEN p.subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')
+                                    THEN p.user_id END) AS subscribers
+            FROM payments p
+            WHERE p.payment_date >= :windowStart AND p.payment_date < :windowEnd
+            AND p.status = 'PAID'
+            GROUP BY DATE_FORMAT(p.payment_date, '%Y-%m')
+            ORDER BY month
+            """;
+
+    private static final String ROLLUP_MONTHLY_PAYMENTS_SQL = """
+            SELECT
+                DATE_FORMAT(r.day, '%Y-%m') AS month,
+                SUM(r.revenue) AS revenue,
+                SUM(r.plan_revenue) AS plan_revenue,
+                CAST(SUM(r.subscribers) AS SIGNED) AS subscribers
+            FROM daily_revenue r
+            WHERE r.day >= :windowStart AND r.day < :windowEnd
+            GROUP BY DATE_FORMAT(r.day, '%Y-%m')
+            HAVING SUM(r.payments) > 0
+            ORDER BY month
+            """;
+
+    private static final String RAW_MONTHLY_SERVICE_PAYMENTS_SQL = """
+            SELECT
+                p.service_id,
+                DATE_FORMAT(p.payment_date, '%Y-%m') AS month,
+                COUNT(DISTINCT p.user_id) AS subscriptions,
+                COALESCE(SUM(p.amount), 0) AS revenue
+            FROM payments p
+            WHERE p.payment_date >= :windowStart AND p.payment_date < :windowEnd
+            AND p.status = 'PAID'
+            AND p.subscription_plan_id NOT IN (SELECT id FROM subscription_plans WHERE name = 'Trial')
+            GROUP BY p.service_id, DATE_FORMAT(p.payment_date, '%Y-%m')
+            ORDER BY p.service_id, month
+            """;
+
+    private static final String ROLLUP_MONTHLY_SERVICE_PAYMENTS_SQL = """
+            SELECT
+                r.service_id,
+                DATE_FORMAT(r.day, '%Y-%m') AS month,
+                CAST(SUM(r.service_subscribers) AS SIGNED) AS subscriptions,
+                SUM(r.plan_revenue) AS revenue
+            FROM daily_revenue r
+            WHERE r.day >= :windowStart AND r.day < :windowEnd
+            GROUP BY r.service_id, DATE_FORMAT(r.day, '%Y-%m')
+            HAVING SUM(r.service_subscribers) > 0
+            ORDER BY r.service_id, month
+            """;
+
+    // A refunded order leaves a zeroed row behind that a rebuild does not recreate
+    private static final String REVENUE_ROWS_SQL =
+            "SELECT * FROM daily_revenue WHERE payments <> 0 OR digital_goods_orders <> 0 ORDER BY day, service_id";
+    private static final String EXPENSE_ROWS_SQL = "SELECT * FROM daily_expense ORDER BY day, category_id";
+
+    private static JdbcTemplate jdbcTemplate;
+    private static NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private static DailyRollupService dailyRollupService;
+    private static long paymentIds;
+
+    @BeforeAll
+    static void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        dailyRollupService = new DailyRollupService(jdbcTemplate, new DataSourceTransactionManager(dataSource),
+                mock(JobLockService.class), 2, false);
+
+        jdbcTemplate.update("INSERT INTO subscription_plans (id, name, description, price, period) VALUES "
+                + "(1, 'Trial', '', 0, 'MONTHLY'), (2, 'Basic', '', 2500, 'MONTHLY'), (3, 'Premium', '', 5000, 'MONTHLY')");
+    }
+
+    @BeforeEach
+    void clearTables() {
+        for (String table : List.of("payments", "expenses", "digital_goods_orders", "subscriptions",
+                "daily_revenue", "daily_expense", "daily_subscription_state")) {
+            jdbcTemplate.execute("TRUNCATE TABLE " + table);
+        }
+    }
+
+    @Test
+    void should_MatchRebuildAndRawAggregates_When_RecordingEachWrite() {
+        Random random = new Random(11);
+        TimeWindow window = TimeWindow.lastMonths(MONTHS);
+        int windowMinutes = (int) Duration.between(window.start(), LocalDateTime.now()).toMinutes();
+
+        // Written in date order, the way they arrive in production
+        List<LocalDateTime> paymentDates = random.ints(1_500, 0, windowMinutes)
+                .sorted()
+                .mapToObj(minute -> window.start().plusMinutes(minute))
+                .toList();
+        for (LocalDateTime paymentDate : paymentDates) {
+            dailyRollupService.recordPayment(insertPayment(random, paymentDate));
+        }
+        for (int i = 0; i < 300; i++) {
+            LocalDateTime date = window.start().plusMinutes(random.nextInt(windowMinutes));
+            dailyRollupService.recordExpense(insertExpense(random, date));
+            DigitalGoodsOrder order = insertOrder(random, date);
+            dailyRollupService.recordDigitalGoodsOrder(order);
+            if (random.nextInt(5) == 0) {
+                jdbcTemplate.update("UPDATE digital_goods_orders SET order_status = 'REFUNDED' WHERE id = ?", order.getId());
+                dailyRollupService.reverseDigitalGoodsOrder(order);
+            }
+        }
+
+        List<Map<String, Object>> incrementalRevenue = jdbcTemplate.queryForList(REVENUE_ROWS_SQL);
+        List<Map<String, Object>> incrementalExpenses = jdbcTemplate.queryForList(EXPENSE_ROWS_SQL);
+
+        dailyRollupService.rebuild(YearMonth.from(window.start()), YearMonth.now());
+
+        assertThat(jdbcTemplate.queryForList(REVENUE_ROWS_SQL)).isEqualTo(incrementalRevenue);
+        assertThat(jdbcTemplate.queryForList(EXPENSE_ROWS_SQL)).isEqualTo(incrementalExpenses);
+        assertThat(namedParameterJdbcTemplate.queryForList(ROLLUP_MONTHLY_PAYMENTS_SQL, window.params("window")))
+                .isEqualTo(namedParameterJdbcTemplate.queryForList(RAW_MONTHLY_PAYMENTS_SQL, window.params("window")));
+        assertThat(namedParameterJdbcTemplate.queryForList(ROLLUP_MONTHLY_SERVICE_PAYMENTS_SQL, window.params("window")))
+                .isEqualTo(namedParameterJdbcTemplate.queryForList(RAW_MONTHLY_SERVICE_PAYMENTS_SQL, window.params("window")));
+    }
+
+    @Test
+    void should_MatchRawAggregates_When_PaymentsAreCancelledChangedOrDeleted() {
+        Random random = new Random(23);
+        TimeWindow window = TimeWindow.lastMonths(MONTHS);
+        int windowMinutes = (int) Duration.between(window.start(), LocalDateTime.now()).toMinutes();
+        List<Payment> payments = new ArrayList<>();
+        random.ints(600, 0, windowMinutes).sorted().forEach(minute -> {
+            Payment payment = insertPayment(random, window.start().plusMinutes(minute));
+            dailyRollupService.recordPayment(payment);
+            payments.add(payment);
+        });
+
+        // The way PaymentService applies changes: out with the current state, in with the new one
+        for (Payment payment : payments) {
+            switch (random.nextInt(6)) {
+                case 0 -> {
+                    dailyRollupService.reversePayment(payment);
+                    jdbcTemplate.update("UPDATE payments SET status = 'CANCELLED' WHERE id = ?", payment.getId());
+                    payment.setStatus(PaymentStatus.CANCELLED);
+                }
+                case 1 -> {
+                    dailyRollupService.reversePayment(payment);
+                    jdbcTemplate.update("DELETE FROM payments WHERE id = ?", payment.getId());
+                }
+                case 2 -> {
+                    dailyRollupService.reversePayment(payment);
+                    BigDecimal amount = payment.getAmount().add(BigDecimal.TEN);
+                    LocalDateTime paymentDate = window.start().plusMinutes(random.nextInt(windowMinutes));
+                    jdbcTemplate.update("UPDATE payments SET amount = ?, payment_date = ?, status = 'PAID' WHERE id = ?",
+                            amount, Timestamp.valueOf(paymentDate), payment.getId());
+                    payment.setAmount(amount);
+                    payment.setPaymentDate(Timestamp.valueOf(paymentDate));
+                    payment.setStatus(PaymentStatus.PAID);
+                    dailyRollupService.recordPayment(payment);
+                }
+                default -> {
+                }
+            }
+        }
+
+        assertThat(namedParameterJdbcTemplate.queryForList(ROLLUP_MONTHLY_PAYMENTS_SQL, window.params("window")))
+                .isEqualTo(namedParameterJdbcTemplate.queryForList(RAW_MONTHLY_PAYMENTS_SQL, window.params("window")));
+        assertThat(namedParameterJdbcTemplate.queryForList(ROLLUP_MONTHLY_SERVICE_PAYMENTS_SQL, window.params("window")))
+                .isEqualTo(namedParameterJdbcTemplate.queryForList(RAW_MONTHLY_SERVICE_PAYMENTS_SQL, window.params("window")));
+    }
+
+    @Test
+    void should_OverwriteRows_When_RebuildingOverRowsWrittenMeanwhile() {
+        TimeWindow window = TimeWindow.lastMonths(1);
+        Random random = new Random(5);
+        for (int i = 0; i < 50; i++) {
+            dailyRollupService.recordPayment(insertPayment(random, window.start().plusHours(i)));
+            dailyRollupService.recordExpense(insertExpense(random, window.start().plusHours(i)));
+        }
+        dailyRollupService.rebuild(YearMonth.from(window.start()), YearMonth.now());
+        List<Map<String, Object>> rebuiltRevenue = jdbcTemplate.queryForList(REVENUE_ROWS_SQL);
+        List<Map<String, Object>> rebuiltExpenses = jdbcTemplate.queryForList(EXPENSE_ROWS_SQL);
+
+        // What the rebuild statements meet when a write hook adds a row after the DELETE
+        Map<String, Object> monthWindow = TimeWindow.month(YearMonth.from(window.start())).params("window");
+        namedParameterJdbcTemplate.update(DailyRollupService.REBUILD_PAYMENTS_SQL, monthWindow);
+        namedParameterJdbcTemplate.update(DailyRollupService.REBUILD_EXPENSES_SQL, monthWindow);
+        Map<String, Object> currentWindow = TimeWindow.month(YearMonth.now()).params("window");
+        namedParameterJdbcTemplate.update(DailyRollupService.REBUILD_PAYMENTS_SQL, currentWindow);
+        namedParameterJdbcTemplate.update(DailyRollupService.REBUILD_EXPENSES_SQL, currentWindow);
+
+        assertThat(jdbcTemplate.queryForList(REVENUE_ROWS_SQL)).isEqualTo(rebuiltRevenue);
+        assertThat(jdbcTemplate.queryForList(EXPENSE_ROWS_SQL)).isEqualTo(rebuiltExpenses);
+    }
+
+    @Test
+    void should_OverwriteCountsButKeepEvents_When_SnapshottingSubscriptionState() {
+        jdbcTemplate.update("INSERT INTO subscriptions (service_id, status, is_trial, auto_renew) VALUES "
+                + "(1, 'ACTIVE', FALSE, FALSE), (1, 'ACTIVE', TRUE, FALSE), (1, 'EXPIRED', FALSE, FALSE), (2, 'ACTIVE', NULL, FALSE)");
+        MyService service = new MyService();
+        service.setId(1L);
+        Subscription expired = new Subscription();
+        expired.setService(service);
+        dailyRollupService.recordSubscriptionExpired(expired);
+
+        dailyRollupService.snapshotSubscriptionState(LocalDate.now());
+        dailyRollupService.snapshotSubscriptionState(LocalDate.now());
+
+        assertThat(jdbcTemplate.queryForList("SELECT service_id, active, trial, expired FROM daily_subscription_state ORDER BY service_id"))
+                .containsExactly(
+                        Map.of("service_id", 1L, "active", 1, "trial", 1, "expired", 1),
+                        Map.of("service_id", 2L, "active", 1, "trial", 0, "expired", 0));
+    }
+
+    @Test
+    void should_AddToExpiredCountsByService_When_RecordingAnExpiredBatch() {
+        jdbcTemplate.update("INSERT INTO subscriptions (id, service_id, status, is_trial, auto_renew) VALUES "
+                + "(1, 1, 'EXPIRED', FALSE, FALSE), (2, 1, 'EXPIRED', FALSE, FALSE), (3, 2, 'EXPIRED', FALSE, FALSE), "
+                + "(4, NULL, 'EXPIRED', FALSE, FALSE), (5, 2, 'ACTIVE', FALSE, FALSE)");
+
+        dailyRollupService.recordSubscriptionsExpired(List.of(1L, 2L, 3L));
+        dailyRollupService.recordSubscriptionsExpired(List.of(4L));
+        dailyRollupService.recordSubscriptionsExpired(List.of());
+
+        assertThat(jdbcTemplate.queryForList("SELECT service_id, expired FROM daily_subscription_state ORDER BY service_id"))
+                .containsExactly(
+                        Map.of("service_id", DailyRevenue.NO_SERVICE, "expired", 1),
+                        Map.of("service_id", 1L, "expired", 2),
+                        Map.of("service_id", 2L, "expired", 1));
+    }
+
+    private static Payment insertPayment(Random random, LocalDateTime paymentDate) {
+        long userId = 1 + random.nextInt(200);
+        long serviceId = 1 + random.nextInt(3);
+        long planId = 1 + random.nextInt(3);
+        PaymentStatus status = random.nextInt(10) == 0 ? PaymentStatus.PENDING : PaymentStatus.PAID;
+        BigDecimal amount = BigDecimal.valueOf(500 + random.nextInt(10_000));
+        // Payment ids come from the id generators, not AUTO_INCREMENT
+        long id = ++paymentIds;
+        jdbcTemplate.update("INSERT INTO payments (id, user_id, amount, payment_date, status, subscription_plan_id, service_id) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)", id, userId, amount, Timestamp.valueOf(paymentDate), status.name(), planId, serviceId);
+
+        User user = new User();
+        user.setId(userId);
+        MyService service = new MyService();
+        service.setId(serviceId);
+        SubscriptionPlan plan = new SubscriptionPlan();
+        plan.setId(planId);
+        plan.setName(planId == 1 ? "Trial" : "Plan " + planId);
+
+        Payment payment = new Payment();
+        payment.setId(id);
+        payment.setUser(user);
+        payment.setService(service);
+        payment.setSubscriptionPlan(plan);
+        payment.setAmount(amount);
+        payment.setPaymentDate(Timestamp.valueOf(paymentDate));
+        payment.setStatus(status);
+        return payment;
+    }
+
+    private static Expense insertExpense(Random random, LocalDateTime expenseDate) {
+        long categoryId = 1 + random.nextInt(4);
+        boolean recurring = random.nextBoolean();
+        BigDecimal amount = BigDecimal.valueOf(100 + random.nextInt(5_000));
+        insert("INSERT INTO expenses (amount, expense_date, category_id, is_recurring, created_by, currency_id) "
+                + "VALUES (?, ?, ?, ?, 1, 1)", amount, Timestamp.valueOf(expenseDate), categoryId, recurring);
+
+        ExpenseCategory category = new ExpenseCategory();
+        category.setId(categoryId);
+        Expense expense = new Expense();
+        expense.setCategory(category);
+        expense.setAmount(amount);
+        expense.setExpenseDate(expenseDate);
+        expense.setRecurring(recurring);
+        return expense;
+    }
+
+    private static DigitalGoodsOrder insertOrder(Random random, LocalDateTime createdAt) {
+        BigDecimal totalAmount = BigDecimal.valueOf(1_000 + random.nextInt(20_000));
+        long id = insert("INSERT INTO digital_goods_orders (amount, base_currency, base_currency_price, converted_price, "
+                + "exchange_rate, service_fee, total_amount, product_id, user_id, payment_method, order_status, created_at) "
+                + "VALUES (?, 'XAF', ?, ?, 1, 0, ?, 1, 1, 'WALLET', 'PAID', ?)",
+                totalAmount, totalAmount, totalAmount, totalAmount, Timestamp.valueOf(createdAt));
+        return DigitalGoodsOrder.builder()
+                .id(id)
+                .totalAmount(totalAmount)
+                .orderStatus(DigitalGoodsOrder.OrderStatus.PAID)
+                .createdAt(new Date(Timestamp.valueOf(createdAt).getTime()))
+                .build();
+    }
+
+    private static long insert(String sql, Object... args) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+            return statement;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+}
@@ -0,0 +1,226 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mabsplace.mabsplaceback.base.BaseRepositoryTest;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.extension.ResponseDefinitionTransformerV2;
+import com.github.tomakehurst.wiremock.http.ResponseDefinition;
+import com.github.tomakehurst.wiremock.stubbing.ServeEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the Expo push client against a WireMock server that answers like Expo: a ticket per message, and
+ * receipts for the tickets asked for. Its threads keep tickets in connections of their own, hence no test transaction.
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ExpoPushClientTest extends BaseRepositoryTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final ExpoFake EXPO_FAKE = new ExpoFake();
+    private static final WireMockServer EXPO = new WireMockServer(options().dynamicPort().extensions(EXPO_FAKE));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ExpoPushClient client;
+
+    @BeforeAll
+    static void start() {
+        EXPO.start();
+    }
+
+    @AfterAll
+    static void stop() {
+        EXPO.stop();
+    }
+
+    @Override
+    protected void setupTestData() {
+        EXPO.resetAll();
+        EXPO.stubFor(post(urlEqualTo("/push/send")).willReturn(aResponse().withTransformers(ExpoFake.NAME)));
+        EXPO.stubFor(post(urlEqualTo("/push/getReceipts")).willReturn(aResponse().withTransformers(ExpoFake.NAME)));
+        EXPO_FAKE.maxInFlight.set(0);
+        jdbcTemplate.execute("DELETE FROM push_tickets");
+        jdbcTemplate.execute("DELETE FROM users");
+        client = new ExpoPushClient(jdbcTemplate, OBJECT_MAPPER, mock(JobLockService.class), new SimpleMeterRegistry(),
+                EXPO.baseUrl() + "/push/send", EXPO.baseUrl() + "/push/getReceipts", "", 2,
+                Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ZERO, Duration.ofHours(24));
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+    }
+
+    @Test
+    void should_SendCompressedChunksOf100AndKeepTickets_When_SendingManyMessages() {
+        ExpoPushClient.Result result = client.send(messages("ExponentPushToken[", 250));
+
+        assertThat(result).isEqualTo(new ExpoPushClient.Result(250, 250, 0, 0));
+        EXPO.verify(3, postRequestedFor(urlEqualTo("/push/send")).withHeader("Content-Encoding", equalTo("gzip")));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM push_tickets", Long.class)).isEqualTo(250);
+        // Two threads, and the sender itself once they are busy
+        assertThat(EXPO_FAKE.maxInFlight.get()).isBetween(1, 3);
+    }
+
+    @Test
+    void should_RemoveToken_When_TicketSaysDeviceNotRegistered() {
+        insertUser("ExponentPushToken[gone-1]");
+        insertUser("ExponentPushToken[ok-1]");
+
+        ExpoPushClient.Result result = client.send(List.of(message("ExponentPushToken[gone-1]"), message("ExponentPushToken[ok-1]")));
+
+        assertThat(result).isEqualTo(new ExpoPushClient.Result(2, 1, 1, 1));
+        assertThat(jdbcTemplate.queryForList("SELECT push_token FROM users WHERE push_token IS NOT NULL", String.class))
+                .containsExactly("ExponentPushToken[ok-1]");
+    }
+
+    @Test
+    void should_RemoveTokenAndForgetTickets_When_ReceiptsAreRead() {
+        insertUser("ExponentPushToken[a]");
+        insertUser("ExponentPushToken[b]");
+        Timestamp sentAt = Timestamp.valueOf(LocalDateTime.now().minusMinutes(20));
+        jdbcTemplate.update("INSERT INTO push_tickets (ticket_id, push_token, created_at) VALUES "
+                + "('receipt-ok', 'ExponentPushToken[a]', ?), ('receipt-gone', 'ExponentPushToken[b]', ?), "
+                + "('receipt-pending', 'ExponentPushToken[a]', ?)", sentAt, sentAt, sentAt);
+
+        assertThat(client.pollReceipts()).isEqualTo(2);
+
+        assertThat(jdbcTemplate.queryForList("SELECT ticket_id FROM push_tickets", String.class)).containsExactly("receipt-pending");
+        assertThat(jdbcTemplate.queryForList("SELECT push_token FROM users WHERE push_token IS NOT NULL", String.class))
+                .containsExactly("ExponentPushToken[a]");
+    }
+
+    @Test
+    void should_CountChunkAsFailedAndSendTheOthers_When_ExpoFailsOneRequest() {
+        EXPO.stubFor(post(urlEqualTo("/push/send")).withRequestBody(containing("broken"))
+                .atPriority(1)
+                .willReturn(aResponse().withStatus(503)));
+        List<Map<String, Object>> messages = new ArrayList<>(messages("ExponentPushToken[", 100));
+        messages.addAll(messages("ExponentPushToken[broken-", 100));
+
+        ExpoPushClient.Result result = client.send(messages);
+
+        assertThat(result).isEqualTo(new ExpoPushClient.Result(200, 100, 100, 0));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM push_tickets", Long.class)).isEqualTo(100);
+    }
+
+    private void insertUser(String pushToken) {
+        jdbcTemplate.update("INSERT INTO users (username, email, phonenumber, lastname, password, email_verified, push_token) "
+                + "VALUES (?, ?, ?, 'Doe', 'secret', TRUE, ?)", pushToken, pushToken + "@example.com", pushToken, pushToken);
+    }
+
+    private static List<Map<String, Object>> messages(String tokenPrefix, int count) {
+        List<Map<String, Object>> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(message(tokenPrefix + i + "]"));
+        }
+        return messages;
+    }
+
+    private static Map<String, Object> message(String token) {
+        return Map.of("to", token, "title", "Subscription renewed", "body", "Your Netflix subscription was renewed");
+    }
+
+    /**
+     * Answers like Expo: tokens containing "gone" are not registered, and receipts of tickets containing
+     * "pending" are not ready yet.
+     */
+    static class ExpoFake implements ResponseDefinitionTransformerV2 {
+
+        static final String NAME = "expo-fake";
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        @Override
+        public ResponseDefinition transform(ServeEvent serveEvent) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+                JsonNode request = OBJECT_MAPPER.readTree(serveEvent.getRequest().getBodyAsString());
+                ObjectNode response = OBJECT_MAPPER.createObjectNode();
+                if (serveEvent.getRequest().getUrl().endsWith("/getReceipts")) {
+                    ObjectNode receipts = response.putObject("data");
+                    request.path("ids").forEach(id -> {
+                        if (!id.asText().contains("pending")) {
+                            receipts.set(id.asText(), result(id.asText(), null));
+                        }
+                    });
+                } else {
+                    ArrayNode tickets = response.putArray("data");
+                    request.forEach(message -> tickets.add(result(message.path("to").asText(), "ticket-" + message.path("to").asText())));
+                }
+                return new ResponseDefinitionBuilder()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(OBJECT_MAPPER.writeValueAsString(response))
+                        .build();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        private static ObjectNode result(String key, String ticketId) {
+            ObjectNode result = OBJECT_MAPPER.createObjectNode();
+            if (key.contains("gone")) {
+                result.put("status", "error");
+                result.put("message", "The recipient device is not registered with FCM");
+                result.putObject("details").put("error", "DeviceNotRegistered");
+            } else {
+                result.put("status", "ok");
+                if (ticketId != null) {
+                    result.put("id", ticketId);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public boolean applyGlobally() {
+            return false;
+        }
+
+        @Override
+        public String getName() {
+            return NAME;
+        }
+    }
+}
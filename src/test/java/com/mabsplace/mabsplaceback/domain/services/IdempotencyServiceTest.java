@@ -0,0 +1,166 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mabsplace.mabsplaceback.base.BaseMySqlTest;
+import com.mabsplace.mabsplaceback.exceptions.IdempotencyKeyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+/**
+ * Checks that requests with the same Idempotency-Key run once, whether retried after or during the first
+ * attempt, against MySQL (needs Docker).
+ */
+class IdempotencyServiceTest extends BaseMySqlTest {
+
+    private static JdbcTemplate jdbcTemplate;
+    private static IdempotencyService idempotencyService;
+
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @BeforeAll
+    static void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        idempotencyService = new IdempotencyService(jdbcTemplate, new ObjectMapper(), new SimpleMeterRegistry(),
+                mock(JobLockService.class), Duration.ofDays(1), Duration.ofMinutes(2), Duration.ofSeconds(10));
+    }
+
+    @BeforeEach
+    void clearTable() {
+        jdbcTemplate.execute("DELETE FROM idempotency_keys");
+    }
+
+    @Test
+    void should_ReplayFirstResponse_When_RequestIsRetried() {
+        ResponseEntity<Map> first = idempotencyService.execute("top-up", "key-1", Map.of("amount", 500), Map.class,
+                () -> charge(Map.of("transactionId", 41)));
+        ResponseEntity<Map> retry = idempotencyService.execute("top-up", "key-1", Map.of("amount", 500), Map.class,
+                () -> charge(Map.of("transactionId", 42)));
+
+        assertThat(runs).hasValue(1);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(retry.getBody()).isEqualTo(first.getBody());
+        assertThat(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    void should_WaitForFirstAttempt_When_DuplicateArrivesWhileItRuns() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+
+        CompletableFuture<ResponseEntity<Map>> first = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("top-up", "key-2", Map.of("amount", 500), Map.class, () -> {
+                    running.countDown();
+                    await(finish);
+                    return charge(Map.of("transactionId", 7));
+                }));
+        assertThat(running.await(10, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<ResponseEntity<Map>> duplicate = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("top-up", "key-2", Map.of("amount", 500), Map.class,
+                        () -> charge(Map.of("transactionId", 8))));
+        Thread.sleep(300);
+        assertThat(duplicate).isNotDone();
+        finish.countDown();
+
+        assertThat(duplicate.get(10, TimeUnit.SECONDS).getBody()).isEqualTo(first.get(10, TimeUnit.SECONDS).getBody());
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void should_RefuseKey_When_ReusedForAnotherRequest() {
+        idempotencyService.execute("top-up", "key-3", Map.of("amount", 500), Map.class, () -> charge(Map.of("transactionId", 1)));
+
+        assertThatThrownBy(() -> idempotencyService.execute("top-up", "key-3", Map.of("amount", 900), Map.class,
+                () -> charge(Map.of("transactionId", 2))))
+                .isInstanceOfSatisfying(IdempotencyKeyException.class,
+                        e -> assertThat(e.getHttpStatus()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY));
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void should_RunAgain_When_FirstAttemptFailed() {
+        assertThatThrownBy(() -> idempotencyService.execute("top-up", "key-4", Map.of("amount", 500), Map.class, () -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("CoolPay unavailable");
+        })).isInstanceOf(IllegalStateException.class);
+
+        ResponseEntity<Map> retry = idempotencyService.execute("top-up", "key-4", Map.of("amount", 500), Map.class,
+                () -> charge(Map.of("transactionId", 3)));
+
+        assertThat(runs).hasValue(2);
+        assertThat(retry.getBody()).isEqualTo(Map.of("transactionId", 3));
+        assertThat(jdbcTemplate.queryForList("SELECT status FROM idempotency_keys", String.class))
+                .isEqualTo(List.of("COMPLETED"));
+    }
+
+    @Test
+    void should_ReplayStatusWithoutRunningAgain_When_BodyCannotBeWritten() {
+        // Jackson cannot write an object without properties
+        ResponseEntity<Map> first = idempotencyService.execute("top-up", "key-5", Map.of("amount", 500), Map.class,
+                () -> charge(Map.of("receipt", new Object())));
+        ResponseEntity<Map> retry = idempotencyService.execute("top-up", "key-5", Map.of("amount", 500), Map.class,
+                () -> charge(Map.of("transactionId", 5)));
+
+        assertThat(runs).hasValue(1);
+        assertThat(retry.getStatusCode()).isEqualTo(first.getStatusCode());
+        assertThat(retry.getBody()).isNull();
+        assertThat(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    void should_RefuseRetryWithoutRunningAgain_When_ResponseCannotBeStored() {
+        JdbcTemplate failingStore = spy(jdbcTemplate);
+        doAnswer(invocation -> {
+            if (invocation.<String>getArgument(0).contains("'COMPLETED'")) {
+                throw new DataAccessResourceFailureException("Connection lost");
+            }
+            return invocation.callRealMethod();
+        }).when(failingStore).update(anyString(), any(Object[].class));
+        IdempotencyService service = new IdempotencyService(failingStore, new ObjectMapper(), new SimpleMeterRegistry(),
+                mock(JobLockService.class), Duration.ofDays(1), Duration.ofMinutes(2), Duration.ZERO);
+
+        ResponseEntity<Map> first = service.execute("top-up", "key-6", Map.of("amount", 500), Map.class,
+                () -> charge(Map.of("transactionId", 6)));
+
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThatThrownBy(() -> service.execute("top-up", "key-6", Map.of("amount", 500), Map.class,
+                () -> charge(Map.of("transactionId", 7))))
+                .isInstanceOfSatisfying(IdempotencyKeyException.class,
+                        e -> assertThat(e.getHttpStatus()).isEqualTo(HttpStatus.CONFLICT));
+        assertThat(runs).hasValue(1);
+    }
+
+    private ResponseEntity<Map> charge(Map<String, Object> body) {
+        runs.incrementAndGet();
+        return new ResponseEntity<>(body, HttpStatus.CREATED);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.mabsplace.mabsplaceback.base.BaseRepositoryTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that locked jobs run on one node at a time, that shards are shared out between nodes and that a
+ * dead node's lease is taken over. Runs outside a test transaction, as each node takes its leases in transactions of its own.
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class JobLockServiceTest extends BaseRepositoryTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Override
+    protected void setupTestData() {
+        jdbcTemplate.execute("DELETE FROM job_locks");
+    }
+
+    @Test
+    void should_RunJobOnOneNode_When_NodesFireTogether() throws Exception {
+        JobLockService first = node("node-a", Duration.ofMinutes(2));
+        JobLockService second = node("node-b", Duration.ofMinutes(2));
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+
+        CompletableFuture<Boolean> slow = CompletableFuture.supplyAsync(() -> first.runOnce("expire-subscriptions", () -> {
+            runs.incrementAndGet();
+            running.countDown();
+            await(finish);
+        }));
+        assertThat(running.await(10, TimeUnit.SECONDS)).isTrue();
+        boolean ranOnSecond = second.runOnce("expire-subscriptions", runs::incrementAndGet);
+        finish.countDown();
+
+        assertThat(slow.get(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(ranOnSecond).isFalse();
+        // Still held for the minimum hold after it finished
+        assertThat(second.runOnce("expire-subscriptions", runs::incrementAndGet)).isFalse();
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void should_RunAgain_When_MinimumHoldHasPassed() {
+        JobLockService first = node("node-a", Duration.ZERO);
+        JobLockService second = node("node-b", Duration.ZERO);
+
+        assertThat(first.runOnce("cancel-pending-transactions", () -> { })).isTrue();
+        assertThat(second.runOnce("cancel-pending-transactions", () -> { })).isTrue();
+    }
+
+    @Test
+    void should_TakeOverLease_When_HolderDied() {
+        // A node that died mid-run an hour ago, with a lease that ran out a minute ago
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update("INSERT INTO job_locks (name, locked_by, locked_at, lock_until) VALUES (?, ?, ?, ?)",
+                "notify-upcoming-payments", "node-dead", Timestamp.valueOf(now.minusHours(1)), Timestamp.valueOf(now.minusMinutes(1)));
+
+        assertThat(node("node-a", Duration.ofMinutes(2)).runOnce("notify-upcoming-payments", () -> { })).isTrue();
+        assertThat(jdbcTemplate.queryForObject("SELECT locked_by FROM job_locks", String.class)).isEqualTo("node-a");
+    }
+
+    @Test
+    void should_RunEachShardOnce_When_NodesShareTheJob() throws Exception {
+        List<JobLockService> nodes = List.of(node("node-a", Duration.ofMinutes(2)), node("node-b", Duration.ofMinutes(2)),
+                node("node-c", Duration.ofMinutes(2)));
+        List<Integer> shardsRun = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(nodes.size());
+
+        List<CompletableFuture<List<Integer>>> runs = nodes.stream()
+                .map(node -> CompletableFuture.supplyAsync(() -> {
+                    await(start);
+                    return node.runSharded("subscription-renewals", 8, shard -> {
+                        shardsRun.add(shard.index());
+                        sleep(50);
+                        return shard.index();
+                    });
+                }, executor))
+                .toList();
+        start.countDown();
+        List<Integer> perNode = new ArrayList<>();
+        for (CompletableFuture<List<Integer>> run : runs) {
+            perNode.add(run.get(30, TimeUnit.SECONDS).size());
+        }
+        executor.shutdown();
+
+        assertThat(shardsRun).containsExactlyInAnyOrder(0, 1, 2, 3, 4, 5, 6, 7);
+        assertThat(perNode).allSatisfy(shards -> assertThat(shards).isPositive());
+    }
+
+    private JobLockService node(String nodeId, Duration minHold) {
+        return new JobLockService(jdbcTemplate, transactionManager, new SimpleMeterRegistry(), nodeId,
+                Duration.ofMinutes(5), minHold);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
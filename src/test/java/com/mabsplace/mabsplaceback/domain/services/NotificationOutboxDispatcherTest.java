@@ -0,0 +1,127 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mabsplace.mabsplaceback.domain.dtos.onesignal.OneSignalEmailRequest;
+import com.mabsplace.mabsplaceback.domain.enums.OutboxChannel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NotificationOutboxDispatcherTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private NotificationOutboxService outbox;
+    private OneSignalService oneSignalService;
+    private DiscordService discordService;
+    private NotificationOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        outbox = mock(NotificationOutboxService.class);
+        oneSignalService = mock(OneSignalService.class);
+        discordService = mock(DiscordService.class);
+        when(oneSignalService.emailPayload(any())).thenAnswer(invocation -> {
+            OneSignalEmailRequest request = invocation.getArgument(0);
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("subject", request.getSubject());
+            payload.put(OneSignalService.EMAIL_RECIPIENTS, List.of(request.getTo()));
+            return payload;
+        });
+        dispatcher = new NotificationOutboxDispatcher(outbox, oneSignalService, discordService, objectMapper,
+                new SimpleMeterRegistry(), 200, 10, 8, Duration.ofSeconds(30), Duration.ofHours(6), 8, Duration.ofSeconds(30));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void should_MergeEmails_When_OnlyRecipientsDiffer() throws Exception {
+        when(oneSignalService.sendAll(anyList(), anyInt(), any())).thenReturn(Map.of());
+
+        dispatcher.dispatchBatch(List.of(
+                email(1, "a@example.com", "Subscription Renewed"),
+                email(2, "b@example.com", "Subscription Renewed"),
+                email(3, "c@example.com", "Subscription Expired")));
+
+        ArgumentCaptor<List<Map<String, Object>>> requests = ArgumentCaptor.forClass(List.class);
+        verify(oneSignalService).sendAll(requests.capture(), eq(8), any());
+        assertThat(requests.getValue()).extracting(request -> request.get(OneSignalService.EMAIL_RECIPIENTS))
+                .containsExactly(List.of("a@example.com", "b@example.com"), List.of("c@example.com"));
+        verify(outbox).markSent(List.of(1L, 2L, 3L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void should_FailOnlyThatMessage_When_PayloadHasNoRecipient() throws Exception {
+        when(oneSignalService.sendAll(anyList(), anyInt(), any())).thenReturn(Map.of());
+
+        dispatcher.dispatchBatch(List.of(
+                email(1, "a@example.com", "Subscription Renewed"),
+                email(2, null, "Subscription Renewed"),
+                email(3, "c@example.com", "Subscription Renewed")));
+
+        ArgumentCaptor<List<Map<String, Object>>> requests = ArgumentCaptor.forClass(List.class);
+        verify(oneSignalService).sendAll(requests.capture(), eq(8), any());
+        assertThat(requests.getValue()).extracting(request -> request.get(OneSignalService.EMAIL_RECIPIENTS))
+                .containsExactly(List.of("a@example.com", "c@example.com"));
+        verify(outbox).markFailed(eq(2L), any(), isNull());
+        verify(outbox).markSent(List.of(1L, 3L));
+    }
+
+    @Test
+    void should_RetryWithBackoffThenGiveUp_When_RequestFails() throws Exception {
+        when(oneSignalService.sendAll(anyList(), anyInt(), any()))
+                .thenReturn(Map.of(0, new IllegalStateException("503 Service Unavailable")));
+        NotificationOutboxService.Message firstAttempt = email(1, "a@example.com", "Subscription Renewed");
+        NotificationOutboxService.Message lastAttempt = new NotificationOutboxService.Message(
+                2, OutboxChannel.EMAIL, firstAttempt.payload(), 7, LocalDateTime.now());
+
+        dispatcher.dispatchBatch(List.of(firstAttempt));
+        dispatcher.dispatchBatch(List.of(lastAttempt));
+
+        ArgumentCaptor<LocalDateTime> retryAt = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(outbox).markFailed(eq(1L), eq("503 Service Unavailable"), retryAt.capture());
+        assertThat(retryAt.getValue()).isCloseTo(LocalDateTime.now().plusSeconds(30), within(5, ChronoUnit.SECONDS));
+        verify(outbox).markFailed(eq(2L), eq("503 Service Unavailable"), isNull());
+        assertThat(dispatcher.backoff(3)).isEqualTo(Duration.ofMinutes(2));
+        assertThat(dispatcher.backoff(20)).isEqualTo(Duration.ofHours(6));
+    }
+
+    @Test
+    void should_PackEmbedsIntoWebhookMessages_When_SendingDiscordNotifications() {
+        when(discordService.sendSubscriptionRenewalEmbeds(anyList())).thenReturn(true);
+
+        dispatcher.dispatchBatch(LongStream.rangeClosed(1, 12)
+                .mapToObj(id -> new NotificationOutboxService.Message(
+                        id, OutboxChannel.DISCORD, "{\"title\":\"Renewed " + id + "\"}", 0, LocalDateTime.now()))
+                .toList());
+
+        verify(discordService, times(2)).sendSubscriptionRenewalEmbeds(anyList());
+        verify(outbox, never()).markFailed(any(Long.class), any(), any());
+    }
+
+    private NotificationOutboxService.Message email(long id, String to, String subject) throws Exception {
+        String payload = objectMapper.writeValueAsString(OneSignalEmailRequest.builder().to(to).subject(subject).build());
+        return new NotificationOutboxService.Message(id, OutboxChannel.EMAIL, payload, 0, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,123 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mabsplace.mabsplaceback.base.BaseMySqlTest;
+import com.mabsplace.mabsplaceback.domain.dtos.onesignal.OneSignalEmailRequest;
+import com.mabsplace.mabsplaceback.domain.enums.OutboxChannel;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Checks how outbox messages are claimed, leased and retried against MySQL row locking (needs Docker).
+ */
+class NotificationOutboxServiceTest extends BaseMySqlTest {
+
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate transactionTemplate;
+    private static NotificationOutboxService outbox;
+
+    @BeforeAll
+    static void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        outbox = new NotificationOutboxService(jdbcTemplate, transactionManager, new ObjectMapper(),
+                mock(JobLockService.class), Duration.ofMinutes(2), Duration.ofDays(7));
+    }
+
+    @BeforeEach
+    void clearTable() {
+        jdbcTemplate.execute("DELETE FROM notification_outbox");
+    }
+
+    @Test
+    void should_ClaimDisjointMessages_When_AnotherDispatcherHoldsRowLocks() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            outbox.enqueue(OutboxChannel.DISCORD, "{}");
+        }
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Another node in the middle of its claim transaction, holding the oldest four rows
+        CompletableFuture<List<Long>> otherNode = CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status -> {
+            List<Long> ids = jdbcTemplate.queryForList(
+                    "SELECT id FROM notification_outbox ORDER BY id LIMIT 4 FOR UPDATE", Long.class);
+            locked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ids;
+        }));
+        assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+
+        List<Long> claimed = outbox.claim(10).stream().map(NotificationOutboxService.Message::id).toList();
+        release.countDown();
+
+        assertThat(claimed).hasSize(6).doesNotContainAnyElementsOf(otherNode.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void should_ReclaimMessages_When_LeaseRunsOut() {
+        outbox.enqueue(OutboxChannel.EMAIL, OneSignalEmailRequest.builder().to("user@example.com").build());
+
+        List<NotificationOutboxService.Message> claimed = outbox.claim(10);
+        assertThat(claimed).hasSize(1);
+        assertThat(claimed.get(0).payload()).contains("user@example.com");
+        assertThat(outbox.claim(10)).isEmpty();
+
+        // The dispatcher died before recording the outcome
+        jdbcTemplate.update("UPDATE notification_outbox SET next_attempt_at = ?", LocalDateTime.now().minusSeconds(1));
+
+        assertThat(outbox.claim(10)).extracting(NotificationOutboxService.Message::id)
+                .containsExactly(claimed.get(0).id());
+    }
+
+    @Test
+    void should_RetryAtBackoffThenStop_When_SendingFails() {
+        outbox.enqueue(OutboxChannel.PUSH, "{}");
+        long id = outbox.claim(10).get(0).id();
+
+        outbox.markFailed(id, "503 Service Unavailable", LocalDateTime.now().plusMinutes(5));
+        assertThat(outbox.claim(10)).isEmpty();
+        jdbcTemplate.update("UPDATE notification_outbox SET next_attempt_at = ?", LocalDateTime.now().minusSeconds(1));
+        NotificationOutboxService.Message retried = outbox.claim(10).get(0);
+        assertThat(retried.attempts()).isEqualTo(1);
+
+        outbox.markFailed(id, "400 Bad Request", null);
+        jdbcTemplate.update("UPDATE notification_outbox SET next_attempt_at = ?", LocalDateTime.now().minusSeconds(1));
+
+        assertThat(outbox.claim(10)).isEmpty();
+        assertThat(outbox.countUnsent()).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM notification_outbox WHERE id = ?", String.class, id))
+                .isEqualTo("FAILED");
+    }
+
+    @Test
+    void should_NotClaimAgain_When_MarkedSent() {
+        outbox.enqueue(OutboxChannel.SMS, "{}");
+        outbox.enqueue(OutboxChannel.SMS, "{}");
+        List<Long> ids = outbox.claim(10).stream().map(NotificationOutboxService.Message::id).toList();
+
+        outbox.markSent(ids);
+        jdbcTemplate.update("UPDATE notification_outbox SET next_attempt_at = ?", LocalDateTime.now().minusSeconds(1));
+
+        assertThat(outbox.claim(10)).isEmpty();
+        assertThat(outbox.countUnsent()).isZero();
+    }
+}
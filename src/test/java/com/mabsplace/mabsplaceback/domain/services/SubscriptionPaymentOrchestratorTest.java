@@ -0,0 +1,144 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.mabsplace.mabsplaceback.domain.dtos.payment.PaymentRequestDto;
+import com.mabsplace.mabsplaceback.domain.dtos.promoCode.PromoCodeResponseDto;
+import com.mabsplace.mabsplaceback.domain.entities.Currency;
+import com.mabsplace.mabsplaceback.domain.entities.MyService;
+import com.mabsplace.mabsplaceback.domain.entities.Payment;
+import com.mabsplace.mabsplaceback.domain.entities.SubscriptionPlan;
+import com.mabsplace.mabsplaceback.domain.entities.User;
+import com.mabsplace.mabsplaceback.domain.entities.Wallet;
+import com.mabsplace.mabsplaceback.domain.mappers.PaymentMapper;
+import com.mabsplace.mabsplaceback.domain.repositories.CurrencyRepository;
+import com.mabsplace.mabsplaceback.domain.repositories.MyServiceRepository;
+import com.mabsplace.mabsplaceback.domain.repositories.PaymentRepository;
+import com.mabsplace.mabsplaceback.domain.repositories.SubscriptionPlanRepository;
+import com.mabsplace.mabsplaceback.domain.repositories.UserRepository;
+import com.mabsplace.mabsplaceback.exceptions.InsufficientFundsException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SubscriptionPaymentOrchestratorTest {
+
+    private static final String PROMO_CODE = "HALF-OFF";
+
+    @Mock
+    private WalletService walletService;
+    @Mock
+    private PaymentRepository paymentRepository;
+    @Mock
+    private DiscountService discountService;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private PaymentMapper paymentMapper;
+    @Mock
+    private CurrencyRepository currencyRepository;
+    @Mock
+    private MyServiceRepository myServiceRepository;
+    @Mock
+    private SubscriptionPlanRepository subscriptionPlanRepository;
+    @Mock
+    private PromoCodeService promoCodeService;
+    @Mock
+    private DailyRollupService dailyRollupService;
+    @Mock
+    private NotificationService notificationService;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private SubscriptionPaymentOrchestrator orchestrator;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setId(1L);
+        Wallet wallet = new Wallet();
+        wallet.setId(5L);
+        user.setWallet(wallet);
+        SubscriptionPlan plan = new SubscriptionPlan();
+        plan.setName("Monthly");
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(paymentMapper.toEntity(any(PaymentRequestDto.class))).thenAnswer(invocation -> new Payment());
+        when(currencyRepository.findById(anyLong())).thenReturn(Optional.of(new Currency()));
+        when(myServiceRepository.findById(anyLong())).thenReturn(Optional.of(new MyService()));
+        when(subscriptionPlanRepository.findById(anyLong())).thenReturn(Optional.of(plan));
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        PromoCodeResponseDto promoCode = new PromoCodeResponseDto();
+        promoCode.setDiscountAmount(new BigDecimal("50"));
+        when(promoCodeService.validatePromoCode(PROMO_CODE, user)).thenReturn(promoCode);
+    }
+
+    @Test
+    void should_LeavePromoCodeUnused_When_WalletCannotPay() {
+        when(walletService.checkBalance(1L, new BigDecimal("5000.00"))).thenReturn(false);
+
+        assertThatThrownBy(() -> orchestrator.processPaymentWithoutSubscription(request()))
+                .isInstanceOf(InsufficientFundsException.class);
+
+        verify(walletService, never()).debit(anyLong(), any());
+        verify(promoCodeService, never()).applyPromoCode(any(), any());
+        verify(paymentRepository, never()).save(any());
+    }
+
+    @Test
+    void should_DebitHalfThenUsePromoCode_When_PromoCodeIsHalfOff() {
+        when(walletService.checkBalance(1L, new BigDecimal("5000.00"))).thenReturn(true);
+
+        Payment payment = orchestrator.processPaymentWithoutSubscription(request());
+
+        InOrder order = inOrder(walletService, promoCodeService);
+        order.verify(walletService).debit(5L, new BigDecimal("5000.00"));
+        order.verify(promoCodeService).applyPromoCode(eq(PROMO_CODE), eq(payment));
+    }
+
+    @Test
+    void should_LeaveBalanceUnchangedAndUsePromoCode_When_PromoCodeIsFree() {
+        PromoCodeResponseDto freeCode = new PromoCodeResponseDto();
+        freeCode.setDiscountAmount(new BigDecimal("100"));
+        when(promoCodeService.validatePromoCode(PROMO_CODE, user)).thenReturn(freeCode);
+
+        Payment payment = orchestrator.processPaymentWithoutSubscription(request());
+
+        verify(walletService, never()).checkBalance(anyLong(), any());
+        verify(walletService, never()).debit(anyLong(), any());
+        verify(promoCodeService).applyPromoCode(PROMO_CODE, payment);
+    }
+
+    private static PaymentRequestDto request() {
+        return PaymentRequestDto.builder()
+                .amount(new BigDecimal("10000"))
+                .userId(1L)
+                .currencyId(1L)
+                .serviceId(1L)
+                .subscriptionPlanId(1L)
+                .promoCode(PROMO_CODE)
+                .build();
+    }
+}
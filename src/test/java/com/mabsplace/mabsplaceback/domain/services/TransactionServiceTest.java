@@ -0,0 +1,95 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.mabsplace.mabsplaceback.domain.dtos.transaction.TransactionRequestDto;
+import com.mabsplace.mabsplaceback.domain.entities.Currency;
+import com.mabsplace.mabsplaceback.domain.entities.Transaction;
+import com.mabsplace.mabsplaceback.domain.entities.User;
+import com.mabsplace.mabsplaceback.domain.entities.Wallet;
+import com.mabsplace.mabsplaceback.domain.enums.TransactionStatus;
+import com.mabsplace.mabsplaceback.domain.mappers.TransactionMapper;
+import com.mabsplace.mabsplaceback.domain.repositories.CurrencyRepository;
+import com.mabsplace.mabsplaceback.domain.repositories.TransactionRepository;
+import com.mabsplace.mabsplaceback.domain.repositories.UserRepository;
+import com.mabsplace.mabsplaceback.domain.repositories.WalletRepository;
+import com.mabsplace.mabsplaceback.exceptions.CoolPayUnavailableException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TransactionServiceTest {
+
+    private TransactionMapper mapper;
+    private CoolPayService coolPayService;
+    private TransactionService transactionService;
+    private Transaction transaction;
+
+    @BeforeEach
+    void setUp() {
+        TransactionRepository transactionRepository = mock(TransactionRepository.class);
+        WalletRepository walletRepository = mock(WalletRepository.class);
+        CurrencyRepository currencyRepository = mock(CurrencyRepository.class);
+        mapper = mock(TransactionMapper.class);
+        coolPayService = mock(CoolPayService.class);
+
+        User user = new User();
+        user.setFirstname("Ada");
+        user.setLastname("Lovelace");
+        Wallet wallet = new Wallet();
+        wallet.setUser(user);
+        transaction = new Transaction();
+        transaction.setAmount(new BigDecimal("5000"));
+
+        when(mapper.toEntity(any(TransactionRequestDto.class))).thenReturn(transaction);
+        when(walletRepository.findById(any())).thenReturn(Optional.of(wallet));
+        when(currencyRepository.findById(any())).thenReturn(Optional.of(new Currency()));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        transactionService = new TransactionService(transactionRepository, mapper, walletRepository, mock(WalletService.class),
+                currencyRepository, mock(UserRepository.class), coolPayService, mock(JobLockService.class));
+    }
+
+    @Test
+    void should_CancelTopUp_When_CoolPayRefusesThePayment() {
+        when(coolPayService.makePaymentAsync(any())).thenThrow(new CoolPayUnavailableException("busy"));
+
+        assertThatThrownBy(() -> transactionService.topUpWalletMobile(request()))
+                .isInstanceOf(CoolPayUnavailableException.class);
+
+        assertThat(transaction.getTransactionStatus()).isEqualTo(TransactionStatus.CANCELLED);
+    }
+
+    @Test
+    void should_CancelTopUp_When_CoolPayCannotGenerateTheLink() {
+        when(coolPayService.generatePaymentLink(any())).thenThrow(new CoolPayUnavailableException("busy"));
+
+        assertThatThrownBy(() -> transactionService.topUpWallet(request()))
+                .isInstanceOf(CoolPayUnavailableException.class);
+
+        assertThat(transaction.getTransactionStatus()).isEqualTo(TransactionStatus.CANCELLED);
+    }
+
+    @Test
+    void should_KeepTopUpPending_When_CoolPayAcceptsThePayment() throws Exception {
+        transactionService.topUpWalletMobile(request());
+
+        assertThat(transaction.getTransactionStatus()).isEqualTo(TransactionStatus.PENDING);
+    }
+
+    private static TransactionRequestDto request() {
+        TransactionRequestDto request = new TransactionRequestDto();
+        request.setSenderWalletId(1L);
+        request.setReceiverWalletId(1L);
+        request.setCurrencyId(1L);
+        request.setReason("");
+        request.setSenderPhoneNumber("237600000000");
+        return request;
+    }
+}
@@ -0,0 +1,154 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.mabsplace.mabsplaceback.base.BaseMySqlTest;
+import com.mabsplace.mabsplaceback.domain.repositories.NotificationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks how unread counters are rebuilt, updated after commit and reconciled, against MySQL and Redis
+ * (needs Docker).
+ */
+class UnreadNotificationCounterTest extends BaseMySqlTest {
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate transactionTemplate;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+    private static UnreadNotificationCounter counter;
+    private static long notificationIds;
+
+    @BeforeAll
+    static void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getFirstMappedPort()));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+
+        NotificationRepository notificationRepository = mock(NotificationRepository.class);
+        when(notificationRepository.countUnreadNotifications(anyLong())).thenAnswer(invocation -> jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM notifications WHERE user_id = ? AND is_read = false", Long.class, invocation.getArgument(0, Long.class)));
+        counter = new UnreadNotificationCounter(redisTemplate, notificationRepository, jdbcTemplate,
+                mock(JobLockService.class), new SimpleMeterRegistry(), Duration.ofDays(30));
+    }
+
+    @AfterAll
+    static void closeRedis() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void clearData() {
+        jdbcTemplate.execute("DELETE FROM notifications");
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        }, true);
+    }
+
+    @Test
+    void should_RebuildFromDatabase_When_CounterIsMissing() {
+        insert(1L, false, 3);
+        insert(1L, true, 2);
+
+        assertThat(counter.get(1L)).isEqualTo(3);
+        assertThat(redisTemplate.opsForValue().get(UnreadNotificationCounter.KEY_PREFIX + 1)).isEqualTo("3");
+        assertThat(redisTemplate.getExpire(UnreadNotificationCounter.KEY_PREFIX + 1)).isPositive();
+    }
+
+    @Test
+    void should_RenewExpiry_When_CounterIsRead() {
+        redisTemplate.opsForValue().set(UnreadNotificationCounter.KEY_PREFIX + 1, "2", Duration.ofMinutes(1));
+
+        assertThat(counter.get(1L)).isEqualTo(2);
+        assertThat(redisTemplate.getExpire(UnreadNotificationCounter.KEY_PREFIX + 1)).isGreaterThan(Duration.ofDays(29).toSeconds());
+    }
+
+    @Test
+    void should_KeepNotificationsArrivedMeanwhile_When_AllAreMarkedRead() {
+        insert(1L, false, 3);
+        counter.get(1L);
+
+        jdbcTemplate.update("UPDATE notifications SET is_read = true WHERE user_id = 1");
+        // Arrives after the last batch was marked read
+        insert(1L, false, 1);
+        counter.added(Map.of(1L, 1L));
+        counter.recount(1L);
+
+        assertThat(counter.get(1L)).isEqualTo(1);
+    }
+
+    @Test
+    void should_OnlyUpdateExistingCounters_When_NotificationsChange() {
+        insert(1L, false, 1);
+        counter.get(1L);
+
+        counter.added(Map.of(1L, 2L, 2L, 5L));
+        assertThat(counter.get(1L)).isEqualTo(3);
+        assertThat(redisTemplate.hasKey(UnreadNotificationCounter.KEY_PREFIX + 2)).isFalse();
+
+        counter.read(1L, 1);
+        counter.read(1L, 4);
+        assertThat(counter.get(1L)).isZero();
+    }
+
+    @Test
+    void should_LeaveCounterAlone_When_TransactionRollsBack() {
+        counter.get(1L);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            counter.added(Map.of(1L, 4L));
+            status.setRollbackOnly();
+        });
+        transactionTemplate.executeWithoutResult(status -> counter.added(Map.of(1L, 1L)));
+
+        assertThat(counter.get(1L)).isEqualTo(1);
+    }
+
+    @Test
+    void should_CorrectDriftedCounters_When_Reconciling() {
+        insert(1L, false, 2);
+        insert(2L, false, 4);
+        redisTemplate.opsForValue().set(UnreadNotificationCounter.KEY_PREFIX + 1, "9");
+        redisTemplate.opsForValue().set(UnreadNotificationCounter.KEY_PREFIX + 2, "4");
+        redisTemplate.opsForValue().set(UnreadNotificationCounter.KEY_PREFIX + 3, "1");
+
+        assertThat(counter.reconcile()).isEqualTo(2);
+
+        assertThat(redisTemplate.opsForValue().get(UnreadNotificationCounter.KEY_PREFIX + 1)).isEqualTo("2");
+        assertThat(redisTemplate.opsForValue().get(UnreadNotificationCounter.KEY_PREFIX + 2)).isEqualTo("4");
+        assertThat(redisTemplate.opsForValue().get(UnreadNotificationCounter.KEY_PREFIX + 3)).isEqualTo("0");
+    }
+
+    private static void insert(Long userId, boolean read, int count) {
+        for (int i = 0; i < count; i++) {
+            jdbcTemplate.update("INSERT INTO notifications (id, user_id, is_read, created_at) VALUES (?, ?, ?, NOW(6))",
+                    ++notificationIds, userId, read);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.mabsplace.mabsplaceback.domain.services;
+
+import com.mabsplace.mabsplaceback.base.BaseMySqlTest;
+import com.mabsplace.mabsplaceback.domain.enums.LedgerEntryType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Checks balances computed from snapshots and ledger tails, the opening backfill and drift verification
+ * against MySQL (needs Docker).
+ */
+class WalletLedgerServiceTest extends BaseMySqlTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate transactionTemplate;
+    private static WalletLedgerService ledgerService;
+
+    @BeforeAll
+    static void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        ledgerService = new WalletLedgerService(jdbcTemplate, transactionManager, new SimpleMeterRegistry(),
+                mock(JobLockService.class), Duration.ZERO, 10, false);
+    }
+
+    @BeforeEach
+    void clearTables() {
+        for (String table : List.of("wallets", "wallet_ledger_entries", "wallet_balance_snapshots")) {
+            jdbcTemplate.execute("DELETE FROM " + table);
+        }
+    }
+
+    @Test
+    void should_ComputeBalanceAtAnyTime_When_SnapshotsCoverPartOfTheLedger() {
+        long walletId = createWallet("0.00");
+        // One credit of 10.00 and one debit of 3.00 per day for ten days
+        for (int day = 0; day < 10; day++) {
+            entry(walletId, LedgerEntryType.CREDIT, "10.00", START.plusDays(day));
+            entry(walletId, LedgerEntryType.DEBIT, "-3.00", START.plusDays(day).plusHours(12));
+            if (day == 3 || day == 6) {
+                ledgerService.snapshot();
+            }
+        }
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_balance_snapshots", Integer.class)).isEqualTo(2);
+        assertThat(ledgerService.balanceAt(walletId, START.minusDays(1))).isEqualByComparingTo("0.00");
+        assertThat(ledgerService.balanceAt(walletId, START.plusDays(2).plusHours(1))).isEqualByComparingTo("24.00");
+        assertThat(ledgerService.balanceAt(walletId, START.plusDays(5).plusHours(13))).isEqualByComparingTo("42.00");
+        assertThat(ledgerService.balanceAt(walletId, START.plusDays(30))).isEqualByComparingTo("70.00");
+    }
+
+    @Test
+    void should_OnlyAddNewEntries_When_SnapshottingAgain() {
+        long walletId = createWallet("0.00");
+        entry(walletId, LedgerEntryType.CREDIT, "5.00", START);
+        ledgerService.snapshot();
+        ledgerService.snapshot();
+        entry(walletId, LedgerEntryType.CREDIT, "2.50", START.plusHours(1));
+        ledgerService.snapshot();
+
+        assertThat(jdbcTemplate.queryForList(
+                "SELECT balance FROM wallet_balance_snapshots ORDER BY last_entry_id", BigDecimal.class))
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(new BigDecimal("5.00"), new BigDecimal("7.50"));
+    }
+
+    @Test
+    void should_OpenLedgerWithExistingBalance_When_Backfilling() {
+        long untracked = createWallet("120.00");
+        long partlyTracked = createWallet("50.00");
+        long empty = createWallet("0.00");
+        // A debit recorded before the backfill reached this wallet
+        entry(partlyTracked, LedgerEntryType.DEBIT, "-20.00", START);
+
+        ledgerService.backfillOpeningBalances();
+        ledgerService.backfillOpeningBalances();
+
+        assertThat(jdbcTemplate.queryForList(
+                "SELECT wallet_id FROM wallet_ledger_entries WHERE entry_type = 'OPENING' ORDER BY wallet_id", Long.class))
+                .containsExactly(untracked, partlyTracked);
+        assertThat(ledgerService.balanceAt(partlyTracked, LocalDateTime.now())).isEqualByComparingTo("50.00");
+        assertThat(ledgerService.balanceAt(empty, LocalDateTime.now())).isEqualByComparingTo("0.00");
+        assertThat(ledgerService.verify().drifted()).isZero();
+    }
+
+    @Test
+    void should_ReportDriftedWallets_When_BalanceDiffersFromLedger() {
+        long consistent = createWallet("15.00");
+        long drifted = createWallet("99.00");
+        transactionTemplate.executeWithoutResult(status -> {
+            ledgerService.record(consistent, LedgerEntryType.CREDIT, new BigDecimal("20.00"));
+            ledgerService.record(consistent, LedgerEntryType.DEBIT, new BigDecimal("-5.00"));
+            ledgerService.record(drifted, LedgerEntryType.CREDIT, new BigDecimal("100.00"));
+        });
+
+        WalletLedgerService.VerificationReport report = ledgerService.verify();
+
+        assertThat(report.wallets()).isEqualTo(2);
+        assertThat(report.entries()).isEqualTo(3);
+        assertThat(report.drifts()).containsExactly(
+                new WalletLedgerService.Drift(drifted, new BigDecimal("99.00"), new BigDecimal("100.00")));
+    }
+
+    private long createWallet(String balance) {
+        jdbcTemplate.update("INSERT INTO wallets (balance) VALUES (?)", new BigDecimal(balance));
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM wallets", Long.class);
+    }
+
+    private void entry(long walletId, LedgerEntryType type, String amount, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO wallet_ledger_entries (wallet_id, entry_type, amount, created_at) VALUES (?, ?, ?, ?)",
+                walletId, type.name(), new BigDecimal(amount), Timestamp.valueOf(createdAt));
+    }
+}
@@ -0,0 +1,50 @@
+package com.mabsplace.mabsplaceback.initDb;
+
+import com.mabsplace.mabsplaceback.base.BaseRepositoryTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the id generators start past the ids the tables already have and never move back.
+ */
+class IdGeneratorSeederTest extends BaseRepositoryTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    protected void setupTestData() {
+        // Other classes sharing the context may have reserved ids already
+        jdbcTemplate.execute("DELETE FROM id_generators");
+    }
+
+    @Test
+    void should_StartPastExistingIds_When_GeneratorIsNew() {
+        jdbcTemplate.update("INSERT INTO payments (id) VALUES (1), (2), (730)");
+
+        new IdGeneratorSeeder(jdbcTemplate).seed();
+
+        assertThat(nextVal("payments")).isEqualTo(780);
+        assertThat(nextVal("notifications")).isEqualTo(50);
+    }
+
+    @Test
+    void should_OnlyMoveForward_When_SeededAgain() {
+        jdbcTemplate.update("INSERT INTO id_generators (name, next_val) VALUES ('notifications', 10), ('transactions', 5000)");
+        jdbcTemplate.update("INSERT INTO notifications (id) VALUES (100)");
+        jdbcTemplate.update("INSERT INTO transactions (id) VALUES (100)");
+
+        new IdGeneratorSeeder(jdbcTemplate).seed();
+        new IdGeneratorSeeder(jdbcTemplate).seed();
+
+        assertThat(nextVal("notifications")).isEqualTo(150);
+        assertThat(nextVal("transactions")).isEqualTo(5000);
+    }
+
+    private long nextVal(String name) {
+        return jdbcTemplate.queryForObject("SELECT next_val FROM id_generators WHERE name = ?", Long.class, name);
+    }
+}
@@ -0,0 +1,59 @@
+package com.mabsplace.mabsplaceback.security;
+
+import com.mabsplace.mabsplaceback.domain.repositories.UserProfileRepository;
+import com.mabsplace.mabsplaceback.domain.repositories.UserRepository;
+import com.mabsplace.mabsplaceback.security.config.AppProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AuthorizationVersionRegistryTest {
+
+    private static final Long SHARED_PROFILE = 1L;
+
+    private UserRepository userRepository;
+    private UserProfileRepository userProfileRepository;
+    private AuthorizationVersionRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        userProfileRepository = mock(UserProfileRepository.class);
+        when(userRepository.findAuthzVersionById(anyLong())).thenReturn(Optional.of(0L));
+        when(userProfileRepository.findRolesVersionById(SHARED_PROFILE)).thenReturn(Optional.of(0L));
+        registry = new AuthorizationVersionRegistry(userProfileRepository, userRepository, new AppProperties(), 100);
+    }
+
+    @Test
+    void should_RejectOnlyThatUsersTokens_When_UserIsMovedOffSharedProfile() {
+        when(userRepository.findAuthzVersionById(7L)).thenReturn(Optional.of(1L));
+        registry.invalidateUser(7L);
+
+        assertThat(registry.isCurrent(7L, 0L, SHARED_PROFILE, 0L)).isFalse();
+        assertThat(registry.isCurrent(7L, 1L, SHARED_PROFILE, 0L)).isTrue();
+        assertThat(registry.isCurrent(8L, 0L, SHARED_PROFILE, 0L)).isTrue();
+    }
+
+    @Test
+    void should_RejectEveryHolder_When_ProfileRolesChange() {
+        when(userProfileRepository.findRolesVersionById(SHARED_PROFILE)).thenReturn(Optional.of(1L));
+        registry.invalidateProfile(SHARED_PROFILE);
+
+        assertThat(registry.isCurrent(7L, 0L, SHARED_PROFILE, 0L)).isFalse();
+        assertThat(registry.isCurrent(8L, 0L, SHARED_PROFILE, 0L)).isFalse();
+        assertThat(registry.isCurrent(8L, 0L, SHARED_PROFILE, 1L)).isTrue();
+    }
+
+    @Test
+    void should_RejectToken_When_UserNoLongerExists() {
+        when(userRepository.findAuthzVersionById(9L)).thenReturn(Optional.empty());
+
+        assertThat(registry.isCurrent(9L, 0L, null, 0L)).isFalse();
+    }
+}
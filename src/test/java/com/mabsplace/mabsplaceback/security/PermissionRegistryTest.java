@@ -0,0 +1,62 @@
+package com.mabsplace.mabsplaceback.security;
+
+import com.mabsplace.mabsplaceback.domain.entities.Role;
+import com.mabsplace.mabsplaceback.domain.repositories.RoleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PermissionRegistryTest {
+
+    private PermissionRegistry permissionRegistry;
+
+    @BeforeEach
+    void setUp() {
+        RoleRepository roleRepository = mock(RoleRepository.class);
+        // More than 64 roles so that the bitsets span several words
+        when(roleRepository.findAll()).thenReturn(IntStream.range(0, 130)
+                .mapToObj(i -> Role.builder().name("ROLE_" + i).code("R" + i).build())
+                .toList());
+        permissionRegistry = new PermissionRegistry(roleRepository);
+        permissionRegistry.indexRoles();
+    }
+
+    @Test
+    void should_GrantRole_When_ProfileHoldsAnyRequestedRole() {
+        UserPrincipal principal = UserPrincipal.fromClaims(1L, "admin", List.of("ROLE_3", "ROLE_128"), 1L, 0L);
+
+        assertThat(permissionRegistry.hasAnyRole(principal, "ROLE_70", "ROLE_128")).isTrue();
+        assertThat(permissionRegistry.hasAnyRole(principal, "ROLE_3")).isTrue();
+        assertThat(permissionRegistry.hasAnyRole(principal, "ROLE_4", "ROLE_127")).isFalse();
+    }
+
+    @Test
+    void should_DenyRole_When_RoleIsUnknown() {
+        UserPrincipal principal = UserPrincipal.fromClaims(1L, "admin", List.of("ROLE_3"), 1L, 0L);
+
+        assertThat(permissionRegistry.hasAnyRole(principal, "NOT_A_ROLE")).isFalse();
+    }
+
+    @Test
+    void should_RebuildBits_When_ProfileVersionChanges() {
+        UserPrincipal before = UserPrincipal.fromClaims(1L, "admin", List.of("ROLE_1"), 1L, 0L);
+        UserPrincipal after = UserPrincipal.fromClaims(1L, "admin", List.of("ROLE_2"), 1L, 1L);
+
+        assertThat(permissionRegistry.hasRole(before, "ROLE_1")).isTrue();
+        assertThat(permissionRegistry.hasRole(after, "ROLE_1")).isFalse();
+        assertThat(permissionRegistry.hasRole(after, "ROLE_2")).isTrue();
+    }
+
+    @Test
+    void should_DenyEverything_When_PrincipalHasNoProfile() {
+        UserPrincipal principal = UserPrincipal.fromClaims(1L, "user", List.of("ROLE_1"), null, null);
+
+        assertThat(permissionRegistry.hasRole(principal, "ROLE_1")).isFalse();
+    }
+}
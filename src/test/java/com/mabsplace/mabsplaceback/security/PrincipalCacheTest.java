@@ -0,0 +1,69 @@
+package com.mabsplace.mabsplaceback.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PrincipalCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PrincipalCache principalCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        principalCache = new PrincipalCache(meterRegistry, 100, Duration.ofMinutes(5));
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void should_LoadOnce_When_SameUserRequestedTwice() {
+        principalCache.getById(1L, this::load);
+        principalCache.getById(1L, this::load);
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "principalCache").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void should_ShareEntry_When_LoadedByUsernameThenById() {
+        principalCache.getByUsername("user1", name -> load(1L));
+        principalCache.getById(1L, this::load);
+
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void should_Reload_When_Invalidated() {
+        principalCache.getByUsername("user1", name -> load(1L));
+
+        principalCache.invalidate(1L);
+        principalCache.getByUsername("user1", name -> load(1L));
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void should_Reload_When_CachedPrincipalNoLongerHasTheUsername() {
+        // State left behind when user 1 was renamed and its principal reloaded by id
+        principalCache.getByUsername("user1", name -> new UserPrincipal(1L, "renamed", "user1@test.com", "secret", List.of(), null));
+
+        UserPrincipal principal = principalCache.getByUsername("user1", name -> load(2L));
+
+        assertThat(principal.getId()).isEqualTo(2L);
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    private UserPrincipal load(Long id) {
+        loads.incrementAndGet();
+        return new UserPrincipal(id, "user" + id, "user" + id + "@test.com", "secret", List.of(), null);
+    }
+}
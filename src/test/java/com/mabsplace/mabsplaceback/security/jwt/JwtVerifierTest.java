@@ -0,0 +1,59 @@
+package com.mabsplace.mabsplaceback.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JwtVerifierTest {
+
+    private Key key;
+    private JwtVerifier verifier;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        key = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+        verifier = new JwtVerifier(key, 100);
+        token = Jwts.builder()
+                .setSubject("42")
+                .claim("roles", List.of("ROLE_USER"))
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(key, SignatureAlgorithm.HS512)
+                .compact();
+    }
+
+    @Test
+    void should_RefuseChanges_When_ClaimsComeFromTheCache() {
+        Claims first = verifier.verify(token);
+
+        assertThatThrownBy(() -> first.setSubject("1")).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> first.put("roles", List.of("ROLE_ADMIN"))).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> first.get("roles", List.class).add("ROLE_ADMIN")).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> first.remove(Claims.SUBJECT)).isInstanceOf(UnsupportedOperationException.class);
+        first.getExpiration().setTime(0);
+
+        Claims second = verifier.verify(token);
+        assertThat(second.getSubject()).isEqualTo("42");
+        assertThat(second.get("roles", List.class)).containsExactly("ROLE_USER");
+        assertThat(second.getExpiration()).isInTheFuture();
+    }
+
+    @Test
+    void should_ReadClaims_When_CacheIsDisabled() {
+        Claims claims = new JwtVerifier(key, 0).verify(token);
+
+        assertThat(claims.getSubject()).isEqualTo("42");
+        assertThat(claims.get("roles", List.class)).containsExactly("ROLE_USER");
+        assertThatThrownBy(() -> claims.setSubject("1")).isInstanceOf(UnsupportedOperationException.class);
+    }
+}
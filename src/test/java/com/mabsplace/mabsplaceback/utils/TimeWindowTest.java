@@ -0,0 +1,47 @@
+package com.mabsplace.mabsplaceback.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimeWindowTest {
+
+    // 31 January 2026, late evening
+    private final Clock clock = Clock.fixed(Instant.parse("2026-01-31T23:30:00Z"), ZoneOffset.UTC);
+
+    @Test
+    void should_CoverWholeMonthHalfOpen_When_CurrentMonth() {
+        TimeWindow window = TimeWindow.currentMonth(clock);
+
+        assertThat(window.start()).isEqualTo(LocalDateTime.of(2026, 1, 1, 0, 0));
+        assertThat(window.end()).isEqualTo(LocalDateTime.of(2026, 2, 1, 0, 0));
+        assertThat(window.months()).containsExactly(YearMonth.of(2026, 1));
+    }
+
+    @Test
+    void should_CrossYearBoundary_When_PreviousAndLastMonths() {
+        assertThat(TimeWindow.previousMonth(clock).start()).isEqualTo(LocalDateTime.of(2025, 12, 1, 0, 0));
+
+        TimeWindow lastSix = TimeWindow.lastMonths(6, clock);
+        assertThat(lastSix.start()).isEqualTo(LocalDateTime.of(2025, 8, 1, 0, 0));
+        assertThat(lastSix.end()).isEqualTo(LocalDateTime.of(2026, 2, 1, 0, 0));
+        assertThat(lastSix.months()).hasSize(6).startsWith(YearMonth.of(2025, 8)).endsWith(YearMonth.of(2026, 1));
+    }
+
+    @Test
+    void should_ListOverlappingMonths_When_ArbitraryRange() {
+        TimeWindow window = TimeWindow.between(LocalDate.of(2026, 3, 15), LocalDate.of(2026, 5, 2));
+
+        assertThat(window.months()).containsExactly(YearMonth.of(2026, 3), YearMonth.of(2026, 4), YearMonth.of(2026, 5));
+        assertThatThrownBy(() -> TimeWindow.between(LocalDate.of(2026, 5, 2), LocalDate.of(2026, 5, 2)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}